@@ -0,0 +1,187 @@
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The assistant's answers, kept so that a question asked again, or
+ * reworded, is answered without a run.
+ *
+ * Lookups go through a {@link NearDuplicateIndex}, so "What classes am I
+ * currently in" is served the answer to "what classes am I in?". Answers
+ * expire after a time to live, since deadlines and schedules change, and the
+ * least recently used are dropped past the capacity.
+ *
+ * Only questions that {@link #standsAlone stand alone} are cached: "When is
+ * it offered?" means a different course in every conversation.
+ *
+ * Given a {@link SharedAnswerCache}, answers are also shared with the other
+ * processes on the machine: a question not answered here is looked up
+ * there by its normalized text, and every answer stored here is shared.
+ */
+public class AnswerCache {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final long DEFAULT_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // Words that point back into the conversation
+    private static final Set<String> DEICTIC_WORDS = Set.of(
+            "it", "its", "this", "that", "these", "those", "they", "them", "their", "there", "then",
+            "he", "him", "his", "she", "her", "one", "ones", "same", "above", "previous", "also", "else");
+
+    private record Cached(String user, String answer, long storedAt) {
+    }
+
+    private final NearDuplicateIndex<Cached> index;
+    private final long ttlMillis;
+    private final SharedAnswerCache shared;
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AnswerCache() {
+        this(DEFAULT_CAPACITY, NearDuplicateIndex.DEFAULT_THRESHOLD, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param threshold how similar a reworded question must be to share an
+     *                  answer, as in {@link NearDuplicateIndex}
+     */
+    public AnswerCache(int capacity, double threshold, long ttlMillis) {
+        this(capacity, threshold, ttlMillis, null);
+    }
+
+    /**
+     * @param shared answers shared with other processes, or null
+     */
+    public AnswerCache(int capacity, double threshold, long ttlMillis, SharedAnswerCache shared) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be positive");
+        }
+        this.index = new NearDuplicateIndex<>(NearDuplicateIndex.DEFAULT_BANDS, NearDuplicateIndex.DEFAULT_ROWS,
+                threshold, capacity);
+        this.ttlMillis = ttlMillis;
+        this.shared = shared;
+    }
+
+    /**
+     * Whether {@code question} means the same whatever was asked before it:
+     * it has no pronoun or other word that points back into the conversation.
+     */
+    public static boolean standsAlone(String question) {
+        for (String word : FrequencySketch.normalize(question).split(" ")) {
+            if (DEICTIC_WORDS.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The answer to {@code question} or to a near-duplicate of it, or null.
+     */
+    public String get(String question) {
+        return get(null, question);
+    }
+
+    /**
+     * The answer {@code user} was given to {@code question} or to a
+     * near-duplicate of it, or null.
+     */
+    public String get(String user, String question) {
+        if (!standsAlone(question)) {
+            misses.increment();
+            return null;
+        }
+        NearDuplicateIndex.Match<Cached> match = index.find(question);
+        if (match != null && System.currentTimeMillis() - match.value().storedAt() >= ttlMillis) {
+            index.remove(match.question());
+            match = null;
+        }
+        if (match != null && Objects.equals(match.value().user(), user)) {
+            (match.similarity() == 1.0 ? exactHits : nearHits).increment();
+            return match.value().answer();
+        }
+        String answer = shared == null ? null : shared.get(user, question);
+        if (answer == null) {
+            misses.increment();
+            return null;
+        }
+        sharedHits.increment();
+        index.put(question, new Cached(user, answer, System.currentTimeMillis()));
+        return answer;
+    }
+
+    /**
+     * Whether {@link #get(String, String)} would find an answer; not counted
+     * as a lookup.
+     */
+    public boolean contains(String user, String question) {
+        if (!standsAlone(question)) {
+            return false;
+        }
+        NearDuplicateIndex.Match<Cached> match = index.find(question);
+        if (match != null && Objects.equals(match.value().user(), user)
+                && System.currentTimeMillis() - match.value().storedAt() < ttlMillis) {
+            return true;
+        }
+        return shared != null && shared.get(user, question) != null;
+    }
+
+    public void put(String question, String answer) {
+        put(null, question, answer);
+    }
+
+    /**
+     * Caches {@code answer}, unless the question does not stand alone.
+     */
+    public void put(String user, String question, String answer) {
+        if (!standsAlone(question)) {
+            return;
+        }
+        index.put(question, new Cached(user, answer, System.currentTimeMillis()));
+        if (shared != null) {
+            shared.put(user, question, answer);
+        }
+    }
+
+    /*
+     * Metrics
+     */
+    public long getExactHits() {
+        return exactHits.sum();
+    }
+
+    public long getNearHits() {
+        return nearHits.sum();
+    }
+
+    public long getSharedHits() {
+        return sharedHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * One-line summary of hit rates.
+     */
+    public String metricsSummary() {
+        long lookups = getExactHits() + getNearHits() + getSharedHits() + getMisses();
+        if (lookups == 0) {
+            return "No lookups";
+        }
+        String summary = String.format("%d lookups - exact %.1f%%, near-duplicate %.1f%%", lookups,
+                100.0 * getExactHits() / lookups, 100.0 * getNearHits() / lookups);
+        if (shared != null) {
+            summary += String.format(", shared %.1f%%", 100.0 * getSharedHits() / lookups);
+        }
+        return summary + ", " + size() + " answers cached";
+    }
+}
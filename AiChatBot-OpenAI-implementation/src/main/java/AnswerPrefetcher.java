@@ -0,0 +1,145 @@
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Answers questions before they are asked, within a strict budget, so that
+ * a question the student goes on to ask is answered at once.
+ *
+ * {@link #prefetch} starts a question in the background unless the budget
+ * of runs is spent, the question is already cached or already under way.
+ * At most {@code parallelism} run at once; the rest wait their turn. Each
+ * answer goes into the {@link AnswerCache} when it arrives. {@link #take}
+ * hands the student the prefetch of the question they asked, finished or
+ * still running, so it is never asked twice.
+ */
+public class AnswerPrefetcher {
+
+    // Runs mostly wait on HTTP, so each gets a virtual thread
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Function<String, ChatSession.Reply> ask;
+    private final AnswerCache cache;
+    private final String user;
+    private final Semaphore running;
+    private final AtomicInteger budget;
+    // Keyed by normalized question
+    private final Map<String, CompletableFuture<ChatSession.Reply>> prefetches = new ConcurrentHashMap<>();
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder used = new LongAdder();
+
+    /**
+     * @param ask       answers a question with a run of its own, on any
+     *                  thread
+     * @param user      whose answers these are, for the cache
+     * @param budget    the most runs this prefetcher will ever start
+     */
+    public AnswerPrefetcher(Function<String, ChatSession.Reply> ask, AnswerCache cache, String user, int budget,
+            int parallelism) {
+        if (budget < 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("budget must not be negative and parallelism must be positive");
+        }
+        this.ask = ask;
+        this.cache = cache;
+        this.user = user;
+        this.budget = new AtomicInteger(budget);
+        this.running = new Semaphore(parallelism);
+    }
+
+    /**
+     * Starts answering {@code question} in the background.
+     *
+     * @return false if it was not started: already cached or under way, not
+     *         a question that {@link AnswerCache#standsAlone stands alone},
+     *         or the budget is spent
+     */
+    public boolean prefetch(String question) {
+        String key = FrequencySketch.normalize(question);
+        // Asked on a thread of its own, a question that leans on the conversation would be answered wrongly
+        if (key.isEmpty() || !AnswerCache.standsAlone(question) || prefetches.containsKey(key) || cache.contains(user, question)) {
+            return false;
+        }
+        CompletableFuture<ChatSession.Reply> prefetch = new CompletableFuture<>();
+        if (prefetches.putIfAbsent(key, prefetch) != null) {
+            return false;
+        }
+        if (budget.getAndUpdate(left -> Math.max(0, left - 1)) == 0) {
+            prefetches.remove(key, prefetch);
+            return false;
+        }
+        issued.increment();
+        PREFETCH_EXECUTOR.execute(() -> run(question, key, prefetch));
+        return true;
+    }
+
+    /**
+     * The prefetch of {@code question}, finished or still running, or null
+     * if it was not prefetched. Counts as a prefetch used.
+     */
+    public CompletableFuture<ChatSession.Reply> take(String question) {
+        CompletableFuture<ChatSession.Reply> prefetch = prefetches.remove(FrequencySketch.normalize(question));
+        if (prefetch != null) {
+            used.increment();
+        }
+        return prefetch;
+    }
+
+    /*
+     * Metrics
+     */
+    public long getIssued() {
+        return issued.sum();
+    }
+
+    public long getUsed() {
+        return used.sum();
+    }
+
+    public int getBudgetLeft() {
+        return budget.get();
+    }
+
+    /**
+     * One-line summary of how many prefetches were used.
+     */
+    public String metricsSummary() {
+        long started = getIssued();
+        if (started == 0) {
+            return "None started, " + getBudgetLeft() + " left in budget";
+        }
+        return String.format("%d started, %d used (%.1f%%), %d left in budget", started, getUsed(),
+                100.0 * getUsed() / started, getBudgetLeft());
+    }
+
+    private void run(String question, String key, CompletableFuture<ChatSession.Reply> prefetch) {
+        try {
+            running.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            prefetches.remove(key, prefetch);
+            prefetch.complete(new ChatSession.Reply("Cancelled.", IntentRouter.Route.LLM, false));
+            return;
+        }
+        try {
+            ChatSession.Reply reply = ask.apply(question);
+            if (reply.answered()) {
+                cache.put(user, question, reply.text());
+            } else {
+                prefetches.remove(key, prefetch); // asked for real, it is tried again
+            }
+            prefetch.complete(reply);
+        } catch (RuntimeException e) {
+            prefetches.remove(key, prefetch);
+            prefetch.completeExceptionally(e);
+        } finally {
+            running.release();
+        }
+    }
+}
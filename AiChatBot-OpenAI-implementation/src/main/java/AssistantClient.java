@@ -24,11 +24,21 @@ public class AssistantClient {
     private Integer timeout = 30;
     private Integer pollRateMiliSeconds = 1000;
     private String additionalInstructions;
+    private SharedAnswerCache answerCache;
+    private String answerCacheUser;
 
     public AssistantClient(String apiKey) {
         this.engine = new OpenAiAssistantEngine(apiKey);
     }
 
+    /**
+     * A client on an existing engine, so many clients can share its tool
+     * registry, reaper and connections.
+     */
+    public AssistantClient(OpenAiAssistantEngine engine) {
+        this.engine = engine;
+    }
+
     // Builder methods
     public AssistantClient withModel(String model) {
         this.model = model;
@@ -85,6 +95,33 @@ public class AssistantClient {
         return this;
     }
 
+    /**
+     * Answers {@link #sendMessage} from answers shared by other processes on
+     * this machine, and shares its own, under {@code user}'s name.
+     */
+    public AssistantClient withAnswerCache(SharedAnswerCache cache, String user) {
+        this.answerCache = cache;
+        this.answerCacheUser = user;
+        return this;
+    }
+
+    /**
+     * Uses an assistant that already exists instead of creating one.
+     */
+    public AssistantClient withAssistant(String assistantId) {
+        this.currentAssistantId = assistantId;
+        return this;
+    }
+
+    /**
+     * Lets runs call the given local functions. Tool calls are answered while
+     * waiting for each run to complete.
+     */
+    public AssistantClient withFunctions(ToolRegistry registry) {
+        this.engine.setToolRegistry(registry);
+        return this;
+    }
+
     /**
      * Creates a new assistant with basic configuration.
      *
@@ -149,9 +186,9 @@ public class AssistantClient {
     model,
     reasoningEffort,
     null, // instructions
-    null, // additionalInstructions
+    additionalInstructions,
     null, // additionalMessages
-    tools.isEmpty() ? null : tools.stream().map(tool -> new JSONObject().put("type", tool)).toList(),
+    runTools(),
     metadata.isEmpty() ? null : metadata,
     temperature,
     topP,
@@ -201,9 +238,9 @@ public class AssistantClient {
             model,
             reasoningEffort,
             null, // instructions
-            null, // additionalInstructions
+            additionalInstructions,
             null, // additionalMessages
-            tools.isEmpty() ? null : tools.stream().map(tool -> new JSONObject().put("type", tool)).toList(),
+            runTools(),
             metadata.isEmpty() ? null : metadata,
             temperature,
             topP,
@@ -232,17 +269,28 @@ public class AssistantClient {
     }
 
     /**
-     * Sends a message and returns just the last response.
+     * Sends a message and returns just the last response. With an answer
+     * cache, a message answered before is answered from it without a run.
      *
      * @param message User's message
      * @return Last response from the assistant, null if failed
      */
     public String sendMessage(String message) {
+        if (answerCache != null) {
+            String cached = answerCache.get(answerCacheUser, message);
+            if (cached != null) {
+                return cached;
+            }
+        }
         List<String> responses = sendMessageAndWait(message);
         if (responses == null || responses.isEmpty()) {
             return null;
         }
-        return responses.get(responses.size() - 1);
+        String response = responses.get(responses.size() - 1);
+        if (answerCache != null) {
+            answerCache.put(answerCacheUser, message, response);
+        }
+        return response;
     }
 
     /**
@@ -265,6 +313,18 @@ public class AssistantClient {
         }
     }
 
+    private List<JSONObject> runTools() {
+        List<JSONObject> runTools = new ArrayList<>();
+        for (String tool : tools) {
+            runTools.add(new JSONObject().put("type", tool));
+        }
+        ToolRegistry registry = engine.getToolRegistry();
+        if (registry != null) {
+            runTools.addAll(registry.toolDefinitions());
+        }
+        return runTools.isEmpty() ? null : runTools;
+    }
+
     public String getCurrentThreadId() {
         return currentThreadId;
     }
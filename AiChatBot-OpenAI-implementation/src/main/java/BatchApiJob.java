@@ -0,0 +1,563 @@
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Answers a large set of questions offline through the OpenAI Batch API,
+ * at half the price of interactive runs and without their rate limits.
+ *
+ * The Batch API does not run Assistants, so every request is a chat
+ * completion carrying its own instructions (the assistant's instructions,
+ * the student's profile and the course rows the question mentions).
+ * Requests are written to JSONL part files of at most
+ * {@link #MAX_REQUESTS_PER_PART} lines, each uploaded and run as its own
+ * batch. Output is downloaded to disk and read back one line at a time, so
+ * memory stays flat however many questions there are.
+ *
+ * All progress lives in {@code job.json} in the job directory, rewritten
+ * after every step. Running the same job again (after a crash, a timeout or
+ * a failed batch) picks up where it stopped: parts whose upload was recorded
+ * are not uploaded again and batches whose submission was recorded are only
+ * polled. A crash between an upload or a submission and the save that
+ * records it repeats that one step for that part.
+ *
+ * A batch that expires keeps the answers it finished; the requests it did
+ * not reach are written to a new part, which the next run submits. A
+ * cancelled batch's unreached requests, and every request of a batch that
+ * failed validation, are reported as failed results with the reason, since
+ * sending the same file again would not change the outcome.
+ */
+public class BatchApiJob {
+
+    public static final String ENDPOINT = "/v1/chat/completions";
+    public static final String COMPLETION_WINDOW = "24h";
+    public static final int MAX_REQUESTS_PER_PART = 50_000;
+    // The API accepts input files of up to 200 MB
+    public static final long MAX_BYTES_PER_PART = 150L * 1024 * 1024;
+
+    /**
+     * One question. {@code customId} keys its result and must be unique
+     * within the job.
+     */
+    public record Request(String customId, String instructions, String question) {
+    }
+
+    /**
+     * One answer, or the error that prevented it.
+     */
+    public record Result(String customId, String answer, String error) {
+        public boolean ok() {
+            return answer != null;
+        }
+    }
+
+    private static final String STATE_FILE = "job.json";
+
+    private final OpenAiAssistantEngine engine;
+    private final File directory;
+    private final String model;
+    private final int maxRequestsPerPart;
+    private final long maxBytesPerPart;
+    private JSONObject state;
+    // Published on every save, so the reaper never waits on a run in progress
+    private volatile Set<String> pendingFileIds = Set.of();
+
+    /**
+     * Opens the job in {@code directory}, resuming any job recorded there.
+     */
+    public BatchApiJob(OpenAiAssistantEngine engine, File directory, String model) {
+        this(engine, directory, model, MAX_REQUESTS_PER_PART, MAX_BYTES_PER_PART);
+    }
+
+    BatchApiJob(OpenAiAssistantEngine engine, File directory, String model, int maxRequestsPerPart, long maxBytesPerPart) {
+        this.engine = engine;
+        this.directory = directory;
+        this.model = model;
+        this.maxRequestsPerPart = maxRequestsPerPart;
+        this.maxBytesPerPart = maxBytesPerPart;
+        this.state = loadState();
+        this.pendingFileIds = collectPendingFileIds();
+    }
+
+    /**
+     * Writes the request files for {@code source}, unless the job recorded
+     * here is already for {@code source}, in which case it is resumed as is.
+     *
+     * @param source names the input, e.g. its {@link #sourceKey}; a finished
+     *               job for another source is replaced, an unfinished one
+     *               is kept
+     * @return the number of requests in the job, or -1 if an unfinished job
+     *         for another source is in the way
+     */
+    public synchronized int prepare(String source, Iterator<Request> requests) throws IOException {
+        if (state != null && state.optString("source").equals(source)) {
+            return state.getInt("requests");
+        }
+        if (state != null && !isComplete()) {
+            System.out.println("Failed to prepare batch job: " + directory + " holds an unfinished job for "
+                    + state.optString("source"));
+            return -1;
+        }
+
+        clearDirectory();
+        JSONArray parts = new JSONArray();
+        int total = 0;
+        BufferedWriter writer = null;
+        int partRequests = 0;
+        long partBytes = 0;
+        try {
+            while (requests.hasNext()) {
+                String line = requestLine(requests.next()).toString();
+                long lineBytes = line.getBytes(StandardCharsets.UTF_8).length + 1L;
+                if (writer == null || partRequests == maxRequestsPerPart || partBytes + lineBytes > maxBytesPerPart) {
+                    if (writer != null) {
+                        writer.close();
+                        parts.getJSONObject(parts.length() - 1).put("requests", partRequests);
+                    }
+                    String name = String.format("requests-%03d.jsonl", parts.length());
+                    parts.put(new JSONObject().put("file", name).put("done", false));
+                    writer = new BufferedWriter(new FileWriter(new File(directory, name), StandardCharsets.UTF_8));
+                    partRequests = 0;
+                    partBytes = 0;
+                }
+                writer.write(line);
+                writer.write('\n');
+                partRequests++;
+                partBytes += lineBytes;
+                total++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (writer != null) {
+                writer.close();
+                parts.getJSONObject(parts.length() - 1).put("requests", partRequests);
+            }
+        }
+
+        // Saved last, so a crash while writing parts starts the job over
+        state = new JSONObject()
+                .put("source", source)
+                .put("model", model)
+                .put("requests", total)
+                .put("parts", parts);
+        saveState();
+        return total;
+    }
+
+    /**
+     * Names {@code input} by its path and a hash of its content, so an input
+     * rewritten at the same path is a new job rather than a finished one.
+     *
+     * @return the key, or null if the file could not be read
+     */
+    public static String sourceKey(File input) {
+        try (InputStream in = Files.newInputStream(input.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            return input.getAbsolutePath() + "#" + HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            System.out.println("Failed to read batch input: " + e.getMessage());
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Uploads and submits every part not yet submitted, then waits for each
+     * batch and downloads its output. Safe to call again after it returns
+     * false.
+     *
+     * @param timeoutSeconds how long to wait for each batch
+     * @return true once every part has finished and been downloaded
+     */
+    public synchronized boolean run(int timeoutSeconds, int pollIntervalMiliSeconds) {
+        if (state == null) {
+            throw new IllegalStateException("No batch job prepared in " + directory);
+        }
+        JSONArray parts = state.getJSONArray("parts");
+        // Everything is submitted before anything is awaited, so the parts run side by side
+        for (int i = 0; i < parts.length(); i++) {
+            JSONObject part = parts.getJSONObject(i);
+            if (!part.getBoolean("done") && !part.has("batch_id")) {
+                submit(part);
+            }
+        }
+
+        boolean finished = true;
+        for (int i = 0; i < parts.length(); i++) {
+            JSONObject part = parts.getJSONObject(i);
+            if (part.getBoolean("done")) {
+                continue;
+            }
+            if (!part.has("batch_id") || !collect(part, i, timeoutSeconds, pollIntervalMiliSeconds)) {
+                finished = false;
+            }
+        }
+        return finished;
+    }
+
+    /**
+     * Streams the results of every finished part: answers first, then the
+     * requests that failed.
+     *
+     * @return the number of results
+     */
+    public synchronized long forEachResult(Consumer<Result> consumer) throws IOException {
+        if (state == null) {
+            return 0;
+        }
+        long count = 0;
+        JSONArray parts = state.getJSONArray("parts");
+        for (int i = 0; i < parts.length(); i++) {
+            JSONObject part = parts.getJSONObject(i);
+            if (!part.getBoolean("done")) {
+                continue;
+            }
+            for (String key : List.of("output", "errors", "unanswered")) {
+                if (!part.has(key)) {
+                    continue;
+                }
+                try (BufferedReader reader = new BufferedReader(new FileReader(new File(directory, part.getString(key)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        Result result = parseResult(line);
+                        if (result != null) {
+                            consumer.accept(result);
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    public synchronized boolean isComplete() {
+        if (state == null) {
+            return false;
+        }
+        JSONArray parts = state.getJSONArray("parts");
+        for (int i = 0; i < parts.length(); i++) {
+            if (!parts.getJSONObject(i).getBoolean("done")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Uploaded input files of unfinished parts, which the reaper must not
+     * delete while their batches may still read them.
+     */
+    public Set<String> pendingFileIds() {
+        return pendingFileIds;
+    }
+
+    private Set<String> collectPendingFileIds() {
+        Set<String> ids = new HashSet<>();
+        if (state == null) {
+            return ids;
+        }
+        JSONArray parts = state.getJSONArray("parts");
+        for (int i = 0; i < parts.length(); i++) {
+            JSONObject part = parts.getJSONObject(i);
+            if (!part.getBoolean("done") && part.has("input_file_id")) {
+                ids.add(part.getString("input_file_id"));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Adapts a JSONL question file (the {@link BatchRunner} format) to
+     * requests, reading one line at a time.
+     *
+     * @param instructions the instructions for each question
+     */
+    public static Iterator<Request> requests(BufferedReader questions, Function<BatchRunner.Question, String> instructions) {
+        return new Iterator<>() {
+            private Request next;
+            private int lineNumber;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    String line;
+                    while (next == null && (line = questions.readLine()) != null) {
+                        BatchRunner.Question question = BatchRunner.parse(line, ++lineNumber);
+                        if (question != null) {
+                            next = new Request(question.id(), instructions.apply(question), question.question());
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return next != null;
+            }
+
+            @Override
+            public Request next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Request request = next;
+                next = null;
+                return request;
+            }
+        };
+    }
+
+    private void submit(JSONObject part) {
+        if (!part.has("input_file_id")) {
+            String fileId = engine.uploadFile(new File(directory, part.getString("file")), "batch");
+            if (fileId == null) {
+                return;
+            }
+            part.put("input_file_id", fileId);
+            saveState();
+        }
+        String batchId = engine.createBatch(part.getString("input_file_id"), ENDPOINT, COMPLETION_WINDOW,
+                Map.of("part", part.getString("file")));
+        if (batchId != null) {
+            part.put("batch_id", batchId);
+            saveState();
+        }
+    }
+
+    private boolean collect(JSONObject part, int index, int timeoutSeconds, int pollIntervalMiliSeconds) {
+        JSONObject batch = engine.waitForBatchCompletion(part.getString("batch_id"), timeoutSeconds, pollIntervalMiliSeconds);
+        if (batch == null) {
+            return false;
+        }
+        String status = batch.getString("status");
+        part.put("status", status);
+        String outputFileId = batch.optString("output_file_id", null);
+        String errorFileId = batch.optString("error_file_id", null);
+        try {
+            if (status.equals("failed")) {
+                // A validation error: the same file would fail again, so every request fails with it
+                JSONArray errors = batch.optJSONObject("errors") == null ? null : batch.getJSONObject("errors").optJSONArray("data");
+                String reason = "batch failed: " + (errors == null ? "no details" : errors.toString());
+                System.out.println("Failed to run batch " + part.getString("batch_id") + ": " + reason);
+                writeUnanswered(part, index, Set.of(), reason);
+            } else {
+                // Expired and cancelled batches still have output for what they finished
+                if (outputFileId != null && !download(part, "output", String.format("output-%03d.jsonl", index), outputFileId)) {
+                    return false;
+                }
+                if (errorFileId != null && !download(part, "errors", String.format("errors-%03d.jsonl", index), errorFileId)) {
+                    return false;
+                }
+                Set<String> answered = customIds(part, "output", "errors");
+                if (answered.size() < part.getInt("requests")) {
+                    if (status.equals("expired")) {
+                        requeue(part, answered);
+                    } else {
+                        writeUnanswered(part, index, answered, status);
+                    }
+                }
+            }
+        } catch (IOException | JSONException e) {
+            System.out.println("Failed to collect batch " + part.getString("batch_id") + ": " + e.getMessage());
+            return false;
+        }
+        part.put("done", true);
+        saveState();
+
+        engine.deleteResource("files", part.getString("input_file_id"));
+        for (String fileId : new String[] {outputFileId, errorFileId}) {
+            if (fileId != null) {
+                engine.deleteResource("files", fileId);
+            }
+        }
+        return true;
+    }
+
+    // The custom_id of every line in the part's files under keys
+    private Set<String> customIds(JSONObject part, String... keys) throws IOException {
+        Set<String> ids = new HashSet<>();
+        for (String key : keys) {
+            if (part.has(key)) {
+                forEachLine(new File(directory, part.getString(key)), line -> ids.add(new JSONObject(line).getString("custom_id")));
+            }
+        }
+        return ids;
+    }
+
+    // Writes the part's requests without a result to a new part, for the next run to submit
+    private void requeue(JSONObject part, Set<String> answered) throws IOException {
+        JSONArray parts = state.getJSONArray("parts");
+        String name = String.format("requests-%03d.jsonl", parts.length());
+        int[] requeued = {0};
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, name), StandardCharsets.UTF_8))) {
+            forEachLine(new File(directory, part.getString("file")), line -> {
+                if (!answered.contains(new JSONObject(line).getString("custom_id"))) {
+                    write(writer, line);
+                    requeued[0]++;
+                }
+            });
+        }
+        parts.put(new JSONObject().put("file", name).put("done", false).put("requests", requeued[0])
+                .put("retry_of", part.getString("file")));
+        System.out.println("Batch " + part.getString("batch_id") + " expired; " + requeued[0]
+                + " unanswered questions queued again in " + name);
+    }
+
+    // Reports the part's requests without a result as failed, in the error file format
+    private void writeUnanswered(JSONObject part, int index, Set<String> answered, String reason) throws IOException {
+        String name = String.format("unanswered-%03d.jsonl", index);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, name), StandardCharsets.UTF_8))) {
+            forEachLine(new File(directory, part.getString("file")), line -> {
+                String customId = new JSONObject(line).getString("custom_id");
+                if (!answered.contains(customId)) {
+                    write(writer, new JSONObject().put("custom_id", customId)
+                            .put("error", new JSONObject().put("message", reason)).toString());
+                }
+            });
+        }
+        part.put("unanswered", name);
+    }
+
+    private static void forEachLine(File file, Consumer<String> action) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    action.accept(line);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void write(BufferedWriter writer, String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean download(JSONObject part, String key, String name, String fileId) {
+        if (!engine.downloadFileContent(fileId, new File(directory, name))) {
+            return false;
+        }
+        part.put(key, name);
+        return true;
+    }
+
+    private JSONObject requestLine(Request request) {
+        JSONArray messages = new JSONArray();
+        if (request.instructions() != null && !request.instructions().isBlank()) {
+            messages.put(new JSONObject().put("role", "system").put("content", request.instructions()));
+        }
+        messages.put(new JSONObject().put("role", "user").put("content", request.question()));
+        return new JSONObject()
+                .put("custom_id", request.customId())
+                .put("method", "POST")
+                .put("url", ENDPOINT)
+                .put("body", new JSONObject().put("model", model).put("messages", messages));
+    }
+
+    /**
+     * Reads one line of a batch output or error file.
+     */
+    static Result parseResult(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(line);
+            String customId = json.getString("custom_id");
+            JSONObject error = json.optJSONObject("error");
+            if (error != null) {
+                return new Result(customId, null, error.optString("message", error.toString()));
+            }
+            JSONObject response = json.optJSONObject("response");
+            if (response == null || response.optInt("status_code") != 200) {
+                JSONObject body = response == null ? null : response.optJSONObject("body");
+                JSONObject bodyError = body == null ? null : body.optJSONObject("error");
+                return new Result(customId, null, bodyError != null ? bodyError.optString("message")
+                        : "HTTP " + (response == null ? "?" : response.optInt("status_code")));
+            }
+            String answer = response.getJSONObject("body").getJSONArray("choices").getJSONObject(0)
+                    .getJSONObject("message").optString("content", null);
+            return answer == null ? new Result(customId, null, "Empty answer") : new Result(customId, answer, null);
+        } catch (JSONException e) {
+            System.out.println("Failed to read batch result: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private JSONObject loadState() {
+        File file = new File(directory, STATE_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new JSONObject(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            System.out.println("Failed to read batch job state: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Written to a temporary file and moved into place, so a crash never leaves half a state file
+    private void saveState() {
+        File file = new File(directory, STATE_FILE);
+        File temporary = new File(directory, STATE_FILE + ".tmp");
+        try {
+            Files.writeString(temporary.toPath(), state.toString(2), StandardCharsets.UTF_8);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            pendingFileIds = collectPendingFileIds();
+        } catch (IOException e) {
+            System.out.println("Failed to save batch job state: " + e.getMessage());
+        }
+    }
+
+    private void clearDirectory() throws IOException {
+        Files.createDirectories(directory.toPath());
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && (name.endsWith(".jsonl") || name.endsWith(".part") || name.startsWith(STATE_FILE))) {
+                Files.delete(file.toPath());
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Answers a JSONL file of questions without a console, several
+ * conversations at a time.
+ *
+ * Each input line is {@code {"id": "...", "question": "...", "profile": "..."}};
+ * {@code id} defaults to the line number and {@code profile} is optional.
+ * Each result is appended to the output file as soon as it is ready, with
+ * its latency. The output doubles as the checkpoint: a rerun skips every ID
+ * already answered there and retries the ones that failed.
+ */
+public class BatchRunner {
+
+    /**
+     * One worker's conversation with the assistant. Not shared between
+     * workers.
+     */
+    @FunctionalInterface
+    public interface Conversation {
+        /**
+         * @return the answer, or null if the question could not be answered
+         */
+        String ask(String question, String additionalInstructions) throws Exception;
+    }
+
+    public record Question(String id, String question, String profile) {
+    }
+
+    public record Result(String id, String question, String answer, boolean ok, long latencyMillis) {
+        JSONObject toJson() {
+            JSONObject json = new JSONObject()
+                    .put("id", id)
+                    .put("question", question)
+                    .put("ok", ok)
+                    .put("latency_ms", latencyMillis);
+            if (answer != null) {
+                json.put("answer", answer);
+            }
+            return json;
+        }
+    }
+
+    public record Summary(int answered, int failed, int skipped, long elapsedMillis, long p50Millis, long p95Millis) {
+        public double questionsPerSecond() {
+            return elapsedMillis == 0 ? 0 : (answered + failed) * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d answered, %d failed, %d skipped in %.1f s (%.2f questions/s), latency p50 %d ms, p95 %d ms",
+                    answered, failed, skipped, elapsedMillis / 1000.0, questionsPerSecond(), p50Millis, p95Millis);
+        }
+    }
+
+    private static final Question END = new Question(null, null, null);
+
+    private final Supplier<Conversation> conversations;
+    private final int concurrency;
+    private final Function<String, String> grounding;
+
+    /**
+     * @param conversations creates one conversation per worker
+     * @param grounding     extra instructions for a question, e.g. the course
+     *                      rows it mentions; may be null
+     */
+    public BatchRunner(Supplier<Conversation> conversations, int concurrency, Function<String, String> grounding) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.conversations = conversations;
+        this.concurrency = concurrency;
+        this.grounding = grounding;
+    }
+
+    /**
+     * A conversation backed by an {@link AssistantClient}: every question is
+     * asked on a thread of its own, which is deleted afterwards.
+     */
+    public static Conversation assistantConversation(AssistantClient client) {
+        return (question, additionalInstructions) -> {
+            client.withAdditionalInstructions(additionalInstructions).startConversation();
+            try {
+                return client.sendMessage(question);
+            } finally {
+                client.endConversation();
+            }
+        };
+    }
+
+    /**
+     * Answers every question in {@code input} not already answered in
+     * {@code output}, appending results to {@code output}.
+     */
+    public Summary run(BufferedReader input, File output) throws IOException {
+        Set<String> done = completedIds(output);
+        dropPartialLine(output);
+        BlockingQueue<Question> queue = new ArrayBlockingQueue<>(concurrency * 4);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger answered = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int skipped = 0;
+        long start = System.nanoTime();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(output, StandardCharsets.UTF_8, true))) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.execute(() -> {
+                    Conversation conversation = newConversation();
+                    Question question;
+                    while ((question = take(queue)) != END) {
+                        Result result = answer(conversation, question);
+                        latencies.add(result.latencyMillis());
+                        (result.ok() ? answered : failed).incrementAndGet();
+                        write(writer, result);
+                    }
+                });
+            }
+
+            // The queue is bounded, so a large file or stdin is never read far ahead of the workers
+            try {
+                String line;
+                int lineNumber = 0;
+                while ((line = input.readLine()) != null) {
+                    lineNumber++;
+                    Question question = parse(line, lineNumber);
+                    if (question == null) {
+                        continue;
+                    }
+                    if (done.contains(question.id())) {
+                        skipped++;
+                        continue;
+                    }
+                    queue.put(question);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Questions not yet started are left for the next run; the workers finish the ones they hold
+                queue.clear();
+                for (int i = 0; i < concurrency; i++) {
+                    queue.offer(END);
+                }
+                workers.shutdown();
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                throw e;
+            }
+            for (int i = 0; i < concurrency; i++) {
+                queue.put(END);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return new Summary(answered.get(), failed.get(), skipped, elapsed, percentile(sorted, 50), percentile(sorted, 95));
+    }
+
+    // A worker that cannot start a conversation still drains the queue, failing its questions
+    private Conversation newConversation() {
+        try {
+            return conversations.get();
+        } catch (RuntimeException e) {
+            System.out.println("Failed to start batch conversation: " + e.getMessage());
+            return (question, additionalInstructions) -> null;
+        }
+    }
+
+    private Result answer(Conversation conversation, Question question) {
+        long start = System.nanoTime();
+        String answer;
+        try {
+            answer = conversation.ask(question.question(), instructionsFor(question, grounding));
+        } catch (Exception e) {
+            System.out.println("Failed to answer question " + question.id() + ": " + e.getMessage());
+            answer = null;
+        }
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new Result(question.id(), question.question(), answer, answer != null, latency);
+    }
+
+    /**
+     * The student's profile and the grounding for the question, or null if
+     * there is neither.
+     */
+    static String instructionsFor(Question question, Function<String, String> grounding) {
+        List<String> parts = new ArrayList<>();
+        if (question.profile() != null && !question.profile().isBlank()) {
+            parts.add("The student asking has this profile:\n" + question.profile());
+        }
+        String context = grounding == null ? null : grounding.apply(question.question());
+        if (context != null) {
+            parts.add(context);
+        }
+        return parts.isEmpty() ? null : String.join("\n\n", parts);
+    }
+
+    /**
+     * Parses one input line; blank and malformed lines are skipped.
+     */
+    static Question parse(String line, int lineNumber) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(line);
+            String question = json.optString("question", "").trim();
+            if (question.isEmpty()) {
+                System.out.println("Failed to read line " + lineNumber + ": no question");
+                return null;
+            }
+            Object profile = json.opt("profile");
+            return new Question(json.has("id") ? String.valueOf(json.get("id")) : String.valueOf(lineNumber),
+                    question, profile == null ? null : profile.toString());
+        } catch (JSONException e) {
+            System.out.println("Failed to read line " + lineNumber + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * IDs answered successfully in an earlier run. A line cut short by a
+     * crash is ignored, so its question is asked again.
+     */
+    static Set<String> completedIds(File output) throws IOException {
+        Set<String> ids = new HashSet<>();
+        if (!output.exists()) {
+            return ids;
+        }
+        for (String line : Files.readAllLines(output.toPath(), StandardCharsets.UTF_8)) {
+            try {
+                JSONObject result = new JSONObject(line);
+                if (result.optBoolean("ok")) {
+                    ids.add(result.getString("id"));
+                }
+            } catch (JSONException e) {
+                // Partial last line
+            }
+        }
+        return ids;
+    }
+
+    // Cuts off a line left unfinished by a crash, so the next result starts on a line of its own
+    private static void dropPartialLine(File output) throws IOException {
+        if (!output.exists()) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            long end = file.length();
+            while (end > 0) {
+                file.seek(end - 1);
+                if (file.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            file.setLength(end);
+        }
+    }
+
+    private static void write(BufferedWriter writer, Result result) {
+        synchronized (writer) {
+            try {
+                writer.write(result.toJson().toString());
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                System.out.println("Failed to write result " + result.id() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int percent) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static Question take(BlockingQueue<Question> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return END;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves many students from one JVM over HTTP.
+ *
+ * Every request runs on its own virtual thread, so a request waiting on the
+ * Assistant API costs a small heap object rather than a platform thread.
+ * Sessions share one engine, router and course database, so the shared
+ * router and tools must not look up schedules (see
+ * {@link CourseTools#CourseTools(CourseDatabase, boolean)}): a student's own
+ * details reach the assistant only through the store made from the
+ * {@code user_info} their session was opened with. Each session has an
+ * inactivity timeout on the shared {@link TimingWheel} that closes only that
+ * session.
+ *
+ * Without a token the server listens on the loopback address only, and the
+ * {@code student} a session names labels a store of that session alone.
+ * With a token every request but {@code /health} must carry
+ * {@code Authorization: Bearer <token>}; the caller is then trusted to name
+ * the student, whose store is reused across sessions.
+ *
+ * <pre>
+ * POST   /sessions                 {"student": "...", "user_info": "..."} -> {"session_id": "..."}  (student is required with user_info)
+ * POST   /sessions/{id}/messages   {"message": "..."} -> {"answer": "...", "route": "...", "answered": true}
+ * DELETE /sessions/{id}
+ * GET    /health                   -> {"sessions": n}
+ * </pre>
+ */
+public class ChatServer {
+
+    private record OpenSession(ChatSession session, TimingWheel.Timeout idleTimeout) {
+    }
+
+    private final ChatSession.Context context;
+    private final VectorStoreIngestor ingestor;
+    private final long idleTimeoutMillis;
+    private final byte[] token;
+    private final Map<String, OpenSession> sessions = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final TimingWheel wheel = TimingWheel.shared();
+
+    /**
+     * @param ingestor creates per-student vector stores from the
+     *                 {@code user_info} a session is opened with; may be null
+     */
+    public ChatServer(ChatSession.Context context, VectorStoreIngestor ingestor, int port, long idleTimeoutMillis) throws IOException {
+        this(context, ingestor, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), null, idleTimeoutMillis);
+    }
+
+    /**
+     * @param token the bearer token every request but {@code /health} must
+     *              carry; null to accept any caller, which only suits a
+     *              loopback address
+     */
+    public ChatServer(ChatSession.Context context, VectorStoreIngestor ingestor, InetSocketAddress address, String token,
+            long idleTimeoutMillis) throws IOException {
+        this.context = context;
+        this.ingestor = ingestor;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.token = token == null ? null : token.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(requestExecutor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to {@code delaySeconds} for requests
+     * in progress and closes every session.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        requestExecutor.shutdown();
+        for (OpenSession open : sessions.values()) {
+            open.idleTimeout().cancel();
+            open.session().close();
+        }
+        sessions.clear();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Threads of the open sessions, which the reaper must not delete.
+     */
+    public Set<String> threadIds() {
+        Set<String> ids = new HashSet<>();
+        for (OpenSession open : sessions.values()) {
+            String threadId = open.session().getThreadId();
+            if (threadId != null) {
+                ids.add(threadId);
+            }
+        }
+        return ids;
+    }
+
+    // Runs on the wheel's callback executor; a session mid-turn gets a full timeout more
+    private void expire(String sessionId) {
+        OpenSession open = sessions.get(sessionId);
+        if (open == null) {
+            return;
+        }
+        if (open.session().isBusy()) {
+            open.idleTimeout().reset();
+        } else if (sessions.remove(sessionId, open)) {
+            open.session().close();
+        }
+    }
+
+    /*
+     * Request Handling
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+
+            if (path.length == 1 && path[0].equals("health") && method.equals("GET")) {
+                send(exchange, 200, new JSONObject().put("sessions", sessions.size()));
+            } else if (!isAuthorized(exchange)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                send(exchange, 401, error("Missing or invalid token"));
+            } else if (path.length == 1 && path[0].equals("sessions") && method.equals("POST")) {
+                createSession(exchange);
+            } else if (path.length == 2 && path[0].equals("sessions") && method.equals("DELETE")) {
+                OpenSession open = sessions.remove(path[1]);
+                if (open == null) {
+                    send(exchange, 404, error("Unknown session"));
+                } else {
+                    open.idleTimeout().cancel();
+                    open.session().close();
+                    send(exchange, 200, new JSONObject().put("closed", path[1]));
+                }
+            } else if (path.length == 3 && path[0].equals("sessions") && path[2].equals("messages") && method.equals("POST")) {
+                postMessage(exchange, path[1]);
+            } else {
+                send(exchange, 404, error("Not found"));
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Failed to handle request: " + e.getMessage());
+        }
+    }
+
+    private boolean isAuthorized(HttpExchange exchange) {
+        if (token == null) {
+            return true;
+        }
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        return MessageDigest.isEqual(token, header.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void createSession(HttpExchange exchange) throws IOException {
+        JSONObject body = readJson(exchange);
+        if (body == null) {
+            send(exchange, 400, error("Request body must be a JSON object"));
+            return;
+        }
+
+        String studentVectorStoreId = null;
+        String userInfo = body.optString("user_info", null);
+        String student = body.optString("student", "").trim();
+        // The student names the store, so sessions without one would share and replace it
+        if (userInfo != null && student.isEmpty()) {
+            send(exchange, 400, error("A student is required with user_info"));
+            return;
+        }
+        String sessionId = UUID.randomUUID().toString();
+        if (userInfo != null && ingestor != null) {
+            // An unauthenticated name must not reach another student's store
+            String studentKey = token == null ? student + "#" + sessionId : student;
+            studentVectorStoreId = ingestor.syncStudentStore(studentKey,
+                    new VectorStoreIngestor.Document("user_info", userInfo), VectorStoreIngestor.STUDENT_STORE_EXPIRY_DAYS);
+            if (studentVectorStoreId == null) {
+                send(exchange, 502, error("Failed to create student vector store"));
+                return;
+            }
+        }
+
+        TimingWheel.Timeout idleTimeout = wheel.schedule(idleTimeoutMillis, () -> expire(sessionId));
+        sessions.put(sessionId, new OpenSession(new ChatSession(sessionId, context, studentVectorStoreId), idleTimeout));
+        send(exchange, 201, new JSONObject().put("session_id", sessionId));
+    }
+
+    private void postMessage(HttpExchange exchange, String sessionId) throws IOException {
+        OpenSession open = sessions.get(sessionId);
+        if (open == null) {
+            send(exchange, 404, error("Unknown session"));
+            return;
+        }
+        open.idleTimeout().reset();
+        JSONObject body = readJson(exchange);
+        String message = body == null ? "" : body.optString("message").trim();
+        if (message.isEmpty()) {
+            send(exchange, 400, error("Missing message"));
+            return;
+        }
+
+        // Messages posted before the previous reply are answered in order on the session's turn queue
+        ChatSession.Reply reply;
+        try {
+            reply = open.session().submit(message).join();
+        } catch (CompletionException | CancellationException e) {
+            open.idleTimeout().reset();
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            send(exchange, 502, error("Failed to answer: " + cause.getMessage()));
+            return;
+        }
+        open.idleTimeout().reset();
+        send(exchange, reply.answered() ? 200 : 502, new JSONObject()
+                .put("answer", reply.text())
+                .put("route", reply.route().name())
+                .put("answered", reply.answered()));
+    }
+
+    private static JSONObject readJson(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return body.isBlank() ? new JSONObject() : new JSONObject(body);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("error", message);
+    }
+
+    private static void send(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
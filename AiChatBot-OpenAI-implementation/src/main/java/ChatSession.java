@@ -0,0 +1,354 @@
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.json.JSONObject;
+
+/**
+ * One student's conversation: the Assistant API thread, the run in flight and
+ * the student's own vector store.
+ *
+ * Everything else (engine, assistant, router, course data) is shared through
+ * a {@link Context}, so an idle session is a few strings and many thousands
+ * of them fit in one JVM. Turns of the same session run one at a time:
+ * {@link #submit(String)} queues a question behind the turns already
+ * submitted, so a student can keep typing while the assistant works, and
+ * the thread never has two active runs.
+ */
+public class ChatSession {
+
+    /**
+     * What all sessions share. {@code router}, {@code extractor} and
+     * {@code reaper} may be null.
+     */
+    public record Context(OpenAiAssistantEngine engine, String assistantId, IntentRouter router,
+            CourseEntityExtractor extractor, ResourceReaper reaper) {
+    }
+
+    /**
+     * The answer to one question. When {@code answered} is false,
+     * {@code text} says what went wrong.
+     */
+    public record Reply(String text, IntentRouter.Route route, boolean answered) {
+    }
+
+    public static final int RUN_TIMEOUT_SECONDS = 60;
+    public static final int RUN_POLL_INTERVAL_MS = 1000;
+
+    // Turns mostly wait on HTTP, so each gets a virtual thread
+    private static final ExecutorService TURN_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final String sessionId;
+    private final Context context;
+    private final String studentVectorStoreId;
+    // A lock rather than synchronized: turns block on HTTP calls, and a
+    // synchronized block would pin a virtual thread to its carrier
+    private final ReentrantLock turnLock = new ReentrantLock();
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final AtomicInteger queuedTurns = new AtomicInteger();
+    private CompletableFuture<?> lastTurn = CompletableFuture.completedFuture(null);
+    private volatile String cancelledRunId;
+    private volatile boolean closed;
+    private volatile String threadId;
+    private volatile String runId;
+    private volatile long lastActive = System.currentTimeMillis();
+
+    public ChatSession(String sessionId, Context context, String studentVectorStoreId) {
+        this.sessionId = sessionId;
+        this.context = context;
+        this.studentVectorStoreId = studentVectorStoreId;
+    }
+
+    /**
+     * Queues a question behind the turns already submitted.
+     */
+    public CompletableFuture<Reply> submit(String question) {
+        return enqueue(() -> ask(question));
+    }
+
+    /**
+     * Queues any turn behind the ones already submitted. Turns queued when
+     * the session closes are not run. Cancelling the returned future before
+     * the turn starts drops that turn; the turns behind it still run, in
+     * order.
+     */
+    public CompletableFuture<Reply> enqueue(Supplier<Reply> turn) {
+        CompletableFuture<Reply> reply = new CompletableFuture<>();
+        queueLock.lock();
+        try {
+            queuedTurns.incrementAndGet();
+            // The queue is chained on its own futures, so a cancelled reply never lets the next turn start early
+            lastTurn = lastTurn.handleAsync((ignored, previousError) -> {
+                queuedTurns.decrementAndGet();
+                if (reply.isDone()) {
+                    return null; // cancelled while queued
+                }
+                try {
+                    reply.complete(closed ? failure("Session closed.") : turn.get());
+                } catch (RuntimeException e) {
+                    reply.completeExceptionally(e);
+                }
+                return null;
+            }, TURN_EXECUTOR);
+            return reply;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the assistant run in progress; its turn replies "Cancelled."
+     * Queued turns still run.
+     *
+     * @return false if no run was in progress
+     */
+    public boolean cancel() {
+        String currentThread = threadId;
+        String currentRun = runId;
+        if (currentThread == null || currentRun == null || !isBusy()) {
+            return false;
+        }
+        cancelledRunId = currentRun;
+        return context.engine().cancelRun(currentThread, currentRun) != null;
+    }
+
+    /**
+     * Waits for every submitted turn to finish.
+     *
+     * @return false if the timeout passed first
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        CompletableFuture<?> last;
+        queueLock.lock();
+        try {
+            last = lastTurn;
+        } finally {
+            queueLock.unlock();
+        }
+        try {
+            last.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Answers locally when the router can, otherwise asks the assistant.
+     */
+    public Reply ask(String question) {
+        touch();
+        if (context.router() != null) {
+            IntentRouter.Decision decision = context.router().route(question);
+            if (decision.route() != IntentRouter.Route.LLM) {
+                return new Reply(decision.answer(), decision.route(), true);
+            }
+        }
+        return askAssistant(question);
+    }
+
+    /**
+     * Adds the question to the session's thread (creating it on first use),
+     * runs the assistant and returns its reply.
+     */
+    public Reply askAssistant(String question) {
+        return askAssistant(question, null);
+    }
+
+    /**
+     * Like {@link #askAssistant(String)}, reporting the run's status changes
+     * to {@code onStatus}.
+     */
+    public Reply askAssistant(String question, Consumer<String> onStatus) {
+        turnLock.lock();
+        try {
+            touch();
+            runId = null;
+            OpenAiAssistantEngine engine = context.engine();
+            if (threadId == null) {
+                List<JSONObject> messages = List.of(new JSONObject().put("role", "user").put("content", question));
+                threadId = engine.createThread(messages, studentToolResources(), null);
+                if (threadId == null) {
+                    return failure("Failed to create thread. Please try again.");
+                }
+            } else if (engine.addMessageToThread(threadId, question) == null) {
+                return failure("Failed to send message. Please try again.");
+            }
+
+            runId = engine.createRun(
+                    threadId,
+                    context.assistantId(),
+                    null, // model
+                    null, // reasoningEffort
+                    null, // instructions
+                    courseContext(question), // additionalInstructions
+                    null, // additionalMessages
+                    null, // tools
+                    null, // metadata
+                    null, // temperature
+                    null, // topP
+                    null, // stream
+                    null, // maxPromptTokens
+                    null, // maxCompletionTokens
+                    null, // truncationStrategy
+                    null, // toolChoice
+                    null, // parallelToolCalls
+                    null, // responseFormat
+                    null // toolResources: attached to the assistant and the thread
+            );
+            if (runId == null) {
+                return failure("Failed to create run. Please try again.");
+            }
+
+            boolean completed = engine.waitForRunCompletion(threadId, runId, RUN_TIMEOUT_SECONDS, RUN_POLL_INTERVAL_MS, onStatus);
+            if (!completed) {
+                if (runId.equals(cancelledRunId)) {
+                    return failure("Cancelled.");
+                }
+                return failure("The assistant encountered an issue. Please try again.");
+            }
+
+            List<String> replies = engine.listMessages(threadId, runId);
+            if (replies == null || replies.isEmpty()) {
+                return failure("No response received. Please try again.");
+            }
+            return new Reply(replies.get(0), IntentRouter.Route.LLM, true);
+        } finally {
+            touch();
+            turnLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a turn answered without a run, such as a cached answer, to the
+     * session's thread (creating it on first use), so later questions can
+     * refer back to it.
+     *
+     * @return false if the thread could not be updated
+     */
+    public boolean appendTurn(String question, String answer) {
+        turnLock.lock();
+        try {
+            touch();
+            OpenAiAssistantEngine engine = context.engine();
+            if (threadId == null) {
+                List<JSONObject> messages = List.of(
+                        new JSONObject().put("role", "user").put("content", question),
+                        new JSONObject().put("role", "assistant").put("content", answer));
+                threadId = engine.createThread(messages, studentToolResources(), null);
+                return threadId != null;
+            }
+            return engine.addMessageToThread(threadId, "user", question) != null
+                    && engine.addMessageToThread(threadId, "assistant", answer) != null;
+        } finally {
+            turnLock.unlock();
+        }
+    }
+
+    /**
+     * Whether the session's thread already has turns that a question could
+     * refer back to.
+     */
+    public boolean hasEarlierTurns() {
+        return threadId != null;
+    }
+
+    /**
+     * Starts the next question on a fresh thread; the current one is handed
+     * to the reaper.
+     */
+    public void startNewThread() {
+        turnLock.lock();
+        try {
+            releaseThread();
+        } finally {
+            turnLock.unlock();
+        }
+    }
+
+    /**
+     * Ends the session: cancels the run in progress, drops queued turns and
+     * releases the thread. Does not wait for the turn in progress.
+     */
+    public void close() {
+        closed = true;
+        cancel();
+        releaseThread();
+    }
+
+    private void releaseThread() {
+        String current = threadId;
+        threadId = null;
+        runId = null;
+        if (current != null && context.reaper() != null) {
+            context.reaper().release("threads", current);
+        }
+    }
+
+    // Thread-level file_search resources: the student's own store, alongside the assistant's catalog store
+    private Map<String, Object> studentToolResources() {
+        if (studentVectorStoreId == null) {
+            return null;
+        }
+        return Map.of("file_search", Map.of("vector_store_ids", List.of(studentVectorStoreId)));
+    }
+
+    // Course, section and prerequisite rows for the courses a question mentions
+    private String courseContext(String question) {
+        return context.extractor() == null ? null : context.extractor().contextFor(question);
+    }
+
+    private Reply failure(String message) {
+        return new Reply(message, IntentRouter.Route.LLM, false);
+    }
+
+    private void touch() {
+        lastActive = System.currentTimeMillis();
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getThreadId() {
+        return threadId;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    public boolean isBusy() {
+        return turnLock.isLocked();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Turns submitted but not yet started.
+     */
+    public int getQueuedTurns() {
+        return queuedTurns.get();
+    }
+}
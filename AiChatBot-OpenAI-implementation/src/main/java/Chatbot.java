@@ -32,25 +32,32 @@
  */
 
  import java.io.BufferedReader;
+ import java.io.BufferedWriter;
  import java.io.File;
  import java.io.FileReader;
  import java.io.FileWriter;
  import java.io.IOException;
  import java.io.InputStreamReader;
+ import java.io.UncheckedIOException;
+ import java.net.InetAddress;
+ import java.net.InetSocketAddress;
+ import java.nio.charset.StandardCharsets;
  import java.util.ArrayList;
- import java.util.Arrays;
  import java.util.HashMap;
+ import java.util.HashSet;
  import java.util.List;
+ import java.util.Locale;
  import java.util.Map;
- import java.util.concurrent.atomic.AtomicBoolean;
- 
- import org.json.JSONArray;
+ import java.util.Set;
+ import java.util.concurrent.CompletableFuture;
+ import java.util.concurrent.ConcurrentHashMap;
+ import java.util.concurrent.TimeUnit;
+ import java.util.function.Function;
+  
  import org.json.JSONObject;
   
  public class Chatbot {
   //all the colors needed for this code
-     public static String threadId = null;
-     public static String runId = null;
      public static String redColor = "\033[1;31m";
      public static String yellowColor = "\033[1;33m";
      public static String greenColor = "\033[1;32m";
@@ -62,31 +69,334 @@
      //private static OpenAiAssistantEngine assistantSelfCare;
      private static OpenAiAssistantEngine assistant;
      private static final String APIKEY = System.getenv("OPENAI_API_KEY");
+     // Set to serve other hosts; without it the session server listens on loopback only
+     private static final String SERVER_TOKEN = System.getenv("CHAT_SERVER_TOKEN");
      private static final File USER_INFO_FILE = new File("user_info.txt");
      private static final File ACU_DATABASE_FILE = new File("acu_database.txt");
+     // Read once, into the conversation log, by launches from before the log existed
      private static final File CHAT_HISTORY_FILE = new File("chat_history.txt");
+     private static final File CONVERSATION_LOG_DIR = new File("conversation_log");
+     private static ConversationLog conversationLog;
+     private static QuestionCounts questionCounts;
      private static final File PERSONAL_FAQ_FILE = new File("personal_faq.txt");
+     // Personal FAQ lines are committed in groups off the chat thread, and forced to disk once per group
+     private static final long HISTORY_COMMIT_INTERVAL_MILLIS = HistoryWriter.DEFAULT_COMMIT_INTERVAL_MILLIS;
+     private static final HistoryWriter historyWriter = HistoryWriter.closedOnExit(
+         HISTORY_COMMIT_INTERVAL_MILLIS, HistoryWriter.DEFAULT_QUEUE_CAPACITY, true);
+     private static final File COURSE_DB_FILE = new File("acu.db");
+     private static final File VECTOR_MANIFEST_FILE = new File("vector_store_manifest.json");
+     private static final File VECTOR_DOCUMENT_DIR = new File("vector_documents");
+     private static final File RESOURCE_MANIFEST_FILE = new File("resource_manifest.json");
+     private static final File RESOURCE_JOURNAL_FILE = new File("resource_journal.jsonl");
+     private static final int REAPER_PERIOD_MINUTES = 10;
      private static String vectorStoreId;
+     private static String studentVectorStoreId;
      private static String assistantId;
-     public static final Map<String, Integer> questionCount = new HashMap<>();
+     // How often questions are asked: seeded from the conversation log at startup, then counted as
+     // they are typed, in a fixed amount of memory however many there are
+     private static volatile FrequencySketch questionFrequency = new FrequencySketch();
+     // Fingerprints of the questions in the personal FAQ, so one whose count decays and climbs again is not added twice
+     private static final Set<Long> personalFaqQuestions = ConcurrentHashMap.newKeySet();
+     private static final int PERSONAL_FAQ_THRESHOLD = 3;
+     private static final int MOST_ASKED_SHOWN = 5;
+     // Words typed to the chat loop itself, never counted or answered as questions
+     private static final Set<String> COMMAND_WORDS = Set.of("exit", "reset", "back", "help", "settings", "setting", "cancel");
+     // Rewordings of a question are counted, and answered, as the first wording seen
+     private static final int CANONICAL_QUESTIONS = 10_000;
+     private static final NearDuplicateIndex<String> questionIndex = new NearDuplicateIndex<>(CANONICAL_QUESTIONS);
+     // Shared with the other chatbot processes on this machine once startup opens the file
+     private static final File SHARED_ANSWER_CACHE_FILE = new File("answer_cache.bin");
+     private static volatile AnswerCache answerCache = new AnswerCache();
+     // Which question follows which, learned from the conversation log, and the answers started
+     // for the likely next question while the student reads the current one
+     private static volatile QuestionPredictor questionPredictor =
+         new QuestionPredictor(QuestionPredictor.DEFAULT_MAX_STATES, Chatbot::canonicalQuestion);
+     private static volatile CompletableFuture<Void> predictorLearning = CompletableFuture.completedFuture(null);
+     private static volatile AnswerPrefetcher prefetcher;
+     private static final int PREFETCH_BUDGET = 10;
+     private static final int PREFETCH_PARALLELISM = 1;
+     // The personal FAQs and most asked questions, answered in the background as soon as the student logs in
+     private static volatile AnswerPrefetcher warmUp;
+     private static final int WARM_UP_QUESTIONS = 10;
+     private static final int WARM_UP_PARALLELISM = 3;
+     private static final int PREFETCH_PER_TURN = 2;
+     private static final int PREFETCH_MIN_SUPPORT = 2;
+     private static final double PREFETCH_MIN_PROBABILITY = 0.3;
      public static BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
      //private static final int RUN_TIMEOUT_SECONDS = 90;
-     private static String usersName;
+     // Set at login; every per-student count, log record, cached answer and prediction is keyed by it
+     private static volatile String usersName;
+     private static CourseDatabase courseDb;
+     private static IntentRouter router;
+     private static CourseEntityExtractor courseExtractor;
+     private static AssistantConfig config;
+     private static ResourceManifest resourceManifest;
+     private static ResourceManifest.Entry recordedResources;
+     private static ResourceManifest.Validation resourceValidation;
+     private static VectorStoreIngestor ingestor;
+     private static ResourceReaper reaper;
+     private static ChatSession session;
+     private static ChatServer server;
+     private static final int DEFAULT_SERVER_PORT = 8080;
+     private static final long SERVER_IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+     private static final int DEFAULT_BATCH_CONCURRENCY = 4;
+     private static final File BATCH_API_DIR = new File("batch_api_job");
+     private static final int BATCH_API_TIMEOUT_SECONDS = 24 * 60 * 60;
+     private static final int BATCH_API_POLL_MS = 60 * 1000;
+     private static BatchApiJob batchApiJob;
   
   
      public static void main(String[] args) {
+         assistant = new OpenAiAssistantEngine(APIKEY);
+         ingestor = new VectorStoreIngestor(assistant, VECTOR_MANIFEST_FILE, VECTOR_DOCUMENT_DIR);
 
+         // Journals what this launch creates and deletes what earlier launches left behind
+         reaper = new ResourceReaper(assistant, RESOURCE_JOURNAL_FILE, Chatbot::retainedResourceIds);
+         assistant.setResourceReaper(reaper);
+         reaper.start(REAPER_PERIOD_MINUTES);
+
+         if (args.length > 0 && args[0].equals("--server")) {
+             startServer(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SERVER_PORT);
+             return;
+         }
+         if (args.length > 0 && args[0].equals("--batch")) {
+             if (args.length < 3) {
+                 TextEngine.printNow("Usage: Chatbot --batch <questions.jsonl|-> <answers.jsonl> [concurrency]");
+                 return;
+             }
+             runBatch(args[1], new File(args[2]), args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_BATCH_CONCURRENCY);
+             return;
+         }
+         if (args.length > 0 && args[0].equals("--batch-api")) {
+             if (args.length < 3) {
+                 TextEngine.printNow("Usage: Chatbot --batch-api <questions.jsonl> <answers.jsonl>");
+                 return;
+             }
+             runBatchApi(new File(args[1]), new File(args[2]));
+             return;
+         }
 
-         loadQuestionHistory();
-         
-         //usersName = parseUserInfo();
-         assistant = new OpenAiAssistantEngine(APIKEY);
-         
-  
          TextEngine.clearScreen();
          printStartupBanner();
          TextEngine.printWithDelay("\nWelcome to the ACU AI Academic Advisor!", true);
-  
+
+         // Startup as a dependency graph: the login prompt, the API key check, history loading,
+         // the course database import and the uploads all run while the others are in flight
+         StartupGraph startup = new StartupGraph()
+             .stage("history", () -> { loadQuestionHistory(); return true; }, "login")
+             .stage("apiKey", () -> OpenAiAssistantEngine.testAPIKey(APIKEY))
+             .stage("courseDb", Chatbot::openCourseDatabase)
+             .stage("answerCache", Chatbot::openAnswerCache)
+             .stage("login", Chatbot::promptLogin)
+             .stage("tools", Chatbot::registerCourseTools, "courseDb")
+             .stage("validate", Chatbot::validateResources, "apiKey", "tools")
+             .stage("assistant", Chatbot::ensureAssistant, "validate")
+             .stage("catalog", Chatbot::syncCatalogStore, "validate")
+             .stage("studentStore", Chatbot::syncStudentStore, "apiKey", "login")
+             .stage("attach", Chatbot::attachCatalogStore, "assistant", "catalog")
+             .stage("warmUp", Chatbot::warmUpAnswers, "history", "studentStore", "attach");
+         boolean ready = startup.run();
+         TextEngine.printNow(startup.timingReport());
+
+         if (ready) {
+             startInteractiveChat(assistantId);
+         } else {
+             TextEngine.printWithDelay("Failed to set up the AI Academic Advisor.", true);
+         }
+         if (courseDb != null) {
+             courseDb.close();
+         }
+     }
+
+     // Startup without a console: no login prompt and no personal history
+     private static boolean setUpHeadless() {
+         StartupGraph startup = new StartupGraph()
+             .stage("apiKey", () -> OpenAiAssistantEngine.testAPIKey(APIKEY))
+             .stage("courseDb", Chatbot::openCourseDatabase)
+             .stage("tools", () -> registerCourseTools(false), "courseDb")
+             .stage("validate", Chatbot::validateResources, "apiKey", "tools")
+             .stage("assistant", Chatbot::ensureAssistant, "validate")
+             .stage("catalog", Chatbot::syncCatalogStore, "validate")
+             .stage("attach", Chatbot::attachCatalogStore, "assistant", "catalog");
+         boolean ready = startup.run();
+         TextEngine.printNow(startup.timingReport());
+         if (!ready) {
+             TextEngine.printNow("Failed to set up the AI Academic Advisor.");
+         }
+         return ready;
+     }
+
+     // Session server mode: each student's store is created when their session opens
+     private static void startServer(int port) {
+         if (!setUpHeadless()) {
+             return;
+         }
+
+         try {
+             ChatSession.Context context = new ChatSession.Context(assistant, assistantId, router, courseExtractor, reaper);
+             InetSocketAddress address = SERVER_TOKEN == null
+                     ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                     : new InetSocketAddress(port);
+             server = new ChatServer(context, ingestor, address, SERVER_TOKEN, SERVER_IDLE_TIMEOUT_MILLIS);
+             server.start();
+             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                 server.stop(1);
+                 if (courseDb != null) {
+                     courseDb.close();
+                 }
+             }, "chat-server-shutdown"));
+             TextEngine.printNow("Chat server listening on " + (SERVER_TOKEN == null ? "localhost" : "all interfaces")
+                     + ", port " + server.getPort());
+         } catch (IOException e) {
+             TextEngine.printNow("Failed to start chat server: " + e.getMessage());
+         }
+     }
+
+     // Batch mode: answers a JSONL file (or stdin, for "-") with several conversations at once
+     private static void runBatch(String input, File output, int concurrency) {
+         if (!setUpHeadless()) {
+             return;
+         }
+         BatchRunner runner = new BatchRunner(
+             () -> BatchRunner.assistantConversation(new AssistantClient(assistant)
+                 .withAssistant(assistantId)
+                 .withModel(config.model())
+                 .withTool("file_search")),
+             concurrency,
+             question -> courseExtractor == null ? null : courseExtractor.contextFor(question));
+         try (BufferedReader questions = input.equals("-")
+                 ? new BufferedReader(new InputStreamReader(System.in))
+                 : new BufferedReader(new FileReader(input))) {
+             BatchRunner.Summary summary = runner.run(questions, output);
+             TextEngine.printNow("Batch finished: " + summary);
+         } catch (IOException e) {
+             TextEngine.printNow("Failed to run batch: " + e.getMessage());
+         } finally {
+             if (courseDb != null) {
+                 courseDb.close();
+             }
+         }
+     }
+
+     // Nightly mode: the same questions as --batch, through the Batch API. Rerun the same command to resume
+     private static void runBatchApi(File input, File output) {
+         StartupGraph startup = new StartupGraph()
+             .stage("apiKey", () -> OpenAiAssistantEngine.testAPIKey(APIKEY))
+             .stage("courseDb", Chatbot::openCourseDatabase)
+             .stage("tools", () -> registerCourseTools(false), "courseDb");
+         boolean ready = startup.run();
+         TextEngine.printNow(startup.timingReport());
+         if (!ready) {
+             TextEngine.printNow("Failed to set up the AI Academic Advisor.");
+             return;
+         }
+         // No assistant is involved: each request carries the assistant's instructions and the course rows itself
+         config = assistantConfig();
+         batchApiJob = new BatchApiJob(assistant, BATCH_API_DIR, config.model());
+         // Keyed by content too, so last night's finished job is not mistaken for tonight's
+         String source = BatchApiJob.sourceKey(input);
+         if (source == null) {
+             return;
+         }
+
+         try (BufferedReader questions = new BufferedReader(new FileReader(input))) {
+             int requests = batchApiJob.prepare(source, BatchApiJob.requests(questions, question -> {
+                 String context = BatchRunner.instructionsFor(question,
+                     text -> courseExtractor == null ? null : courseExtractor.contextFor(text));
+                 return context == null ? config.instructions() : config.instructions() + "\n\n" + context;
+             }));
+             if (requests < 0) {
+                 return;
+             }
+             TextEngine.printNow("Batch API job: " + requests + " questions in " + BATCH_API_DIR);
+             if (!batchApiJob.run(BATCH_API_TIMEOUT_SECONDS, BATCH_API_POLL_MS)) {
+                 TextEngine.printNow("Batch API job is not finished; run the same command again to resume it.");
+                 return;
+             }
+
+             int[] counts = new int[2];
+             try (BufferedWriter writer = new BufferedWriter(new FileWriter(output, StandardCharsets.UTF_8))) {
+                 batchApiJob.forEachResult(result -> {
+                     JSONObject line = new JSONObject().put("id", result.customId()).put("ok", result.ok());
+                     line.put(result.ok() ? "answer" : "error", result.ok() ? result.answer() : result.error());
+                     try {
+                         writer.write(line.toString());
+                         writer.newLine();
+                     } catch (IOException e) {
+                         throw new UncheckedIOException(e);
+                     }
+                     counts[result.ok() ? 0 : 1]++;
+                 });
+             }
+             TextEngine.printNow("Batch API job finished: " + counts[0] + " answered, " + counts[1] + " failed");
+         } catch (IOException | UncheckedIOException e) {
+             TextEngine.printNow("Failed to run batch API job: " + e.getMessage());
+         } finally {
+             if (courseDb != null) {
+                 courseDb.close();
+             }
+         }
+     }
+
+     // Resources the reaper must keep: everything the manifests point at, plus this session's
+     private static Set<String> retainedResourceIds() {
+         Set<String> ids = new HashSet<>(ResourceManifest.load(RESOURCE_MANIFEST_FILE).resourceIds());
+         ids.addAll(ingestor.resourceIds());
+         // Input files of an unfinished Batch API job, which may belong to another launch
+         BatchApiJob job = batchApiJob != null ? batchApiJob
+             : BATCH_API_DIR.isDirectory() ? new BatchApiJob(assistant, BATCH_API_DIR, null) : null;
+         if (job != null) {
+             ids.addAll(job.pendingFileIds());
+         }
+         if (server != null) {
+             ids.addAll(server.threadIds());
+         }
+         for (String id : new String[] {assistantId, vectorStoreId, studentVectorStoreId, session == null ? null : session.getThreadId()}) {
+             if (id != null) {
+                 ids.add(id);
+             }
+         }
+         return ids;
+     }
+
+     // Local indexed copy of the course data; the chat still works without it
+     private static boolean openCourseDatabase() {
+         courseDb = CourseDatabase.open(COURSE_DB_FILE, 4);
+         if (courseDb != null && !courseDb.importIfStale(ACU_DATABASE_FILE, USER_INFO_FILE)) {
+             courseDb.close();
+             courseDb = null;
+         }
+         return true;
+     }
+
+     // Answers shared with the other processes on this machine; the chat still works without them
+     private static boolean openAnswerCache() {
+         try {
+             SharedAnswerCache shared = new SharedAnswerCache(SHARED_ANSWER_CACHE_FILE, SharedAnswerCache.DEFAULT_SLOTS,
+                 SharedAnswerCache.DEFAULT_SLOT_BYTES, AnswerCache.DEFAULT_TTL_MILLIS);
+             answerCache = new AnswerCache(AnswerCache.DEFAULT_CAPACITY, NearDuplicateIndex.DEFAULT_THRESHOLD,
+                 AnswerCache.DEFAULT_TTL_MILLIS, shared);
+         } catch (IOException e) {
+             TextEngine.printNow("Failed to open shared answer cache: " + e.getMessage());
+         }
+         return true;
+     }
+
+     private static boolean registerCourseTools() {
+         return registerCourseTools(true);
+     }
+
+     // Without a signed-in student (server and batch modes) the imported profile is nobody's schedule
+     private static boolean registerCourseTools(boolean studentLookups) {
+         if (courseDb != null) {
+             assistant.setToolRegistry(CourseTools.createRegistry(courseDb, studentLookups));
+         }
+         courseExtractor = courseDb == null ? null : CourseEntityExtractor.load(courseDb);
+         router = new IntentRouter(courseDb == null ? null : new CourseTools(courseDb, studentLookups), courseExtractor);
+         return true;
+     }
+
+     private static boolean promptLogin() {
          try {
              TextEngine.printWithDelay("press "+yellowColor+ "(1)" +resetColor+ " Log in or " +yellowColor+ "(2)" +resetColor+ " Create a Profile?", true);
              TextEngine.printWithDelay("Enter " +yellowColor+ "1" +resetColor+ " or " +yellowColor+ "2" +resetColor+ ": ", false);
@@ -94,7 +404,7 @@
   
              if (null == choice) {
                  TextEngine.printWithDelay("Invalid choice. Please restart and select either 1 or 2.", true);
-                 return;
+                 return false;
              } else switch (choice) {
                  case "1" -> Login();
                  case "2" -> createProfile();
@@ -105,47 +415,177 @@
                      choice = reader.readLine().trim();
                      if (null == choice) {
                         TextEngine.printWithDelay("Invalid choice. Please restart and select either 1 or 2.", true);
-                        return;
+                        return false;
                      } else switch (choice) {
                          case "1" -> Login();
                          case "2" -> createProfile();
                          default -> {
                              TextEngine.printWithDelay("Exting program for safty...", true);
-                             return;
+                             return false;
                          }
                      }
                  }
              }
          } catch (IOException e) {
              TextEngine.printWithDelay("An error occurred: " + e.getMessage() + ", you gone and messed up!!", true);
-             return;
+             return false;
          }
-  
-         assistant = new OpenAiAssistantEngine(APIKEY);
-         System.out.println("-------------------------");
+         TextEngine.printNow("-------------------------");
          TextEngine.printWithDelay("Setting up AI Academic Advisor...", true);
-  
-        
-         
-         // Only create a new assistant/vector store if needed
-         if (assistantId == null || vectorStoreId == null) {
-             assistantId = setupAssistant();
-             if (assistantId == null) return;
-         }
-  
-         startInteractiveChat(assistantId);
+         return true;
      }
+     // Counts questions from the latest snapshot plus the turns logged since, so this takes as
+     // long with years of history as with a day's
      public static void loadQuestionHistory() {
-         if (!CHAT_HISTORY_FILE.exists()) return;
-         try (BufferedReader reader = new BufferedReader(new FileReader(CHAT_HISTORY_FILE))) {
-             String line;
-             while ((line = reader.readLine()) != null) {
-                 questionCount.put(line, questionCount.getOrDefault(line, 0) + 1);
+         ConversationLog log = conversationLog != null ? conversationLog : openConversationLog(CONVERSATION_LOG_DIR);
+         if (log == null) return;
+         questionCounts = new QuestionCounts(log, log.getDirectory(), QuestionCounts.DEFAULT_SNAPSHOT_EVERY,
+             Chatbot::canonicalQuestion);
+         if (questionCounts.load() < 0) return;
+         questionFrequency = questionCounts.sketch().copy();
+
+         // The window's cost grows with recent traffic, so it is learned off the startup path; until
+         // it is done, predictions come from this launch's turns alone
+         predictorLearning.join();
+         predictorLearning = CompletableFuture.runAsync(() -> learnQuestionPredictor(log),
+             runnable -> Thread.ofVirtual().name("question-predictor").start(runnable));
+
+         personalFaqQuestions.clear();
+         if (PERSONAL_FAQ_FILE.exists()) {
+             try (BufferedReader faqReader = new BufferedReader(new FileReader(PERSONAL_FAQ_FILE))) {
+                 String line;
+                 while ((line = faqReader.readLine()) != null) {
+                     if (line.startsWith("- ")) {
+                         personalFaqQuestions.add(FrequencySketch.fingerprintOf(canonicalQuestion(line.substring(2))));
+                     }
+                 }
+             } catch (IOException e) {
+                 TextEngine.printNow("Failed to load personal FAQ: " + e.getMessage());
              }
-         } catch (IOException e) {
-             System.out.println("Failed to read chat history: " + e.getMessage());
          }
       }
+
+     // Turns logged while the scan runs are read too, up to the moment it starts on the last segment
+     private static void learnQuestionPredictor(ConversationLog log) {
+         QuestionPredictor predictor = new QuestionPredictor(QuestionPredictor.DEFAULT_MAX_STATES, Chatbot::canonicalQuestion);
+         long from = System.currentTimeMillis() - QuestionPredictor.DEFAULT_WINDOW_MILLIS;
+         if (predictor.learn(log, from, Long.MAX_VALUE) >= 0) {
+             questionPredictor = predictor;
+         }
+     }
+
+     /**
+      * Signs {@code name} in, or nobody when null: the turns, counts, cached
+      * answers and predictions that follow are that student's.
+      */
+     static void setUsersName(String name) {
+         usersName = name == null || name.isBlank() ? null : name.trim();
+     }
+
+     /**
+      * How often the logged-in student has asked {@code question}, counting the
+      * questions imported from chat_history.txt, which have no name; only those
+      * and other questions asked without a login when nobody has logged in.
+      * Never counts other students' questions, however many there are.
+      */
+     static int personalQuestionCount(String question) {
+         question = canonicalQuestion(question);
+         FrequencySketch frequency = questionFrequency;
+         if (usersName == null) {
+             return frequency.count(null, question);
+         }
+         return frequency.count(usersName, question) + frequency.count(null, question);
+     }
+
+     /**
+      * The wording {@code question} is counted under: the first question seen
+      * that it nearly duplicates, or itself.
+      */
+     static String canonicalQuestion(String question) {
+         NearDuplicateIndex.Match<String> match = questionIndex.find(question);
+         if (match != null) {
+             return match.value();
+         }
+         questionIndex.put(question, question);
+         return question;
+     }
+
+     // The questions every student asks most, leaving out the ones in exclude
+     private static List<String> mostAskedQuestions(List<String> exclude) {
+         Set<Long> listed = new HashSet<>();
+         for (String question : exclude) {
+             listed.add(FrequencySketch.fingerprintOf(question));
+         }
+         List<String> mostAsked = new ArrayList<>();
+         for (FrequencySketch.Entry entry : questionFrequency.top(MOST_ASKED_SHOWN + exclude.size())) {
+             if (mostAsked.size() < MOST_ASKED_SHOWN && entry.count() >= PERSONAL_FAQ_THRESHOLD
+                     && listed.add(FrequencySketch.fingerprintOf(entry.question()))) {
+                 mostAsked.add(entry.question());
+             }
+         }
+         return mostAsked;
+     }
+
+     /**
+      * Opens the conversation log in {@code directory} in place of the current
+      * one. An empty log first takes in the questions in chat_history.txt.
+      *
+      * @return the log, or null if it could not be opened
+      */
+     static ConversationLog openConversationLog(File directory) {
+         predictorLearning.join(); // still reading the log about to be closed
+         if (conversationLog != null) {
+             conversationLog.close();
+         }
+         try {
+             conversationLog = ConversationLog.closedOnExit(directory, ConversationLog.KEEP_FOREVER);
+         } catch (IOException e) {
+             TextEngine.printNow("Failed to open conversation log: " + e.getMessage());
+             conversationLog = null;
+             return null;
+         }
+         if (conversationLog.isEmpty() && CHAT_HISTORY_FILE.exists()) {
+             long modified = CHAT_HISTORY_FILE.lastModified();
+             try (BufferedReader reader = new BufferedReader(new FileReader(CHAT_HISTORY_FILE))) {
+                 String line;
+                 while ((line = reader.readLine()) != null) {
+                     if (!line.isBlank()) {
+                         conversationLog.append(modified, null, line, null, null, 0, null);
+                     }
+                 }
+             } catch (IOException e) {
+                 TextEngine.printNow("Failed to read chat history: " + e.getMessage());
+             }
+         }
+         return conversationLog;
+     }
+
+     /**
+      * Closes the conversation log, once the predictor has finished reading it.
+      */
+     static void closeConversationLog() {
+         predictorLearning.join();
+         if (conversationLog != null) {
+             conversationLog.close();
+             conversationLog = null;
+         }
+     }
+
+     /**
+      * Logs a finished turn under the logged-in student's name. The answer is
+      * left out when the turn failed.
+      *
+      * @return false if the turn could not be logged
+      */
+     static boolean recordTurn(String question, ChatSession.Reply reply, String runId, long latencyMillis) {
+         questionPredictor.observe(usersName, question, System.currentTimeMillis());
+         ConversationLog log = conversationLog;
+         if (log == null) {
+             return false;
+         }
+         return log.append(usersName, question, reply.answered() ? reply.text() : null, runId,
+             latencyMillis, reply.route().name()) != null;
+     }
   
       public static void saveQuestion(String question) {
         if (question == null || question.trim().isEmpty()) {
@@ -154,59 +594,42 @@
     
         question = question.trim();
     
-        if (question.equalsIgnoreCase("exit") || question.equalsIgnoreCase("reset") ||
-            question.equalsIgnoreCase("back") || question.equalsIgnoreCase("help")) {
+        if (isCommand(question)) {
             return;
         }
     
-        // Ensure chat history file exists or is created
-        try {
-            if (!CHAT_HISTORY_FILE.exists()) {
-                CHAT_HISTORY_FILE.createNewFile();
-            }
+        // Count question for personal FAQ tracking; the turn itself is logged once it is answered.
+        // Rewordings of a question already seen count as that question
+        String canonical = canonicalQuestion(question);
+        questionFrequency.add(usersName, canonical, System.currentTimeMillis());
     
-            try (FileWriter writer = new FileWriter(CHAT_HISTORY_FILE, true)) {
-                writer.write(question + "\n");
-                writer.flush(); // Ensure it's written to disk immediately
-            }
-    
-            System.out.println("Saved question to history: " + question);
-    
-        } catch (IOException e) {
-            System.out.println("Failed to save question: " + e.getMessage());
-        }
-    
-        // Count question for personal FAQ tracking
-        questionCount.put(question, questionCount.getOrDefault(question, 0) + 1);
-    
-        if (questionCount.get(question) == 3) {
-            try {
-                if (!PERSONAL_FAQ_FILE.exists()) {
-                    PERSONAL_FAQ_FILE.createNewFile();
-                }
-    
-                try (FileWriter writer = new FileWriter(PERSONAL_FAQ_FILE, true)) {
-                    writer.write("- " + question + "\n");
-                    writer.flush();
-                }
-    
-                System.out.println("Added to personal FAQ: " + question);
-    
-            } catch (IOException e) {
-                System.out.println("Failed to update personal FAQ: " + e.getMessage());
+        if (personalQuestionCount(canonical) >= PERSONAL_FAQ_THRESHOLD
+                && personalFaqQuestions.add(FrequencySketch.fingerprintOf(canonical))) {
+            if (historyWriter.append(PERSONAL_FAQ_FILE, "- " + question)) {
+                TextEngine.printNow("Added to personal FAQ: " + question);
+            } else {
+                TextEngine.printNow("Failed to update personal FAQ: history is closed");
             }
         }
     }
+
+    /**
+     * Waits until every logged turn and personal FAQ line is on disk.
+     */
+    public static boolean flushHistory() {
+        boolean flushed = historyWriter.flush();
+        return (conversationLog == null || conversationLog.flush()) && flushed;
+    }
     
     
   
       private static void printStartupBanner() {
-         System.out.println(purpleColor + "  ----  █████" + resetColor + "╗" + purpleColor + "   ██████" + resetColor + "╗" + purpleColor + "  ██" + resetColor + "╗" + purpleColor + "   ██" + resetColor + "╗  " +purpleColor+ "----");
-         System.out.println(resetColor + " ---   " + purpleColor + "██" + resetColor + "╔══" + purpleColor + "██" + resetColor + "╗" + purpleColor + "  ██" + resetColor + "╔═══╝" + purpleColor + "  ██" + resetColor + "║" + purpleColor + "   ██" + resetColor + "║  ---");
-         System.out.println(purpleColor + " ----  ███████" + resetColor + "║" + purpleColor + "  ██" + resetColor + "║" + purpleColor + "      ██" + resetColor + "║" + purpleColor + "   ██" + resetColor + "║  " +purpleColor+"----");
-         System.out.println(resetColor + " ---   " + purpleColor + "██" + resetColor + "╔══" + purpleColor + "██" + resetColor + "║" + purpleColor + "  ██" + resetColor + "╚═══╗" + purpleColor + "  ██" + resetColor + "║" + purpleColor + "   ██" + resetColor + "║  ----");
-         System.out.println(purpleColor + " ----  ██" + resetColor + "║" + purpleColor + "  ██" + resetColor + "║" + purpleColor + "  ██████" + resetColor + "║" + purpleColor + "   ██████" + resetColor + "║  " +purpleColor+"---" + resetColor);
-         System.out.println("═════════════════════════════════════");
+         TextEngine.printNow(purpleColor + "  ----  █████" + resetColor + "╗" + purpleColor + "   ██████" + resetColor + "╗" + purpleColor + "  ██" + resetColor + "╗" + purpleColor + "   ██" + resetColor + "╗  " +purpleColor+ "----");
+         TextEngine.printNow(resetColor + " ---   " + purpleColor + "██" + resetColor + "╔══" + purpleColor + "██" + resetColor + "╗" + purpleColor + "  ██" + resetColor + "╔═══╝" + purpleColor + "  ██" + resetColor + "║" + purpleColor + "   ██" + resetColor + "║  ---");
+         TextEngine.printNow(purpleColor + " ----  ███████" + resetColor + "║" + purpleColor + "  ██" + resetColor + "║" + purpleColor + "      ██" + resetColor + "║" + purpleColor + "   ██" + resetColor + "║  " +purpleColor+"----");
+         TextEngine.printNow(resetColor + " ---   " + purpleColor + "██" + resetColor + "╔══" + purpleColor + "██" + resetColor + "║" + purpleColor + "  ██" + resetColor + "╚═══╗" + purpleColor + "  ██" + resetColor + "║" + purpleColor + "   ██" + resetColor + "║  ----");
+         TextEngine.printNow(purpleColor + " ----  ██" + resetColor + "║" + purpleColor + "  ██" + resetColor + "║" + purpleColor + "  ██████" + resetColor + "║" + purpleColor + "   ██████" + resetColor + "║  " +purpleColor+"---" + resetColor);
+         TextEngine.printNow("═════════════════════════════════════");
        }
   
        private static String parseUserInfo() {
@@ -224,103 +647,132 @@
          }
        }
    
-     private static String setupAssistant() {
-         // Create assistant
-         String assistantName;
-         //assistant = assistant;
-         if (usersName == null) {
-             assistantName = "AI Academic Advisor";
-         } else {
-             String[] nameParts = usersName.split(" ");
-             if (nameParts.length > 1) {
-                 assistantName = "AI Academic Advisor for " + nameParts[0] + " " + nameParts[1];
-             } else {
-                 assistantName = "AI Academic Advisor for " + usersName;
-             }
+     // What shapes the assistant; its hash keys the resource manifest
+     private record AssistantConfig(String model, String name, String instructions, List<JSONObject> tools, String hash) {
+     }
+
+     private static AssistantConfig assistantConfig() {
+         // One assistant for every student on this install, built while the login prompt is still open;
+         // each student is told apart by their own thread and vector store
+         String assistantName = "AI Academic Advisor";
+         String model = "gpt-3.5-turbo";
+         String instructions = "You are a real-time AI Academic Advisor for Abilene Christian University. You are only allowed to use the data provided in user_info.txt when answering any question. "
+          + "For questions like 'What classes am I currently in?', retrieve the value exactly following the line that starts with 'Enrolled Courses:' from user_info.txt. "
+          + "NEVER generate or assume course names. Do not pull information from anywhere except the uploaded user_info.txt. "
+          + "If you are unsure or the value does not exist in user_info.txt, respond with: 'I could not find that information in your file.' "
+          + "When functions are available, use them for course details, prerequisites, sections and the student's schedule.";
+
+         // Expose the local course functions alongside file_search
+         List<JSONObject> tools = new ArrayList<>();
+         tools.add(new JSONObject().put("type", "file_search"));
+         ToolRegistry toolRegistry = assistant.getToolRegistry();
+         if (toolRegistry != null) {
+             tools.addAll(toolRegistry.toolDefinitions());
+         }
+         String hash = ResourceManifest.configHash(model, assistantName, instructions, tools,
+             List.of(ACU_DATABASE_FILE.getName(), USER_INFO_FILE.getName()));
+         return new AssistantConfig(model, assistantName, instructions, tools, hash);
+     }
+
+     // One validation round for what earlier launches created
+     private static boolean validateResources() {
+         config = assistantConfig();
+         resourceManifest = ResourceManifest.load(RESOURCE_MANIFEST_FILE);
+         recordedResources = resourceManifest.get(config.hash());
+
+         resourceValidation = ResourceManifest.validate(assistant,
+             recordedResources == null ? null : recordedResources.assistantId(), ingestor.currentVectorStoreId());
+         if (!resourceValidation.vectorStoreValid()) {
+             ingestor.forgetCatalogStore();
          }
-          
+         return true;
+     }
+
+     private static boolean ensureAssistant() {
+         if (resourceValidation.assistantValid()) {
+             assistantId = recordedResources.assistantId();
+             TextEngine.printNow("Reusing assistant with ID: " + assistantId);
+             return true;
+         }
+
          assistantId = assistant.createAssistant(
-            "gpt-3.5-turbo",
-            assistantName,
+            config.model(),
+            config.name(),
             null,
-            "You are a real-time AI Academic Advisor for Abilene Christian University. You are only allowed to use the data provided in user_info.txt when answering any question. "
-          + "For questions like 'What classes am I currently in?', retrieve the value exactly following the line that starts with 'Enrolled Courses:' from user_info.txt. "
-          + "NEVER generate or assume course names. Do not pull information from anywhere except the uploaded user_info.txt. "
-          + "If you are unsure or the value does not exist in user_info.txt, respond with: 'I could not find that information in your file.'",
+            config.instructions(),
             null,
             List.of("file_search"),
             null,
             0.5,
             0.5,
             null
-        );
-        
-         
-      
+         );
+
          if (assistantId == null) {
              TextEngine.printWithDelay("Failed to create assistant", true);
-             return null;
+             return false;
          }
- 
-      // Upload files to OpenAI
-         String fileId = assistant.uploadFile(USER_INFO_FILE, "assistants");
-         String fileId1 = assistant.uploadFile(ACU_DATABASE_FILE, "assistants");
-      
-         if (fileId == null || fileId1 == null) {
-             TextEngine.printWithDelay("Failed to upload one or more files", true);
-             return null;
+         TextEngine.printNow("Assistant setup successfully with ID: " + assistantId);
+         return true;
+     }
+
+     // Upload the database one table per document; unchanged tables are not re-uploaded
+     private static boolean syncCatalogStore() {
+         List<VectorStoreIngestor.Document> documents = VectorStoreIngestor.splitTables(
+             ACU_DATABASE_FILE, VectorStoreIngestor.MAX_ROWS_PER_DOCUMENT);
+         if (documents == null) {
+             TextEngine.printWithDelay("Failed to read one or more files", true);
+             return false;
          }
-   
-         // Create metadata for files
-         Map<String, String> fileMetadata = new HashMap<>();
-         fileMetadata.put(fileId, "This fileID is associated with the user info");
-         fileMetadata.put(fileId1, "This fileID is associated with the ACU database");
-   
-         // Create vector store
-        vectorStoreId = assistant.createVectorStore(
-             "User Files",
-             Arrays.asList(fileId, fileId1),
-             null,
-             null,
-             fileMetadata
-         );
-   
+
+         // The catalog store is shared by every session; only the student's own file is per student
+         vectorStoreId = ingestor.sync("ACU Catalog", documents);
          if (vectorStoreId == null) {
              TextEngine.printWithDelay("Failed to create vector store", true);
-             return null;
+             return false;
          }
-   
-         // Update assistant with vector store
-// Update assistant with vector store
-Map<String, Object> toolResources = new HashMap<>();
-toolResources.put("file_search", Map.of(
-    "vector_store_ids", List.of(vectorStoreId)
-));
-
-boolean updateSuccess = assistant.modifyAssistant(
-    assistantId, null, null, null, null, null, null, null, null,
-    toolResources, null, null
-);
-
-if (!updateSuccess) {
-    TextEngine.printWithDelay("Failed to update assistant with vector store.", true);
-    return null;
-}
+         return true;
+     }
 
- 
-         System.out.println("Assistant setup successfully with ID: " + assistantId);
-         try (FileWriter fw = new FileWriter("assistant_id.txt")) {
-             fw.write(assistantId);
-         } catch (IOException e) {
-             System.out.println("Failed to save assistant ID: " + e.getMessage());
+     // Runs after login, since creating a profile changes user_info.txt
+     private static boolean syncStudentStore() {
+         VectorStoreIngestor.Document userInfo = VectorStoreIngestor.wholeFile(USER_INFO_FILE, "user_info");
+         if (userInfo == null) {
+             TextEngine.printWithDelay("Failed to read one or more files", true);
+             return false;
          }
-         
-         try (FileWriter fw = new FileWriter("vector_store_id.txt")) {
-             fw.write(vectorStoreId);
-         } catch (IOException e) {
-             System.out.println("Failed to save vector store ID: " + e.getMessage());
+
+         studentVectorStoreId = ingestor.syncStudentStore(usersName == null ? "student" : usersName,
+             userInfo, VectorStoreIngestor.STUDENT_STORE_EXPIRY_DAYS);
+         if (studentVectorStoreId == null) {
+             TextEngine.printWithDelay("Failed to create student vector store", true);
+             return false;
+         }
+         return true;
+     }
+
+     private static boolean attachCatalogStore() {
+         boolean created = !resourceValidation.assistantValid();
+         // A reused assistant only needs updating if the catalog store changed
+         if (created || !vectorStoreId.equals(recordedResources.vectorStoreId())) {
+             Map<String, Object> toolResources = new HashMap<>();
+             toolResources.put("file_search", Map.of(
+                 "vector_store_ids", List.of(vectorStoreId)
+             ));
+
+             boolean updateSuccess = assistant.modifyAssistant(
+                 assistantId, null, null, null, null, null, null, null, null,
+                 toolResources, created ? config.tools() : null, null
+             );
+
+             if (!updateSuccess) {
+                 TextEngine.printWithDelay("Failed to update assistant with vector store.", true);
+                 return false;
+             }
          }
-         return assistantId;
+
+         resourceManifest.put(config.hash(), new ResourceManifest.Entry(assistantId, vectorStoreId));
+         return true;
      }
    
      private static void startInteractiveChat(String assistantId) {
@@ -328,48 +780,72 @@ if (!updateSuccess) {
   
          TextEngine.clearScreen();
          printStartupBanner();
-         System.out.println("\n=== You can now chat with AI ===");
+         TextEngine.printNow("\n=== You can now chat with AI ===");
          TextEngine.printWithDelay("Type " +redColor+ "exit" +resetColor+ " to end the conversation", true);
          TextEngine.printWithDelay("Type " +yellowColor+ "setting" +resetColor+ " to change the text settings", true);
          TextEngine.printWithDelay("Type " +yellowColor+ "help" +resetColor+ " if you are lost and would like to see some FAQs", true);
+         TextEngine.printWithDelay("Type " +yellowColor+ "cancel" +resetColor+ " to stop the answer being worked on", true);
          TextEngine.printWithDelay("What would you like help with?", true);
+         session = new ChatSession("cli", new ChatSession.Context(assistant, assistantId, router, courseExtractor, reaper), studentVectorStoreId);
    
          try {
              String userInput;
+             // The CLI process is this one session, so ending the session ends the process
              chatTimer sessionTimer = new chatTimer(INACTIVITY_TIMEOUT_SECONDS, () -> {
-                 System.out.println("\n" + redColor + "Session timed out due to inactivity. Logging out..." + resetColor);
+                 TextEngine.skipAnimation();
+                 TextEngine.printNow("\n" + redColor + "Session timed out due to inactivity. Logging out..." + resetColor);
+                 session.close();
                  System.exit(0);
              });
+             boolean showPrompt = true;
              while (true) {
-                 System.out.print("\nQuestion: ");
+                 // Queued behind the answer still being typed; Enter skips to the end of it.
+                 // After a question is submitted, its reply prints the next prompt
+                 if (showPrompt) {
+                     TextEngine.printWithDelay("\nQuestion: ", false);
+                 }
+                 showPrompt = true;
                  sessionTimer.reset(); // Start/reset before input
                  userInput = reader.readLine().trim();
+                 TextEngine.skipAnimation();
 
                  if (userInput == null || userInput.trim().isEmpty()) {
                     sessionTimer.reset();
                     continue;
                 }
                 userInput = userInput.trim();
-                saveQuestion(userInput); // Save the question to the history
                  
-                 System.out.println("");
+                 TextEngine.printNow("");
                   
-                 if (userInput.equalsIgnoreCase("settings"))
+                 if (userInput.equalsIgnoreCase("settings") || userInput.equalsIgnoreCase("setting"))
                  {
+                     // Replies still on the queue would print over the menu
+                     session.awaitIdle(ChatSession.RUN_TIMEOUT_SECONDS * 1000L);
                      TextEngine.openSettings(reader);
                      sessionTimer.reset();
                      continue;
                  }
                  if (userInput.equalsIgnoreCase("help"))
                  {
+                     session.awaitIdle(ChatSession.RUN_TIMEOUT_SECONDS * 1000L);
                      Chatbot.FAQs();
                      sessionTimer.reset();
                      continue;
                  }
               
+                 if (userInput.equalsIgnoreCase("cancel")) {
+                     if (!session.cancel()) {
+                         TextEngine.printWithDelay("Nothing to cancel.", true);
+                     }
+                     sessionTimer.reset();
+                     continue;
+                 }
+              
                  if (userInput.equalsIgnoreCase("exit")) {
+                     session.close(); // cancels the answer in progress and drops queued questions
                      TextEngine.printWithDelay("Exiting...", true);
                      TextEngine.printRainbowText("\nThank you for using the ACU AI Academic Advisor. Goodbye!");
+                     sessionTimer.cancel();
                      break;
                  }
    
@@ -377,112 +853,175 @@ if (!updateSuccess) {
                      sessionTimer.reset();
                      continue;
                  }
-   
-                 // Create a thread if it doesn't exist yet
-                 if (threadId == null) {
-                     List<JSONObject> messages = List.of(
-                         new JSONObject()
-                         .put("role", "user") 
-                         .put("content", userInput)
-                     );
-                     threadId = assistant.createThread(messages, null, null);
-                     if (threadId == null) {
-                         TextEngine.printWithDelay("Failed to create thread. Please try again.", true);
-                         sessionTimer.reset();
-                         continue;
-                     }
-                 } else {
-                     // Add message to existing thread
-                     String messageId = assistant.addMessageToThread(threadId, userInput);
-                     if (messageId == null) {
-                         TextEngine.printWithDelay("Failed to send message. Please try again.", true);
-                         sessionTimer.reset();
-                         continue;
-                     }
-                 }
-   
-                 JSONArray vectorStoreArray = new JSONArray();
-                 vectorStoreArray.put(vectorStoreId);
-
-                 JSONObject fileSearchJson = new JSONObject();
-                 fileSearchJson.put("vector_store_ids", vectorStoreArray);
-
-                 JSONObject toolResourcesJson = new JSONObject();
-                 toolResourcesJson.put("file_search", fileSearchJson);
-
-                 // Create and monitor run
-                 runId = assistant.createRun(
-                     threadId,
-                     assistantId,
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     null,
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     null, 
-                     toolResourcesJson
-                 );
-                 
-   
-                 if (runId == null) {
-                     TextEngine.printWithDelay("Failed to create run. Please try again.", true);
-                     sessionTimer.reset();
-                     continue;
+
+                 // Turns run in order while the next question is read; the session never
+                 // has two runs on its thread at once
+                 if (session.isBusy() || session.getQueuedTurns() > 0) {
+                     TextEngine.printWithDelay("(queued behind the current answer)", true);
                  }
-   
-                 AtomicBoolean isRunning = new AtomicBoolean(true);
-                 Thread loadingThread = startLoadingAnimation(isRunning);
-   
-                 boolean completed = assistant.waitForRunCompletion(threadId, runId, 60,1000);
-   
-                 isRunning.set(false);
-                 try {
-                     loadingThread.join();
-                 } catch (InterruptedException e) {
-                     Thread.currentThread().interrupt();
-                 } 
-                 if (!completed) {
-                     TextEngine.printWithDelay("The assistant encountered an issue. Please try again.", true);
+                 saveQuestion(userInput); // Save the question to the history; commands are handled above
+                 String question = userInput;
+                 session.enqueue(() -> answerTurn(question)).thenAccept(reply -> {
+                     if (session.isClosed()) {
+                         return;
+                     }
+                     TextEngine.printWithDelay(reply.text(), true);
+                     TextEngine.printWithDelay("\nQuestion: ", false);
                      sessionTimer.reset();
-                     continue;
-                 }
-   
-                 // Get the assistant's response
-                 List<String> retrievedMessages = assistant.listMessages(threadId, runId);
-                 if (retrievedMessages != null && !retrievedMessages.isEmpty()) {
-                     TextEngine.printWithDelay(retrievedMessages.get(0), true);
-                 } else {
-                     TextEngine.printWithDelay("No response received. Please try again.", true);
-                 }
+                     prefetchLikelyNext(question);
+                 });
+                 showPrompt = false;
              }
    
-             System.out.println("\nSession Statistics:");
+             TextEngine.printNow("\nSession Statistics:");
+             TextEngine.printNow(" - Routing: " + router.metricsSummary());
+             TextEngine.printNow(" - Answer cache: " + answerCache.metricsSummary());
+             TextEngine.printNow(" - Next-question model: " + questionPredictor.metricsSummary());
+             if (prefetcher != null) {
+                 TextEngine.printNow(" - Prefetch: " + prefetcher.metricsSummary());
+                 TextEngine.printNow(" - Warm-up: " + warmUp.metricsSummary());
+             }
              assistant.getCategories().forEach(category -> {
-                 System.out.println(" - " + category + ": "+ assistant.getResponsesByCategory(category).size() + " responses");
+                 TextEngine.printNow(" - " + category + ": "+ assistant.getResponsesByCategory(category).size() + " responses");
              });
    
               
    
-             // Clean up resources
-             if (threadId != null) {
-                assistant.deleteResource("threads", threadId);
-             }
+             // Clean up resources in the background
+             session.close(); // already closed on exit; here for the error paths
    
          } catch (IOException e) {
-             System.out.println("Error reading input: " + e.getMessage());
+             TextEngine.printNow("Error reading input: " + e.getMessage());
          }
      }   
    
+     // One turn on the session's queue: FAQ and table-lookup questions are answered locally, a
+     // question the assistant has answered before (or a rewording of one) from the answer cache,
+     // the rest by the assistant behind a spinner that follows the run's status
+     private static ChatSession.Reply answerTurn(String question) {
+         long start = System.nanoTime();
+         IntentRouter.Decision decision = router.route(question);
+         if (decision.route() != IntentRouter.Route.LLM) {
+             ChatSession.Reply reply = new ChatSession.Reply(decision.answer(), decision.route(), true);
+             recordTurn(question, reply, null, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+             return reply;
+         }
+         ChatSession.Reply prefetched = takePrefetched(question);
+         String cached = prefetched != null ? prefetched.text() : answerCache.get(usersName, question);
+         if (cached != null) {
+             ChatSession.Reply reply = new ChatSession.Reply(cached, IntentRouter.Route.CACHE, true);
+             // Kept in the thread like a run's answer, so later questions can refer back to it
+             session.appendTurn(question, cached);
+             recordTurn(question, reply, null, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+             return reply;
+         }
+   
+         // An answer given with earlier turns in view may lean on them, so only a thread's first is cached
+         boolean firstTurn = !session.hasEarlierTurns();
+         ProgressSpinner spinner = TextEngine.startSpinner();
+         try {
+             // Adds the question to the session's thread and waits for the run
+             ChatSession.Reply reply = session.askAssistant(question, spinner::onStatus);
+             recordTurn(question, reply, session.getRunId(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+             if (reply.answered() && firstTurn) {
+                 answerCache.put(usersName, question, reply.text());
+             }
+             return reply;
+         } finally {
+             spinner.stop();
+         }
+     }
+   
+     // Starts answering the student's personal FAQs and the questions every student asks most, a few
+     // at a time, and sets up prefetching of likely next questions. Each runs on a thread of its own,
+     // so none shows up in the student's conversation
+     private static boolean warmUpAnswers() {
+         ChatSession.Context context = new ChatSession.Context(assistant, assistantId, router, courseExtractor, reaper);
+         Function<String, ChatSession.Reply> ask = question -> {
+             ChatSession scratch = new ChatSession("prefetch", context, studentVectorStoreId);
+             try {
+                 return scratch.askAssistant(question);
+             } finally {
+                 scratch.close();
+             }
+         };
+         prefetcher = new AnswerPrefetcher(ask, answerCache, usersName, PREFETCH_BUDGET, PREFETCH_PARALLELISM);
+         warmUp = new AnswerPrefetcher(ask, answerCache, usersName, WARM_UP_QUESTIONS, WARM_UP_PARALLELISM);
+
+         List<String> questions = readPersonalFaq();
+         questions.addAll(mostAskedQuestions(questions));
+         for (String question : questions) {
+             // A command saved before commands were kept out of the FAQ would be a paid run for nothing
+             if (!isCommand(question) && router.peek(question).route() == IntentRouter.Route.LLM) {
+                 warmUp.prefetch(canonicalQuestion(question));
+             }
+         }
+         return true;
+     }
+
+     static boolean isCommand(String input) {
+         return COMMAND_WORDS.contains(input.trim().toLowerCase(Locale.ROOT));
+     }
+
+     // The questions in the personal FAQ, in the order they were added
+     private static List<String> readPersonalFaq() {
+         List<String> questions = new ArrayList<>();
+         flushHistory();
+         if (!PERSONAL_FAQ_FILE.exists()) {
+             return questions;
+         }
+         try (BufferedReader faqReader = new BufferedReader(new FileReader(PERSONAL_FAQ_FILE))) {
+             String line;
+             while ((line = faqReader.readLine()) != null) {
+                 if (line.startsWith("- ")) {
+                     questions.add(line.substring(2)); // remove "- " prefix
+                 }
+             }
+         } catch (IOException e) {
+             TextEngine.printNow("Failed to load personal FAQ: " + e.getMessage());
+         }
+         return questions;
+     }
+
+     // The prefetched answer to question, from the warm-up or a prediction, waiting for it if it is
+     // still running; null if there is none
+     private static ChatSession.Reply takePrefetched(String question) {
+         String canonical = canonicalQuestion(question);
+         CompletableFuture<ChatSession.Reply> prefetch = null;
+         for (AnswerPrefetcher prefetches : new AnswerPrefetcher[] {warmUp, prefetcher}) {
+             if (prefetch == null && prefetches != null) {
+                 prefetch = prefetches.take(canonical);
+             }
+         }
+         if (prefetch == null) {
+             return null;
+         }
+         ProgressSpinner spinner = prefetch.isDone() ? null : TextEngine.startSpinner();
+         try {
+             ChatSession.Reply reply = prefetch.exceptionally(e -> null).join();
+             return reply != null && reply.answered() ? reply : null;
+         } finally {
+             if (spinner != null) {
+                 spinner.stop();
+             }
+         }
+     }
+
+     // Starts answering the questions that most often follow this one, within the prefetch budget.
+     // Only questions the assistant would answer are worth a run
+     private static void prefetchLikelyNext(String question) {
+         AnswerPrefetcher prefetches = prefetcher;
+         if (prefetches == null) {
+             return;
+         }
+         for (QuestionPredictor.Prediction next : questionPredictor.predict(question, PREFETCH_PER_TURN)) {
+             if (next.count() >= PREFETCH_MIN_SUPPORT && next.probability() >= PREFETCH_MIN_PROBABILITY
+                     && router.peek(next.question()).route() == IntentRouter.Route.LLM) {
+                 prefetches.prefetch(next.question());
+             }
+         }
+     }
+
      private static void Login() {
          Map<String, String> credentials = new HashMap<>();
       
@@ -511,6 +1050,7 @@ if (!updateSuccess) {
        
              // Validate credentials
              if (credentials.containsKey(username) && credentials.get(username).equals(password)) {
+                 setUsersName(username);
                  TextEngine.printWithDelay(greenColor+"Login successful."+resetColor+"\n Welcome, " + username + "!", true);
              } else {
                  TextEngine.printWithDelay("Invalid username or password. Exiting.", true);
@@ -531,34 +1071,14 @@ if (!updateSuccess) {
              // Save to user info file
              try (java.io.FileWriter writer = new java.io.FileWriter(USER_INFO_FILE, true)) {
                  writer.write(username + "," + password + "\n");
-                 System.out.println(greenColor+"Profile created successfully." +resetColor);
+                 TextEngine.printNow(greenColor+"Profile created successfully." +resetColor);
              }
+             setUsersName(username);
          } catch (IOException e) {
              TextEngine.printWithDelay("An error occurred while creating the profile: " + e.getMessage(), false);
          }
      }
   
-     private static Thread startLoadingAnimation(AtomicBoolean isRunning) {
-         Thread loadingThread = new Thread(() -> { String[] frames = {".  ", ".. ", "...", " ..", "  .", "   "};
-             int index = 0;
-             try {
-                 while (isRunning.get()) {
-                     System.out.print("\rThinking" + frames[index]);
-                     System.out.flush();
-                     index = (index + 1) % frames.length;
-                     Thread.sleep(300);
-                 }
-                 System.out.print("\r                                \r");
-                 System.out.flush();
-             } catch (InterruptedException e) {
-                 Thread.currentThread().interrupt();
-             }
-         });
-         loadingThread.setDaemon(true);
-         loadingThread.start();
-         return loadingThread;
-     }
-  
     private static void FAQs() throws IOException{
          
         TextEngine.printWithDelay("Here are some FAQ's based on different departments in the school:", true);
@@ -571,225 +1091,92 @@ if (!updateSuccess) {
         TextEngine.printWithDelay("Section: ", false);
         String selection = reader.readLine().trim().toLowerCase();
         if (selection.equals("1") || selection.contains("academic")) {
-            TextEngine.printWithDelay("\n--- FAQs for Academic Advisor ---", true);
-            TextEngine.printWithDelay("1. How do I check my current/upcoming registrations?", true);
-            TextEngine.printWithDelay("2. When can I access my upcoming courses in Canvas?", true);
-            TextEngine.printWithDelay("3. When do the next courses start?", true);
-            TextEngine.printWithDelay("4. What if I need to change or drop an upcoming course?", true);
-            TextEngine.printWithDelay("5. When will final grades be posted?", true);
-            TextEngine.printWithDelay("6. What happens if I fail my course(s)?", true);
-            TextEngine.printWithDelay("7. What happens if I'm not financially clear for the next term?", true);
-            TextEngine.printWithDelay("8. How can I reach my Financial Intake Specialist (FIS) about financial concerns?", true);
-            TextEngine.printWithDelay("9. How do I reach out to technical support?", true);
-            TextEngine.printWithDelay("\nPlease enter the question number (1 through 9), type 'chat' to begin chatting, or 'back' to return to departments.", true);
-             
-            while (true) {
-                TextEngine.printWithDelay("FAQ #: ", false);
-                String faqInput = reader.readLine().trim().toLowerCase();
-             
-                switch (faqInput) {
-                    case "1" -> TextEngine.printWithDelay("To check on upcoming/current registrations, please navigate to Degree Works and scroll to the bottom. It will show you your current and registered classes for the next term. To access Degree Works, please go to my.acu.edu, and in the search bar, please type in \"Degree Works\".", true);
-                    case "2" -> TextEngine.printWithDelay("You can only access your upcoming courses in Canvas when the professor decides to publish them. Most of the time, you will have access a day or two before the start day of the semester.", true);
-                    case "3" -> TextEngine.printWithDelay("The next courses start depending on when you registered for them. If you signed up for summer classes they will start during the summer term. If you signed up for classes during the fall or spring term they will start when you get there. You can check the specific day by going to my.acu.edu and searching for \"First day of classes\".", true);
-                    case "4" -> TextEngine.printWithDelay("If you need to drop or change a course, you will need to reach out to your academic advisor and ask them to either drop or change a course. If you drop a course within the first week of the start of the semester (Monday-Friday before 5:00 PM) then you will get a full refund for that course and your transcript will be unaffected. If you decide to change a class to another class during the first week, your transcript will also be unaffected.", true);
-                    case "5" -> TextEngine.printWithDelay("Final grades will be posted within 1-2 weeks of the semester concluding. If you go to my.acu.edu and in the search bar type banner, you will have access to see your unofficial transcript and see your grades. Once there in the search bar, type in \"transcript\" and you will see. The transcript will only show a letter grade, so if you wish to see your numerical grade then please navigate to Canvas. Once there, please select courses and on the top right select \"view all courses\". Here you can see all the previous courses you took and what numerical value you achieved in them.", true);
-                    case "6" -> TextEngine.printWithDelay("If you fail your course(s) they will count as an F on your transcript and carry a weight of 0 on the 4.0 scale. Regardless of it being a major class, university requirement, or an elective, you would not get credit for the class or classes and would have to retake them. ACU's policy is that you have 3 attempts to retake a class. Every time that you retake it whatever grade you make on the end will replace the current one. Also, ACU will keep the highest score automatically. So if you get a B in a class, decide to retake it for an A and get a C instead you will keep the B.", true);
-                    case "7" -> TextEngine.printWithDelay("If you are not financially clear for the next term, then you need to call Student Services at 325-674-2300. They will tell you the next steps and ultimately, if you aren't able to pay, you will be removed from the school.", true);
-                    case "8" -> TextEngine.printWithDelay("Along with an academic advisor, each student is assigned a financial advisor as well. To reach them, please call Wildcat Central at 325-674-6770 and ask them who it is.", true);
-                    case "9" -> TextEngine.printWithDelay("To reach ACU technical support, please call 325-674-5555. They will assist you with whatever technical problems you have.", true);
-                    case "chat" -> TextEngine.printWithDelay("\nEntering chatbot mode...", true);
-                    case "back" -> {
-                        return;
-                    }
-                    default -> {
-                        TextEngine.printWithDelay("Please enter a valid number (1-9), 'chat', or 'back'.", false);
-                        continue;
-                    }
-                }
-             
-                if (faqInput.equals("chat")) break;
-                         
-                TextEngine.printWithDelay("\nYou can type another FAQ number, 'chat' to begin chatting, or 'exit' to quit the chatbot.", false);
-                    break;
-            }
-            //break; // exit FAQ loop to continue to chatbot
+            showFaqSection(FaqCatalog.STUDENT_SUCCESS);
         }
 
         else if (selection.equals("2")) {
             TextEngine.printWithDelay("\n--- Your Personal FAQ ---", true);
-            List<String> faqList = new ArrayList<>();
+            List<String> faqList = readPersonalFaq();
                 
-            if (!PERSONAL_FAQ_FILE.exists()) { TextEngine.printWithDelay("You have no personal FAQs yet.", true);} 
+            if (faqList.isEmpty()) { TextEngine.printWithDelay("You have no personal FAQs yet.", true);} 
             else {
-                try (BufferedReader faqReader = new BufferedReader(new FileReader(PERSONAL_FAQ_FILE))) {
-                    String line;
-                    int i = 1;
-                    while ((line = faqReader.readLine()) != null) {
-                        faqList.add(line.substring(2)); // remove "- " prefix
-                        TextEngine.printWithDelay(i + ". " + line.substring(2), true);
-                        i++;
-                    }
-                } catch (IOException e) {
-                    TextEngine.printWithDelay("Failed to load personal FAQ: " + e.getMessage(), true);
+                for (int i = 0; i < faqList.size(); i++) {
+                    TextEngine.printWithDelay((i + 1) + ". " + faqList.get(i), true);
                 }
+            }
+
+            // Then what every student asks most, past the ones already listed
+            List<String> mostAsked = mostAskedQuestions(faqList);
+            if (!mostAsked.isEmpty()) {
+                TextEngine.printWithDelay("\n--- Most Asked by Students ---", true);
+                for (String question : mostAsked) {
+                    faqList.add(question);
+                    TextEngine.printWithDelay(faqList.size() + ". " + question, true);
+                }
+            }
             
-                if (!faqList.isEmpty()) {
-                    while (true) {
-                        TextEngine.printWithDelay("\nType the number of a question you'd like the advisor to answer, or type 'back': ", false);
-                        String input = reader.readLine().trim().toLowerCase();
+            if (!faqList.isEmpty()) {
+                while (true) {
+                    TextEngine.printWithDelay("\nType the number of a question you'd like the advisor to answer, or type 'back': ", false);
+                    String input = reader.readLine().trim().toLowerCase();
+        
+                    if (input.equals("back")) break;
             
-                        if (input.equals("back")) break;
-                
-                        try {
-                            int choice = Integer.parseInt(input);
-                            if (choice >= 1 && choice <= faqList.size()) {
-                                String selectedQuestion = faqList.get(choice - 1);
-                                TextEngine.printWithDelay("\nYou asked: " + selectedQuestion, false);
-                
-                                // Create toolResources JSON object
-                                JSONArray vectorStoreArray = new JSONArray();
-                                vectorStoreArray.put(vectorStoreId);
+                    try {
+                        int choice = Integer.parseInt(input);
+                        if (choice >= 1 && choice <= faqList.size()) {
+                            String selectedQuestion = faqList.get(choice - 1);
+                            TextEngine.printWithDelay("\nYou asked: " + selectedQuestion, false);
             
-                                JSONObject fileSearchJson = new JSONObject();
-                                fileSearchJson.put("vector_store_ids", vectorStoreArray);
-                
-                                JSONObject toolResourcesJson = new JSONObject();
-                                toolResourcesJson.put("file_search", fileSearchJson);
-                
-                                // Prepare initial message
-                                List<JSONObject> messages = List.of(
-                                    new JSONObject().put("role", "user").put("content", selectedQuestion)
-                                );
-                
-                                // Create thread with no tool resources (API doesn’t support it here)
-                                threadId = assistant.createThread(messages, null, null);
-                
-                                if (threadId == null) {
-                                    System.out.println("Failed to create thread for this FAQ.");
-                                    continue;
-                                }
-                
-                                // Create run with toolResourcesJson
-                                runId = assistant.createRun(
-                                    threadId,
-                                    assistantId,
-                                    null, // model
-                                    null, // reasoningEffort
-                                    null, // instructions
-                                    null, // additionalInstructions
-                                    null, // additionalMessages
-                                    null, // tools
-                                    null, // metadata
-                                    null, // temperature
-                                    null, // topP
-                                    null, // stream
-                                    null, // maxPromptTokens
-                                    null, // maxCompletionTokens
-                                    null, // truncationStrategy
-                                    null, // toolChoice
-                                    null, // parallelToolCalls
-                                    null, // responseFormat
-                                    toolResourcesJson 
-                                );
-                                        
-                
-                                if (runId == null) {
-                                    TextEngine.printWithDelay("Failed to create run.", true);
-                                    continue;
-                                }
-                                boolean completed = assistant.waitForRunCompletion(threadId, runId, 60, 1000);
-                
-                                if (!completed) {
-                                    TextEngine.printWithDelay("The assistant encountered an issue. Please try again.", true);
-                                    continue;
+                            // Answered at login by the warm-up if it has finished, joined if it is still running
+                            ChatSession.Reply reply = takePrefetched(selectedQuestion);
+                            String cached = reply == null ? answerCache.get(usersName, selectedQuestion) : null;
+                            if (cached != null) {
+                                reply = new ChatSession.Reply(cached, IntentRouter.Route.CACHE, true);
+                            }
+                            if (reply != null) {
+                                // On a fresh thread like a run's answer, so follow-up questions can refer back to it
+                                String answer = reply.text();
+                                session.enqueue(() -> {
+                                    session.startNewThread();
+                                    session.appendTurn(selectedQuestion, answer);
+                                    return null;
+                                }).join();
+                            } else {
+                                // Each FAQ answer gets a fresh thread; the previous one is no longer needed
+                                // Queued like any other turn, so it never overlaps a question still running
+                                reply = session.enqueue(() -> {
+                                    session.startNewThread();
+                                    return session.askAssistant(selectedQuestion);
+                                }).join();
+                                if (reply.answered()) {
+                                    answerCache.put(usersName, selectedQuestion, reply.text());
                                 }
-                
-                                List<String> replies = assistant.listMessages(threadId, runId);
-                                if (replies != null && !replies.isEmpty()) {
-                                    TextEngine.printWithDelay("\nAdvisor: " + replies.get(0), true);
-                                } else {
-                                    TextEngine.printWithDelay("Advisor had no response.", true);
-                                }
-                
-                                } else {
-                                    TextEngine.printWithDelay("Invalid number.", true);
-                                }
-                            } 
-                        catch (NumberFormatException e) {
-                            TextEngine.printWithDelay("Please enter a number or 'back'.", true);
-                        }
+                            }
+                            if (reply.answered()) {
+                                TextEngine.printWithDelay("\nAdvisor: " + reply.text(), true);
+                            } else {
+                                TextEngine.printWithDelay(reply.text(), true);
+                            }
+            
+                            } else {
+                                TextEngine.printWithDelay("Invalid number.", true);
+                            }
+                        } 
+                    catch (NumberFormatException e) {
+                        TextEngine.printWithDelay("Please enter a number or 'back'.", true);
                     }
                 }
             }
         }
+
             
         else if (selection.equals("3")) {
-            TextEngine.printWithDelay("\n--- FAQs for Academic Advisor (On-Campus) ---", true);
-            TextEngine.printWithDelay("1. How do I calculate my GPA?", true);
-            TextEngine.printWithDelay("2. What will my GPA be next semester if I make these certain grades?", true);
-            TextEngine.printWithDelay("3. What are the prerequisites for this class?", true);
-            TextEngine.printWithDelay("4. What classes should I take next semester?", true);
-            TextEngine.printWithDelay("5. What are all the requirements for my major?", true);
-            TextEngine.printWithDelay("6. What Summer classes are good options for me to take at another school and transfer in?", true);
-            TextEngine.printWithDelay("\nPlease enter the question number (1 through 6), type 'chat' to begin chatting, or 'back' to return to departments.", true);
-            
-            while (true) {
-                TextEngine.printWithDelay("FAQ #: ", false);
-                String academicFaq = reader.readLine().trim().toLowerCase();
-            
-                switch (academicFaq) {
-                    case "1" -> TextEngine.printWithDelay("You can calculate your GPA by adding up all the grade points you've earned and dividing by the total number of credit hours. Check with Degree Works for your current GPA data.", true);
-                    case "2" -> TextEngine.printWithDelay("To estimate your GPA for next semester, assume letter grades for each course and apply ACU's grade point scale to see how it impacts your cumulative average.", true);
-                    case "3" -> TextEngine.printWithDelay("Prerequisites vary by course. You can look up a specific course in the ACU course catalog to see what prerequisites are listed.", true);
-                    case "4" -> TextEngine.printWithDelay("Course selection depends on your degree audit and what requirements are still pending. Your advisor can help pick classes that align with your graduation timeline.", true);
-                    case "5" -> TextEngine.printWithDelay("All major requirements are listed in your Degree Works audit. It will show you completed, in-progress, and remaining requirements.", true);
-                    case "6" -> TextEngine.printWithDelay("General Education and elective classes are good options for summer transfer. Always confirm with your advisor before registering at another school.", true);
-                    case "chat" -> TextEngine.printWithDelay("\nEntering chatbot mode...", true);
-                    case "back" -> {
-                        return;
-                    }
-                    default -> {
-                        TextEngine.printWithDelay("Please enter a valid number (1 through 6), 'chat', or 'back'.", false);
-                        continue;
-                    }
-                }
-            
-                if (academicFaq.equals("chat")) break;
-                    TextEngine.printWithDelay("\nYou can type another FAQ number, 'chat' to begin chatting, or 'back' to return.", false);
-            }
+            showFaqSection(FaqCatalog.ACADEMIC);
         }
 
         else if (selection.equals("4")) {
-            TextEngine.printWithDelay("\n--- FAQs for ACU IT ---", true);
-            TextEngine.printWithDelay("1. How do I reset my password?", true);
-            TextEngine.printWithDelay("2. How do I install lockdown browser?", true);
-            TextEngine.printWithDelay("3. How do I set up my Wi-Fi?", true);
-            TextEngine.printWithDelay("4. How do I print?", true);
-            TextEngine.printWithDelay("5. How to register a non computer/laptop devide to the network?", true);
-            TextEngine.printWithDelay("\nPlease enter the question number (1-5), type 'chat' to begin chatting, or 'back' to return to departments.", true);
-
-            while (true) {
-                TextEngine.printWithDelay("FAQ #: ", false);
-                String itFaq = reader.readLine().trim().toLowerCase();
-                switch (itFaq) {
-                    case "1" -> TextEngine.printWithDelay("To reset your password, go to acu.edu/password. Then log in with your ACU credentials to which it will prompt you to change your password. If you are having trouble, please call ACU IT at 325-674-5555.", true);
-                    case "2" -> TextEngine.printWithDelay("To download LockDown Browser to your computer, go to: https://download.respondus.com/lockdown/download.php?id=167846866. This is an ACU specific link and you must use this link to download LockDown Browser for an ACU class.", true);
-                    case "3" -> TextEngine.printWithDelay("To join any ACU Wi-Fi network, ACUSecure or ACUGuest, go to your settings and select the network. It will then prompt you to enter your username and password. Your username is your ACU email (without @acu.edu, i.e abc21c) and your password is the same password you use to log into my.acu.edu. If you are having trouble, please call ACU IT at 325-674-5555.", true);
-                    case "4" -> TextEngine.printWithDelay("If you want to print from a personal device to any of the printers in the residence halls or labs, go to acu.edu/print. You can log in with your ACU username (without the @acu.edu, i.e abc21c) and password. From here you will be able to upload documents directly. To change the printer you print to you can select it from the drop-down box in the lower right hand corner. You will need to search the printer in the list by typing in the name of the printer, which can be found on a label on each printer.", true);
-                    case "5" -> TextEngine.printWithDelay("To start please go here: https://clearpass.acu.edu/guest/auth_login.php?target=%2Fguest%2Fmac_create.php. This is the ACU specific link to register a device. Once there, please select \"Register a Device\" and fill out the form. The MAC address is the physical address of the device and can be found in the settings of the device. If you are having trouble, please call ACU IT at 325-674-5555.", true);
-                    case "chat" -> TextEngine.printWithDelay("\nEntering chatbot mode...", true);
-                    case "back" -> {
-                        return;
-                    }
-                    default -> {
-                        TextEngine.printWithDelay("Please enter a valid number (1-5), 'chat', or 'back'.", false);
-                        continue;
-                    }
-                }
-
-                if (itFaq.equals("chat")) break;
-                TextEngine.printWithDelay("\nYou can type another FAQ number, 'chat' to begin chatting, or 'back' to return.", true);
-            }
+            showFaqSection(FaqCatalog.IT);
         }
         
         else if (selection.equals("skip")) return;
@@ -799,4 +1186,37 @@ if (!updateSuccess) {
         }
     }
 
+    private static void showFaqSection(FaqCatalog.Section section) throws IOException {
+        List<FaqCatalog.Entry> entries = section.entries();
+        TextEngine.printWithDelay("\n" + section.heading(), true);
+        for (int i = 0; i < entries.size(); i++) {
+            TextEngine.printWithDelay((i + 1) + ". " + entries.get(i).question(), true);
+        }
+        TextEngine.printWithDelay("\nPlease enter the question number (1 through " + entries.size() + "), type 'chat' to begin chatting, or 'back' to return to departments.", true);
+
+        while (true) {
+            TextEngine.printWithDelay("FAQ #: ", false);
+            String faqInput = reader.readLine().trim().toLowerCase();
+
+            if (faqInput.equals("back")) {
+                return;
+            }
+            if (faqInput.equals("chat")) {
+                TextEngine.printWithDelay("\nEntering chatbot mode...", true);
+                return;
+            }
+            try {
+                int choice = Integer.parseInt(faqInput);
+                if (choice < 1 || choice > entries.size()) {
+                    throw new NumberFormatException(faqInput);
+                }
+                TextEngine.printWithDelay(entries.get(choice - 1).answer(), true);
+            } catch (NumberFormatException e) {
+                TextEngine.printWithDelay("Please enter a valid number (1 through " + entries.size() + "), 'chat', or 'back'.", false);
+                continue;
+            }
+            TextEngine.printWithDelay("\nYou can type another FAQ number, 'chat' to begin chatting, or 'back' to return.", true);
+        }
+    }
+
 }
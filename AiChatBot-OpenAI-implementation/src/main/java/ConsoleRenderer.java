@@ -0,0 +1,245 @@
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Types text out at the configured speed without blocking the caller.
+ *
+ * Writers append to a ring buffer and return at once; a render thread
+ * prints the buffer one frame at a time, as many characters per frame as
+ * the delay allows. When animation is off (delay 0, or output is not a
+ * terminal) text is printed straight away. {@link #skip()} prints whatever
+ * is still queued immediately.
+ */
+public class ConsoleRenderer {
+
+    public static final long FRAME_MILLIS = 16;
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final PrintStream out;
+    private final boolean animate;
+    private final char[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queued = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private int head;
+    private int size;
+    private volatile int delayMillis;
+    private Thread renderThread;
+
+    /**
+     * @param animate false prints everything immediately, whatever the delay
+     */
+    public ConsoleRenderer(PrintStream out, boolean animate, int capacity, int delayMillis) {
+        this.out = out;
+        this.animate = animate;
+        this.ring = new char[capacity];
+        this.delayMillis = Math.max(0, delayMillis);
+    }
+
+    /**
+     * A renderer for standard output that animates only when attached to a
+     * terminal, and prints anything still queued when the JVM exits.
+     */
+    public static ConsoleRenderer forStdout(int delayMillis) {
+        ConsoleRenderer renderer = new ConsoleRenderer(System.out, System.console() != null, DEFAULT_CAPACITY, delayMillis);
+        Runtime.getRuntime().addShutdownHook(new Thread(renderer::skip, "console-renderer-flush"));
+        return renderer;
+    }
+
+    public void setDelay(int delayMillis) {
+        this.delayMillis = Math.max(0, delayMillis);
+        signalQueued();
+    }
+
+    public int getDelay() {
+        return delayMillis;
+    }
+
+    /**
+     * Queues text for rendering. Only waits when the buffer is full, and then
+     * only for the queued text to be printed without animation.
+     */
+    public void write(String text) {
+        lock.lock();
+        try {
+            if (size == 0 && !isAnimating()) {
+                out.print(text);
+                out.flush();
+                return;
+            }
+            int offset = 0;
+            while (offset < text.length()) {
+                if (size == ring.length) {
+                    // Too far behind: catch up rather than hold the writer
+                    printQueued(size);
+                    continue;
+                }
+                int count = Math.min(text.length() - offset, ring.length - size);
+                for (int i = 0; i < count; i++) {
+                    ring[(head + size + i) % ring.length] = text.charAt(offset + i);
+                }
+                size += count;
+                offset += count;
+            }
+            startRenderThread();
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Prints everything still queued, on the calling thread.
+     */
+    public void skip() {
+        lock.lock();
+        try {
+            printQueued(size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until everything queued has been printed.
+     *
+     * @return false if the timeout passed first
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (size > 0) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = drained.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Prints {@code text} at once if nothing is queued, so a status line
+     * never lands inside text still being typed.
+     *
+     * @return false if text was queued and {@code text} was not printed
+     */
+    public boolean printIfIdle(String text) {
+        lock.lock();
+        try {
+            if (size > 0) {
+                return false;
+            }
+            out.print(text);
+            out.flush();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int pending() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isAnimating() {
+        return animate && delayMillis > 0;
+    }
+
+    private void signalQueued() {
+        lock.lock();
+        try {
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void startRenderThread() {
+        if (renderThread == null) {
+            renderThread = new Thread(this::render, "console-renderer");
+            renderThread.setDaemon(true);
+            renderThread.start();
+        }
+    }
+
+    // Called with the lock held; printing under the lock keeps skip() and direct writes in order
+    private void printQueued(int count) {
+        if (count <= 0) {
+            return;
+        }
+        // Never split an ANSI escape sequence across frames
+        while (count < size && isInEscape(count)) {
+            count++;
+        }
+        StringBuilder batch = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            batch.append(ring[(head + i) % ring.length]);
+        }
+        head = (head + count) % ring.length;
+        size -= count;
+        out.print(batch);
+        out.flush();
+        if (size == 0) {
+            drained.signalAll();
+        }
+    }
+
+    // True if the character before position count opens or continues an unfinished escape sequence
+    private boolean isInEscape(int count) {
+        for (int i = count - 1; i >= 0 && count - i <= 16; i--) {
+            char c = ring[(head + i) % ring.length];
+            if (c == '\033') {
+                return true;
+            }
+            if (Character.isLetter(c) || c == '\n') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void render() {
+        lock.lock();
+        try {
+            while (true) {
+                while (size == 0) {
+                    queued.await();
+                }
+                int delay = delayMillis;
+                if (!isAnimating()) {
+                    printQueued(size);
+                    continue;
+                }
+                // A frame is at least FRAME_MILLIS; fast speeds print several characters per frame
+                long frameMillis = Math.max(FRAME_MILLIS, delay);
+                int perFrame = (int) Math.max(1, frameMillis / delay);
+                printQueued(Math.min(perFrame, size));
+                // New writes do not shorten the frame; a skip or a speed change does
+                long remaining = TimeUnit.MILLISECONDS.toNanos(frameMillis);
+                while (remaining > 0 && size > 0 && delayMillis == delay) {
+                    remaining = queued.awaitNanos(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
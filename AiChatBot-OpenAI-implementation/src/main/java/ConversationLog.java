@@ -0,0 +1,952 @@
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * An append-only log of chat turns, kept as numbered segment files in one
+ * directory.
+ *
+ * Each record is one JSON line: sequence number, timestamp, user, question,
+ * answer, run ID, latency and route. Records go to the newest segment, which
+ * is rolled once it reaches the segment size, and are committed in groups
+ * like {@link HistoryWriter}'s lines. A rolled segment gets an index file
+ * whose first line summarizes it (time and sequence range, and the users
+ * with records in it) and whose second line locates its records: a sparse
+ * index of timestamps and sequence numbers, one entry per block of
+ * {@link #INDEX_INTERVAL} records, and the blocks holding each user's
+ * records. Only the summaries are read at open and kept in memory; the
+ * rest of an index is read when a scan needs to seek inside its segment.
+ * Scans skip the segments that cannot match and seek straight to the
+ * blocks that can, so a scan, and opening the log, cost about as much as
+ * the slice read, however long the log grows.
+ *
+ * Every launch starts a segment of its own; a background compaction merges
+ * runs of small segments and drops segments past the retention period.
+ * Segment numbers, compaction and crash recovery all assume one writer, so
+ * a log holds an exclusive lock on its directory while open, and a second
+ * log on the same directory, in this process or another, fails to open.
+ */
+public class ConversationLog implements AutoCloseable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 4L * 1024 * 1024;
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = HistoryWriter.DEFAULT_COMMIT_INTERVAL_MILLIS;
+    public static final long DEFAULT_COMPACTION_INTERVAL_MILLIS = 10 * 60 * 1000L;
+    public static final long KEEP_FOREVER = 0;
+    public static final int INDEX_INTERVAL = 64;
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String LOCK_FILE = ".lock";
+
+    /**
+     * One turn. {@code user}, {@code answer}, {@code runId} and {@code route}
+     * may be null: the answer when the turn failed, the run ID when no run
+     * was needed.
+     */
+    public record Record(long seq, long timestamp, String user, String question, String answer,
+            String runId, long latencyMillis, String route) {
+
+        JSONObject toJson() {
+            return new JSONObject()
+                    .put("seq", seq)
+                    .put("ts", timestamp)
+                    .put("user", user)
+                    .put("question", question)
+                    .put("answer", answer)
+                    .put("run_id", runId)
+                    .put("latency_ms", latencyMillis)
+                    .put("route", route);
+        }
+
+        static Record fromJson(JSONObject json) {
+            return new Record(json.getLong("seq"), json.getLong("ts"), json.optString("user", null),
+                    json.getString("question"), json.optString("answer", null), json.optString("run_id", null),
+                    json.optLong("latency_ms"), json.optString("route", null));
+        }
+    }
+
+    @FunctionalInterface
+    private interface LineHandler {
+        /**
+         * @return false to stop reading
+         */
+        boolean accept(long offset, int length, String line);
+    }
+
+    // The numbers of the blocks holding one user's records in a segment, in order
+    private static final class Blocks {
+        int[] values = new int[4];
+        int size;
+
+        void add(int block) {
+            if (size > 0 && values[size - 1] == block) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = block;
+        }
+    }
+
+    // Where a segment's records are: the second line of its index
+    private static final class Detail {
+        // {timestamp, seq, offset} of the first record of each block of INDEX_INTERVAL records
+        final List<long[]> sparse = new ArrayList<>();
+        final Map<String, Blocks> users = new HashMap<>();
+
+        // Timestamps and sequence numbers never go backwards, so every record whose field is at
+        // least key lies past the last sparse entry whose field is below it
+        long startOffset(int field, long key) {
+            int low = 0;
+            int high = sparse.size() - 1;
+            long offset = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (sparse.get(middle)[field] < key) {
+                    offset = sparse.get(middle)[2];
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return offset;
+        }
+    }
+
+    // A segment file and the summary of its index; guarded by lock, and immutable once sealed.
+    // The detail is kept only while the segment is written, or when its index could not be
+    private static final class Segment {
+        final long baseSeq;
+        final File file;
+        long lastSeq;
+        long bytes;
+        int count;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        final Set<String> users = new HashSet<>();
+        Detail detail;
+        boolean sealed;
+
+        Segment(long baseSeq, File file) {
+            this.baseSeq = baseSeq;
+            this.file = file;
+            this.lastSeq = baseSeq - 1;
+        }
+
+        // Only for a segment whose detail is in memory
+        void add(Record record, long offset, int length) {
+            if (count % INDEX_INTERVAL == 0) {
+                detail.sparse.add(new long[] {record.timestamp(), record.seq(), offset});
+            }
+            detail.users.computeIfAbsent(userKey(record.user()), key -> new Blocks()).add(count / INDEX_INTERVAL);
+            users.add(userKey(record.user()));
+            lastSeq = record.seq();
+            bytes = offset + length;
+            count++;
+            minTime = Math.min(minTime, record.timestamp());
+            maxTime = Math.max(maxTime, record.timestamp());
+        }
+
+        boolean overlaps(long fromMillis, long toMillis) {
+            return count > 0 && maxTime >= fromMillis && minTime <= toMillis;
+        }
+    }
+
+    // Which parts of a segment a scan reads; calls detail only when it must seek inside it
+    @FunctionalInterface
+    private interface Slicer {
+        List<Range> slice(Segment segment, DetailSource detail) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface DetailSource {
+        Detail get() throws IOException;
+    }
+
+    private record Range(File file, long start, long end) {
+    }
+
+    private static final int TIME = 0;
+    private static final int SEQ = 1;
+
+    private final File directory;
+    private final long segmentBytes;
+    private final long retentionMillis;
+    // Guards the segment list, the active segment and its stream
+    private final ReentrantLock lock = new ReentrantLock();
+    // Scans read files under the read lock; compaction replaces and deletes them under the write lock
+    private final ReentrantReadWriteLock files = new ReentrantReadWriteLock();
+    private final ReentrantLock compaction = new ReentrantLock();
+    private final List<Segment> segments = new ArrayList<>();
+    private final FileChannel lockChannel;
+    private final ExecutorService background;
+    // Set once by open, before the log is handed out
+    private ScheduledFuture<?> commitTask;
+    private ScheduledFuture<?> compactionTask;
+    private Segment active;
+    private FileOutputStream activeStream;
+    private BufferedOutputStream activeOut;
+    private long nextSeq = 1;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private boolean dirty;
+    private boolean closed;
+    private volatile Consumer<Record> appendListener;
+
+    /**
+     * Opens the log in {@code directory}, creating it if needed. A segment
+     * without a current index (the last one after a crash) is reread, and a
+     * record cut short is dropped.
+     *
+     * @param retentionMillis how long records are kept, or {@link #KEEP_FOREVER}
+     * @throws IOException also when another log has the directory open
+     */
+    public static ConversationLog open(File directory, long segmentBytes, long retentionMillis,
+            long commitIntervalMillis, long compactionIntervalMillis) throws IOException {
+        if (commitIntervalMillis <= 0 || compactionIntervalMillis <= 0) {
+            throw new IllegalArgumentException("The commit and compaction intervals must be positive");
+        }
+        ConversationLog log = new ConversationLog(directory, segmentBytes, retentionMillis);
+        // The scheduler only triggers; the file work runs on the log's own thread
+        log.commitTask = SharedScheduler.every(commitIntervalMillis, () -> log.background.execute(log::commit));
+        log.compactionTask = SharedScheduler.every(compactionIntervalMillis, () -> log.background.execute(log::compact));
+        return log;
+    }
+
+    // Timers start in open, once the log is fully built
+    private ConversationLog(File directory, long segmentBytes, long retentionMillis) throws IOException {
+        if (segmentBytes <= 0 || retentionMillis < 0) {
+            throw new IllegalArgumentException("segmentBytes must be positive and retentionMillis must not be negative");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retentionMillis = retentionMillis;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.lockChannel = lockDirectory(directory);
+        try {
+            loadSegments();
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        }
+
+        this.background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversation-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A log with the default segment size and intervals that commits and
+     * closes when the JVM exits.
+     */
+    public static ConversationLog closedOnExit(File directory, long retentionMillis) throws IOException {
+        ConversationLog log = open(directory, DEFAULT_SEGMENT_BYTES, retentionMillis,
+                DEFAULT_COMMIT_INTERVAL_MILLIS, DEFAULT_COMPACTION_INTERVAL_MILLIS);
+        Runtime.getRuntime().addShutdownHook(new Thread(log::close, "conversation-log-close"));
+        return log;
+    }
+
+    /**
+     * Appends a turn that finished now.
+     *
+     * @return the record as written, or null if the log is closed or the
+     *         write failed
+     */
+    public Record append(String user, String question, String answer, String runId, long latencyMillis, String route) {
+        return append(System.currentTimeMillis(), user, question, answer, runId, latencyMillis, route);
+    }
+
+    /**
+     * Appends a turn with its own timestamp, e.g. one imported from an older
+     * history. A timestamp earlier than the last record's is moved up to it,
+     * since the time index relies on order.
+     */
+    Record append(long timestamp, String user, String question, String answer, String runId, long latencyMillis, String route) {
+        lock.lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            long time = Math.max(timestamp, lastTimestamp);
+            Record record = new Record(nextSeq, time, user, question, answer, runId, latencyMillis, route);
+            byte[] line = (record.toJson().toString() + "\n").getBytes(StandardCharsets.UTF_8);
+            if (active != null && active.bytes > 0 && active.bytes + line.length > segmentBytes) {
+                roll();
+            }
+            if (active == null) {
+                openActive();
+            }
+            long offset = active.bytes;
+            try {
+                activeOut.write(line);
+            } catch (IOException e) {
+                // Sealed with what was indexed; the partial line is dropped when the log is next opened
+                roll();
+                throw e;
+            }
+            active.add(record, offset, line.length);
+            nextSeq++;
+            lastTimestamp = time;
+            dirty = true;
+            Consumer<Record> listener = appendListener;
+            if (listener != null) {
+                listener.accept(record);
+            }
+            return record;
+        } catch (IOException e) {
+            System.out.println("Failed to append to conversation log: " + e.getMessage());
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits every record appended so far.
+     *
+     * @return false if the commit failed
+     */
+    public boolean flush() {
+        return commit();
+    }
+
+    /**
+     * Calls {@code action} for every record from {@code fromMillis} to
+     * {@code toMillis}, both inclusive, in order.
+     *
+     * @return the number of records passed to {@code action}, or -1 if the
+     *         log could not be read
+     */
+    public long scan(long fromMillis, long toMillis, Consumer<Record> action) {
+        return scanRanges(
+                (segment, detail) -> !segment.overlaps(fromMillis, toMillis) ? List.of()
+                        : whole(segment, fromMillis <= segment.minTime ? 0 : detail.get().startOffset(TIME, fromMillis)),
+                record -> record.timestamp() < fromMillis,
+                record -> record.timestamp() > toMillis,
+                action);
+    }
+
+    /**
+     * Calls {@code action} for every record after sequence number
+     * {@code seq}, in order, reading only the segments that hold them.
+     *
+     * @return the number of records passed to {@code action}, or -1 if the
+     *         log could not be read
+     */
+    public long scanAfter(long seq, Consumer<Record> action) {
+        return scanRanges(
+                (segment, detail) -> segment.count == 0 || segment.lastSeq <= seq ? List.of()
+                        : whole(segment, seq < segment.baseSeq ? 0 : detail.get().startOffset(SEQ, seq + 1)),
+                record -> record.seq() <= seq,
+                record -> false,
+                action);
+    }
+
+    /**
+     * Calls {@code action} for every record of {@code user} (null for
+     * records without a user) from {@code fromMillis} to {@code toMillis}, in
+     * order. Only the blocks holding that user's records are read.
+     *
+     * @return the number of records passed to {@code action}, or -1 if the
+     *         log could not be read
+     */
+    public long scanUser(String user, long fromMillis, long toMillis, Consumer<Record> action) {
+        String key = userKey(user);
+        return scanRanges(
+                (segment, detail) -> segment.users.contains(key) && segment.overlaps(fromMillis, toMillis)
+                        ? blocks(segment, detail.get(), key) : List.of(),
+                record -> record.timestamp() < fromMillis || !userKey(record.user()).equals(key),
+                record -> record.timestamp() > toMillis,
+                action);
+    }
+
+    private static List<Range> whole(Segment segment, long start) {
+        return List.of(new Range(segment.file, start, segment.bytes));
+    }
+
+    // The user's blocks, adjacent ones read as one range
+    private static List<Range> blocks(Segment segment, Detail detail, String user) {
+        Blocks found = detail.users.get(user);
+        List<Range> ranges = new ArrayList<>();
+        for (int i = 0; found != null && i < found.size; i++) {
+            int block = found.values[i];
+            long start = detail.sparse.get(block)[2];
+            long end = block + 1 < detail.sparse.size() ? detail.sparse.get(block + 1)[2] : segment.bytes;
+            Range last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last.end() == start) {
+                ranges.set(ranges.size() - 1, new Range(segment.file, last.start(), end));
+            } else {
+                ranges.add(new Range(segment.file, start, end));
+            }
+        }
+        return ranges;
+    }
+
+    // Reads the ranges slicer picks from each segment, passing on the records from the first that
+    // is not before the slice to the first that is after it. A segment whose detail is in memory is
+    // sliced under the lock; the others are sealed, so their index is read after it is released
+    private long scanRanges(Slicer slicer, Predicate<Record> before, Predicate<Record> after, Consumer<Record> action) {
+        files.readLock().lock();
+        try {
+            List<Segment> touched = new ArrayList<>();
+            List<List<Range>> sliced = new ArrayList<>();
+            lock.lock();
+            try {
+                flushActive();
+                for (Segment segment : segments) {
+                    touched.add(segment);
+                    Detail detail = segment.detail;
+                    sliced.add(detail == null ? null : slicer.slice(segment, () -> detail));
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            long[] matched = {0};
+            for (int i = 0; i < touched.size(); i++) {
+                Segment segment = touched.get(i);
+                List<Range> ranges = sliced.get(i) != null ? sliced.get(i) : slicer.slice(segment, () -> readDetail(segment));
+                for (Range range : ranges) {
+                    readLines(range.file(), range.start(), range.end(), (offset, length, line) -> {
+                        Record record = parse(line);
+                        if (record == null || before.test(record)) {
+                            return true;
+                        }
+                        if (after.test(record)) {
+                            return false;
+                        }
+                        action.accept(record);
+                        matched[0]++;
+                        return true;
+                    });
+                }
+            }
+            return matched[0];
+        } catch (IOException | JSONException e) {
+            System.out.println("Failed to scan conversation log: " + e.getMessage());
+            return -1;
+        } finally {
+            files.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops segments past the retention period and merges each run of
+     * adjacent segments that together fit in one. Runs in the background;
+     * callable directly.
+     */
+    public void compact() {
+        compaction.lock();
+        try {
+            dropExpired();
+            for (List<Segment> run : mergeableRuns()) {
+                merge(run);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to compact conversation log: " + e.getMessage());
+        } finally {
+            compaction.unlock();
+        }
+    }
+
+    /**
+     * Commits the remaining records and seals the current segment. Safe to
+     * call more than once.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        commitTask.cancel(false);
+        compactionTask.cancel(false);
+        background.shutdown();
+        try {
+            background.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            roll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            lockChannel.close(); // releases the directory
+        } catch (IOException e) {
+            System.out.println("Failed to unlock conversation log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Calls {@code listener} with each record appended from now on, in
+     * sequence order. It runs while other appends wait, so it must be quick.
+     */
+    public void setAppendListener(Consumer<Record> listener) {
+        this.appendListener = listener;
+    }
+
+    /**
+     * The sequence number of the newest record, or 0 if there has been none.
+     */
+    public long getLastSeq() {
+        lock.lock();
+        try {
+            return nextSeq - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return nextSeq == firstSeq();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    private long firstSeq() {
+        return segments.isEmpty() ? nextSeq : segments.get(0).baseSeq;
+    }
+
+    private boolean commit() {
+        lock.lock();
+        try {
+            if (!dirty || activeOut == null) {
+                return true;
+            }
+            activeOut.flush();
+            activeStream.getChannel().force(false);
+            dirty = false;
+            return true;
+        } catch (IOException e) {
+            System.out.println("Failed to commit conversation log: " + e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Scans read the file, so what is still buffered must reach it first; called under lock
+    private void flushActive() throws IOException {
+        if (activeOut != null) {
+            activeOut.flush();
+        }
+    }
+
+    // Called under lock
+    private void openActive() throws IOException {
+        Segment segment = new Segment(nextSeq, segmentFile(nextSeq));
+        segment.detail = new Detail();
+        activeStream = new FileOutputStream(segment.file, false);
+        activeOut = new BufferedOutputStream(activeStream);
+        active = segment;
+        segments.add(segment);
+    }
+
+    // Commits and seals the active segment; called under lock
+    private void roll() {
+        if (active == null) {
+            return;
+        }
+        Segment segment = active;
+        active = null;
+        try {
+            activeOut.flush();
+            activeStream.getChannel().force(false);
+        } catch (IOException e) {
+            System.out.println("Failed to commit conversation log: " + e.getMessage());
+        } finally {
+            try {
+                activeOut.close();
+            } catch (IOException e) {
+                // Already reported
+            }
+            activeOut = null;
+            activeStream = null;
+            dirty = false;
+        }
+        segment.sealed = true;
+        try {
+            writeIndex(segment);
+            segment.detail = null;
+        } catch (IOException e) {
+            // Scans keep the detail in memory; the segment is reread when the log is next opened
+            System.out.println("Failed to write conversation log index: " + e.getMessage());
+        }
+    }
+
+    // Held until the channel is closed; the operating system drops it if the process dies
+    private static FileChannel lockDirectory(File directory) throws IOException {
+        FileChannel channel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock held;
+        try {
+            held = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            held = null; // open elsewhere in this process
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (held == null) {
+            channel.close();
+            throw new IOException(directory + " is in use by another conversation log");
+        }
+        return channel;
+    }
+
+    private void loadSegments() throws IOException {
+        File[] found = directory.listFiles();
+        List<Long> bases = new ArrayList<>();
+        for (File file : found == null ? new File[0] : found) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                Files.deleteIfExists(file.toPath()); // an interrupted compaction or index write
+            } else if (name.endsWith(LOG_SUFFIX)) {
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+        bases.sort(null);
+
+        for (long base : bases) {
+            if (!segments.isEmpty() && base <= segments.get(segments.size() - 1).lastSeq) {
+                // Already merged into the previous segment by a compaction that stopped before deleting it
+                deleteSegmentFiles(base);
+                continue;
+            }
+            Segment segment = loadSegment(base, segmentFile(base));
+            if (segment.count == 0) {
+                deleteSegmentFiles(base);
+                continue;
+            }
+            segments.add(segment);
+            nextSeq = segment.lastSeq + 1;
+            lastTimestamp = Math.max(lastTimestamp, segment.maxTime);
+        }
+    }
+
+    // Reads the summary line of the segment's index, or rebuilds the index from the segment when it
+    // is missing, stale or in an older format
+    private Segment loadSegment(long base, File file) throws IOException {
+        File indexFile = indexFile(base);
+        if (indexFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                String summary = reader.readLine();
+                if (summary != null) {
+                    JSONObject index = new JSONObject(summary);
+                    if (index.getLong("bytes") == file.length()) {
+                        return fromSummary(base, file, index);
+                    }
+                }
+            } catch (JSONException e) {
+                // Rebuilt below
+            }
+        }
+
+        Segment segment = rebuild(base, file, file);
+        if (segment.count > 0) {
+            writeIndex(segment);
+            segment.detail = null;
+        }
+        return segment;
+    }
+
+    // The second line of a sealed segment's index, read for one scan and not kept
+    private Detail readDetail(Segment segment) throws IOException {
+        List<String> lines = Files.readAllLines(indexFile(segment.baseSeq).toPath(), StandardCharsets.UTF_8);
+        if (lines.size() < 2) {
+            throw new IOException(indexFile(segment.baseSeq).getName() + " is incomplete");
+        }
+        JSONObject index = new JSONObject(lines.get(1));
+        Detail detail = new Detail();
+        JSONArray sparse = index.getJSONArray("sparse");
+        for (int i = 0; i < sparse.length(); i++) {
+            JSONArray entry = sparse.getJSONArray(i);
+            detail.sparse.add(new long[] {entry.getLong(0), entry.getLong(1), entry.getLong(2)});
+        }
+        JSONObject users = index.getJSONObject("users");
+        for (String user : users.keySet()) {
+            JSONArray numbers = users.getJSONArray(user);
+            Blocks blocks = new Blocks();
+            for (int i = 0; i < numbers.length(); i++) {
+                blocks.add(numbers.getInt(i));
+            }
+            detail.users.put(user, blocks);
+        }
+        return detail;
+    }
+
+    /**
+     * Indexes the records in {@code source}, dropping a record cut short at
+     * its end, for a segment that will live at {@code file}.
+     */
+    private Segment rebuild(long base, File source, File file) throws IOException {
+        Segment segment = new Segment(base, file);
+        segment.detail = new Detail();
+        long end = readLines(source, 0, source.length(), (offset, length, line) -> {
+            Record record = parse(line);
+            if (record != null && record.seq() > segment.lastSeq) {
+                segment.add(record, offset, length);
+            }
+            return true;
+        });
+        if (end < source.length()) {
+            try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+        segment.bytes = end;
+        segment.sealed = true;
+        return segment;
+    }
+
+    private static Segment fromSummary(long base, File file, JSONObject index) {
+        Segment segment = new Segment(base, file);
+        segment.lastSeq = index.getLong("last_seq");
+        segment.bytes = index.getLong("bytes");
+        segment.count = index.getInt("count");
+        segment.minTime = index.getLong("min_ts");
+        segment.maxTime = index.getLong("max_ts");
+        JSONArray users = index.getJSONArray("users");
+        for (int i = 0; i < users.length(); i++) {
+            segment.users.add(users.getString(i));
+        }
+        segment.sealed = true;
+        return segment;
+    }
+
+    // Called with the segment's detail in memory
+    private void writeIndex(Segment segment) throws IOException {
+        JSONObject summary = new JSONObject()
+                .put("base_seq", segment.baseSeq)
+                .put("last_seq", segment.lastSeq)
+                .put("bytes", segment.bytes)
+                .put("count", segment.count)
+                .put("min_ts", segment.minTime)
+                .put("max_ts", segment.maxTime)
+                .put("users", new JSONArray(segment.users));
+        JSONArray sparse = new JSONArray();
+        for (long[] entry : segment.detail.sparse) {
+            sparse.put(new JSONArray().put(entry[0]).put(entry[1]).put(entry[2]));
+        }
+        JSONObject users = new JSONObject();
+        for (Map.Entry<String, Blocks> entry : segment.detail.users.entrySet()) {
+            JSONArray numbers = new JSONArray();
+            for (int i = 0; i < entry.getValue().size; i++) {
+                numbers.put(entry.getValue().values[i]);
+            }
+            users.put(entry.getKey(), numbers);
+        }
+        JSONObject detail = new JSONObject()
+                .put("sparse", sparse)
+                .put("users", users);
+        File target = indexFile(segment.baseSeq);
+        File temp = new File(directory, target.getName() + TEMP_SUFFIX);
+        Files.writeString(temp.toPath(), summary + "\n" + detail + "\n", StandardCharsets.UTF_8);
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void dropExpired() throws IOException {
+        if (retentionMillis == KEEP_FOREVER) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        files.writeLock().lock();
+        lock.lock();
+        try {
+            while (!segments.isEmpty() && segments.get(0).sealed && segments.get(0).maxTime < cutoff) {
+                deleteSegmentFiles(segments.remove(0).baseSeq);
+            }
+        } finally {
+            lock.unlock();
+            files.writeLock().unlock();
+        }
+    }
+
+    // Runs of two or more adjacent sealed segments whose records fit in one segment
+    private List<List<Segment>> mergeableRuns() {
+        List<List<Segment>> runs = new ArrayList<>();
+        lock.lock();
+        try {
+            List<Segment> run = new ArrayList<>();
+            long runBytes = 0;
+            for (Segment segment : segments) {
+                if (!segment.sealed || runBytes + segment.bytes > segmentBytes) {
+                    if (run.size() > 1) {
+                        runs.add(run);
+                    }
+                    run = new ArrayList<>();
+                    runBytes = 0;
+                }
+                if (segment.sealed && segment.bytes <= segmentBytes) {
+                    run.add(segment);
+                    runBytes += segment.bytes;
+                }
+            }
+            if (run.size() > 1) {
+                runs.add(run);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return runs;
+    }
+
+    // Sealed segments never change, so they are copied without holding a lock; only the swap is locked
+    private void merge(List<Segment> run) throws IOException {
+        Segment first = run.get(0);
+        File temp = new File(directory, first.file.getName() + TEMP_SUFFIX);
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Segment segment : run) {
+                try (FileChannel in = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)) {
+                    long copied = 0;
+                    while (copied < segment.bytes) {
+                        copied += in.transferTo(copied, segment.bytes - copied, out);
+                    }
+                }
+            }
+            out.force(false);
+        }
+        Segment merged = rebuild(first.baseSeq, temp, first.file);
+
+        files.writeLock().lock();
+        lock.lock();
+        try {
+            // A crash from here on leaves the merged file in place and the rest for loadSegments to delete
+            Files.move(temp.toPath(), first.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeIndex(merged);
+            merged.detail = null;
+            for (Segment segment : run.subList(1, run.size())) {
+                deleteSegmentFiles(segment.baseSeq);
+            }
+            int position = segments.indexOf(first);
+            segments.removeAll(run);
+            segments.add(position, merged);
+        } finally {
+            lock.unlock();
+            files.writeLock().unlock();
+        }
+    }
+
+    private void deleteSegmentFiles(long base) throws IOException {
+        Files.deleteIfExists(segmentFile(base).toPath());
+        Files.deleteIfExists(indexFile(base).toPath());
+    }
+
+    private File segmentFile(long base) {
+        return new File(directory, String.format("%020d", base) + LOG_SUFFIX);
+    }
+
+    private File indexFile(long base) {
+        return new File(directory, String.format("%020d", base) + INDEX_SUFFIX);
+    }
+
+    private static String userKey(String user) {
+        return user == null ? "" : user;
+    }
+
+    private static Record parse(String line) {
+        try {
+            return Record.fromJson(new JSONObject(line));
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the complete lines between {@code start} and {@code end}.
+     *
+     * @return the offset just past the last complete line read
+     */
+    private static long readLines(File file, long start, long end, LineHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.position(start);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long lineStart = start;
+            long position = start;
+            int next;
+            while (position < end && (next = in.read()) != -1) {
+                position++;
+                if (next != '\n') {
+                    line.write(next);
+                    continue;
+                }
+                boolean more = handler.accept(lineStart, (int) (position - lineStart), line.toString(StandardCharsets.UTF_8));
+                line.reset();
+                lineStart = position;
+                if (!more) {
+                    break;
+                }
+            }
+            return lineStart;
+        }
+    }
+}
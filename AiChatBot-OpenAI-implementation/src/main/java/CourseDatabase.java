@@ -0,0 +1,484 @@
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONObject;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Local SQLite copy of acu_database.txt and the student profile in
+ * user_info.txt.
+ *
+ * The text dump is imported once into a WAL-mode database with one table per
+ * dump table, so lookups and reports can use indexed SQL instead of parsing
+ * the file again. Imports run in a single transaction using batched prepared
+ * statements. Queries go through a small pool of read-only connections, which
+ * WAL mode lets run alongside a writer.
+ */
+public class CourseDatabase implements AutoCloseable {
+
+    // Course codes appear as "CS375" and "PSYC 370" in the dump
+    private static final String CODE = "([A-Za-z]+ ?\\d+[A-Za-z]?)";
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final Map<String, TableSpec> TABLES = new LinkedHashMap<>();
+
+    static {
+        table("prereq", "course TEXT, prereq TEXT", CODE + " " + CODE, new int[]{0, 1}, "course", "prereq");
+        table("and_prereq", "course TEXT, prereq TEXT", CODE + " " + CODE, new int[]{0, 1}, "course", "prereq");
+        table("or_prereq", "course TEXT, prereq TEXT", CODE + " " + CODE, new int[]{0, 1}, "course", "prereq");
+        table("coreq", "course TEXT, prereq TEXT", CODE + " " + CODE, new int[]{0, 1}, "course");
+        table("section_course", "courseID TEXT, sectionID TEXT", "(\\S+) (\\S+)", new int[]{0}, "courseID", "sectionID");
+        table("college", "id TEXT, name TEXT", "(\\S+) (.+)", new int[]{}, "id");
+        table("student", "id INTEGER, firstname TEXT, lastname TEXT", "(\\S+) (\\S+) (\\S+)", new int[]{}, "id");
+        table("department", "id TEXT, name TEXT, collegeID TEXT", "(\\S+) (.+) (\\S+)", new int[]{}, "id");
+        table("course", "id TEXT, department TEXT, title TEXT, num TEXT, hrs INTEGER",
+                "(\\S+) (\\S+) (.+) (\\S+) (\\S+)", new int[]{0}, "id", "department", "title");
+        table("major", "id TEXT, title TEXT, deptID TEXT, reqtext TEXT, hrs INTEGER, gpa REAL",
+                "(\\S+) (.+?) ([A-Z]{2,}) (.+) (\\d+) ([\\d.]+)", new int[]{}, "id");
+        table("teachers", "id INTEGER, firstname TEXT, lastname TEXT, departmentID TEXT, adjunct INTEGER",
+                "(\\S+) (\\S+) (.+) (\\S+) (\\S+)", new int[]{}, "id", "departmentID");
+        table("section", "crn TEXT, max INTEGER, room TEXT, courseID TEXT, term TEXT, startdate TEXT, enddate TEXT, days TEXT",
+                "(\\S+) (.+) " + CODE + " ([A-Za-z]+ \\d{4}) (\\d{4}-\\d{2}-\\d{2}) (\\d{4}-\\d{2}-\\d{2}) (\\S+)",
+                new int[]{2}, "crn", "courseID", "term");
+        table("student_section", "studentID INTEGER, sectionID TEXT, grade TEXT", "(\\S+) (\\S+) (\\S+)", new int[]{},
+                "studentID", "sectionID");
+        table("major_class", "majorID TEXT, classID TEXT", "(\\S+) (\\S+)", new int[]{1}, "majorID");
+        table("student_major", "studentID INTEGER, major TEXT", "(\\S+) (\\S+)", new int[]{}, "studentID", "major");
+        table("concentration", "id TEXT, major TEXT, title TEXT, reqtext TEXT",
+                "(\\S+) (\\S+) (.+?) ((?:Minimum|Two) .*)", new int[]{}, "id", "major");
+    }
+
+    private final String url;
+    private final BlockingQueue<Connection> readPool;
+    private final int readPoolSize;
+    private final AtomicInteger openedReaders = new AtomicInteger();
+    private volatile boolean closed;
+
+    private CourseDatabase(File dbFile, int readPoolSize) {
+        this.url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        this.readPoolSize = Math.max(1, readPoolSize);
+        this.readPool = new ArrayBlockingQueue<>(this.readPoolSize);
+    }
+
+    /**
+     * Opens (or creates) the database file. Read connections are opened lazily
+     * up to {@code readPoolSize}.
+     *
+     * @param dbFile SQLite file to use
+     * @param readPoolSize maximum number of pooled read-only connections
+     * @return the database, or null if the file could not be opened
+     */
+    public static CourseDatabase open(File dbFile, int readPoolSize) {
+        CourseDatabase db = new CourseDatabase(dbFile, readPoolSize);
+        try (Connection con = db.openWriter()) {
+            try (Statement st = con.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS import_meta (source TEXT PRIMARY KEY, size INTEGER, modified INTEGER)");
+            }
+            con.commit();
+            return db;
+        } catch (SQLException e) {
+            System.out.println("Failed to open course database: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * Import Methods
+     */
+
+    /**
+     * Re-imports only when either source file changed since the last import.
+     */
+    public boolean importIfStale(File acuDatabase, File userInfo) {
+        if (!isStale(acuDatabase) && !isStale(userInfo)) {
+            return true;
+        }
+        return importAll(acuDatabase, userInfo);
+    }
+
+    /**
+     * Replaces every table with the contents of the two source files inside
+     * one transaction. Readers keep seeing the previous data until commit.
+     *
+     * @return true if the import committed
+     */
+    public boolean importAll(File acuDatabase, File userInfo) {
+        try (Connection con = openWriter()) {
+            try {
+                try (Statement st = con.createStatement()) {
+                    for (Map.Entry<String, TableSpec> entry : TABLES.entrySet()) {
+                        st.execute("DROP TABLE IF EXISTS " + entry.getKey());
+                        st.execute("CREATE TABLE " + entry.getKey() + " (" + entry.getValue().columns + ")");
+                    }
+                    st.execute("DROP TABLE IF EXISTS student_profile");
+                    st.execute("CREATE TABLE student_profile (field TEXT PRIMARY KEY, value TEXT)");
+                    st.execute("DROP TABLE IF EXISTS student_required_course");
+                    st.execute("CREATE TABLE student_required_course (course TEXT, hrs INTEGER)");
+                }
+
+                int rows = importDump(con, acuDatabase) + importProfile(con, userInfo);
+
+                // Indexes are cheaper to build once after the bulk load
+                try (Statement st = con.createStatement()) {
+                    for (Map.Entry<String, TableSpec> entry : TABLES.entrySet()) {
+                        for (String column : entry.getValue().indexed) {
+                            st.execute("CREATE INDEX IF NOT EXISTS idx_" + entry.getKey() + "_" + column
+                                    + " ON " + entry.getKey() + " (" + column + ")");
+                        }
+                    }
+                    st.execute("CREATE INDEX IF NOT EXISTS idx_course_title ON course (title COLLATE NOCASE)");
+                }
+                recordSource(con, acuDatabase);
+                recordSource(con, userInfo);
+                con.commit();
+                System.out.println("Imported " + rows + " rows into " + url);
+                return true;
+            } catch (SQLException | IOException e) {
+                con.rollback();
+                System.out.println("Failed to import course database: " + e.getMessage());
+                return false;
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to import course database: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private int importDump(Connection con, File acuDatabase) throws IOException, SQLException {
+        int imported = 0;
+        TableSpec spec = null;
+        PreparedStatement insert = null;
+        int pending = 0;
+        boolean expectHeader = false;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(acuDatabase), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("Table:")) {
+                    if (insert != null) {
+                        insert.executeBatch();
+                        insert.close();
+                        insert = null;
+                    }
+                    pending = 0;
+                    spec = TABLES.get(line.substring("Table:".length()).trim());
+                    if (spec == null) {
+                        System.out.println("Skipping unknown table: " + line);
+                    } else {
+                        insert = con.prepareStatement(spec.insertSql());
+                    }
+                    expectHeader = true;
+                    continue;
+                }
+                if (expectHeader) {
+                    expectHeader = false;
+                    continue;
+                }
+                if (spec == null) {
+                    continue;
+                }
+
+                String[] values = spec.parse(line);
+                if (values == null) {
+                    System.out.println("Skipping malformed row in " + spec.name + ": " + line);
+                    continue;
+                }
+                for (int i = 0; i < values.length; i++) {
+                    insert.setString(i + 1, values[i]);
+                }
+                insert.addBatch();
+                imported++;
+                if (++pending == BATCH_SIZE) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (insert != null) {
+                insert.executeBatch();
+            }
+        } finally {
+            if (insert != null) {
+                insert.close();
+            }
+        }
+        return imported;
+    }
+
+    private int importProfile(Connection con, File userInfo) throws IOException, SQLException {
+        if (userInfo == null || !userInfo.exists()) {
+            return 0;
+        }
+        int imported = 0;
+        boolean inRequiredCourses = false;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(userInfo), StandardCharsets.UTF_8));
+                PreparedStatement profile = con.prepareStatement("INSERT OR REPLACE INTO student_profile (field, value) VALUES (?, ?)");
+                PreparedStatement required = con.prepareStatement("INSERT INTO student_required_course (course, hrs) VALUES (?, ?)")) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty()) {
+                    inRequiredCourses = false;
+                    continue;
+                }
+                if (line.startsWith("Major Classes Required")) {
+                    inRequiredCourses = true;
+                    continue;
+                }
+                if (inRequiredCourses) {
+                    // Lines such as "MATH186,3"; anything else (e.g. login credentials) is not profile data
+                    String[] parts = line.split(",");
+                    if (parts.length == 2 && parts[0].trim().matches(CODE) && parts[1].trim().matches("\\d+")) {
+                        required.setString(1, normalizeCode(parts[0]));
+                        required.setString(2, parts[1].trim());
+                        required.addBatch();
+                        imported++;
+                    }
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    profile.setString(1, line.substring(0, colon).trim());
+                    profile.setString(2, line.substring(colon + 1).trim());
+                    profile.addBatch();
+                    imported++;
+                }
+            }
+            profile.executeBatch();
+            required.executeBatch();
+        }
+        return imported;
+    }
+
+    private boolean isStale(File source) {
+        if (source == null || !source.exists()) {
+            return false;
+        }
+        List<JSONObject> rows = query("SELECT size, modified FROM import_meta WHERE source = ?", source.getName());
+        if (rows == null || rows.isEmpty()) {
+            return true;
+        }
+        JSONObject row = rows.get(0);
+        return row.getLong("size") != source.length() || row.getLong("modified") != source.lastModified();
+    }
+
+    private void recordSource(Connection con, File source) throws SQLException {
+        if (source == null || !source.exists()) {
+            return;
+        }
+        try (PreparedStatement st = con.prepareStatement("INSERT OR REPLACE INTO import_meta (source, size, modified) VALUES (?, ?, ?)")) {
+            st.setString(1, source.getName());
+            st.setLong(2, source.length());
+            st.setLong(3, source.lastModified());
+            st.executeUpdate();
+        }
+    }
+
+    /*
+     * Query Methods
+     */
+
+    /**
+     * Runs a read-only query on a pooled connection.
+     *
+     * @param sql query with {@code ?} placeholders
+     * @param params values bound to the placeholders in order
+     * @return one JSONObject per row keyed by column label, or null on failure
+     */
+    public List<JSONObject> query(String sql, Object... params) {
+        Connection con = borrow();
+        if (con == null) {
+            return null;
+        }
+        boolean healthy = true;
+        try (PreparedStatement st = con.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                st.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = st.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                List<JSONObject> rows = new ArrayList<>();
+                while (rs.next()) {
+                    JSONObject row = new JSONObject();
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        Object value = rs.getObject(i);
+                        row.put(meta.getColumnLabel(i), value == null ? JSONObject.NULL : value);
+                    }
+                    rows.add(row);
+                }
+                return rows;
+            }
+        } catch (SQLException e) {
+            healthy = !isConnectionError(e);
+            System.out.println("Failed to query course database: " + e.getMessage());
+            return null;
+        } finally {
+            release(con, healthy);
+        }
+    }
+
+    /**
+     * Normalizes a course code so "psyc 370" and "PSYC370" compare equal.
+     */
+    public static String normalizeCode(String code) {
+        return code == null ? null : code.replaceAll("\\s+", "").toUpperCase();
+    }
+
+    private Connection borrow() {
+        if (closed) {
+            return null;
+        }
+        Connection con = readPool.poll();
+        if (con != null) {
+            return con;
+        }
+        if (openedReaders.incrementAndGet() <= readPoolSize) {
+            try {
+                return openReader();
+            } catch (SQLException e) {
+                openedReaders.decrementAndGet();
+                System.out.println("Failed to open read connection: " + e.getMessage());
+                return null;
+            }
+        }
+        openedReaders.decrementAndGet();
+        try {
+            con = readPool.poll(5, TimeUnit.SECONDS);
+            if (con == null) {
+                System.out.println("Timed out waiting for a course database connection");
+            }
+            return con;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void release(Connection con, boolean healthy) {
+        if (healthy && !closed && readPool.offer(con)) {
+            return;
+        }
+        openedReaders.decrementAndGet();
+        try {
+            con.close();
+        } catch (SQLException e) {
+            System.out.println("Failed to close read connection: " + e.getMessage());
+        }
+    }
+
+    private static boolean isConnectionError(SQLException e) {
+        String message = e.getMessage();
+        return message != null && (message.contains("closed") || message.contains("SQLITE_IOERR"));
+    }
+
+    private Connection openWriter() throws SQLException {
+        Connection con = DriverManager.getConnection(url);
+        try (Statement st = con.createStatement()) {
+            st.execute("PRAGMA journal_mode=WAL");
+            st.execute("PRAGMA synchronous=NORMAL");
+        }
+        con.setAutoCommit(false);
+        return con;
+    }
+
+    private Connection openReader() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        return config.createConnection(url);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection con;
+        while ((con = readPool.poll()) != null) {
+            try {
+                con.close();
+            } catch (SQLException e) {
+                System.out.println("Failed to close read connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Table Specifications
+     */
+    private static void table(String name, String columns, String rowPattern, int[] codeColumns, String... indexed) {
+        TABLES.put(name, new TableSpec(name, columns, Pattern.compile(rowPattern), codeColumns, indexed));
+    }
+
+    private record TableSpec(String name, String columns, Pattern row, int[] codeColumns, String[] indexed) {
+
+        String insertSql() {
+            int count = columns.split(",").length;
+            return "INSERT INTO " + name + " VALUES (" + "?, ".repeat(count - 1) + "?)";
+        }
+
+        String[] parse(String line) {
+            Matcher m = row.matcher(line);
+            if (!m.matches()) {
+                return null;
+            }
+            String[] values = new String[m.groupCount()];
+            for (int i = 0; i < values.length; i++) {
+                String value = m.group(i + 1).trim();
+                values[i] = value.equalsIgnoreCase("null") ? null : value;
+            }
+            for (int index : codeColumns) {
+                values[index] = normalizeCode(values[index]);
+            }
+            return name.equals("section") ? splitCapacityAndRoom(values) : values;
+        }
+
+        // Section rows list "max room" or "room max", and rooms may contain spaces
+        private static String[] splitCapacityAndRoom(String[] values) {
+            String span = values[1];
+            String max;
+            String room;
+            int first = span.indexOf(' ');
+            int last = span.lastIndexOf(' ');
+            if (first < 0) {
+                return null;
+            } else if (span.substring(0, first).matches("\\d+")) {
+                max = span.substring(0, first);
+                room = span.substring(first + 1);
+            } else if (span.substring(last + 1).matches("\\d+")) {
+                max = span.substring(last + 1);
+                room = span.substring(0, last);
+            } else {
+                return null;
+            }
+            String[] expanded = new String[values.length + 1];
+            expanded[0] = values[0];
+            expanded[1] = max;
+            expanded[2] = room;
+            System.arraycopy(values, 2, expanded, 3, values.length - 2);
+            return expanded;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.json.JSONObject;
+
+/**
+ * Finds the courses a question mentions, by code ("CS375", "MATH 186") or by
+ * title ("Software Engineering II"), and builds a compact context block from
+ * their course, section and prerequisite rows.
+ *
+ * Exact mentions are found with one Aho-Corasick pass over every code and
+ * title in the course table. Titles the student misspelled are matched with a
+ * bounded edit distance over word windows of the same length.
+ */
+public class CourseEntityExtractor {
+
+    /**
+     * A course mentioned in a question. {@code start} and {@code end} index
+     * the normalized question text.
+     */
+    public record Entity(String courseId, String title, int start, int end, boolean exact) {
+    }
+
+    private record Title(String courseId, String title, String[] words) {
+    }
+
+    // Titles shorter than this are too generic ("Art", "Logic") to match on their own
+    private static final int MIN_TITLE_LENGTH = 10;
+    private static final int MAX_CONTEXT_COURSES = 3;
+    private static final int MAX_CONTEXT_SECTIONS = 6;
+
+    private final CourseDatabase db;
+    private final KeywordMatcher<Title> matcher = new KeywordMatcher<>();
+    private final List<Title> titles = new ArrayList<>();
+
+    private CourseEntityExtractor(CourseDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Builds an extractor over every course in the database.
+     *
+     * @return the extractor, or null if the course table could not be read
+     */
+    public static CourseEntityExtractor load(CourseDatabase db) {
+        List<JSONObject> rows = db.query("SELECT id, title FROM course");
+        if (rows == null) {
+            return null;
+        }
+        CourseEntityExtractor extractor = new CourseEntityExtractor(db);
+        for (JSONObject row : rows) {
+            extractor.addCourse(row.getString("id"), row.getString("title"));
+        }
+        return extractor;
+    }
+
+    private void addCourse(String courseId, String title) {
+        Title codeEntry = new Title(courseId, title, new String[0]);
+        // "CS375" and "CS 375" both refer to the course
+        matcher.add(courseId, codeEntry);
+        int digits = 0;
+        while (digits < courseId.length() && !Character.isDigit(courseId.charAt(digits))) {
+            digits++;
+        }
+        if (digits > 0 && digits < courseId.length()) {
+            matcher.add(courseId.substring(0, digits) + " " + courseId.substring(digits), codeEntry);
+        }
+
+        for (String variant : titleVariants(title)) {
+            if (variant.length() >= MIN_TITLE_LENGTH) {
+                Title entry = new Title(courseId, title, variant.split(" "));
+                matcher.add(variant, entry);
+                titles.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the distinct courses mentioned in the question, in order of
+     * appearance. Overlapping mentions keep the longest one, so "Software
+     * Engineering II" wins over "Software Engineering".
+     */
+    public List<Entity> extract(String question) {
+        String text = KeywordMatcher.normalize(question);
+        List<Entity> candidates = new ArrayList<>();
+        for (KeywordMatcher.Match<Title> match : matcher.findAll(text)) {
+            candidates.add(new Entity(match.value().courseId(), match.value().title(), match.start(), match.end(), true));
+        }
+        candidates.addAll(fuzzyTitles(text, candidates));
+        return resolveOverlaps(candidates);
+    }
+
+    /**
+     * The course, section and prerequisite rows for the courses in the
+     * question, or null if it mentions none.
+     */
+    public String contextFor(String question) {
+        List<Entity> entities = extract(question);
+        if (entities.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder("Reference data from the ACU course database for courses mentioned in this question:");
+        for (int i = 0; i < entities.size() && i < MAX_CONTEXT_COURSES; i++) {
+            appendCourse(sb, entities.get(i).courseId());
+        }
+        return sb.toString();
+    }
+
+    private void appendCourse(StringBuilder sb, String courseId) {
+        List<JSONObject> course = db.query("SELECT id, department, title, hrs FROM course WHERE id = ?", courseId);
+        if (course == null || course.isEmpty()) {
+            return;
+        }
+        JSONObject row = course.get(0);
+        sb.append("\n- ").append(row.getString("id")).append(": ").append(row.getString("title"))
+                .append(" (").append(row.optString("department")).append(", ").append(row.optInt("hrs")).append(" hrs)");
+
+        List<JSONObject> all = db.query(
+                "SELECT prereq FROM and_prereq WHERE course = ? UNION SELECT prereq FROM prereq WHERE course = ?", courseId, courseId);
+        List<JSONObject> anyOf = db.query("SELECT prereq FROM or_prereq WHERE course = ?", courseId);
+        List<JSONObject> coreqs = db.query("SELECT prereq FROM coreq WHERE course = ?", courseId);
+        appendList(sb, "Prerequisites (all)", all);
+        appendList(sb, "Prerequisites (one of)", anyOf);
+        appendList(sb, "Corequisites", coreqs);
+        if ((all == null || all.isEmpty()) && (anyOf == null || anyOf.isEmpty())) {
+            sb.append("; no listed prerequisites");
+        }
+
+        List<JSONObject> sections = db.query(
+                "SELECT crn, term, days, room FROM section WHERE courseID = ? ORDER BY startdate LIMIT " + MAX_CONTEXT_SECTIONS, courseId);
+        if (sections != null && !sections.isEmpty()) {
+            sb.append("; sections:");
+            for (JSONObject section : sections) {
+                sb.append(" [CRN ").append(section.get("crn")).append(", ").append(section.optString("term"))
+                        .append(", ").append(section.optString("days")).append(", ").append(section.optString("room")).append("]");
+            }
+        }
+    }
+
+    private static void appendList(StringBuilder sb, String label, List<JSONObject> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        List<String> values = new ArrayList<>();
+        for (JSONObject row : rows) {
+            values.add(row.getString("prereq"));
+        }
+        sb.append("; ").append(label).append(": ").append(String.join(", ", values));
+    }
+
+    /*
+     * Fuzzy Matching
+     */
+    private List<Entity> fuzzyTitles(String text, List<Entity> exact) {
+        List<Entity> fuzzy = new ArrayList<>();
+        if (text.isEmpty()) {
+            return fuzzy;
+        }
+        String[] words = text.split(" ");
+        int[] offsets = new int[words.length + 1];
+        for (int i = 0, pos = 0; i < words.length; i++) {
+            offsets[i] = pos;
+            pos += words[i].length() + 1;
+        }
+        offsets[words.length] = text.length() + 1;
+
+        for (Title title : titles) {
+            int n = title.words().length;
+            String target = String.join(" ", title.words());
+            int budget = Math.max(1, target.length() / 8);
+            for (int i = 0; i + n <= words.length; i++) {
+                int start = offsets[i];
+                int end = offsets[i + n] - 1;
+                if (overlaps(exact, start, end)) {
+                    continue;
+                }
+                String window = text.substring(start, end);
+                if (Math.abs(window.length() - target.length()) <= budget
+                        && window.charAt(0) == target.charAt(0)
+                        && editDistance(window, target, budget) <= budget) {
+                    fuzzy.add(new Entity(title.courseId(), title.title(), start, end, false));
+                }
+            }
+        }
+        return fuzzy;
+    }
+
+    private static boolean overlaps(List<Entity> entities, int start, int end) {
+        for (Entity entity : entities) {
+            if (start < entity.end() && entity.start() < end) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Entity> resolveOverlaps(List<Entity> candidates) {
+        candidates.sort(Comparator.comparingInt(Entity::start)
+                .thenComparing(Comparator.comparingInt((Entity e) -> e.end() - e.start()).reversed())
+                .thenComparing(e -> !e.exact()));
+        List<Entity> resolved = new ArrayList<>();
+        for (Entity candidate : candidates) {
+            boolean duplicate = false;
+            for (Entity kept : resolved) {
+                if (kept.courseId().equals(candidate.courseId())) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate && !overlaps(resolved, candidate.start(), candidate.end())) {
+                resolved.add(candidate);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Levenshtein distance that gives up once every path exceeds
+     * {@code limit}.
+     */
+    static int editDistance(String a, String b, int limit) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * The normalized title, plus a digit form when it ends in a roman numeral
+     * so "Software Engineering 2" matches "Software Engineering II".
+     */
+    static List<String> titleVariants(String title) {
+        String normalized = KeywordMatcher.normalize(title);
+        List<String> variants = new ArrayList<>(List.of(normalized));
+        String[] numerals = {"i", "ii", "iii", "iv"};
+        for (int i = 0; i < numerals.length; i++) {
+            if (normalized.endsWith(" " + numerals[i])) {
+                variants.add(normalized.substring(0, normalized.length() - numerals[i].length()) + (i + 1));
+            }
+        }
+        return variants;
+    }
+}
@@ -0,0 +1,188 @@
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Function tools backed by the local {@link CourseDatabase}.
+ *
+ * These answer structured questions (course details, prerequisites, sections
+ * and schedules) with indexed lookups instead of a file_search over the whole
+ * uploaded database.
+ */
+public class CourseTools {
+
+    private final CourseDatabase db;
+    private final boolean studentLookups;
+
+    public CourseTools(CourseDatabase db) {
+        this(db, true);
+    }
+
+    /**
+     * @param studentLookups whether schedules may be looked up; false when
+     *                       one process serves many students, whom the
+     *                       imported profile and student table do not
+     *                       belong to
+     */
+    public CourseTools(CourseDatabase db, boolean studentLookups) {
+        this.db = db;
+        this.studentLookups = studentLookups;
+    }
+
+    /**
+     * Creates a registry containing every course tool.
+     */
+    public static ToolRegistry createRegistry(CourseDatabase db) {
+        return createRegistry(db, true);
+    }
+
+    /**
+     * Creates a registry of the course tools, leaving out
+     * {@code getStudentSchedule} unless {@code studentLookups} is set.
+     */
+    public static ToolRegistry createRegistry(CourseDatabase db, boolean studentLookups) {
+        CourseTools tools = new CourseTools(db, studentLookups);
+        ToolRegistry registry = new ToolRegistry();
+        registry.register("lookupCourse",
+                "Look up a course by its code (e.g. CS375) or by words in its title.",
+                schema(new String[][]{{"query", "Course code or title text"}}, "query"),
+                args -> tools.lookupCourse(args.getString("query")));
+        registry.register("getPrereqs",
+                "List the prerequisites and corequisites for a course.",
+                schema(new String[][]{{"courseId", "Course code, e.g. CS375"}}, "courseId"),
+                args -> tools.getPrereqs(args.getString("courseId")));
+        registry.register("getSectionsForTerm",
+                "List the sections offered in a term such as 'Fall 2025', optionally for one course.",
+                schema(new String[][]{{"term", "Term name, e.g. Spring 2025"}, {"courseId", "Optional course code"}}, "term"),
+                args -> tools.getSectionsForTerm(args.getString("term"), args.optString("courseId", null)));
+        if (studentLookups) {
+            registry.register("getStudentSchedule",
+                    "Get a student's current courses. Omit studentId for the signed-in student.",
+                    schema(new String[][]{{"studentId", "Optional student ID from the student table"}}),
+                    args -> tools.getStudentSchedule(args.optString("studentId", null)));
+        }
+        return registry;
+    }
+
+    public String lookupCourse(String query) {
+        if (query == null || query.isBlank()) {
+            return ToolRegistry.error("A course code or title is required");
+        }
+        List<JSONObject> rows = db.query("SELECT id, department, title, num, hrs FROM course WHERE id = ?",
+                CourseDatabase.normalizeCode(query));
+        if (rows != null && rows.isEmpty()) {
+            rows = db.query("SELECT id, department, title, num, hrs FROM course WHERE title LIKE ? ORDER BY id LIMIT 10",
+                    "%" + query.trim() + "%");
+        }
+        return result("courses", rows);
+    }
+
+    public String getPrereqs(String courseId) {
+        String code = CourseDatabase.normalizeCode(courseId);
+        List<JSONObject> all = db.query(
+                "SELECT prereq FROM and_prereq WHERE course = ? UNION SELECT prereq FROM prereq WHERE course = ?", code, code);
+        List<JSONObject> anyOf = db.query("SELECT prereq FROM or_prereq WHERE course = ?", code);
+        List<JSONObject> coreqs = db.query("SELECT prereq AS coreq FROM coreq WHERE course = ?", code);
+        if (all == null || anyOf == null || coreqs == null) {
+            return ToolRegistry.error("Course database unavailable");
+        }
+        JSONObject result = new JSONObject();
+        result.put("course", code);
+        result.put("requiresAll", column(all, "prereq"));
+        result.put("requiresOneOf", column(anyOf, "prereq"));
+        result.put("corequisites", column(coreqs, "coreq"));
+        return result.toString();
+    }
+
+    public String getSectionsForTerm(String term, String courseId) {
+        if (term == null || term.isBlank()) {
+            return ToolRegistry.error("A term is required");
+        }
+        List<JSONObject> rows;
+        if (courseId == null || courseId.isBlank()) {
+            rows = db.query("SELECT s.crn, s.courseID, c.title, s.days, s.room, s.max, s.startdate, s.enddate "
+                    + "FROM section s LEFT JOIN course c ON c.id = s.courseID WHERE s.term = ? COLLATE NOCASE ORDER BY s.courseID",
+                    term.trim());
+        } else {
+            rows = db.query("SELECT s.crn, s.courseID, c.title, s.days, s.room, s.max, s.startdate, s.enddate "
+                    + "FROM section s LEFT JOIN course c ON c.id = s.courseID WHERE s.term = ? COLLATE NOCASE AND s.courseID = ?",
+                    term.trim(), CourseDatabase.normalizeCode(courseId));
+        }
+        return result("sections", rows);
+    }
+
+    public String getStudentSchedule(String studentId) {
+        if (!studentLookups) {
+            return ToolRegistry.error("Student schedules are not available");
+        }
+        if (studentId != null && !studentId.isBlank()) {
+            return result("courses", db.query(
+                    "SELECT s.crn, s.courseID, c.title, s.term, s.days, s.room, ss.grade FROM student_section ss "
+                    + "JOIN section s ON s.crn = ss.sectionID LEFT JOIN course c ON c.id = s.courseID "
+                    + "WHERE ss.studentID = ? ORDER BY s.courseID", studentId.trim()));
+        }
+
+        // The signed-in student's schedule comes from the imported profile
+        List<JSONObject> profile = db.query(
+                "SELECT field, value FROM student_profile WHERE field IN ('Enrolled Courses', 'Current Semester')");
+        if (profile == null) {
+            return ToolRegistry.error("Course database unavailable");
+        }
+        String enrolled = null;
+        String semester = null;
+        for (JSONObject row : profile) {
+            if (row.getString("field").equals("Enrolled Courses")) {
+                enrolled = row.optString("value", null);
+            } else {
+                semester = row.optString("value", null);
+            }
+        }
+        if (enrolled == null) {
+            return ToolRegistry.error("No enrolled courses on file");
+        }
+
+        JSONArray courses = new JSONArray();
+        for (String title : enrolled.split(",")) {
+            JSONObject course = new JSONObject().put("title", title.trim());
+            List<JSONObject> match = db.query("SELECT id, hrs FROM course WHERE title = ? COLLATE NOCASE LIMIT 1", title.trim());
+            if (match != null && !match.isEmpty()) {
+                course.put("id", match.get(0).get("id"));
+                course.put("hrs", match.get(0).get("hrs"));
+            }
+            courses.put(course);
+        }
+        return new JSONObject().put("semester", semester == null ? JSONObject.NULL : semester).put("courses", courses).toString();
+    }
+
+    private static String result(String key, List<JSONObject> rows) {
+        if (rows == null) {
+            return ToolRegistry.error("Course database unavailable");
+        }
+        if (rows.isEmpty()) {
+            return new JSONObject().put(key, new JSONArray()).put("message", "No matching records").toString();
+        }
+        return new JSONObject().put(key, new JSONArray(rows)).toString();
+    }
+
+    private static List<String> column(List<JSONObject> rows, String name) {
+        List<String> values = new ArrayList<>();
+        for (JSONObject row : rows) {
+            values.add(row.getString(name));
+        }
+        return values;
+    }
+
+    private static JSONObject schema(String[][] properties, String... required) {
+        JSONObject props = new JSONObject();
+        for (String[] property : properties) {
+            props.put(property[0], new JSONObject().put("type", "string").put("description", property[1]));
+        }
+        return new JSONObject()
+                .put("type", "object")
+                .put("properties", props)
+                .put("required", new JSONArray(required));
+    }
+}
@@ -0,0 +1,97 @@
+
+import java.util.List;
+
+/**
+ * The department FAQs shown by the "help" menu, together with the keywords the
+ * {@link IntentRouter} uses to answer matching questions locally.
+ */
+public final class FaqCatalog {
+
+    /**
+     * One FAQ question and its static answer.
+     */
+    public record Entry(String question, String answer, List<String> keywords) {
+    }
+
+    /**
+     * A department section of the FAQ menu.
+     */
+    public record Section(String heading, List<Entry> entries) {
+    }
+
+    public static final Section STUDENT_SUCCESS = new Section("--- FAQs for Academic Advisor ---", List.of(
+            new Entry("How do I check my current/upcoming registrations?",
+                    "To check on upcoming/current registrations, please navigate to Degree Works and scroll to the bottom. It will show you your current and registered classes for the next term. To access Degree Works, please go to my.acu.edu, and in the search bar, please type in \"Degree Works\".",
+                    List.of("check my registrations", "upcoming registrations", "current registrations", "registrations", "degree works")),
+            new Entry("When can I access my upcoming courses in Canvas?",
+                    "You can only access your upcoming courses in Canvas when the professor decides to publish them. Most of the time, you will have access a day or two before the start day of the semester.",
+                    List.of("canvas", "access my upcoming courses", "upcoming courses")),
+            new Entry("When do the next courses start?",
+                    "The next courses start depending on when you registered for them. If you signed up for summer classes they will start during the summer term. If you signed up for classes during the fall or spring term they will start when you get there. You can check the specific day by going to my.acu.edu and searching for \"First day of classes\".",
+                    List.of("next courses start", "classes start", "courses start", "first day of classes", "semester start")),
+            new Entry("What if I need to change or drop an upcoming course?",
+                    "If you need to drop or change a course, you will need to reach out to your academic advisor and ask them to either drop or change a course. If you drop a course within the first week of the start of the semester (Monday-Friday before 5:00 PM) then you will get a full refund for that course and your transcript will be unaffected. If you decide to change a class to another class during the first week, your transcript will also be unaffected.",
+                    List.of("drop", "drop a course", "drop a class", "change a course", "change or drop", "withdraw")),
+            new Entry("When will final grades be posted?",
+                    "Final grades will be posted within 1-2 weeks of the semester concluding. If you go to my.acu.edu and in the search bar type banner, you will have access to see your unofficial transcript and see your grades. Once there in the search bar, type in \"transcript\" and you will see. The transcript will only show a letter grade, so if you wish to see your numerical grade then please navigate to Canvas. Once there, please select courses and on the top right select \"view all courses\". Here you can see all the previous courses you took and what numerical value you achieved in them.",
+                    List.of("final grades", "grades be posted", "grades posted", "unofficial transcript", "transcript")),
+            new Entry("What happens if I fail my course(s)?",
+                    "If you fail your course(s) they will count as an F on your transcript and carry a weight of 0 on the 4.0 scale. Regardless of it being a major class, university requirement, or an elective, you would not get credit for the class or classes and would have to retake them. ACU's policy is that you have 3 attempts to retake a class. Every time that you retake it whatever grade you make on the end will replace the current one. Also, ACU will keep the highest score automatically. So if you get a B in a class, decide to retake it for an A and get a C instead you will keep the B.",
+                    List.of("fail", "fail my course", "fail a class", "failed", "failing", "retake")),
+            new Entry("What happens if I'm not financially clear for the next term?",
+                    "If you are not financially clear for the next term, then you need to call Student Services at 325-674-2300. They will tell you the next steps and ultimately, if you aren't able to pay, you will be removed from the school.",
+                    List.of("financially clear", "not financially clear", "student services")),
+            new Entry("How can I reach my Financial Intake Specialist (FIS) about financial concerns?",
+                    "Along with an academic advisor, each student is assigned a financial advisor as well. To reach them, please call Wildcat Central at 325-674-6770 and ask them who it is.",
+                    List.of("financial intake specialist", "fis", "financial advisor", "financial concerns", "wildcat central")),
+            new Entry("How do I reach out to technical support?",
+                    "To reach ACU technical support, please call 325-674-5555. They will assist you with whatever technical problems you have.",
+                    List.of("technical support", "tech support", "reach technical support", "technical problems"))));
+
+    public static final Section ACADEMIC = new Section("--- FAQs for Academic Advisor (On-Campus) ---", List.of(
+            new Entry("How do I calculate my GPA?",
+                    "You can calculate your GPA by adding up all the grade points you've earned and dividing by the total number of credit hours. Check with Degree Works for your current GPA data.",
+                    List.of("calculate my gpa", "calculate gpa", "gpa calculated")),
+            new Entry("What will my GPA be next semester if I make these certain grades?",
+                    "To estimate your GPA for next semester, assume letter grades for each course and apply ACU's grade point scale to see how it impacts your cumulative average.",
+                    List.of("gpa be next semester", "estimate my gpa", "gpa next semester", "future gpa")),
+            new Entry("What are the prerequisites for this class?",
+                    "Prerequisites vary by course. You can look up a specific course in the ACU course catalog to see what prerequisites are listed.",
+                    List.of("prerequisites", "prereqs", "prerequisites for this class")),
+            new Entry("What classes should I take next semester?",
+                    "Course selection depends on your degree audit and what requirements are still pending. Your advisor can help pick classes that align with your graduation timeline.",
+                    List.of("classes should i take", "courses should i take", "take next semester")),
+            new Entry("What are all the requirements for my major?",
+                    "All major requirements are listed in your Degree Works audit. It will show you completed, in-progress, and remaining requirements.",
+                    List.of("requirements for my major", "major requirements", "degree requirements")),
+            new Entry("What Summer classes are good options for me to take at another school and transfer in?",
+                    "General Education and elective classes are good options for summer transfer. Always confirm with your advisor before registering at another school.",
+                    List.of("summer classes", "transfer in", "another school", "summer transfer"))));
+
+    public static final Section IT = new Section("--- FAQs for ACU IT ---", List.of(
+            new Entry("How do I reset my password?",
+                    "To reset your password, go to acu.edu/password. Then log in with your ACU credentials to which it will prompt you to change your password. If you are having trouble, please call ACU IT at 325-674-5555.",
+                    List.of("reset my password", "reset password", "change my password", "password", "forgot my password")),
+            new Entry("How do I install lockdown browser?",
+                    "To download LockDown Browser to your computer, go to: https://download.respondus.com/lockdown/download.php?id=167846866. This is an ACU specific link and you must use this link to download LockDown Browser for an ACU class.",
+                    List.of("lockdown browser", "lockdown", "install lockdown browser", "respondus")),
+            new Entry("How do I set up my Wi-Fi?",
+                    "To join any ACU Wi-Fi network, ACUSecure or ACUGuest, go to your settings and select the network. It will then prompt you to enter your username and password. Your username is your ACU email (without @acu.edu, i.e abc21c) and your password is the same password you use to log into my.acu.edu. If you are having trouble, please call ACU IT at 325-674-5555.",
+                    List.of("wi fi", "wifi", "set up my wi fi", "acusecure", "acuguest", "wireless")),
+            new Entry("How do I print?",
+                    "If you want to print from a personal device to any of the printers in the residence halls or labs, go to acu.edu/print. You can log in with your ACU username (without the @acu.edu, i.e abc21c) and password. From here you will be able to upload documents directly. To change the printer you print to you can select it from the drop-down box in the lower right hand corner. You will need to search the printer in the list by typing in the name of the printer, which can be found on a label on each printer.",
+                    List.of("print", "printing", "printer", "printers")),
+            new Entry("How to register a non computer/laptop devide to the network?",
+                    "To start please go here: https://clearpass.acu.edu/guest/auth_login.php?target=%2Fguest%2Fmac_create.php. This is the ACU specific link to register a device. Once there, please select \"Register a Device\" and fill out the form. The MAC address is the physical address of the device and can be found in the settings of the device. If you are having trouble, please call ACU IT at 325-674-5555.",
+                    List.of("register a device", "register a non computer", "register my device", "mac address", "clearpass", "device to the network"))));
+
+    private FaqCatalog() {
+    }
+
+    /**
+     * Every static FAQ section, in menu order.
+     */
+    public static List<Section> sections() {
+        return List.of(STUDENT_SUCCESS, ACADEMIC, IT);
+    }
+}
@@ -0,0 +1,430 @@
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * How often questions are asked, in the same memory whether there are ten
+ * or ten million of them.
+ *
+ * A question is reduced to a fingerprint of its normalized text (case,
+ * punctuation and spacing ignored) and counted in a count-min sketch:
+ * {@code depth} rows of {@code width} counters, each row indexed by its own
+ * hash of the fingerprint. A question's estimate is its smallest counter,
+ * which never undercounts and overcounts by about {@code e / width} of all
+ * questions counted; conservative update (raising only the counters at
+ * the minimum) keeps it closer than that. The most asked questions overall
+ * are tracked by a Space-Saving list of {@code topK} entries, which also
+ * keeps the text to show for each.
+ *
+ * Each user's own counts are exact, since a user's few questions would be
+ * lost in the error of a table shared with everyone's: a map per user of
+ * the {@link #QUESTIONS_KEPT_PER_USER} questions they asked most recently,
+ * for the {@link #USERS_KEPT} users seen most recently. A question or user
+ * dropped from these starts again from zero, so a count may run low but
+ * never high.
+ *
+ * Counts decay: whenever a question's timestamp crosses into a new
+ * half-life, every count is halved, so old demand fades. Decay follows the
+ * timestamps passed in rather than the clock, so replaying a history gives
+ * the counts it had when it was recorded. Safe for concurrent use.
+ */
+public class FrequencySketch {
+
+    public static final int DEFAULT_WIDTH = 8192;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_TOP_K = 64;
+    public static final long DEFAULT_HALF_LIFE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+    public static final int USERS_KEPT = 2048;
+    public static final int QUESTIONS_KEPT_PER_USER = 64;
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    /**
+     * One of the most asked questions. Its true count lies between
+     * {@code count - error} and {@code count}.
+     */
+    public record Entry(String question, int count, int error) {
+    }
+
+    private static final class HeavyHitter {
+        final long fingerprint;
+        final String question;
+        int count;
+        int error;
+
+        HeavyHitter(long fingerprint, String question, int count, int error) {
+            this.fingerprint = fingerprint;
+            this.question = question;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int width;
+    private final int depth;
+    private final int topK;
+    private final long halfLifeMillis;
+    private final AtomicIntegerArray counters;
+    private final Map<Long, HeavyHitter> heavyHitters = new HashMap<>();
+    private final ReentrantLock heavyHitterLock = new ReentrantLock();
+    // Least recently seen first, in both levels; null users are kept under ""
+    private final LinkedHashMap<String, LinkedHashMap<Long, Integer>> userCounts = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock userLock = new ReentrantLock();
+    // Counting shares the read lock; halving every counter takes the write lock
+    private final ReentrantReadWriteLock decay = new ReentrantReadWriteLock();
+    private volatile long nextDecayAt = UNSET;
+
+    public FrequencySketch() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_TOP_K, DEFAULT_HALF_LIFE_MILLIS);
+    }
+
+    /**
+     * @param width a power of two
+     */
+    public FrequencySketch(int width, int depth, int topK, long halfLifeMillis) {
+        if (width <= 0 || Integer.bitCount(width) != 1 || depth <= 0 || topK <= 0 || halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("width must be a power of two and depth, topK and halfLifeMillis positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.topK = topK;
+        this.halfLifeMillis = halfLifeMillis;
+        this.counters = new AtomicIntegerArray(width * depth);
+    }
+
+    /**
+     * Counts {@code question}, asked by {@code user} (null for nobody in
+     * particular) at {@code timestampMillis}.
+     *
+     * @return the user's count for the question, this one included
+     */
+    public int add(String user, String question, long timestampMillis) {
+        String normalized = normalize(question);
+        if (normalized.isEmpty()) {
+            return 0;
+        }
+        decayUntil(timestampMillis);
+        long fingerprint = fingerprint(normalized);
+        decay.readLock().lock();
+        try {
+            // Conservative update reads before it raises, so counting is serialized with the heavy hitters
+            heavyHitterLock.lock();
+            try {
+                increment(fingerprint);
+                offer(fingerprint, question.trim());
+            } finally {
+                heavyHitterLock.unlock();
+            }
+            return incrementUser(user, fingerprint);
+        } finally {
+            decay.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimated count of {@code question} across all users.
+     */
+    public int estimate(String question) {
+        String normalized = normalize(question);
+        return normalized.isEmpty() ? 0 : estimateKey(fingerprint(normalized));
+    }
+
+    /**
+     * How often {@code user} (null for nobody in particular) has asked
+     * {@code question}: exact, or low if it was dropped to make room.
+     */
+    public int count(String user, String question) {
+        String normalized = normalize(question);
+        if (normalized.isEmpty()) {
+            return 0;
+        }
+        userLock.lock();
+        try {
+            Map<Long, Integer> counts = userCounts.get(user == null ? "" : user);
+            return counts == null ? 0 : counts.getOrDefault(fingerprint(normalized), 0);
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    /**
+     * The {@code n} most asked questions, most asked first.
+     */
+    public List<Entry> top(int n) {
+        List<Entry> entries = new ArrayList<>();
+        heavyHitterLock.lock();
+        try {
+            for (HeavyHitter hit : heavyHitters.values()) {
+                entries.add(new Entry(hit.question, hit.count, hit.error));
+            }
+        } finally {
+            heavyHitterLock.unlock();
+        }
+        entries.sort(Comparator.comparingInt(Entry::count).reversed());
+        return entries.subList(0, Math.min(n, entries.size()));
+    }
+
+    /**
+     * An independent sketch with the same counts.
+     */
+    public FrequencySketch copy() {
+        return fromJson(toJson());
+    }
+
+    public JSONObject toJson() {
+        JSONArray top = new JSONArray();
+        JSONArray users = new JSONArray();
+        String table;
+        decay.writeLock().lock();
+        try {
+            ByteBuffer bytes = ByteBuffer.allocate(counters.length() * Integer.BYTES);
+            for (int i = 0; i < counters.length(); i++) {
+                bytes.putInt(counters.get(i));
+            }
+            table = Base64.getEncoder().encodeToString(bytes.array());
+            for (HeavyHitter hit : heavyHitters.values()) {
+                top.put(new JSONObject()
+                        .put("fingerprint", hit.fingerprint)
+                        .put("question", hit.question)
+                        .put("count", hit.count)
+                        .put("error", hit.error));
+            }
+            // Least recently seen first, so reading them back in order keeps the order
+            userLock.lock();
+            try {
+                userCounts.forEach((user, counts) -> {
+                    JSONArray questions = new JSONArray();
+                    counts.forEach((fingerprint, count) -> questions.put(new JSONArray().put(fingerprint).put(count)));
+                    users.put(new JSONObject().put("user", user).put("counts", questions));
+                });
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            decay.writeLock().unlock();
+        }
+        return new JSONObject()
+                .put("width", width)
+                .put("depth", depth)
+                .put("top_k", topK)
+                .put("half_life_ms", halfLifeMillis)
+                .put("next_decay_at", nextDecayAt)
+                .put("counters", table)
+                .put("top", top)
+                .put("users", users);
+    }
+
+    /**
+     * @throws JSONException if {@code json} is not a sketch
+     */
+    public static FrequencySketch fromJson(JSONObject json) {
+        FrequencySketch sketch = new FrequencySketch(json.getInt("width"), json.getInt("depth"),
+                json.getInt("top_k"), json.getLong("half_life_ms"));
+        ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(json.getString("counters")));
+        if (bytes.remaining() != sketch.counters.length() * Integer.BYTES) {
+            throw new JSONException("counters do not match the sketch's size");
+        }
+        for (int i = 0; i < sketch.counters.length(); i++) {
+            sketch.counters.set(i, bytes.getInt());
+        }
+        JSONArray top = json.getJSONArray("top");
+        for (int i = 0; i < top.length(); i++) {
+            JSONObject hit = top.getJSONObject(i);
+            long fingerprint = hit.getLong("fingerprint");
+            sketch.heavyHitters.put(fingerprint, new HeavyHitter(fingerprint, hit.getString("question"),
+                    hit.getInt("count"), hit.getInt("error")));
+        }
+        JSONArray users = json.optJSONArray("users"); // absent from snapshots saved before counts per user were exact
+        for (int i = 0; users != null && i < users.length(); i++) {
+            JSONObject user = users.getJSONObject(i);
+            JSONArray questions = user.getJSONArray("counts");
+            LinkedHashMap<Long, Integer> counts = new LinkedHashMap<>(16, 0.75f, true);
+            for (int j = 0; j < questions.length(); j++) {
+                counts.put(questions.getJSONArray(j).getLong(0), questions.getJSONArray(j).getInt(1));
+            }
+            sketch.userCounts.put(user.getString("user"), counts);
+        }
+        sketch.nextDecayAt = json.getLong("next_decay_at");
+        return sketch;
+    }
+
+    /**
+     * Lower case, with apostrophes dropped ("don't" is "dont") and other
+     * punctuation and runs of spaces reduced to one space.
+     */
+    static String normalize(String question) {
+        if (question == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(question.length());
+        boolean space = false;
+        for (int i = 0; i < question.length(); i++) {
+            char c = question.charAt(i);
+            if (c == '\'' || c == '\u2019') {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The fingerprint {@code question} is counted under; the same for every
+     * question that normalizes alike.
+     */
+    static long fingerprintOf(String question) {
+        return fingerprint(normalize(question));
+    }
+
+    /**
+     * A 64-bit fingerprint of a normalized question.
+     */
+    static long fingerprint(String normalized) {
+        // FNV-1a, then a finalizer so that both halves are usable as hashes
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    // Row i uses h1 + i * h2, from the two halves of the key
+    private int index(long key, int row) {
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & (width - 1));
+    }
+
+    // Conservative update: only counters below the new estimate are raised to it
+    private void increment(long key) {
+        int target = estimateKey(key) + 1;
+        for (int row = 0; row < depth; row++) {
+            counters.accumulateAndGet(index(key, row), target, Math::max);
+        }
+    }
+
+    private int incrementUser(String user, long fingerprint) {
+        userLock.lock();
+        try {
+            LinkedHashMap<Long, Integer> counts = userCounts.computeIfAbsent(user == null ? "" : user,
+                    ignored -> new LinkedHashMap<>(16, 0.75f, true));
+            if (userCounts.size() > USERS_KEPT) {
+                userCounts.pollFirstEntry();
+            }
+            int count = counts.merge(fingerprint, 1, Integer::sum);
+            if (counts.size() > QUESTIONS_KEPT_PER_USER) {
+                counts.pollFirstEntry();
+            }
+            return count;
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    private int estimateKey(long key) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(key, row)));
+        }
+        return estimate;
+    }
+
+    // Space-Saving: a new question takes the place of the least counted one, inheriting its
+    // count as the error. A linear scan finds it; topK is small
+    private void offer(long fingerprint, String question) {
+        heavyHitterLock.lock();
+        try {
+            HeavyHitter hit = heavyHitters.get(fingerprint);
+            if (hit != null) {
+                hit.count++;
+                return;
+            }
+            if (heavyHitters.size() < topK) {
+                heavyHitters.put(fingerprint, new HeavyHitter(fingerprint, question, 1, 0));
+                return;
+            }
+            HeavyHitter least = null;
+            for (HeavyHitter candidate : heavyHitters.values()) {
+                if (least == null || candidate.count < least.count) {
+                    least = candidate;
+                }
+            }
+            heavyHitters.remove(least.fingerprint);
+            heavyHitters.put(fingerprint, new HeavyHitter(fingerprint, question, least.count + 1, least.count));
+        } finally {
+            heavyHitterLock.unlock();
+        }
+    }
+
+    // Halves every count once per half-life boundary passed since the last decay
+    private void decayUntil(long timestampMillis) {
+        long next = nextDecayAt;
+        if (next != UNSET && timestampMillis < next) {
+            return;
+        }
+        decay.writeLock().lock();
+        try {
+            if (nextDecayAt == UNSET) {
+                nextDecayAt = timestampMillis + halfLifeMillis;
+                return;
+            }
+            if (timestampMillis < nextDecayAt) {
+                return;
+            }
+            long halvings = (timestampMillis - nextDecayAt) / halfLifeMillis + 1;
+            int shift = (int) Math.min(halvings, Integer.SIZE - 1);
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, counters.get(i) >>> shift);
+            }
+            heavyHitterLock.lock();
+            try {
+                heavyHitters.values().removeIf(hit -> (hit.count >>>= shift) == 0);
+                heavyHitters.values().forEach(hit -> hit.error >>>= shift);
+            } finally {
+                heavyHitterLock.unlock();
+            }
+            userLock.lock();
+            try {
+                for (LinkedHashMap<Long, Integer> counts : userCounts.values()) {
+                    counts.replaceAll((fingerprint, count) -> count >>> shift);
+                    counts.values().removeIf(count -> count == 0);
+                }
+                userCounts.values().removeIf(Map::isEmpty);
+            } finally {
+                userLock.unlock();
+            }
+            nextDecayAt += halvings * halfLifeMillis;
+        } finally {
+            decay.writeLock().unlock();
+        }
+    }
+}
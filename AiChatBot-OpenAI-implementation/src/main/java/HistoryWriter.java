@@ -0,0 +1,285 @@
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Appends lines to text files (chat history, personal FAQ) off the chat
+ * thread.
+ *
+ * Callers queue a line and return at once; a background flusher writes
+ * everything queued during one commit interval in a single group, to files
+ * it keeps open, then flushes (and optionally forces to disk) once per file
+ * per group. The queue is bounded: when the flusher falls behind, appends
+ * wait for room rather than growing memory. {@link #flush()} commits
+ * everything queued so far without waiting for the interval, and
+ * {@link #close()} commits the rest and closes the files.
+ */
+public class HistoryWriter implements AutoCloseable {
+
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 200;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    // A line to append, or a flush/close marker (file == null) completed once everything before it is written
+    private record Entry(File file, String line, CompletableFuture<Boolean> done) {
+        boolean isMarker() {
+            return file == null;
+        }
+    }
+
+    private static final class OpenFile {
+        final FileOutputStream stream;
+        final BufferedWriter writer;
+
+        OpenFile(File file) throws IOException {
+            this.stream = new FileOutputStream(file, true);
+            this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        }
+    }
+
+    private final long commitIntervalMillis;
+    private final boolean sync;
+    private final BlockingQueue<Entry> queue;
+    private final Map<File, OpenFile> openFiles = new LinkedHashMap<>();
+    // Appends share the read lock, so close() never slips its marker in front of an append in progress
+    private final ReentrantReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private final Thread flusher;
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong linesWritten = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param sync true forces each group to disk, so a crash loses at most
+     *             one interval of lines
+     */
+    public HistoryWriter(long commitIntervalMillis, int queueCapacity, boolean sync) {
+        if (commitIntervalMillis < 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("commitIntervalMillis must not be negative and queueCapacity must be positive");
+        }
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.sync = sync;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::run, "history-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * A writer that commits whatever is still queued when the JVM exits.
+     */
+    public static HistoryWriter closedOnExit(long commitIntervalMillis, int queueCapacity, boolean sync) {
+        HistoryWriter writer = new HistoryWriter(commitIntervalMillis, queueCapacity, sync);
+        Runtime.getRuntime().addShutdownHook(new Thread(writer::close, "history-writer-close"));
+        return writer;
+    }
+
+    /**
+     * Queues {@code line} (a line break is added) for {@code file}. Waits
+     * only while the queue is full.
+     *
+     * @return false if the writer is closed
+     */
+    public boolean append(File file, String line) {
+        return enqueue(new Entry(file, line, null));
+    }
+
+    /**
+     * Commits everything appended so far.
+     *
+     * @return false if the writer is closed or the timeout passed first
+     */
+    public boolean flush(long timeoutMillis) {
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        if (!enqueue(new Entry(null, null, done))) {
+            return false;
+        }
+        try {
+            return done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        }
+    }
+
+    public boolean flush() {
+        return flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * Stops accepting lines, commits the ones queued and closes the files.
+     * Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        lifecycle.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.put(new Entry(null, null, new CompletableFuture<>()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Groups written so far; fewer than lines written when grouping works.
+     */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getLinesWritten() {
+        return linesWritten.get();
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    private boolean enqueue(Entry entry) {
+        lifecycle.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            queue.put(entry);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+    }
+
+    private void run() {
+        List<Entry> group = new ArrayList<>();
+        try {
+            while (true) {
+                Entry first = queue.take();
+                group.add(first);
+                // Gather for one interval, unless a flush or close wants the group sooner
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commitIntervalMillis);
+                boolean urgent = first.isMarker();
+                while (!urgent) {
+                    Entry next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    urgent = next.isMarker();
+                }
+                queue.drainTo(group);
+                commit(group);
+                group.clear();
+                if (closed && queue.isEmpty()) {
+                    closeFiles();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeFiles();
+        }
+    }
+
+    private void commit(List<Entry> group) {
+        List<OpenFile> touched = new ArrayList<>();
+        boolean ok = true;
+        int written = 0;
+        for (Entry entry : group) {
+            if (entry.isMarker()) {
+                continue;
+            }
+            try {
+                OpenFile open = openFiles.get(entry.file());
+                if (open == null) {
+                    open = new OpenFile(entry.file());
+                    openFiles.put(entry.file(), open);
+                }
+                open.writer.write(entry.line());
+                open.writer.write('\n');
+                if (!touched.contains(open)) {
+                    touched.add(open);
+                }
+                written++;
+            } catch (IOException e) {
+                System.out.println("Failed to write to " + entry.file().getName() + ": " + e.getMessage());
+                ok = false;
+                forget(entry.file());
+            }
+        }
+
+        for (OpenFile open : touched) {
+            try {
+                open.writer.flush();
+                if (sync) {
+                    open.stream.getChannel().force(false);
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to commit history: " + e.getMessage());
+                ok = false;
+                openFiles.values().remove(open);
+            }
+        }
+        if (written > 0) {
+            commits.incrementAndGet();
+            linesWritten.addAndGet(written);
+        }
+        for (Entry entry : group) {
+            if (entry.isMarker()) {
+                entry.done().complete(ok);
+            }
+        }
+    }
+
+    // A file that failed is reopened on its next line
+    private void forget(File file) {
+        OpenFile open = openFiles.remove(file);
+        if (open != null) {
+            try {
+                open.writer.close();
+            } catch (IOException e) {
+                // Already failing
+            }
+        }
+    }
+
+    private void closeFiles() {
+        for (OpenFile open : openFiles.values()) {
+            try {
+                open.writer.close();
+            } catch (IOException e) {
+                System.out.println("Failed to close history file: " + e.getMessage());
+            }
+        }
+        openFiles.clear();
+    }
+}
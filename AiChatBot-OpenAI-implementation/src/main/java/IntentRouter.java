@@ -0,0 +1,445 @@
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Decides whether a question can be answered locally before it is sent to
+ * the assistant.
+ *
+ * Questions are matched against FAQ keywords and database intent keywords
+ * with an Aho-Corasick {@link KeywordMatcher}. A route's confidence is the
+ * share of the question's content words covered by its keywords and
+ * entities, so "How do I print?" is a confident FAQ hit while "Can I print
+ * my essay at midnight?" is left to the LLM. Database routes are tried
+ * first because they are more specific.
+ */
+public class IntentRouter {
+
+    /**
+     * How a question is answered. {@link #route} picks FAQ, DATABASE or LLM;
+     * CACHE is an earlier LLM answer reused by the caller.
+     */
+    public enum Route {
+        FAQ, DATABASE, LLM, CACHE
+    }
+
+    /**
+     * The routing outcome. {@code answer} is null for the LLM route.
+     */
+    public record Decision(Route route, double confidence, String intent, String answer) {
+    }
+
+    private enum DbIntent {
+        PREREQS, SECTIONS, COURSE, SCHEDULE
+    }
+
+    private record Span(int start, int end) {
+    }
+
+    static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "the", "is", "are", "am", "im", "was", "be", "will", "i", "me", "my", "we", "you", "your",
+            "what", "whats", "which", "who", "how", "do", "does", "did", "can", "could", "would", "should", "may",
+            "for", "of", "to", "in", "on", "at", "by", "and", "or", "with", "about", "there", "this", "that", "it",
+            "please", "tell", "know", "want", "need", "get", "when", "where", "any", "some", "all", "if", "so", "hi");
+
+    private static final Pattern COURSE_CODE = Pattern.compile("\\b([a-z]{2,5}) ?(\\d{3})\\b");
+    private static final Pattern TERM = Pattern.compile("\\b(spring|summer|fall|winter) (\\d{4})\\b");
+
+    private static final int MAX_LISTED_SECTIONS = 15;
+
+    private final KeywordMatcher<FaqCatalog.Entry> faqMatcher = new KeywordMatcher<>();
+    private final KeywordMatcher<DbIntent> intentMatcher = new KeywordMatcher<>();
+    private final CourseTools tools;
+    private final CourseEntityExtractor extractor;
+    private final double faqThreshold;
+    private final double databaseThreshold;
+
+    private final Map<Route, LongAdder> routeCounts = new EnumMap<>(Route.class);
+    private final LongAdder routingNanos = new LongAdder();
+
+    /**
+     * Creates a router with the default confidence thresholds.
+     *
+     * @param tools course lookups for the database route, or null to disable it
+     */
+    public IntentRouter(CourseTools tools) {
+        this(tools, null, 0.6, 0.7);
+    }
+
+    /**
+     * Creates a router that also recognizes courses by title.
+     *
+     * @param tools course lookups for the database route, or null to disable it
+     * @param extractor course mention extractor, or null to match codes only
+     */
+    public IntentRouter(CourseTools tools, CourseEntityExtractor extractor) {
+        this(tools, extractor, 0.6, 0.7);
+    }
+
+    public IntentRouter(CourseTools tools, CourseEntityExtractor extractor, double faqThreshold, double databaseThreshold) {
+        this.tools = tools;
+        this.extractor = extractor;
+        this.faqThreshold = faqThreshold;
+        this.databaseThreshold = databaseThreshold;
+        for (Route route : Route.values()) {
+            routeCounts.put(route, new LongAdder());
+        }
+
+        for (FaqCatalog.Section section : FaqCatalog.sections()) {
+            for (FaqCatalog.Entry entry : section.entries()) {
+                for (String keyword : entry.keywords()) {
+                    faqMatcher.add(keyword, entry);
+                }
+            }
+        }
+
+        for (String keyword : List.of("prerequisites", "prerequisite", "prereqs", "prereq", "pre reqs", "pre req",
+                "requirements for", "required before", "before taking", "corequisites", "corequisite", "coreqs", "coreq")) {
+            intentMatcher.add(keyword, DbIntent.PREREQS);
+        }
+        for (String keyword : List.of("sections", "section", "offered", "offered in", "taught", "meeting times",
+                "times", "schedule for", "classes in", "courses in")) {
+            intentMatcher.add(keyword, DbIntent.SECTIONS);
+        }
+        for (String keyword : List.of("title", "credit hours", "credits", "hours", "how many hours", "how many credits",
+                "course", "class", "info", "information", "describe", "details")) {
+            intentMatcher.add(keyword, DbIntent.COURSE);
+        }
+        for (String keyword : List.of("classes am i in", "classes am i currently in", "courses am i in",
+                "courses am i currently in", "classes am i taking", "courses am i taking", "my classes", "my courses",
+                "my schedule", "my current classes", "my current courses", "currently enrolled", "enrolled courses",
+                "currently taking", "classes this semester")) {
+            intentMatcher.add(keyword, DbIntent.SCHEDULE);
+        }
+    }
+
+    /**
+     * Routes a question and, for local routes, produces the answer.
+     */
+    public Decision route(String question) {
+        long start = System.nanoTime();
+        Decision decision = decide(question == null ? "" : question);
+        routingNanos.add(System.nanoTime() - start);
+        routeCounts.get(decision.route()).increment();
+        return decision;
+    }
+
+    /**
+     * Routes a question like {@link #route}, without counting it in the
+     * metrics.
+     */
+    public Decision peek(String question) {
+        return decide(question == null ? "" : question);
+    }
+
+    private Decision decide(String question) {
+        String text = KeywordMatcher.normalize(question);
+        List<Span> content = contentTokens(text);
+        if (content.isEmpty()) {
+            return llm();
+        }
+
+        if (tools != null) {
+            Decision database = routeToDatabase(text, content);
+            if (database != null) {
+                return database;
+            }
+        }
+
+        // Score each FAQ entry by how much of the question its keywords cover
+        Map<FaqCatalog.Entry, List<Span>> spansByEntry = new HashMap<>();
+        for (KeywordMatcher.Match<FaqCatalog.Entry> match : faqMatcher.findAll(text)) {
+            spansByEntry.computeIfAbsent(match.value(), key -> new ArrayList<>()).add(new Span(match.start(), match.end()));
+        }
+        FaqCatalog.Entry best = null;
+        double bestScore = 0;
+        double runnerUp = 0;
+        for (Map.Entry<FaqCatalog.Entry, List<Span>> candidate : spansByEntry.entrySet()) {
+            double score = coverage(content, candidate.getValue());
+            if (score > bestScore) {
+                runnerUp = bestScore;
+                bestScore = score;
+                best = candidate.getKey();
+            } else if (score > runnerUp) {
+                runnerUp = score;
+            }
+        }
+        // An ambiguous match between two FAQs is better answered by the LLM
+        if (best != null && bestScore >= faqThreshold && bestScore - runnerUp >= 0.15) {
+            return new Decision(Route.FAQ, bestScore, best.question(), best.answer());
+        }
+        return llm();
+    }
+
+    private Decision routeToDatabase(String text, List<Span> content) {
+        List<Span> entitySpans = new ArrayList<>();
+        String courseId = null;
+        if (extractor != null) {
+            List<CourseEntityExtractor.Entity> entities = extractor.extract(text);
+            if (!entities.isEmpty()) {
+                courseId = entities.get(0).courseId();
+                entitySpans.add(new Span(entities.get(0).start(), entities.get(0).end()));
+            }
+        }
+        Matcher code = COURSE_CODE.matcher(text);
+        while (courseId == null && code.find()) {
+            // Skip look-alikes such as "have 100" that are not in the catalog
+            String candidate = (code.group(1) + code.group(2)).toUpperCase();
+            if (findCourse(candidate) != null) {
+                courseId = candidate;
+                entitySpans.add(new Span(code.start(), code.end()));
+                break;
+            }
+        }
+        String term = null;
+        Matcher termMatch = TERM.matcher(text);
+        if (termMatch.find()) {
+            term = Character.toUpperCase(termMatch.group(1).charAt(0)) + termMatch.group(1).substring(1) + " " + termMatch.group(2);
+            entitySpans.add(new Span(termMatch.start(), termMatch.end()));
+        }
+
+        Map<DbIntent, List<Span>> spansByIntent = new EnumMap<>(DbIntent.class);
+        for (KeywordMatcher.Match<DbIntent> match : intentMatcher.findAll(text)) {
+            spansByIntent.computeIfAbsent(match.value(), key -> new ArrayList<>()).add(new Span(match.start(), match.end()));
+        }
+        // A bare course code is a course lookup
+        if (courseId != null) {
+            spansByIntent.computeIfAbsent(DbIntent.COURSE, key -> new ArrayList<>());
+        }
+
+        DbIntent bestIntent = null;
+        double bestScore = 0;
+        for (Map.Entry<DbIntent, List<Span>> candidate : spansByIntent.entrySet()) {
+            DbIntent intent = candidate.getKey();
+            boolean eligible = switch (intent) {
+                case PREREQS, COURSE -> courseId != null;
+                case SECTIONS -> term != null;
+                case SCHEDULE -> true;
+            };
+            if (!eligible) {
+                continue;
+            }
+            // Course and term mentions say what the question is about, not what it asks, so only
+            // the intent's keywords count; the mentions are left out of the question's words
+            double score = coverage(content, candidate.getValue(), intent == DbIntent.SCHEDULE ? List.of() : entitySpans);
+            if (score > bestScore) {
+                bestScore = score;
+                bestIntent = intent;
+            }
+        }
+        if (bestIntent == null || bestScore < databaseThreshold) {
+            return null;
+        }
+
+        String answer = switch (bestIntent) {
+            case PREREQS -> describePrereqs(courseId);
+            case SECTIONS -> describeSections(term, courseId);
+            case COURSE -> describeCourse(courseId);
+            case SCHEDULE -> describeSchedule();
+        };
+        if (answer == null) {
+            return null;
+        }
+        return new Decision(Route.DATABASE, bestScore, bestIntent.name().toLowerCase(), answer);
+    }
+
+    /*
+     * Answer Formatting
+     */
+    private String describeCourse(String courseId) {
+        JSONObject course = findCourse(courseId);
+        if (course == null) {
+            return null;
+        }
+        return course.getString("id") + " - " + course.getString("title") + " (" + course.optString("department")
+                + ", " + course.optInt("hrs") + " credit hours)";
+    }
+
+    private String describePrereqs(String courseId) {
+        JSONObject course = findCourse(courseId);
+        if (course == null) {
+            return null;
+        }
+        JSONObject prereqs = new JSONObject(tools.getPrereqs(courseId));
+        if (prereqs.has("error")) {
+            return null;
+        }
+        JSONArray all = prereqs.getJSONArray("requiresAll");
+        JSONArray anyOf = prereqs.getJSONArray("requiresOneOf");
+        JSONArray coreqs = prereqs.getJSONArray("corequisites");
+        String name = course.getString("id") + " (" + course.getString("title") + ")";
+        if (all.isEmpty() && anyOf.isEmpty() && coreqs.isEmpty()) {
+            return name + " has no listed prerequisites.";
+        }
+        StringBuilder sb = new StringBuilder("Prerequisites for ").append(name).append(":");
+        if (!all.isEmpty()) {
+            sb.append("\n - Required: ").append(join(all));
+        }
+        if (!anyOf.isEmpty()) {
+            sb.append("\n - One of: ").append(join(anyOf));
+        }
+        if (!coreqs.isEmpty()) {
+            sb.append("\n - Corequisites: ").append(join(coreqs));
+        }
+        return sb.toString();
+    }
+
+    private String describeSections(String term, String courseId) {
+        JSONObject result = new JSONObject(tools.getSectionsForTerm(term, courseId));
+        JSONArray sections = result.optJSONArray("sections");
+        if (sections == null || sections.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder("Sections").append(courseId == null ? "" : " of " + courseId)
+                .append(" in ").append(term).append(":");
+        for (int i = 0; i < sections.length() && i < MAX_LISTED_SECTIONS; i++) {
+            JSONObject section = sections.getJSONObject(i);
+            sb.append("\n - CRN ").append(section.get("crn")).append(" ").append(section.getString("courseID"));
+            if (!section.isNull("title")) {
+                sb.append(" ").append(section.getString("title"));
+            }
+            sb.append(": ").append(section.optString("days")).append(", room ").append(section.optString("room"))
+                    .append(" (").append(section.optString("startdate")).append(" to ").append(section.optString("enddate")).append(")");
+        }
+        if (sections.length() > MAX_LISTED_SECTIONS) {
+            sb.append("\n ...and ").append(sections.length() - MAX_LISTED_SECTIONS).append(" more");
+        }
+        return sb.toString();
+    }
+
+    private String describeSchedule() {
+        JSONObject result = new JSONObject(tools.getStudentSchedule(null));
+        JSONArray courses = result.optJSONArray("courses");
+        if (courses == null || courses.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder("You are currently enrolled in");
+        if (!result.isNull("semester")) {
+            sb.append(" (").append(result.getString("semester")).append(")");
+        }
+        sb.append(":");
+        for (Object entry : courses) {
+            JSONObject course = (JSONObject) entry;
+            sb.append("\n - ").append(course.getString("title"));
+            if (course.has("id")) {
+                sb.append(" (").append(course.getString("id")).append(")");
+            }
+        }
+        return sb.toString();
+    }
+
+    private JSONObject findCourse(String courseId) {
+        JSONObject result = new JSONObject(tools.lookupCourse(courseId));
+        JSONArray courses = result.optJSONArray("courses");
+        if (courses == null || courses.isEmpty()) {
+            return null;
+        }
+        JSONObject course = courses.getJSONObject(0);
+        return course.getString("id").equals(courseId) ? course : null;
+    }
+
+    private static String join(JSONArray values) {
+        List<String> items = new ArrayList<>();
+        for (Object value : values) {
+            items.add(value.toString());
+        }
+        return String.join(", ", items);
+    }
+
+    /*
+     * Scoring
+     */
+    private static List<Span> contentTokens(String text) {
+        List<Span> tokens = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf(' ', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            if (!STOPWORDS.contains(text.substring(start, end))) {
+                tokens.add(new Span(start, end));
+            }
+            start = end + 1;
+        }
+        return tokens;
+    }
+
+    private static double coverage(List<Span> content, List<Span> matched) {
+        return coverage(content, matched, List.of());
+    }
+
+    // The share of content tokens inside a matched span, leaving out tokens inside a neutral span;
+    // 1 when every token is neutral (a bare course code)
+    private static double coverage(List<Span> content, List<Span> matched, List<Span> neutral) {
+        int counted = 0;
+        int covered = 0;
+        for (Span token : content) {
+            if (within(token, neutral)) {
+                continue;
+            }
+            counted++;
+            if (within(token, matched)) {
+                covered++;
+            }
+        }
+        return counted == 0 ? 1.0 : (double) covered / counted;
+    }
+
+    private static boolean within(Span token, List<Span> spans) {
+        for (Span span : spans) {
+            if (token.start() >= span.start() && token.end() <= span.end()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Decision llm() {
+        return new Decision(Route.LLM, 0, null, null);
+    }
+
+    /*
+     * Metrics
+     */
+    public long getRouteCount(Route route) {
+        return routeCounts.get(route).sum();
+    }
+
+    public long getTotalRouted() {
+        long total = 0;
+        for (LongAdder count : routeCounts.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * One-line summary of route hit rates and mean routing time.
+     */
+    public String metricsSummary() {
+        long total = getTotalRouted();
+        if (total == 0) {
+            return "No questions routed";
+        }
+        StringBuilder sb = new StringBuilder().append(total).append(" questions routed -");
+        for (Route route : Route.values()) {
+            if (route == Route.CACHE) {
+                continue; // decided after routing
+            }
+            sb.append(String.format(" %s %.1f%%", route, 100.0 * getRouteCount(route) / total));
+        }
+        sb.append(String.format(", avg %.3f ms", routingNanos.sum() / 1_000_000.0 / total));
+        return sb.toString();
+    }
+}
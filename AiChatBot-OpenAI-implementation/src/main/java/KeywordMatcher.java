@@ -0,0 +1,142 @@
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick matcher that finds every keyword in a text in a single pass.
+ *
+ * Keywords and input are normalized with {@link #normalize(String)}, and only
+ * whole-word matches are reported, so "print" does not match "blueprint".
+ *
+ * @param <T> value attached to each keyword
+ */
+public class KeywordMatcher<T> {
+
+    /**
+     * A keyword occurrence; {@code start} and {@code end} index the normalized
+     * text.
+     */
+    public record Match<T>(String keyword, T value, int start, int end) {
+    }
+
+    private static final class Node<T> {
+        final Map<Character, Node<T>> next = new HashMap<>();
+        Node<T> fail;
+        final List<Integer> outputs = new ArrayList<>();
+    }
+
+    private final Node<T> root = new Node<>();
+    private final List<String> keywords = new ArrayList<>();
+    private final List<T> values = new ArrayList<>();
+    private volatile boolean built;
+
+    /**
+     * Adds a keyword. Must be called before the first search.
+     */
+    public KeywordMatcher<T> add(String keyword, T value) {
+        if (built) {
+            throw new IllegalStateException("Matcher is already built");
+        }
+        String normalized = normalize(keyword);
+        if (normalized.isEmpty()) {
+            return this;
+        }
+        Node<T> node = root;
+        for (char c : normalized.toCharArray()) {
+            node = node.next.computeIfAbsent(c, key -> new Node<>());
+        }
+        node.outputs.add(keywords.size());
+        keywords.add(normalized);
+        values.add(value);
+        return this;
+    }
+
+    public int size() {
+        return keywords.size();
+    }
+
+    private synchronized void build() {
+        if (built) {
+            return;
+        }
+        Queue<Node<T>> queue = new ArrayDeque<>();
+        for (Node<T> child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node<T> node = queue.poll();
+            for (Map.Entry<Character, Node<T>> edge : node.next.entrySet()) {
+                Node<T> child = edge.getValue();
+                Node<T> fallback = node.fail;
+                while (fallback != null && !fallback.next.containsKey(edge.getKey())) {
+                    fallback = fallback.fail;
+                }
+                child.fail = fallback == null ? root : fallback.next.get(edge.getKey());
+                child.outputs.addAll(child.fail.outputs);
+                queue.add(child);
+            }
+        }
+        built = true;
+    }
+
+    /**
+     * Finds all whole-word keyword occurrences in already normalized text.
+     */
+    public List<Match<T>> findAll(String normalizedText) {
+        if (!built) {
+            build();
+        }
+        List<Match<T>> matches = new ArrayList<>();
+        Node<T> node = root;
+        for (int i = 0; i < normalizedText.length(); i++) {
+            char c = normalizedText.charAt(i);
+            while (node != root && !node.next.containsKey(c)) {
+                node = node.fail;
+            }
+            node = node.next.getOrDefault(c, root);
+            for (int index : node.outputs) {
+                int start = i - keywords.get(index).length() + 1;
+                int end = i + 1;
+                if (isBoundary(normalizedText, start - 1) && isBoundary(normalizedText, end)) {
+                    matches.add(new Match<>(keywords.get(index), values.get(index), start, end));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static boolean isBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || text.charAt(index) == ' ';
+    }
+
+    /**
+     * Lowercases and reduces punctuation to single spaces, so "Wi-Fi?" becomes
+     * "wi fi".
+     */
+    public static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = true;
+        for (char c : text.toLowerCase().toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+                space = false;
+            } else if (c == '\'') {
+                // Keep contractions together: "i'm" -> "im"
+                continue;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int length = sb.length();
+        if (length > 0 && sb.charAt(length - 1) == ' ') {
+            sb.setLength(length - 1);
+        }
+        return sb.toString();
+    }
+}
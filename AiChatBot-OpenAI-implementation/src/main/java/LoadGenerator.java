@@ -0,0 +1,444 @@
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Simulates many students at once to find where the system breaks.
+ *
+ * Students arrive open-loop: arrivals follow a Poisson process whose rate
+ * ramps up linearly to the target and then holds for the rest of the run,
+ * however slowly earlier students are being answered. Each student gets a
+ * synthetic profile and asks a few questions from a mix of the FAQ catalog
+ * and open questions, pausing between them, either through an
+ * {@link AssistantClient} or through a {@link ChatSession} (the chat loop's
+ * router and turn queue). Every student runs on a virtual thread.
+ *
+ * A report line is printed periodically and at the end: throughput, latency
+ * percentiles, error rate, heap in use and live platform threads. Run it
+ * against {@link StubAssistantServer} ({@code --stub}) for soak tests that
+ * cost nothing, or against any API-compatible server via
+ * {@code OPENAI_BASE_URL}.
+ */
+public class LoadGenerator {
+
+    public enum Mode {
+        /** Every question goes to the assistant through an AssistantClient. */
+        CLIENT,
+        /** Questions go through a ChatSession, so FAQs are answered locally. */
+        CHAT
+    }
+
+    /**
+     * @param arrivalsPerSecond new students per second once ramped up
+     * @param pollMillis        run status poll interval in CLIENT mode; CHAT
+     *                          mode polls like the chat loop
+     * @param faqShare          fraction of questions taken from the FAQ catalog
+     * @param reportEveryMillis 0 prints only the final report
+     */
+    public record Config(Mode mode, double arrivalsPerSecond, long rampUpMillis, long durationMillis,
+            int questionsPerStudent, long thinkTimeMillis, int pollMillis, double faqShare,
+            long reportEveryMillis, long seed) {
+    }
+
+    public record Report(long elapsedMillis, long students, int activeStudents, long questions, long failed,
+            long answeredLocally, long p50Millis, long p95Millis, long p99Millis, long maxMillis,
+            long heapUsedBytes, int threads) {
+        public double questionsPerSecond() {
+            return elapsedMillis == 0 ? 0 : questions * 1000.0 / elapsedMillis;
+        }
+
+        public double errorRate() {
+            return questions == 0 ? 0 : (double) failed / questions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f s: %d students (%d active), %d questions (%.2f/s, %d local), %.1f%% errors,"
+                    + " latency p50 %d ms, p95 %d ms, p99 %d ms, max %d ms, heap %d MB, %d threads",
+                    elapsedMillis / 1000.0, students, activeStudents, questions, questionsPerSecond(), answeredLocally,
+                    errorRate() * 100, p50Millis, p95Millis, p99Millis, maxMillis, heapUsedBytes / (1024 * 1024), threads);
+        }
+    }
+
+    /**
+     * Latencies in buckets 2% wide, so percentiles of a multi-hour soak run
+     * take a fixed few kilobytes rather than one entry per question.
+     */
+    static final class LatencyHistogram {
+        private static final double LOG_GROWTH = Math.log(1.02);
+        private static final int BUCKETS = 1024; // up to about a week
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long millis) {
+            millis = Math.max(0, millis);
+            counts.incrementAndGet(bucket(millis));
+            total.incrementAndGet();
+            max.accumulateAndGet(millis, Math::max);
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the percentile, never
+         *         more than the largest value recorded
+         */
+        long percentile(double percent) {
+            long count = total.get();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        private static int bucket(long millis) {
+            return Math.min(BUCKETS - 1, (int) (Math.log1p(millis) / LOG_GROWTH));
+        }
+
+        private static long upperBound(int bucket) {
+            return (long) Math.ceil(Math.expm1((bucket + 1) * LOG_GROWTH));
+        }
+    }
+
+    // Questions the FAQ catalog cannot answer, so they always reach the assistant
+    static final List<String> OPEN_QUESTIONS = List.of(
+            "Which courses should I take next semester to stay on track for graduation?",
+            "Can you suggest electives that fit a data science interest?",
+            "How heavy is a 17 hour semester with two lab courses?",
+            "What should I take alongside Data Structures?",
+            "Is it better to take Calculus II or Discrete Math first?",
+            "Which upper-level courses pair well with an internship?",
+            "How can I fit a study abroad semester into my degree plan?",
+            "What are good courses for someone interested in cybersecurity?");
+
+    private static final List<String> MAJORS = List.of("Computer Science", "Information Technology",
+            "Digital Entertainment Technology", "Computer Engineering", "Data Science", "Mathematics");
+    private static final List<String> YEARS = List.of("Freshman", "Sophomore", "Junior", "Senior");
+    private static final List<String> COURSES = List.of("CS 115", "CS 120", "CS 130", "CS 220", "CS 230", "CS 311",
+            "CS 332", "IT 221", "MATH 185", "MATH 186", "MATH 227", "ENGR 110");
+
+    private final OpenAiAssistantEngine engine;
+    private final String assistantId;
+    private final ChatSession.Context context;
+    private final Config config;
+    private final List<String> faqQuestions = new ArrayList<>();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong students = new AtomicLong();
+    private final AtomicInteger activeStudents = new AtomicInteger();
+    private final AtomicLong questions = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong answeredLocally = new AtomicLong();
+    private volatile long startNanos = System.nanoTime();
+    private long lastReportQuestions;
+    private long lastReportNanos;
+
+    /**
+     * @param router answers FAQs locally in CHAT mode; may be null
+     */
+    public LoadGenerator(OpenAiAssistantEngine engine, String assistantId, IntentRouter router, Config config) {
+        if (config.arrivalsPerSecond() <= 0 || config.questionsPerStudent() <= 0) {
+            throw new IllegalArgumentException("arrivalsPerSecond and questionsPerStudent must be positive");
+        }
+        this.engine = engine;
+        this.assistantId = assistantId;
+        this.context = new ChatSession.Context(engine, assistantId, router, null, null);
+        this.config = config;
+        for (FaqCatalog.Section section : FaqCatalog.sections()) {
+            for (FaqCatalog.Entry entry : section.entries()) {
+                faqQuestions.add(entry.question());
+            }
+        }
+    }
+
+    /**
+     * Generates arrivals for the configured duration, then waits for the
+     * students still asking.
+     */
+    public Report run() {
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+        ScheduledFuture<?> reports = config.reportEveryMillis() > 0
+                ? SharedScheduler.every(config.reportEveryMillis(), this::printReport)
+                : null;
+        Random random = new Random(config.seed());
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(config.durationMillis());
+        long rampNanos = TimeUnit.MILLISECONDS.toNanos(config.rampUpMillis());
+        double perNano = config.arrivalsPerSecond() / 1e9;
+
+        // close() waits for every student to finish
+        try (ExecutorService studentThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            long offset = 0;
+            while (true) {
+                // Thinning: candidates at the full rate, kept in proportion to the ramp
+                offset += (long) (-Math.log(1 - random.nextDouble()) / perNano);
+                if (offset >= durationNanos) {
+                    break;
+                }
+                if (rampNanos > 0 && offset < rampNanos && random.nextDouble() >= (double) offset / rampNanos) {
+                    continue;
+                }
+                if (!sleepUntil(startNanos + offset)) {
+                    break;
+                }
+                long number = students.incrementAndGet();
+                String profile = syntheticProfile(random, number);
+                List<String> mix = pickQuestions(random);
+                studentThreads.execute(() -> simulateStudent(number, profile, mix));
+            }
+        } finally {
+            if (reports != null) {
+                reports.cancel(false);
+            }
+        }
+        return report();
+    }
+
+    /**
+     * The counters so far.
+     */
+    public Report report() {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return new Report(elapsed, students.get(), activeStudents.get(), questions.get(), failed.get(),
+                answeredLocally.get(), latencies.percentile(50), latencies.percentile(95), latencies.percentile(99),
+                latencies.max(), ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    private void simulateStudent(long number, String profile, List<String> mix) {
+        activeStudents.incrementAndGet();
+        try {
+            if (config.mode() == Mode.CLIENT) {
+                askWithClient(profile, mix);
+            } else {
+                askWithSession(number, mix);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Failed to simulate student " + number + ": " + e.getMessage());
+        } finally {
+            activeStudents.decrementAndGet();
+        }
+    }
+
+    private void askWithClient(String profile, List<String> mix) {
+        AssistantClient client = new AssistantClient(engine)
+                .withAssistant(assistantId)
+                .withPollRate(config.pollMillis())
+                .withTimeout(ChatSession.RUN_TIMEOUT_SECONDS)
+                .withAdditionalInstructions("The student asking has this profile:\n" + profile)
+                .startConversation();
+        try {
+            for (int i = 0; i < mix.size(); i++) {
+                if (i > 0 && !think()) {
+                    return;
+                }
+                long start = System.nanoTime();
+                // Without a thread every question fails, as it would for a real student
+                String answer = client.getCurrentThreadId() == null ? null : client.sendMessage(mix.get(i));
+                record(answer != null, false, start);
+            }
+        } finally {
+            client.endConversation();
+        }
+    }
+
+    private void askWithSession(long number, List<String> mix) {
+        ChatSession session = new ChatSession("load-" + number, context, null);
+        try {
+            for (int i = 0; i < mix.size(); i++) {
+                if (i > 0 && !think()) {
+                    return;
+                }
+                long start = System.nanoTime();
+                ChatSession.Reply reply = session.submit(mix.get(i)).join();
+                record(reply.answered(), reply.route() != IntentRouter.Route.LLM, start);
+            }
+        } finally {
+            // No reaper here, so the thread is deleted directly
+            String threadId = session.getThreadId();
+            session.close();
+            if (threadId != null) {
+                engine.deleteResource("threads", threadId);
+            }
+        }
+    }
+
+    private void record(boolean ok, boolean local, long startNanos) {
+        latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        questions.incrementAndGet();
+        if (!ok) {
+            failed.incrementAndGet();
+        } else if (local) {
+            answeredLocally.incrementAndGet();
+        }
+    }
+
+    private boolean think() {
+        if (config.thinkTimeMillis() <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(config.thinkTimeMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private List<String> pickQuestions(Random random) {
+        List<String> mix = new ArrayList<>(config.questionsPerStudent());
+        for (int i = 0; i < config.questionsPerStudent(); i++) {
+            List<String> pool = random.nextDouble() < config.faqShare() ? faqQuestions : OPEN_QUESTIONS;
+            mix.add(pool.get(random.nextInt(pool.size())));
+        }
+        return mix;
+    }
+
+    /**
+     * A plausible user_info profile for student {@code number}.
+     */
+    static String syntheticProfile(Random random, long number) {
+        List<String> completed = new ArrayList<>(COURSES);
+        Collections.shuffle(completed, random);
+        int year = random.nextInt(YEARS.size());
+        return "Name: Student " + number
+                + "\nMajor: " + MAJORS.get(random.nextInt(MAJORS.size()))
+                + "\nClassification: " + YEARS.get(year)
+                + "\nCompleted: " + String.join(", ", completed.subList(0, 2 + year * 2))
+                + String.format("%nGPA: %.2f", 2.0 + random.nextInt(201) / 100.0);
+    }
+
+    private static boolean sleepUntil(long deadlineNanos) {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(remaining));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized void printReport() {
+        Report report = report();
+        long now = System.nanoTime();
+        double interval = (now - lastReportNanos) / 1e9;
+        double recentRate = interval <= 0 ? 0 : (report.questions() - lastReportQuestions) / interval;
+        lastReportQuestions = report.questions();
+        lastReportNanos = now;
+        System.out.println(String.format("[load] %s, last interval %.2f questions/s", report, recentRate));
+    }
+
+    /*
+     * Command Line
+     */
+    private static final String USAGE = "Usage: LoadGenerator [--stub] [--mode client|chat] [--rate students/s]"
+            + " [--ramp s] [--duration s] [--questions n] [--think ms] [--poll ms] [--faq-share f] [--report s]"
+            + " [--latency minMs-maxMs] [--error-rate f] [--assistant id]";
+
+    public static void main(String[] args) throws IOException {
+        Mode mode = Mode.CLIENT;
+        double rate = 5;
+        long rampSeconds = 60;
+        long durationSeconds = 600;
+        int questionsPerStudent = 3;
+        long thinkMillis = 5000;
+        int pollMillis = ChatSession.RUN_POLL_INTERVAL_MS;
+        double faqShare = 0.5;
+        long reportSeconds = 10;
+        boolean stub = false;
+        long minLatency = 500;
+        long maxLatency = 3000;
+        double errorRate = 0;
+        String assistantId = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--stub" -> stub = true;
+                    case "--mode" -> mode = Mode.valueOf(args[++i].toUpperCase());
+                    case "--rate" -> rate = Double.parseDouble(args[++i]);
+                    case "--ramp" -> rampSeconds = Long.parseLong(args[++i]);
+                    case "--duration" -> durationSeconds = Long.parseLong(args[++i]);
+                    case "--questions" -> questionsPerStudent = Integer.parseInt(args[++i]);
+                    case "--think" -> thinkMillis = Long.parseLong(args[++i]);
+                    case "--poll" -> pollMillis = Integer.parseInt(args[++i]);
+                    case "--faq-share" -> faqShare = Double.parseDouble(args[++i]);
+                    case "--report" -> reportSeconds = Long.parseLong(args[++i]);
+                    case "--latency" -> {
+                        String[] range = args[++i].split("-");
+                        minLatency = Long.parseLong(range[0]);
+                        maxLatency = Long.parseLong(range[range.length - 1]);
+                    }
+                    case "--error-rate" -> errorRate = Double.parseDouble(args[++i]);
+                    case "--assistant" -> assistantId = args[++i];
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Failed to read arguments: " + e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+
+        StubAssistantServer stubServer = null;
+        OpenAiAssistantEngine engine;
+        if (stub) {
+            stubServer = new StubAssistantServer(0, minLatency, maxLatency, errorRate);
+            stubServer.start();
+            engine = new OpenAiAssistantEngine("stub-key", stubServer.getBaseUrl());
+            assistantId = "asst_stub";
+            System.out.println("Stand-in server at " + stubServer.getBaseUrl());
+        } else {
+            String apiKey = System.getenv("OPENAI_API_KEY");
+            if (apiKey == null || assistantId == null) {
+                System.out.println("Failed to start load generator: set OPENAI_API_KEY and pass --assistant, or use --stub");
+                System.out.println(USAGE);
+                return;
+            }
+            engine = new OpenAiAssistantEngine(apiKey);
+        }
+
+        Config config = new Config(mode, rate, rampSeconds * 1000, durationSeconds * 1000, questionsPerStudent,
+                thinkMillis, pollMillis, faqShare, reportSeconds * 1000, System.nanoTime());
+        LoadGenerator generator = new LoadGenerator(engine, assistantId,
+                mode == Mode.CHAT ? new IntentRouter(null) : null, config);
+        System.out.println("Running " + mode + " load: " + rate + " students/s after a " + rampSeconds
+                + " s ramp, for " + durationSeconds + " s");
+        Report report = generator.run();
+        System.out.println("Final: " + report);
+        if (stubServer != null) {
+            System.out.println("Stand-in server handled " + stubServer.getRequestCount() + " requests, "
+                    + stubServer.getOpenThreads() + " threads left open");
+            stubServer.stop();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Finds questions worded almost the same as one seen before, locally and in
+ * microseconds, so "What classes am I in?" finds "what classes am I
+ * currently in".
+ *
+ * Each question is normalized as in {@link FrequencySketch} and cut into
+ * overlapping character {@link #SHINGLE_LENGTH}-grams. A MinHash signature
+ * of {@code bands * rows} values estimates how much two shingle sets
+ * overlap, and locality-sensitive hashing splits it into {@code bands}
+ * bands: questions that agree on every value of any one band become
+ * candidates, so a lookup only compares against a handful of entries.
+ *
+ * Every candidate is then verified before it counts as a match: the exact
+ * Jaccard similarity of the shingle sets must reach the threshold, the two
+ * must have the same numbers and negations ("fall 2024" is not "fall 2025",
+ * "am I in" is not "am I not in"), and the two must have the same content
+ * words, apart from stopwords and a few fillers such as "currently". So
+ * "add a class" never matches "drop a class", and a qualifier such as "on
+ * Sunday" or "for my minor" never gets the general answer. The check errs
+ * toward a miss, which costs a run, over a wrong answer.
+ *
+ * Holds at most {@code capacity} questions, evicting the least recently
+ * used. Safe for concurrent use.
+ */
+public class NearDuplicateIndex<V> {
+
+    public static final int SHINGLE_LENGTH = 3;
+    public static final int DEFAULT_BANDS = 16;
+    public static final int DEFAULT_ROWS = 2;
+    public static final double DEFAULT_THRESHOLD = 0.5;
+
+    private static final Set<String> NEGATIONS = Set.of(
+            "not", "no", "never", "cant", "cannot", "dont", "doesnt", "didnt", "isnt", "arent", "wont", "without");
+    // Words that can be added to a question without changing what it asks
+    private static final Set<String> FILLERS = Set.of(
+            "now", "still", "currently", "right", "actually", "just", "exactly");
+
+    /**
+     * The question found, its value and how similar it is (1 for the same
+     * normalized text).
+     */
+    public record Match<V>(String question, V value, double similarity) {
+    }
+
+    private static final class Entry<V> {
+        final String question;
+        final String normalized;
+        final long[] shingles;
+        final long[] bandKeys;
+        final Set<String> keyTokens;
+        final Set<String> contentWords;
+        V value;
+
+        Entry(String question, Features features, V value) {
+            this.question = question;
+            this.normalized = features.normalized;
+            this.shingles = features.shingles;
+            this.bandKeys = features.bandKeys;
+            this.keyTokens = features.keyTokens;
+            this.contentWords = features.contentWords;
+            this.value = value;
+        }
+    }
+
+    private record Features(String normalized, long[] shingles, long[] bandKeys, Set<String> keyTokens,
+            Set<String> contentWords) {
+    }
+
+    private final int bands;
+    private final int rows;
+    private final double threshold;
+    private final int capacity;
+    private final long[] seeds;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Keyed by normalized question, least recently used first
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Set<Entry<V>>> buckets = new HashMap<>();
+
+    public NearDuplicateIndex(int capacity) {
+        this(DEFAULT_BANDS, DEFAULT_ROWS, DEFAULT_THRESHOLD, capacity);
+    }
+
+    /**
+     * @param threshold the Jaccard similarity of shingles a match needs,
+     *                  from 0 to 1
+     */
+    public NearDuplicateIndex(int bands, int rows, double threshold, int capacity) {
+        if (bands <= 0 || rows <= 0 || threshold < 0 || threshold > 1 || capacity <= 0) {
+            throw new IllegalArgumentException("bands, rows and capacity must be positive and threshold between 0 and 1");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.threshold = threshold;
+        this.capacity = capacity;
+        this.seeds = new long[bands * rows];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = mix(0x9e3779b97f4a7c15L * (i + 1));
+        }
+    }
+
+    /**
+     * The most similar verified match for {@code question}, or null.
+     */
+    public Match<V> find(String question) {
+        Features features = features(question);
+        if (features == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            Entry<V> exact = entries.get(features.normalized());
+            if (exact != null) {
+                return new Match<>(exact.question, exact.value, 1.0);
+            }
+            Entry<V> best = null;
+            double bestSimilarity = 0;
+            Set<Entry<V>> seen = new HashSet<>();
+            for (long key : features.bandKeys()) {
+                for (Entry<V> candidate : buckets.getOrDefault(key, Set.of())) {
+                    if (!seen.add(candidate)) {
+                        continue;
+                    }
+                    double similarity = verify(features, candidate);
+                    if (similarity > bestSimilarity) {
+                        best = candidate;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            entries.get(best.normalized); // counts as a use for eviction
+            return new Match<>(best.question, best.value, bestSimilarity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds {@code question}, or replaces the value of the same normalized
+     * question.
+     */
+    public void put(String question, V value) {
+        Features features = features(question);
+        if (features == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry<V> existing = entries.get(features.normalized());
+            if (existing != null) {
+                existing.value = value;
+                return;
+            }
+            Entry<V> entry = new Entry<>(question, features, value);
+            entries.put(features.normalized(), entry);
+            for (long key : entry.bandKeys) {
+                buckets.computeIfAbsent(key, k -> new HashSet<>()).add(entry);
+            }
+            if (entries.size() > capacity) {
+                Iterator<Entry<V>> eldest = entries.values().iterator();
+                Entry<V> evicted = eldest.next();
+                eldest.remove();
+                unlink(evicted);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the entry for the same normalized question.
+     *
+     * @return false if there was none
+     */
+    public boolean remove(String question) {
+        String normalized = FrequencySketch.normalize(question);
+        lock.lock();
+        try {
+            Entry<V> removed = entries.remove(normalized);
+            if (removed == null) {
+                return false;
+            }
+            unlink(removed);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unlink(Entry<V> entry) {
+        for (long key : entry.bandKeys) {
+            Set<Entry<V>> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    // Jaccard similarity if the candidate passes every check, otherwise 0
+    private double verify(Features features, Entry<V> candidate) {
+        if (!features.keyTokens().equals(candidate.keyTokens)
+                || !features.contentWords().equals(candidate.contentWords)) {
+            return 0;
+        }
+        double similarity = jaccard(features.shingles(), candidate.shingles);
+        return similarity >= threshold ? similarity : 0;
+    }
+
+    private Features features(String question) {
+        String normalized = FrequencySketch.normalize(question);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        long[] shingles = shingles(normalized);
+
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (long shingle : shingles) {
+            for (int i = 0; i < seeds.length; i++) {
+                signature[i] = Math.min(signature[i], mix(shingle ^ seeds[i]));
+            }
+        }
+        long[] bandKeys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = 0; row < rows; row++) {
+                key = mix(key * 31 + signature[band * rows + row]);
+            }
+            bandKeys[band] = key;
+        }
+
+        Set<String> keyTokens = new HashSet<>();
+        Set<String> contentWords = new HashSet<>();
+        for (String word : normalized.split(" ")) {
+            if (NEGATIONS.contains(word) || word.chars().anyMatch(Character::isDigit)) {
+                keyTokens.add(word);
+            } else if (!IntentRouter.STOPWORDS.contains(word) && !FILLERS.contains(word)) {
+                contentWords.add(word);
+            }
+        }
+        return new Features(normalized, shingles, bandKeys, keyTokens, contentWords);
+    }
+
+    // Sorted, distinct hashes of the character shingles
+    private static long[] shingles(String normalized) {
+        int count = Math.max(1, normalized.length() - SHINGLE_LENGTH + 1);
+        long[] shingles = new long[count];
+        for (int i = 0; i < count; i++) {
+            String shingle = normalized.substring(i, Math.min(normalized.length(), i + SHINGLE_LENGTH));
+            shingles[i] = FrequencySketch.fingerprint(shingle);
+        }
+        Arrays.sort(shingles);
+        int distinct = 0;
+        for (int i = 0; i < shingles.length; i++) {
+            if (i == 0 || shingles[i] != shingles[i - 1]) {
+                shingles[distinct++] = shingles[i];
+            }
+        }
+        return Arrays.copyOf(shingles, distinct);
+    }
+
+    private static double jaccard(long[] a, long[] b) {
+        int i = 0;
+        int j = 0;
+        int shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (a.length + b.length - shared);
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -3,21 +3,23 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -38,20 +40,46 @@ public class OpenAiAssistantEngine {
      */
     private final String USER_API_KEY;
 
+    // Root of every request URL
+    private final String baseUrl;
+    public static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+
     // Map to store responses by category (e.g., "run", "assistant", "thread", etc.)
     private final Map<String, List<String>> responseLog;
 
     // Maximum number of responses to keep per category (to avoid memory issues)
     private final int maxResponsesPerCategory;
 
+    // How long testAPIKey waits to connect and for the response
+    private static final int API_KEY_TEST_TIMEOUT_MS = 10_000;
+
+    // Local functions used to answer runs that stop in requires_action
+    private volatile ToolRegistry toolRegistry;
+
+    // Journal of created resources, so abandoned ones can be deleted later
+    private volatile ResourceReaper resourceReaper;
+
     /**
      * Constructs a new OpenAiAssistantEngine with the specified API key.
      *
      * @param apiKey The OpenAI API key to use for authentication
      */
     public OpenAiAssistantEngine(String apiKey) {
+        this(apiKey, defaultBaseUrl());
+    }
+
+    /**
+     * Constructs a new OpenAiAssistantEngine that sends its requests to
+     * {@code baseUrl} instead of the OpenAI API, e.g. a local stand-in server
+     * for load tests.
+     *
+     * @param apiKey The OpenAI API key to use for authentication
+     * @param baseUrl The API root, without a trailing slash
+     */
+    public OpenAiAssistantEngine(String apiKey, String baseUrl) {
         this.USER_API_KEY = apiKey;
-        this.responseLog = new HashMap<>();
+        this.baseUrl = baseUrl;
+        this.responseLog = new ConcurrentHashMap<>();
         this.maxResponsesPerCategory = 100;
     }
 
@@ -65,10 +93,21 @@ public class OpenAiAssistantEngine {
      */
     public OpenAiAssistantEngine(String apiKey, int maxResponsesPerCategory) {
         this.USER_API_KEY = apiKey;
-        this.responseLog = new HashMap<>();
+        this.baseUrl = defaultBaseUrl();
+        this.responseLog = new ConcurrentHashMap<>();
         this.maxResponsesPerCategory = maxResponsesPerCategory;
     }
 
+    // OPENAI_BASE_URL points every engine at another server, such as a proxy or a stand-in
+    private static String defaultBaseUrl() {
+        String configured = System.getenv("OPENAI_BASE_URL");
+        return configured == null || configured.isBlank() ? DEFAULT_BASE_URL : configured.replaceAll("/+$", "");
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
     /*
      * Response Logging Methods
      */
@@ -77,14 +116,14 @@ public class OpenAiAssistantEngine {
             return;
         }
 
-        if (!responseLog.containsKey(category)) {
-            responseLog.put(category, new ArrayList<>());
-        }
-
-        List<String> categoryResponses = responseLog.get(category);
-        categoryResponses.add(response);
-        if (categoryResponses.size() > maxResponsesPerCategory) {
-            categoryResponses.remove(0);
+        // Sessions share one engine, so the log is written from many threads
+        List<String> categoryResponses = responseLog.computeIfAbsent(category,
+                key -> Collections.synchronizedList(new ArrayList<>()));
+        synchronized (categoryResponses) {
+            categoryResponses.add(response);
+            if (categoryResponses.size() > maxResponsesPerCategory) {
+                categoryResponses.remove(0);
+            }
         }
     }
 
@@ -94,10 +133,12 @@ public class OpenAiAssistantEngine {
 
     public String getLatestResponse(String category) {
         List<String> responses = getResponsesByCategory(category);
-        if (responses.isEmpty()) {
-            return null;
+        synchronized (responses) {
+            if (responses.isEmpty()) {
+                return null;
+            }
+            return responses.get(responses.size() - 1);
         }
-        return responses.get(responses.size() - 1);
     }
 
     public void clearCategory(String category) {
@@ -112,44 +153,65 @@ public class OpenAiAssistantEngine {
         return new ArrayList<>(responseLog.keySet());
     }
 
+    /**
+     * Sets the local functions used to answer tool calls while waiting for a
+     * run. Without a registry, runs that require action are cancelled.
+     */
+    public void setToolRegistry(ToolRegistry toolRegistry) {
+        this.toolRegistry = toolRegistry;
+    }
+
+    public ToolRegistry getToolRegistry() {
+        return toolRegistry;
+    }
+
+    /**
+     * Sets the reaper that journals every assistant, thread, file and vector
+     * store this engine creates or deletes.
+     */
+    public void setResourceReaper(ResourceReaper resourceReaper) {
+        this.resourceReaper = resourceReaper;
+    }
+
+    private void recordCreated(String resourceType, String resourceId) {
+        ResourceReaper reaper = resourceReaper;
+        if (reaper != null) {
+            reaper.recordCreated(resourceType, resourceId);
+        }
+    }
+
     public static boolean testAPIKey(String apiKey) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<Boolean> future = executor.submit(() -> {
-            String url = "https://api.openai.com/v1/engines";
-            try {
-                URL obj = new URL(url);
-                HttpURLConnection con = (HttpURLConnection) obj.openConnection();
-                con.setRequestMethod("GET");
-                con.setRequestProperty("Authorization", "Bearer " + apiKey);
-                int responseCode = con.getResponseCode();
-                if (responseCode == 200) {
-                    return Boolean.TRUE;
-                } else {
-                    try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
-                        String inputLine;
-                        StringBuilder errorResponse = new StringBuilder();
-                        while ((inputLine = in.readLine()) != null) {
-                            errorResponse.append(inputLine);
-                        }
-                        System.out.println("Failed to test API key: " + errorResponse.toString());
-                    } catch (IOException ex) {
-                        System.out.println("Failed to read error response: " + ex.getMessage());
-                    }
-                    return Boolean.FALSE;
+        return testAPIKey(apiKey, defaultBaseUrl());
+    }
+
+    // Checked against the same server the engines will call
+    public static boolean testAPIKey(String apiKey, String baseUrl) {
+        String url = baseUrl + "/engines";
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("GET");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+            // Socket timeouts bound the check without a thread of its own
+            con.setConnectTimeout(API_KEY_TEST_TIMEOUT_MS);
+            con.setReadTimeout(API_KEY_TEST_TIMEOUT_MS);
+            int responseCode = con.getResponseCode();
+            if (responseCode == 200) {
+                return true;
+            }
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                String inputLine;
+                StringBuilder errorResponse = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    errorResponse.append(inputLine);
                 }
-            } catch (IOException e) {
-                return Boolean.FALSE;
+                System.out.println("Failed to test API key: " + errorResponse.toString());
+            } catch (IOException ex) {
+                System.out.println("Failed to read error response: " + ex.getMessage());
             }
-        });
-        try {
-            return future.get(10, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-            future.cancel(true);
             return false;
-        } catch (InterruptedException | ExecutionException e) {
+        } catch (IOException | IllegalArgumentException e) {
             return false;
-        } finally {
-            executor.shutdown();
         }
     }
 
@@ -157,7 +219,7 @@ public class OpenAiAssistantEngine {
      * File Management Methods
      */
     public String uploadFile(File file, String purpose) {
-        String url = "https://api.openai.com/v1/files";
+        String url = baseUrl + "/files";
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -183,6 +245,7 @@ public class OpenAiAssistantEngine {
                     String line;
                     while ((line = fileReader.readLine()) != null) {
                         writer.write(line);
+                        writer.write("\n"); // Keep line breaks so chunking can follow rows and tables
                     }
                 }
                 writer.write("\r\n--");
@@ -200,6 +263,7 @@ public class OpenAiAssistantEngine {
                 String responseStr = response.toString();
                 logResponse("file_upload", responseStr);
                 JSONObject jsonResponse = new JSONObject(responseStr);
+                recordCreated("files", jsonResponse.getString("id"));
                 return jsonResponse.getString("id");
             } catch (IOException e) {
                 try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
@@ -221,7 +285,7 @@ public class OpenAiAssistantEngine {
     }
 
     public JSONObject retrieveFile(String fileId) {
-        String url = "https://api.openai.com/v1/files/" + fileId;
+        String url = baseUrl + "/files/" + fileId;
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -263,7 +327,7 @@ public class OpenAiAssistantEngine {
      */
     public String createVectorStore(String name, List<String> fileIds, JSONObject chunkingStrategy,
             JSONObject expiresAfter, Map<String, String> metadata) {
-        String url = "https://api.openai.com/v1/vector_stores";
+        String url = baseUrl + "/vector_stores";
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -305,6 +369,7 @@ public class OpenAiAssistantEngine {
                 String responseStr = response.toString();
                 logResponse("vector_store", responseStr);
                 JSONObject jsonResponse = new JSONObject(responseStr);
+                recordCreated("vector_stores", jsonResponse.getString("id"));
                 return jsonResponse.getString("id");
             } catch (IOException e) {
                 try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
@@ -326,7 +391,7 @@ public class OpenAiAssistantEngine {
     }
 
     public String modifyVectorStore(String vectorStoreId, JSONObject expiresAfter, Map<String, String> metadata, String name) {
-        String url = "https://api.openai.com/v1/vector_stores/" + vectorStoreId;
+        String url = baseUrl + "/vector_stores/" + vectorStoreId;
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -381,13 +446,189 @@ public class OpenAiAssistantEngine {
         }
     }
 
+    public String retrieveVectorStore(String vectorStoreId) {
+        String url = baseUrl + "/vector_stores/" + vectorStoreId;
+        String apiKey = USER_API_KEY;
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("GET");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+            con.setRequestProperty("Content-Type", "application/json");
+            con.setRequestProperty("OpenAI-Beta", "assistants=v2");
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                String responseStr = response.toString();
+                logResponse("vector_store_retrieve", responseStr);
+                return responseStr;
+            } catch (IOException e) {
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to retrieve vector store: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to retrieve vector store: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public String createVectorStoreFileBatch(String vectorStoreId, List<String> fileIds, JSONObject chunkingStrategy) {
+        String url = baseUrl + "/vector_stores/" + vectorStoreId + "/file_batches";
+        String apiKey = USER_API_KEY;
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+            con.setRequestProperty("Content-Type", "application/json");
+            con.setRequestProperty("OpenAI-Beta", "assistants=v2");
+            con.setDoOutput(true);
+
+            JSONObject body = new JSONObject();
+            body.put("file_ids", fileIds);
+            if (chunkingStrategy != null) {
+                body.put("chunking_strategy", chunkingStrategy);
+            }
+
+            try (OutputStreamWriter writer = new OutputStreamWriter(con.getOutputStream())) {
+                writer.write(body.toString());
+                writer.flush();
+            }
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                String responseStr = response.toString();
+                logResponse("vector_store_file_batch", responseStr);
+                JSONObject jsonResponse = new JSONObject(responseStr);
+                return jsonResponse.getString("id");
+            } catch (IOException e) {
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to create vector store file batch: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return null;
+            }
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            System.out.println("Failed to create vector store file batch: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public String retrieveVectorStoreFileBatch(String vectorStoreId, String batchId) {
+        String url = baseUrl + "/vector_stores/" + vectorStoreId + "/file_batches/" + batchId;
+        String apiKey = USER_API_KEY;
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("GET");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+            con.setRequestProperty("Content-Type", "application/json");
+            con.setRequestProperty("OpenAI-Beta", "assistants=v2");
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                String responseStr = response.toString();
+                logResponse("vector_store_file_batch_status", responseStr);
+                return responseStr;
+            } catch (IOException e) {
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to retrieve vector store file batch: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to retrieve vector store file batch: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Polls a file batch until it leaves {@code in_progress}.
+     *
+     * @return true if every file in the batch was processed
+     */
+    public boolean waitForFileBatchCompletion(String vectorStoreId, String batchId, int timeoutSeconds, int pollIntervalMiliSeconds) {
+        long startTime = System.currentTimeMillis();
+        long timeoutMillis = timeoutSeconds * 1000L;
+
+        while (System.currentTimeMillis() - startTime < timeoutMillis) {
+            String batchResponse = retrieveVectorStoreFileBatch(vectorStoreId, batchId);
+            if (batchResponse == null) {
+                return false;
+            }
+
+            JSONObject jsonResponse = new JSONObject(batchResponse);
+            String status = jsonResponse.getString("status");
+            if (status.equals("completed")) {
+                JSONObject counts = jsonResponse.optJSONObject("file_counts");
+                if (counts != null && counts.optInt("failed") > 0) {
+                    System.out.println("File batch " + batchId + " finished with " + counts.getInt("failed") + " failed files");
+                    return false;
+                }
+                return true;
+            } else if (status.equals("failed") || status.equals("cancelled")) {
+                System.out.println("File batch ended with status: " + status);
+                return false;
+            }
+
+            try {
+                Thread.sleep(pollIntervalMiliSeconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.out.println("Polling interrupted: " + e.getMessage());
+                return false;
+            }
+        }
+
+        System.out.println("File batch timed out after " + timeoutSeconds + " seconds");
+        return false;
+    }
+
+    public boolean deleteVectorStoreFile(String vectorStoreId, String fileId) {
+        return deleteResource("vector_stores/" + vectorStoreId + "/files", fileId);
+    }
+
     /*
      * Assistant Management Methods
      */
     public String createAssistant(String model, String name, String description, String instructions,
             String reasoningEffort, List<String> toolNames, Map<String, String> metadata,
             Double temperature, Double topP, Map<String, String> toolResources) {
-        String url = "https://api.openai.com/v1/assistants";
+        String url = baseUrl + "/assistants";
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -448,6 +689,7 @@ public class OpenAiAssistantEngine {
                 String responseStr = response.toString();
                 logResponse("assistant", responseStr);
                 JSONObject jsonResponse = new JSONObject(responseStr);
+                recordCreated("assistants", jsonResponse.getString("id"));
                 return jsonResponse.getString("id");
             } catch (IOException e) {
                 try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
@@ -469,7 +711,7 @@ public class OpenAiAssistantEngine {
     }
 
     public String retrieveAssistant(String assistantId) {
-        String url = "https://api.openai.com/v1/assistants/" + assistantId;
+        String url = baseUrl + "/assistants/" + assistantId;
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -511,7 +753,7 @@ public class OpenAiAssistantEngine {
             Map<String, String> metadata, String model, String name, String reasoningEffort,
             JSONObject responseFormat, Double temperature, Map<String, Object> toolResources,
             List<JSONObject> tools, Double topP) {
-        String url = "https://api.openai.com/v1/assistants/" + assistantId;
+        String url = baseUrl + "/assistants/" + assistantId;
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -591,7 +833,7 @@ public class OpenAiAssistantEngine {
     }
 
     public String listAssistants(String after, String before, int limit, String order) {
-        StringBuilder urlBuilder = new StringBuilder("https://api.openai.com/v1/assistants?");
+        StringBuilder urlBuilder = new StringBuilder(baseUrl + "/assistants?");
         if (after != null) {
             urlBuilder.append("after=").append(after).append("&");
         }
@@ -644,9 +886,55 @@ public class OpenAiAssistantEngine {
     /*
      * Thread Management Methods
      */
-    public String createThread(List<JSONObject> messages, Map<String, String> toolResources,
+    public String listFiles(String purpose, String after, int limit) {
+        StringBuilder urlBuilder = new StringBuilder(baseUrl + "/files?");
+        if (purpose != null) {
+            urlBuilder.append("purpose=").append(purpose).append("&");
+        }
+        if (after != null) {
+            urlBuilder.append("after=").append(after).append("&");
+        }
+        if (limit > 0) {
+            urlBuilder.append("limit=").append(Math.min(limit, 10000));
+        }
+
+        try {
+            URL obj = URI.create(urlBuilder.toString()).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("GET");
+            con.setRequestProperty("Authorization", "Bearer " + USER_API_KEY);
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                String responseStr = response.toString();
+                logResponse("files_list", responseStr);
+                return responseStr;
+            } catch (IOException e) {
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to list files: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to list files: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public String createThread(List<JSONObject> messages, Map<String, Object> toolResources,
             Map<String, String> metadata) {
-        String url = "https://api.openai.com/v1/threads";
+        String url = baseUrl + "/threads";
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -682,6 +970,7 @@ public class OpenAiAssistantEngine {
                 String responseStr = response.toString();
                 logResponse("thread", responseStr);
                 JSONObject jsonResponse = new JSONObject(responseStr);
+                recordCreated("threads", jsonResponse.getString("id"));
                 return jsonResponse.getString("id");
             } catch (IOException e) {
                 try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
@@ -703,7 +992,15 @@ public class OpenAiAssistantEngine {
     }
 
     public String addMessageToThread(String threadId, String content) {
-        String url = "https://api.openai.com/v1/threads/" + threadId + "/messages";
+        return addMessageToThread(threadId, "user", content);
+    }
+
+    /**
+     * Adds a message with the given {@code role} ("user" or "assistant") to
+     * a thread, e.g. an answer given without a run.
+     */
+    public String addMessageToThread(String threadId, String role, String content) {
+        String url = baseUrl + "/threads/" + threadId + "/messages";
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -715,7 +1012,7 @@ public class OpenAiAssistantEngine {
             con.setDoOutput(true);
 
             JSONObject body = new JSONObject();
-            body.put("role", "user");
+            body.put("role", role);
             body.put("content", content);
 
             try (OutputStreamWriter writer = new OutputStreamWriter(con.getOutputStream())) {
@@ -753,7 +1050,7 @@ public class OpenAiAssistantEngine {
     }
 
     public List<String> listMessages(String threadId, String runId) {
-        StringBuilder urlBuilder = new StringBuilder("https://api.openai.com/v1/threads/" + threadId + "/messages");
+        StringBuilder urlBuilder = new StringBuilder(baseUrl + "/threads/" + threadId + "/messages");
         if (runId != null) {
             urlBuilder.append("?run_id=").append(runId);
         }
@@ -815,7 +1112,7 @@ public class OpenAiAssistantEngine {
     JSONObject truncationStrategy, JSONObject toolChoice, Boolean parallelToolCalls,
     JSONObject responseFormat, JSONObject toolResources)
 {
-        String url = "https://api.openai.com/v1/threads/" + threadId + "/runs";
+        String url = baseUrl + "/threads/" + threadId + "/runs";
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -916,7 +1213,7 @@ public class OpenAiAssistantEngine {
     }
 
     public String retrieveRun(String threadId, String runId) {
-        String url = "https://api.openai.com/v1/threads/" + threadId + "/runs/" + runId;
+        String url = baseUrl + "/threads/" + threadId + "/runs/" + runId;
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -955,7 +1252,7 @@ public class OpenAiAssistantEngine {
     }
 
     public String retrieveRunStatus(String threadId) {
-        String url = "https://api.openai.com/v1/threads/" + threadId + "/runs";
+        String url = baseUrl + "/threads/" + threadId + "/runs";
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -985,7 +1282,18 @@ public class OpenAiAssistantEngine {
     }
 
     public boolean waitForRunCompletion(String threadId, String runId, int timeoutSeconds, int pollIntervalMiliSeconds) {
+        return waitForRunCompletion(threadId, runId, timeoutSeconds, pollIntervalMiliSeconds, null);
+    }
+
+    /**
+     * Like {@link #waitForRunCompletion(String, String, int, int)}, and also
+     * reports every change of run status to {@code onStatus}, e.g. to drive a
+     * progress indicator.
+     */
+    public boolean waitForRunCompletion(String threadId, String runId, int timeoutSeconds, int pollIntervalMiliSeconds,
+            Consumer<String> onStatus) {
         long startTime = System.currentTimeMillis();
+        String lastStatus = null;
         long timeoutMillis = timeoutSeconds * 1000L;
 
         while (System.currentTimeMillis() - startTime < timeoutMillis) {
@@ -997,9 +1305,18 @@ public class OpenAiAssistantEngine {
 
             JSONObject jsonResponse = new JSONObject(runResponse);
             String status = jsonResponse.getString("status");
+            if (onStatus != null && !status.equals(lastStatus)) {
+                onStatus.accept(status);
+            }
+            lastStatus = status;
 
             if (status.equals("completed")) {
                 return true;
+            } else if (status.equals("requires_action")) {
+                if (!handleRequiredAction(threadId, runId, jsonResponse)) {
+                    return false;
+                }
+                continue; // Poll again right away now that outputs are submitted
             } else if (status.equals("failed") || status.equals("cancelled") || status.equals("expired")) {
                 System.out.println("Run ended with status: " + status);
                 if (jsonResponse.has("last_error")) {
@@ -1021,8 +1338,70 @@ public class OpenAiAssistantEngine {
         return false;
     }
 
+    private boolean handleRequiredAction(String threadId, String runId, JSONObject run) {
+        ToolRegistry registry = toolRegistry;
+        JSONObject requiredAction = run.optJSONObject("required_action");
+        if (registry == null || requiredAction == null || !requiredAction.has("submit_tool_outputs")) {
+            System.out.println("Run requires an action that no local tool can handle; cancelling");
+            cancelRun(threadId, runId);
+            return false;
+        }
+
+        JSONArray toolCalls = requiredAction.getJSONObject("submit_tool_outputs").getJSONArray("tool_calls");
+        List<JSONObject> outputs = registry.execute(toolCalls);
+        return submitToolOutputs(threadId, runId, outputs) != null;
+    }
+
+    public String submitToolOutputs(String threadId, String runId, List<JSONObject> toolOutputs) {
+        String url = baseUrl + "/threads/" + threadId + "/runs/" + runId + "/submit_tool_outputs";
+        String apiKey = USER_API_KEY;
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+            con.setRequestProperty("Content-Type", "application/json");
+            con.setRequestProperty("OpenAI-Beta", "assistants=v2");
+            con.setDoOutput(true);
+
+            JSONObject body = new JSONObject();
+            body.put("tool_outputs", toolOutputs);
+
+            try (OutputStreamWriter writer = new OutputStreamWriter(con.getOutputStream())) {
+                writer.write(body.toString());
+                writer.flush();
+            }
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                String responseStr = response.toString();
+                logResponse("run_tool_outputs", responseStr);
+                return responseStr;
+            } catch (IOException e) {
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to submit tool outputs: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to submit tool outputs: " + e.getMessage());
+            return null;
+        }
+    }
+
     public String cancelRun(String threadId, String runId) {
-        String url = "https://api.openai.com/v1/threads/" + threadId + "/runs/" + runId + "/cancel";
+        String url = baseUrl + "/threads/" + threadId + "/runs/" + runId + "/cancel";
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -1060,11 +1439,234 @@ public class OpenAiAssistantEngine {
         }
     }
 
+    /*
+     * Batch Methods
+     */
+
+    /**
+     * Creates a Batch API job over an uploaded JSONL file (purpose "batch").
+     *
+     * @param endpoint e.g. "/v1/chat/completions"; every line of the file
+     *                 must target it
+     * @param completionWindow currently only "24h"
+     * @return the batch ID, or null if the job could not be created
+     */
+    public String createBatch(String inputFileId, String endpoint, String completionWindow, Map<String, String> metadata) {
+        String url = baseUrl + "/batches";
+        String apiKey = USER_API_KEY;
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+            con.setRequestProperty("Content-Type", "application/json");
+            con.setDoOutput(true);
+
+            JSONObject body = new JSONObject();
+            body.put("input_file_id", inputFileId);
+            body.put("endpoint", endpoint);
+            body.put("completion_window", completionWindow);
+            if (metadata != null && !metadata.isEmpty()) {
+                body.put("metadata", metadata);
+            }
+
+            try (OutputStreamWriter writer = new OutputStreamWriter(con.getOutputStream())) {
+                writer.write(body.toString());
+                writer.flush();
+            }
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                String responseStr = response.toString();
+                logResponse("batch", responseStr);
+                JSONObject jsonResponse = new JSONObject(responseStr);
+                return jsonResponse.getString("id");
+            } catch (IOException e) {
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to create batch: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return null;
+            }
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            System.out.println("Failed to create batch: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public String retrieveBatch(String batchId) {
+        String url = baseUrl + "/batches/" + batchId;
+        String apiKey = USER_API_KEY;
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("GET");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+            con.setRequestProperty("Content-Type", "application/json");
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                String responseStr = response.toString();
+                logResponse("batch_status", responseStr);
+                return responseStr;
+            } catch (IOException e) {
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to retrieve batch: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to retrieve batch: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public String cancelBatch(String batchId) {
+        String url = baseUrl + "/batches/" + batchId + "/cancel";
+        String apiKey = USER_API_KEY;
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+            con.setRequestProperty("Content-Type", "application/json");
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                String responseStr = response.toString();
+                logResponse("batch_cancel", responseStr);
+                return responseStr;
+            } catch (IOException e) {
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to cancel batch: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to cancel batch: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Polls a batch until it reaches a final status: completed, failed,
+     * expired or cancelled. An expired or cancelled batch still has output
+     * for the requests it finished.
+     *
+     * @return the final batch object, or null on timeout or error
+     */
+    public JSONObject waitForBatchCompletion(String batchId, int timeoutSeconds, int pollIntervalMiliSeconds) {
+        long startTime = System.currentTimeMillis();
+        long timeoutMillis = timeoutSeconds * 1000L;
+
+        while (System.currentTimeMillis() - startTime < timeoutMillis) {
+            String batchResponse = retrieveBatch(batchId);
+            if (batchResponse == null) {
+                return null;
+            }
+
+            JSONObject jsonResponse = new JSONObject(batchResponse);
+            String status = jsonResponse.getString("status");
+            if (status.equals("completed") || status.equals("failed") || status.equals("expired") || status.equals("cancelled")) {
+                return jsonResponse;
+            }
+
+            try {
+                Thread.sleep(pollIntervalMiliSeconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.out.println("Polling interrupted: " + e.getMessage());
+                return null;
+            }
+        }
+
+        System.out.println("Batch timed out after " + timeoutSeconds + " seconds");
+        return null;
+    }
+
+    /**
+     * Streams a file's content to {@code destination} without holding it in
+     * memory. The destination is replaced only once the download is complete.
+     *
+     * @return true if the file was downloaded
+     */
+    public boolean downloadFileContent(String fileId, File destination) {
+        String url = baseUrl + "/files/" + fileId + "/content";
+        String apiKey = USER_API_KEY;
+        File partial = new File(destination.getPath() + ".part");
+        try {
+            URL obj = URI.create(url).toURL();
+            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            con.setRequestMethod("GET");
+            con.setRequestProperty("Authorization", "Bearer " + apiKey);
+
+            try (InputStream in = con.getInputStream()) {
+                Files.copy(in, partial.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(partial.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            } catch (IOException e) {
+                partial.delete();
+                // No error stream when the failure was local, e.g. a full disk
+                InputStream error = con.getErrorStream();
+                if (error == null) {
+                    System.out.println("Failed to download file: " + e.getMessage());
+                    return false;
+                }
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(error))) {
+                    String inputLine;
+                    StringBuilder errorResponse = new StringBuilder();
+                    while ((inputLine = errorReader.readLine()) != null) {
+                        errorResponse.append(inputLine);
+                    }
+                    System.out.println("Failed to download file: " + errorResponse.toString());
+                } catch (IOException ex) {
+                    System.out.println("Failed to read error response: " + ex.getMessage());
+                }
+                return false;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to download file: " + e.getMessage());
+            return false;
+        }
+    }
+
     /*
      * Resource Management Methods
      */
     public boolean deleteResource(String resourceType, String resourceId) {
-        String url = "https://api.openai.com/v1/" + resourceType + "/" + resourceId;
+        String url = baseUrl + "/" + resourceType + "/" + resourceId;
         String apiKey = USER_API_KEY;
         try {
             URL obj = new URL(url);
@@ -1077,6 +1679,13 @@ public class OpenAiAssistantEngine {
             }
 
             int responseCode = con.getResponseCode();
+            if (responseCode >= 200 && responseCode < 300 || responseCode == 404) {
+                // A missing resource is as gone as a deleted one
+                ResourceReaper reaper = resourceReaper;
+                if (reaper != null) {
+                    reaper.recordDeleted(resourceType, resourceId);
+                }
+            }
             if (responseCode >= 200 && responseCode < 300) {
                 return true;
             } else {
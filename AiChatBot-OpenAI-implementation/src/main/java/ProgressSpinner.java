@@ -0,0 +1,95 @@
+
+import java.io.PrintStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Predicate;
+
+/**
+ * The "Thinking..." line shown while a run is in progress.
+ *
+ * Frames are drawn by the {@link SharedScheduler}; what the line says comes
+ * from the run's status as it is polled, and a final status clears it.
+ * Pass {@link #onStatus(String)} to
+ * {@code OpenAiAssistantEngine.waitForRunCompletion}. Started on a
+ * {@link ConsoleRenderer}, a frame is drawn only while the renderer has
+ * nothing left to type, so it never lands inside an earlier reply.
+ */
+public class ProgressSpinner {
+
+    public static final long FRAME_MILLIS = 300;
+    private static final String[] FRAMES = {".  ", ".. ", "...", " ..", "  .", "   "};
+    private static final String CLEAR = "\r                                \r";
+
+    // Prints a frame, or returns false if it cannot be printed now
+    private final Predicate<String> print;
+    private volatile String label = "Thinking";
+    private ScheduledFuture<?> frames;
+    private int frame;
+    private boolean drawn;
+    private boolean stopped;
+
+    private ProgressSpinner(Predicate<String> print) {
+        this.print = print;
+    }
+
+    public static ProgressSpinner start(PrintStream out) {
+        return start(text -> {
+            out.print(text);
+            out.flush();
+            return true;
+        });
+    }
+
+    /**
+     * Starts a spinner that draws only while {@code renderer} is idle.
+     */
+    public static ProgressSpinner start(ConsoleRenderer renderer) {
+        return start(renderer::printIfIdle);
+    }
+
+    private static ProgressSpinner start(Predicate<String> print) {
+        ProgressSpinner spinner = new ProgressSpinner(print);
+        synchronized (spinner) {
+            spinner.draw();
+            spinner.frames = SharedScheduler.every(FRAME_MILLIS, spinner::draw);
+        }
+        return spinner;
+    }
+
+    /**
+     * Updates the label for a run status; a final status stops the spinner.
+     */
+    public void onStatus(String status) {
+        switch (status) {
+            case "queued" -> label = "Waiting";
+            case "in_progress" -> label = "Thinking";
+            case "requires_action" -> label = "Looking up course data";
+            case "cancelling" -> label = "Cancelling";
+            default -> stop();
+        }
+    }
+
+    /**
+     * Stops drawing and clears the line. Safe to call more than once.
+     */
+    public synchronized void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        if (frames != null) {
+            frames.cancel(false);
+        }
+        if (drawn) {
+            print.test(CLEAR);
+        }
+    }
+
+    // Synchronized with stop() so a late frame never lands after the line is cleared
+    private synchronized void draw() {
+        if (stopped || !print.test("\r" + label + FRAMES[frame])) {
+            return;
+        }
+        drawn = true;
+        frame = (frame + 1) % FRAMES.length;
+    }
+}
@@ -0,0 +1,253 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * How often each user has asked each question, kept current from the
+ * {@link ConversationLog} in a {@link FrequencySketch}.
+ *
+ * Recounting the whole log would make every startup slower than the last,
+ * so every {@code snapshotEvery} records the sketch is saved to a snapshot
+ * with the sequence number of the last record it includes. Loading reads
+ * the newest snapshot whose CRC-32 matches and replays only the records
+ * after it, which the log finds through its sequence index; startup reads
+ * the fixed-size sketch plus at most one interval of records, however long
+ * the history. The newest {@link #SNAPSHOTS_KEPT} snapshots are kept, so a
+ * damaged one falls back to the one before it.
+ *
+ * Questions can be counted under a canonical wording, so that rewordings
+ * of one question add up; the wordings already most asked are seeded into
+ * it from the snapshot before the replay.
+ */
+public class QuestionCounts {
+
+    public static final int DEFAULT_SNAPSHOT_EVERY = 500;
+    public static final int SNAPSHOTS_KEPT = 2;
+
+    private static final String SNAPSHOT_PREFIX = "counts-";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private record Snapshot(long seq, FrequencySketch sketch) {
+    }
+
+    private final ConversationLog log;
+    private final File directory;
+    private final int snapshotEvery;
+    private final UnaryOperator<String> canonical;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FrequencySketch sketch = new FrequencySketch();
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+    private long countedSeq;
+    private long sinceSnapshot;
+
+    /**
+     * @param directory where snapshots are kept
+     */
+    public QuestionCounts(ConversationLog log, File directory, int snapshotEvery) {
+        this(log, directory, snapshotEvery, UnaryOperator.identity());
+    }
+
+    /**
+     * @param canonical the wording each question is counted under
+     */
+    public QuestionCounts(ConversationLog log, File directory, int snapshotEvery, UnaryOperator<String> canonical) {
+        if (snapshotEvery <= 0) {
+            throw new IllegalArgumentException("snapshotEvery must be positive");
+        }
+        this.log = log;
+        this.directory = directory;
+        this.snapshotEvery = snapshotEvery;
+        this.canonical = canonical;
+    }
+
+    /**
+     * Loads the newest valid snapshot, replays the records logged after it
+     * and then counts each new record as it is logged. Call before turns
+     * are logged.
+     *
+     * @return the number of records replayed, or -1 if the log could not be
+     *         read
+     */
+    public long load() {
+        lock.lock();
+        try {
+            Snapshot snapshot = newestSnapshot();
+            sketch = snapshot == null ? new FrequencySketch() : snapshot.sketch();
+            countedSeq = snapshot == null ? 0 : snapshot.seq();
+            sinceSnapshot = 0;
+            for (FrequencySketch.Entry entry : sketch.top(FrequencySketch.DEFAULT_TOP_K)) {
+                canonical.apply(entry.question());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long replayed = log.scanAfter(countedSeq, this::add);
+        if (replayed < 0) {
+            return -1;
+        }
+        log.setAppendListener(this::count);
+        // A long replay (the first launch after an upgrade, or a lost snapshot) is not repeated next time
+        if (replayed >= snapshotEvery) {
+            snapshot();
+        }
+        return replayed;
+    }
+
+    /**
+     * The counts loaded and kept current; copy it to count anything else.
+     */
+    public FrequencySketch sketch() {
+        lock.lock();
+        try {
+            return sketch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sequence number of the last record counted.
+     */
+    public long getCountedSeq() {
+        lock.lock();
+        try {
+            return countedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Saves the counts now and deletes all but the newest
+     * {@link #SNAPSHOTS_KEPT} snapshots.
+     *
+     * @return false if the snapshot could not be written
+     */
+    public boolean snapshot() {
+        String body;
+        long seq;
+        lock.lock();
+        try {
+            body = sketch.toJson().toString();
+            seq = countedSeq;
+            sinceSnapshot = 0;
+        } finally {
+            lock.unlock();
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        JSONObject header = new JSONObject()
+                .put("seq", seq)
+                .put("length", bytes.length)
+                .put("crc", crc(bytes));
+        File target = snapshotFile(seq);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try {
+            Files.writeString(temp.toPath(), header + "\n" + body + "\n", StandardCharsets.UTF_8);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            List<File> snapshots = snapshotFiles();
+            for (File old : snapshots.subList(Math.min(SNAPSHOTS_KEPT, snapshots.size()), snapshots.size())) {
+                Files.deleteIfExists(old.toPath());
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Failed to save question counts: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The log's append listener: runs while appends wait, so the snapshot is written elsewhere
+    private void count(ConversationLog.Record record) {
+        boolean due;
+        lock.lock();
+        try {
+            add(record);
+            due = ++sinceSnapshot >= snapshotEvery;
+        } finally {
+            lock.unlock();
+        }
+        if (due && snapshotting.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("question-counts-snapshot").start(() -> {
+                try {
+                    snapshot();
+                } finally {
+                    snapshotting.set(false);
+                }
+            });
+        }
+    }
+
+    private void add(ConversationLog.Record record) {
+        lock.lock();
+        try {
+            if (record.seq() <= countedSeq) {
+                return;
+            }
+            sketch.add(record.user(), canonical.apply(record.question()), record.timestamp());
+            countedSeq = record.seq();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Snapshots past the end of the log belong to a log that has since been removed
+    private Snapshot newestSnapshot() {
+        long lastSeq = log.getLastSeq();
+        for (File file : snapshotFiles()) {
+            try {
+                List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                if (lines.size() < 2) {
+                    System.out.println("Failed to read " + file.getName() + ": incomplete");
+                    continue;
+                }
+                JSONObject header = new JSONObject(lines.get(0));
+                byte[] body = lines.get(1).getBytes(StandardCharsets.UTF_8);
+                if (body.length != header.getInt("length") || crc(body) != header.getLong("crc")) {
+                    System.out.println("Failed to read " + file.getName() + ": checksum mismatch");
+                    continue;
+                }
+                if (header.getLong("seq") > lastSeq) {
+                    continue;
+                }
+                return new Snapshot(header.getLong("seq"), FrequencySketch.fromJson(new JSONObject(lines.get(1))));
+            } catch (IOException | JSONException e) {
+                System.out.println("Failed to read " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    // Newest first
+    private List<File> snapshotFiles() {
+        List<File> snapshots = new ArrayList<>();
+        File[] found = directory.listFiles((dir, name) -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX));
+        if (found != null) {
+            snapshots.addAll(List.of(found));
+        }
+        snapshots.sort((a, b) -> b.getName().compareTo(a.getName()));
+        return snapshots;
+    }
+
+    private File snapshotFile(long seq) {
+        return new File(directory, SNAPSHOT_PREFIX + String.format("%020d", seq) + SNAPSHOT_SUFFIX);
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
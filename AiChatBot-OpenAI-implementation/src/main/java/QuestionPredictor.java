@@ -0,0 +1,207 @@
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Predicts a student's next question from the one just asked: a
+ * first-order Markov model of which question follows which, learned from
+ * the {@link ConversationLog}.
+ *
+ * Each student's turns are taken in order, and a question followed by
+ * another within {@link #SESSION_GAP_MILLIS} counts one transition
+ * between them. Questions are counted under a canonical wording, as in
+ * {@link QuestionCounts}, and keyed by their normalized fingerprint. Each
+ * question keeps at most {@link #SUCCESSORS_KEPT} successors, the least
+ * followed giving way to a new one Space-Saving style, and at most
+ * {@code maxStates} questions are kept, the least recently seen dropped
+ * first. Safe for concurrent use.
+ */
+public class QuestionPredictor {
+
+    public static final int DEFAULT_MAX_STATES = 5000;
+    public static final int SUCCESSORS_KEPT = 8;
+    public static final long SESSION_GAP_MILLIS = 30 * 60 * 1000L;
+    public static final long DEFAULT_WINDOW_MILLIS = 90L * 24 * 60 * 60 * 1000;
+
+    /**
+     * A likely next question: how often it followed, and that count over
+     * everything that followed.
+     */
+    public record Prediction(String question, int count, double probability) {
+    }
+
+    private static final class Successor {
+        final String question;
+        int count;
+
+        Successor(String question, int count) {
+            this.question = question;
+            this.count = count;
+        }
+    }
+
+    private static final class State {
+        final Map<Long, Successor> next = new HashMap<>();
+        int total;
+    }
+
+    private record Last(long fingerprint, long timestamp) {
+    }
+
+    private final int maxStates;
+    private final UnaryOperator<String> canonical;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Least recently seen first
+    private final LinkedHashMap<Long, State> states = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Last> lastByUser = new HashMap<>();
+    private long transitions;
+
+    public QuestionPredictor() {
+        this(DEFAULT_MAX_STATES, UnaryOperator.identity());
+    }
+
+    /**
+     * @param canonical the wording each question is counted under
+     */
+    public QuestionPredictor(int maxStates, UnaryOperator<String> canonical) {
+        if (maxStates <= 0) {
+            throw new IllegalArgumentException("maxStates must be positive");
+        }
+        this.maxStates = maxStates;
+        this.canonical = canonical;
+    }
+
+    /**
+     * Learns from the turns logged between {@code fromMillis} and
+     * {@code toMillis}, inclusive.
+     *
+     * @return the number of turns read, or -1 if the log could not be read
+     */
+    public long learn(ConversationLog log, long fromMillis, long toMillis) {
+        return log.scan(fromMillis, toMillis, record -> observe(record.user(), record.question(), record.timestamp()));
+    }
+
+    /**
+     * Counts {@code question}, asked by {@code user} (null for nobody in
+     * particular) at {@code timestampMillis}, as following that user's
+     * previous question.
+     */
+    public void observe(String user, String question, long timestampMillis) {
+        String normalized = FrequencySketch.normalize(question);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        String wording = canonical.apply(question.trim());
+        long fingerprint = FrequencySketch.fingerprintOf(wording);
+        String key = user == null ? "" : user;
+        lock.lock();
+        try {
+            Last last = lastByUser.put(key, new Last(fingerprint, timestampMillis));
+            if (last == null || last.fingerprint() == fingerprint
+                    || timestampMillis - last.timestamp() > SESSION_GAP_MILLIS) {
+                return;
+            }
+            State state = states.get(last.fingerprint());
+            if (state == null) {
+                state = new State();
+                states.put(last.fingerprint(), state);
+                if (states.size() > maxStates) {
+                    Iterator<State> eldest = states.values().iterator();
+                    transitions -= eldest.next().total;
+                    eldest.remove();
+                }
+            }
+            offer(state, fingerprint, wording);
+            state.total++;
+            transitions++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The {@code n} questions most likely to follow {@code question}, most
+     * likely first.
+     */
+    public List<Prediction> predict(String question, int n) {
+        if (FrequencySketch.normalize(question).isEmpty()) {
+            return List.of();
+        }
+        long fingerprint = FrequencySketch.fingerprintOf(canonical.apply(question.trim()));
+        List<Prediction> predictions = new ArrayList<>();
+        lock.lock();
+        try {
+            State state = states.get(fingerprint);
+            if (state == null) {
+                return List.of();
+            }
+            for (Successor successor : state.next.values()) {
+                predictions.add(new Prediction(successor.question, successor.count,
+                        Math.min(1.0, (double) successor.count / state.total)));
+            }
+        } finally {
+            lock.unlock();
+        }
+        predictions.sort(Comparator.comparingInt(Prediction::count).reversed());
+        return predictions.subList(0, Math.min(n, predictions.size()));
+    }
+
+    /**
+     * Questions with at least one known successor.
+     */
+    public int getStateCount() {
+        lock.lock();
+        try {
+            return states.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Transitions counted into the questions kept.
+     */
+    public long getTransitionCount() {
+        lock.lock();
+        try {
+            return transitions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One-line summary of the model's size.
+     */
+    public String metricsSummary() {
+        return getStateCount() + " questions with known follow-ups, " + getTransitionCount() + " transitions";
+    }
+
+    // A new successor takes the place of the least followed one, inheriting its count
+    private static void offer(State state, long fingerprint, String question) {
+        Successor successor = state.next.get(fingerprint);
+        if (successor != null) {
+            successor.count++;
+            return;
+        }
+        if (state.next.size() < SUCCESSORS_KEPT) {
+            state.next.put(fingerprint, new Successor(question, 1));
+            return;
+        }
+        Map.Entry<Long, Successor> least = null;
+        for (Map.Entry<Long, Successor> candidate : state.next.entrySet()) {
+            if (least == null || candidate.getValue().count < least.getValue().count) {
+                least = candidate;
+            }
+        }
+        state.next.remove(least.getKey());
+        state.next.put(fingerprint, new Successor(question, least.getValue().count + 1));
+    }
+}
@@ -0,0 +1,183 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Remembers which assistant was created for which configuration, so a
+ * restart reuses it instead of creating a new one.
+ *
+ * Entries are keyed by a hash of everything that shapes the assistant: model,
+ * name, instructions, tool definitions and knowledge files. A changed
+ * configuration gets a new entry; a known one is checked against the API in
+ * a single parallel validation round.
+ */
+public class ResourceManifest {
+
+    /**
+     * The resources recorded for one configuration.
+     */
+    public record Entry(String assistantId, String vectorStoreId) {
+    }
+
+    /**
+     * Which recorded resources still exist.
+     */
+    public record Validation(boolean assistantValid, boolean vectorStoreValid) {
+    }
+
+    private final File file;
+    private final JSONObject entries;
+
+    private ResourceManifest(File file, JSONObject entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the manifest; a missing or unreadable file yields an empty one.
+     */
+    public static ResourceManifest load(File file) {
+        JSONObject entries = new JSONObject();
+        if (file.exists()) {
+            try {
+                entries = new JSONObject(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+            } catch (IOException | JSONException e) {
+                System.out.println("Failed to read resource manifest: " + e.getMessage());
+            }
+        }
+        return new ResourceManifest(file, entries);
+    }
+
+    /**
+     * @return the entry recorded for the configuration, or null
+     */
+    public synchronized Entry get(String configHash) {
+        JSONObject entry = entries.optJSONObject(configHash);
+        if (entry == null) {
+            return null;
+        }
+        return new Entry(entry.optString("assistant_id", null), entry.optString("vector_store_id", null));
+    }
+
+    /**
+     * Records the entry and writes the manifest.
+     *
+     * @return true if the manifest was saved
+     */
+    public synchronized boolean put(String configHash, Entry entry) {
+        entries.put(configHash, new JSONObject()
+                .put("assistant_id", entry.assistantId())
+                .put("vector_store_id", entry.vectorStoreId()));
+        try {
+            Files.writeString(file.toPath(), entries.toString(2), StandardCharsets.UTF_8);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Failed to save resource manifest: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Every assistant and vector store ID the manifest refers to.
+     */
+    public synchronized Set<String> resourceIds() {
+        Set<String> ids = new HashSet<>();
+        for (String key : entries.keySet()) {
+            JSONObject entry = entries.getJSONObject(key);
+            ids.add(entry.optString("assistant_id"));
+            ids.add(entry.optString("vector_store_id"));
+        }
+        ids.remove("");
+        return ids;
+    }
+
+    /**
+     * Hashes an assistant configuration. Tool definitions are hashed in a
+     * canonical key order, so equal definitions always hash the same.
+     */
+    public static String configHash(String model, String name, String instructions, List<JSONObject> tools, List<String> files) {
+        JSONArray toolArray = new JSONArray();
+        if (tools != null) {
+            for (JSONObject tool : tools) {
+                toolArray.put(tool);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(model).append('\u0000')
+                .append(name).append('\u0000')
+                .append(instructions).append('\u0000');
+        canonical(toolArray, sb);
+        sb.append('\u0000');
+        if (files != null) {
+            sb.append(String.join("\u0000", files));
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void canonical(Object value, StringBuilder sb) {
+        if (value instanceof JSONObject object) {
+            List<String> keys = new ArrayList<>(object.keySet());
+            Collections.sort(keys);
+            sb.append('{');
+            for (String key : keys) {
+                sb.append(JSONObject.quote(key)).append(':');
+                canonical(object.get(key), sb);
+                sb.append(',');
+            }
+            sb.append('}');
+        } else if (value instanceof JSONArray array) {
+            sb.append('[');
+            for (Object item : array) {
+                canonical(item, sb);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else {
+            sb.append(JSONObject.valueToString(value));
+        }
+    }
+
+    /**
+     * Checks the assistant and the vector store concurrently. A null ID is
+     * invalid without a request; an expired vector store is invalid.
+     */
+    public static Validation validate(OpenAiAssistantEngine engine, String assistantId, String vectorStoreId) {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<Boolean> assistantCheck = CompletableFuture.supplyAsync(
+                    () -> assistantId != null && engine.retrieveAssistant(assistantId) != null, executor);
+            CompletableFuture<Boolean> vectorStoreCheck = CompletableFuture.supplyAsync(() -> {
+                if (vectorStoreId == null) {
+                    return false;
+                }
+                String response = engine.retrieveVectorStore(vectorStoreId);
+                return response != null && !"expired".equals(new JSONObject(response).optString("status"));
+            }, executor);
+            return new Validation(assistantCheck.join(), vectorStoreCheck.join());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,444 @@
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Deletes remote resources the app no longer uses.
+ *
+ * The engine journals every assistant, thread, file and vector store it
+ * creates to an append-only file. A sweep deletes the journaled resources that
+ * were released (a finished session's thread), that are threads older than a
+ * day (sessions that crashed), or that no manifest references any more and
+ * are past a grace period (leftovers of earlier launches). Only resources in
+ * this install's own journal are ever deleted: other machines and processes
+ * on the same API key create assistants with the same names. Deletes run in
+ * batches on a small pool, and sweeps run on background threads: from a
+ * periodic schedule, after {@link #release}, and once at shutdown.
+ *
+ * Processes of one install share the journal. Appends and compactions take
+ * a lock on a sibling {@code .lock} file, and a compaction rewrites what the
+ * file holds rather than what this process remembers, so entries other
+ * processes appended are kept.
+ */
+public class ResourceReaper implements AutoCloseable {
+
+    /**
+     * A journaled resource. {@code type} is the API path segment, e.g.
+     * {@code assistants}.
+     */
+    public record Resource(String type, String id, long createdAt, boolean released, int failedDeletes) {
+    }
+
+    public static final List<String> TYPES = List.of("assistants", "threads", "files", "vector_stores");
+
+    private static final int BATCH_SIZE = 20;
+    private static final int MAX_FAILED_DELETES = 3;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 5;
+    // A FileLock is held by the JVM, so reapers of one JVM on the same journal also take this
+    private static final Map<String, ReentrantLock> JOURNAL_LOCKS = new ConcurrentHashMap<>();
+
+    private interface JournalAction {
+        void run() throws IOException;
+    }
+
+    private final OpenAiAssistantEngine engine;
+    private final File journalFile;
+    private final Supplier<Set<String>> retained;
+    private final long graceMillis;
+    private final long threadTtlMillis;
+    private final Map<String, Resource> resources = new LinkedHashMap<>();
+    private final ExecutorService deletePool;
+    // Sweeps block on HTTP, so they run here; the shared scheduler only triggers them
+    private final ExecutorService sweepExecutor;
+    private volatile ScheduledFuture<?> periodicSweep;
+    private final Object sweepLock = new Object();
+
+    /**
+     * @param retained IDs still in use, e.g. everything the resource and
+     *                 vector store manifests point at
+     */
+    public ResourceReaper(OpenAiAssistantEngine engine, File journalFile, Supplier<Set<String>> retained) {
+        this(engine, journalFile, retained, 4, TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(1));
+    }
+
+    public ResourceReaper(OpenAiAssistantEngine engine, File journalFile, Supplier<Set<String>> retained,
+            int concurrency, long graceMillis, long threadTtlMillis) {
+        this.engine = engine;
+        this.journalFile = journalFile;
+        this.retained = retained;
+        this.graceMillis = graceMillis;
+        this.threadTtlMillis = threadTtlMillis;
+        this.deletePool = Executors.newFixedThreadPool(concurrency, daemon("reaper-delete"));
+        this.sweepExecutor = Executors.newSingleThreadExecutor(daemon("reaper-sweep"));
+        replayJournal();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Schedules a sweep every {@code periodMinutes}, the first one after a
+     * full period so startup traffic is not competing with it, and a final
+     * sweep of released resources when the JVM exits.
+     */
+    public void start(long periodMinutes) {
+        long periodMillis = TimeUnit.MINUTES.toMillis(periodMinutes);
+        periodicSweep = SharedScheduler.every(periodMillis, () -> submitSweep(true));
+        Runtime.getRuntime().addShutdownHook(new Thread(this::sweepOnShutdown, "reaper-shutdown"));
+    }
+
+    /*
+     * Journal
+     */
+    public void recordCreated(String type, String id) {
+        if (!TYPES.contains(type)) {
+            return;
+        }
+        Resource resource = new Resource(type, id, System.currentTimeMillis(), false, 0);
+        synchronized (resources) {
+            resources.put(id, resource);
+        }
+        append(new JSONObject().put("op", "created").put("type", type).put("id", id).put("at", resource.createdAt()));
+    }
+
+    public void recordDeleted(String type, String id) {
+        if (!TYPES.contains(type)) {
+            return;
+        }
+        synchronized (resources) {
+            if (resources.remove(id) == null) {
+                return;
+            }
+        }
+        append(new JSONObject().put("op", "deleted").put("type", type).put("id", id));
+    }
+
+    /**
+     * Marks a resource as no longer needed and deletes it in the background.
+     * Returns immediately.
+     */
+    public void release(String type, String id) {
+        synchronized (resources) {
+            Resource resource = resources.get(id);
+            resources.put(id, resource == null
+                    ? new Resource(type, id, System.currentTimeMillis(), true, 0)
+                    : new Resource(type, id, resource.createdAt(), true, resource.failedDeletes()));
+        }
+        append(new JSONObject().put("op", "released").put("type", type).put("id", id));
+        submitSweep(false);
+    }
+
+    private void submitSweep(boolean full) {
+        if (!sweepExecutor.isShutdown()) {
+            sweepExecutor.execute(() -> sweepNow(full));
+        }
+    }
+
+    /**
+     * Sweeps in the background.
+     *
+     * @return the number of resources deleted
+     */
+    public CompletableFuture<Integer> sweep() {
+        return CompletableFuture.supplyAsync(() -> sweepNow(true), sweepExecutor);
+    }
+
+    /**
+     * The journaled resources that a full sweep at {@code now} would delete,
+     * or only the released ones. Retained resources are never deleted, even
+     * once released.
+     */
+    List<Resource> abandoned(long now, Set<String> retainedIds, boolean releasedOnly) {
+        List<Resource> candidates = new ArrayList<>();
+        synchronized (resources) {
+            for (Resource resource : resources.values()) {
+                if (retainedIds.contains(resource.id())) {
+                    continue;
+                }
+                long age = now - resource.createdAt();
+                boolean stale = resource.type().equals("threads") ? age > threadTtlMillis : age > graceMillis;
+                if (resource.released() || !releasedOnly && stale) {
+                    candidates.add(resource);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    public List<Resource> journaled() {
+        synchronized (resources) {
+            return new ArrayList<>(resources.values());
+        }
+    }
+
+    /*
+     * Sweep
+     */
+
+    /**
+     * Deletes abandoned resources in batches. A full sweep first reads the
+     * remote assistant and file listings, so journal entries for resources
+     * that are already gone are dropped; otherwise only released resources
+     * are deleted.
+     *
+     * @return the number of resources deleted
+     */
+    int sweepNow(boolean full) {
+        synchronized (sweepLock) {
+            Set<String> retainedIds = retained == null ? Set.of() : retained.get();
+            long now = System.currentTimeMillis();
+            if (full) {
+                reconcileWithRemote();
+            }
+            List<Resource> candidates = abandoned(now, retainedIds, !full);
+
+            int deleted = 0;
+            for (int i = 0; i < candidates.size(); i += BATCH_SIZE) {
+                deleted += deleteBatch(candidates.subList(i, Math.min(candidates.size(), i + BATCH_SIZE)));
+            }
+            if (full) {
+                compactJournal();
+            }
+            return deleted;
+        }
+    }
+
+    private int deleteBatch(List<Resource> batch) {
+        List<CompletableFuture<Boolean>> deletes = new ArrayList<>();
+        for (Resource resource : batch) {
+            deletes.add(CompletableFuture.supplyAsync(() -> engine.deleteResource(resource.type(), resource.id()), deletePool));
+        }
+        int deleted = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (deletes.get(i).join()) {
+                // The engine normally reports this itself; recording twice is harmless
+                recordDeleted(batch.get(i).type(), batch.get(i).id());
+                deleted++;
+            } else {
+                recordFailure(batch.get(i));
+            }
+        }
+        return deleted;
+    }
+
+    private void recordFailure(Resource resource) {
+        synchronized (resources) {
+            Resource current = resources.get(resource.id());
+            if (current == null) {
+                return;
+            }
+            if (current.failedDeletes() + 1 < MAX_FAILED_DELETES) {
+                resources.put(resource.id(), new Resource(current.type(), current.id(), current.createdAt(),
+                        current.released(), current.failedDeletes() + 1));
+                return;
+            }
+            // Give up; the journal should not grow with resources we cannot delete
+            resources.remove(resource.id());
+        }
+        append(new JSONObject().put("op", "deleted").put("type", resource.type()).put("id", resource.id()));
+    }
+
+    /**
+     * Drops journal entries whose assistant or file no longer exists. Remote
+     * resources missing from the journal are left alone, whatever their
+     * name: they may belong to another install on the same key.
+     */
+    private void reconcileWithRemote() {
+        Map<String, JSONObject> assistants = listAll(after -> engine.listAssistants(after, null, 100, "desc"));
+        Map<String, JSONObject> files = listAll(after -> engine.listFiles("assistants", after, 1000));
+
+        List<Resource> gone = new ArrayList<>();
+        synchronized (resources) {
+            for (Resource resource : resources.values()) {
+                if (resource.type().equals("assistants") && assistants != null && !assistants.containsKey(resource.id())
+                        || resource.type().equals("files") && files != null && !files.containsKey(resource.id())) {
+                    gone.add(resource);
+                }
+            }
+            gone.forEach(resource -> resources.remove(resource.id()));
+        }
+        // Journaled like any delete, so a compaction from the file does not bring them back
+        for (Resource resource : gone) {
+            append(new JSONObject().put("op", "deleted").put("type", resource.type()).put("id", resource.id()));
+        }
+    }
+
+    /**
+     * Follows {@code has_more}/{@code last_id} pagination.
+     *
+     * @return every listed object by ID, or null if a page could not be read
+     */
+    private static Map<String, JSONObject> listAll(Function<String, String> page) {
+        Map<String, JSONObject> all = new LinkedHashMap<>();
+        String after = null;
+        while (true) {
+            String response = page.apply(after);
+            if (response == null) {
+                return null;
+            }
+            try {
+                JSONObject json = new JSONObject(response);
+                JSONArray data = json.optJSONArray("data");
+                if (data == null || data.isEmpty()) {
+                    return all;
+                }
+                for (int i = 0; i < data.length(); i++) {
+                    JSONObject item = data.getJSONObject(i);
+                    all.put(item.getString("id"), item);
+                }
+                after = json.optString("last_id", data.getJSONObject(data.length() - 1).getString("id"));
+                if (!json.optBoolean("has_more")) {
+                    return all;
+                }
+            } catch (JSONException e) {
+                System.out.println("Failed to parse listing: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    private void sweepOnShutdown() {
+        // Released resources only, and never for long: the JVM is waiting on us
+        CompletableFuture<Integer> sweep = CompletableFuture.supplyAsync(() -> sweepNow(false), deletePool);
+        try {
+            sweep.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.out.println("Failed to finish cleanup before exit: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Journal File
+     */
+    private void replayJournal() {
+        try {
+            resources.putAll(readJournal());
+        } catch (IOException | JSONException e) {
+            System.out.println("Failed to read resource journal: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Resource> readJournal() throws IOException {
+        Map<String, Resource> replayed = new LinkedHashMap<>();
+        if (journalFile.exists()) {
+            for (String line : Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JSONObject entry = new JSONObject(line);
+                String id = entry.getString("id");
+                String type = entry.getString("type");
+                switch (entry.getString("op")) {
+                    case "created" -> replayed.put(id, new Resource(type, id, entry.getLong("at"), false, 0));
+                    case "released" -> {
+                        Resource resource = replayed.get(id);
+                        long createdAt = resource == null ? System.currentTimeMillis() : resource.createdAt();
+                        replayed.put(id, new Resource(type, id, createdAt, true, 0));
+                    }
+                    case "deleted" -> replayed.remove(id);
+                    default -> {
+                    }
+                }
+            }
+        }
+        return replayed;
+    }
+
+    // The lock file is never renamed, unlike the journal a compaction replaces
+    private void withJournalLock(JournalAction action) throws IOException {
+        ReentrantLock local = JOURNAL_LOCKS.computeIfAbsent(journalFile.getAbsolutePath(), path -> new ReentrantLock());
+        local.lock();
+        try (FileChannel channel = FileChannel.open(new File(journalFile.getPath() + ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                action.run();
+            } finally {
+                lock.release();
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    private void append(JSONObject entry) {
+        try {
+            withJournalLock(() -> {
+                try (FileWriter writer = new FileWriter(journalFile, StandardCharsets.UTF_8, true)) {
+                    writer.write(entry.toString() + "\n");
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Failed to write resource journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the resources it still tracks, read
+     * back from the file under the lock.
+     */
+    private void compactJournal() {
+        try {
+            withJournalLock(() -> {
+                List<String> lines = new ArrayList<>();
+                for (Resource resource : readJournal().values()) {
+                    lines.add(new JSONObject().put("op", "created").put("type", resource.type())
+                            .put("id", resource.id()).put("at", resource.createdAt()).toString());
+                    if (resource.released()) {
+                        lines.add(new JSONObject().put("op", "released").put("type", resource.type()).put("id", resource.id()).toString());
+                    }
+                }
+                File temp = new File(journalFile.getPath() + ".tmp");
+                Files.write(temp.toPath(), lines, StandardCharsets.UTF_8);
+                Files.move(temp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            });
+        } catch (IOException | JSONException e) {
+            System.out.println("Failed to compact resource journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the periodic sweep. Released resources are still deleted by the
+     * shutdown hook.
+     */
+    @Override
+    public void close() {
+        ScheduledFuture<?> periodic = periodicSweep;
+        if (periodic != null) {
+            periodic.cancel(false);
+        }
+        sweepExecutor.shutdownNow();
+    }
+}
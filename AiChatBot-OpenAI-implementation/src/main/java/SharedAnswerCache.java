@@ -0,0 +1,347 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Answers shared by every chatbot process on a machine, through a
+ * fixed-size hash table in a memory-mapped file. What one process learns
+ * the others answer from, and it survives a restart.
+ *
+ * The file is a header and {@code slots} slots of {@code slotBytes} bytes:
+ *
+ * <pre>
+ *  0  version       long, odd while the slot is being written
+ *  8  key hash      long, 0 for an empty slot
+ * 16  stored at     long, millis
+ * 24  referenced    int, the clock bit
+ * 28  key length    int
+ * 32  answer length int
+ * 36  CRC-32        int, of key and answer
+ * 40  key, then answer, UTF-8
+ * </pre>
+ *
+ * No process takes a lock. A writer claims a slot by moving its version
+ * from even to odd with a compare-and-set, writes it and moves the version
+ * on to the next even number; a writer that loses the race gives up, since
+ * a missed cache write only costs a run. A reader copies the slot and
+ * keeps the copy only if the version was even and unchanged across it (a
+ * seqlock), then checks the key and the CRC. A key is looked for in the
+ * {@link #PROBES} slots from its hash. When all are taken, a clock sweep
+ * over them clears each set referenced bit and evicts the first slot found
+ * clear, so answers read since the last sweep get a second chance. A slot
+ * left odd by a process that died mid-write is reclaimed once it is
+ * {@link #STALE_WRITE_MILLIS} old.
+ *
+ * Keys are the user and the normalized question, since answers draw on
+ * each student's own files. Answers too long for a slot are not shared.
+ */
+public class SharedAnswerCache implements AutoCloseable {
+
+    public static final int DEFAULT_SLOTS = 4096;
+    public static final int DEFAULT_SLOT_BYTES = 4096;
+    public static final int PROBES = 8;
+    public static final long STALE_WRITE_MILLIS = 1000;
+
+    private static final long MAGIC = 0x5055525053584143L; // "PURPSXAC"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_HEADER_BYTES = 40;
+    private static final int READ_ATTEMPTS = 3;
+
+    private static final int VERSION = 0;
+    private static final int HASH = 8;
+    private static final int STORED_AT = 16;
+    private static final int REFERENCED = 24;
+    private static final int KEY_LENGTH = 28;
+    private static final int ANSWER_LENGTH = 32;
+    private static final int CHECKSUM = 36;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final int slotBytes;
+    private final long ttlMillis;
+
+    /**
+     * Opens the table in {@code file}, creating it if needed.
+     *
+     * @param slotBytes a multiple of 8, larger than the slot header
+     * @throws IOException if the file cannot be mapped, or was created with
+     *                     a different number or size of slots
+     */
+    public SharedAnswerCache(File file, int slots, int slotBytes, long ttlMillis) throws IOException {
+        if (slots <= 0 || slotBytes <= SLOT_HEADER_BYTES || slotBytes % Long.BYTES != 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("slots and ttlMillis must be positive and slotBytes a multiple of 8 above "
+                    + SLOT_HEADER_BYTES);
+        }
+        this.file = file;
+        this.slots = slots;
+        this.slotBytes = slotBytes;
+        this.ttlMillis = ttlMillis;
+        long size = HEADER_BYTES + (long) slots * slotBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("the table must be smaller than 2 GB");
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            // Only creating the file is locked, so two processes starting together agree on its layout
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() == 0) {
+                    MappedByteBuffer created = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    created.order(ByteOrder.nativeOrder())
+                            .putInt(8, FORMAT)
+                            .putInt(12, slots)
+                            .putInt(16, slotBytes)
+                            .putLong(0, MAGIC);
+                    created.force();
+                } else if (!hasLayout(size)) {
+                    // Checked before mapping, since mapping past the end would grow the file
+                    throw new IOException(file.getName() + " was created with a different layout");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                lock.release();
+            }
+            buffer.order(ByteOrder.nativeOrder());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The answer {@code user} was given to {@code question}, or null.
+     */
+    public String get(String user, String question) {
+        byte[] key = key(user, question);
+        if (key == null) {
+            return null;
+        }
+        long hash = hash(key);
+        long now = System.currentTimeMillis();
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = slot(hash, probe);
+            byte[] answer = read(slot, hash, key, now);
+            if (answer != null) {
+                INTS.setOpaque(buffer, offset(slot) + REFERENCED, 1);
+                return new String(answer, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shares {@code answer}, replacing any answer to the same question.
+     *
+     * @return false if the answer does not fit in a slot or another process
+     *         was writing the slot chosen
+     */
+    public boolean put(String user, String question, String answer) {
+        byte[] key = key(user, question);
+        if (key == null || answer == null) {
+            return false;
+        }
+        byte[] answerBytes = answer.getBytes(StandardCharsets.UTF_8);
+        if (SLOT_HEADER_BYTES + key.length + answerBytes.length > slotBytes) {
+            return false;
+        }
+        long hash = hash(key);
+        int slot = choose(hash, key);
+        if (slot < 0) {
+            return false;
+        }
+        int base = offset(slot);
+        long version = (long) LONGS.getVolatile(buffer, base + VERSION);
+        if ((version & 1) != 0 || !LONGS.compareAndSet(buffer, base + VERSION, version, version + 1)) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        LONGS.setOpaque(buffer, base + STORED_AT, now); // dates the claim, in case this process dies here
+        LONGS.setOpaque(buffer, base + HASH, hash);
+        INTS.setOpaque(buffer, base + REFERENCED, 1);
+        INTS.setOpaque(buffer, base + KEY_LENGTH, key.length);
+        INTS.setOpaque(buffer, base + ANSWER_LENGTH, answerBytes.length);
+        INTS.setOpaque(buffer, base + CHECKSUM, checksum(key, answerBytes));
+        buffer.put(base + SLOT_HEADER_BYTES, key);
+        buffer.put(base + SLOT_HEADER_BYTES + key.length, answerBytes);
+        // Fails only if the write went stale and the slot was reclaimed; the checksum rejects what was left
+        return LONGS.compareAndSet(buffer, base + VERSION, version + 1, version + 2);
+    }
+
+    public int getSlotCount() {
+        return slots;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Unmaps nothing, since a mapping lives until collected, but releases
+     * the file.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close shared answer cache: " + e.getMessage());
+        }
+    }
+
+    // Whether the existing file is this table: its size and the header written when it was created
+    private boolean hasLayout(long size) throws IOException {
+        if (channel.size() != size) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+        int read;
+        do {
+            read = channel.read(header, header.position());
+        } while (read >= 0 && header.hasRemaining());
+        return header.getLong(0) == MAGIC && header.getInt(8) == FORMAT && header.getInt(12) == slots
+                && header.getInt(16) == slotBytes;
+    }
+
+    // The slot holding the key, else an empty or expired one, else the clock's victim; -1 if all are being written
+    private int choose(long hash, byte[] key) {
+        long now = System.currentTimeMillis();
+        int free = -1;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = slot(hash, probe);
+            int base = offset(slot);
+            long version = (long) LONGS.getVolatile(buffer, base + VERSION);
+            if ((version & 1) != 0) {
+                reclaimIfStale(slot, version, now);
+                continue;
+            }
+            long slotHash = (long) LONGS.getOpaque(buffer, base + HASH);
+            if (slotHash == hash && read(slot, hash, key, Long.MIN_VALUE) != null) {
+                return slot;
+            }
+            if (free < 0 && (slotHash == 0 || now - (long) LONGS.getOpaque(buffer, base + STORED_AT) >= ttlMillis)) {
+                free = slot;
+            }
+        }
+        if (free >= 0) {
+            return free;
+        }
+        // Second chance: the first pass clears referenced bits, so the second always finds a victim
+        for (int pass = 0; pass < 2; pass++) {
+            for (int probe = 0; probe < PROBES; probe++) {
+                int slot = slot(hash, probe);
+                int base = offset(slot);
+                if (((long) LONGS.getVolatile(buffer, base + VERSION) & 1) != 0) {
+                    continue;
+                }
+                if (!INTS.compareAndSet(buffer, base + REFERENCED, 1, 0)) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Takes over a slot its writer left odd, and empties it
+    private void reclaimIfStale(int slot, long version, long now) {
+        int base = offset(slot);
+        if (now - (long) LONGS.getOpaque(buffer, base + STORED_AT) < STALE_WRITE_MILLIS) {
+            return;
+        }
+        if (LONGS.compareAndSet(buffer, base + VERSION, version, version + 2)) {
+            LONGS.setOpaque(buffer, base + HASH, 0L);
+            LONGS.setVolatile(buffer, base + VERSION, version + 3);
+        }
+    }
+
+    // The slot's answer if it holds the key and has not expired by now (never, for Long.MIN_VALUE)
+    private byte[] read(int slot, long hash, byte[] key, long now) {
+        int base = offset(slot);
+        for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+            long before = (long) LONGS.getVolatile(buffer, base + VERSION);
+            if ((before & 1) != 0) {
+                continue;
+            }
+            long slotHash = (long) LONGS.getOpaque(buffer, base + HASH);
+            if (slotHash != hash) {
+                if ((long) LONGS.getVolatile(buffer, base + VERSION) == before) {
+                    return null;
+                }
+                continue;
+            }
+            long storedAt = (long) LONGS.getOpaque(buffer, base + STORED_AT);
+            int keyLength = (int) INTS.getOpaque(buffer, base + KEY_LENGTH);
+            int answerLength = (int) INTS.getOpaque(buffer, base + ANSWER_LENGTH);
+            int checksum = (int) INTS.getOpaque(buffer, base + CHECKSUM);
+            // A torn read can see any lengths; copy nothing until they fit the slot
+            if (keyLength != key.length || answerLength < 0 || SLOT_HEADER_BYTES + keyLength + answerLength > slotBytes) {
+                if ((long) LONGS.getVolatile(buffer, base + VERSION) == before) {
+                    return null;
+                }
+                continue;
+            }
+            byte[] slotKey = new byte[keyLength];
+            byte[] answer = new byte[answerLength];
+            buffer.get(base + SLOT_HEADER_BYTES, slotKey);
+            buffer.get(base + SLOT_HEADER_BYTES + keyLength, answer);
+            VarHandle.acquireFence();
+            if ((long) LONGS.getVolatile(buffer, base + VERSION) != before) {
+                continue;
+            }
+            if (!Arrays.equals(slotKey, key) || checksum(slotKey, answer) != checksum) {
+                return null;
+            }
+            if (now != Long.MIN_VALUE && now - storedAt >= ttlMillis) {
+                return null;
+            }
+            return answer;
+        }
+        return null;
+    }
+
+    private int slot(long hash, int probe) {
+        return (int) Math.floorMod(hash + probe, (long) slots);
+    }
+
+    private int offset(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private static byte[] key(String user, String question) {
+        String normalized = FrequencySketch.normalize(question);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        return ((user == null ? "" : user) + "\n" + normalized).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Never 0, which marks an empty slot
+    private static long hash(byte[] key) {
+        long hash = FrequencySketch.fingerprint(new String(key, StandardCharsets.UTF_8));
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int checksum(byte[] key, byte[] answer) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(answer);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,65 @@
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The process-wide scheduler for periodic work: spinner frames, timing
+ * wheel ticks and sweep triggers. A small fixed number of daemon threads
+ * serves every session, so nothing periodic needs a thread of its own.
+ *
+ * Tasks run on the scheduler's threads and must be short; anything that
+ * blocks (HTTP calls, file I/O) should be handed to another executor.
+ */
+public final class SharedScheduler {
+
+    public static final int THREADS = 2;
+
+    private static final ScheduledThreadPoolExecutor EXECUTOR = create();
+
+    private SharedScheduler() {
+    }
+
+    private static ScheduledThreadPoolExecutor create() {
+        AtomicInteger count = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "scheduler-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Spinners and timeouts are cancelled far more often than they run out
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    public static ScheduledExecutorService executor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Runs {@code task} every {@code periodMillis}, starting one period from
+     * now. An exception is reported and does not stop later runs.
+     */
+    public static ScheduledFuture<?> every(long periodMillis, Runnable task) {
+        return EXECUTOR.scheduleAtFixedRate(guarded(task), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code task} once, {@code delayMillis} from now.
+     */
+    public static ScheduledFuture<?> after(long delayMillis, Runnable task) {
+        return EXECUTOR.schedule(guarded(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static Runnable guarded(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("Failed to run scheduled task: " + e.getMessage());
+            }
+        };
+    }
+}
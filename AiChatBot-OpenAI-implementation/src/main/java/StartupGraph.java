@@ -0,0 +1,149 @@
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs startup work as a dependency graph. Each stage starts as soon as the
+ * stages it depends on have succeeded, so independent work (the login
+ * prompt, uploads, assistant creation) overlaps instead of running one after
+ * another. A stage whose dependency failed is skipped.
+ */
+public class StartupGraph {
+
+    /**
+     * A unit of startup work.
+     */
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * @return true on success; false skips the stages that depend on it
+         */
+        boolean run() throws Exception;
+    }
+
+    public enum Status {
+        OK, FAILED, SKIPPED
+    }
+
+    /**
+     * When a stage ran, relative to the start of the graph.
+     */
+    public record Timing(String stage, long startMillis, long durationMillis, Status status) {
+    }
+
+    private record Stage(String name, Task task, String[] dependsOn) {
+    }
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Map<String, Timing> timings = new LinkedHashMap<>();
+    private long totalMillis;
+
+    /**
+     * Adds a stage. Dependencies must already have been added, which also
+     * rules out cycles.
+     */
+    public StartupGraph stage(String name, Task task, String... dependsOn) {
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate stage: " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!stages.containsKey(dependency)) {
+                throw new IllegalArgumentException("Stage " + name + " depends on unknown stage " + dependency);
+            }
+        }
+        stages.put(name, new Stage(name, task, dependsOn));
+        return this;
+    }
+
+    /**
+     * Runs every stage and waits for all of them.
+     *
+     * @return true if every stage succeeded
+     */
+    public boolean run() {
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        Map<String, CompletableFuture<Status>> futures = new LinkedHashMap<>();
+        try {
+            for (Stage stage : stages.values()) {
+                List<CompletableFuture<Status>> dependencies = new ArrayList<>();
+                for (String dependency : stage.dependsOn()) {
+                    dependencies.add(futures.get(dependency));
+                }
+                CompletableFuture<Status> future = CompletableFuture
+                        .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                        .thenApplyAsync(ignored -> {
+                            for (CompletableFuture<Status> dependency : dependencies) {
+                                if (dependency.join() != Status.OK) {
+                                    record(stage.name(), start, System.nanoTime(), System.nanoTime(), Status.SKIPPED);
+                                    return Status.SKIPPED;
+                                }
+                            }
+                            return execute(stage, start);
+                        }, executor);
+                futures.put(stage.name(), future);
+            }
+
+            boolean success = true;
+            for (CompletableFuture<Status> future : futures.values()) {
+                success &= future.join() == Status.OK;
+            }
+            return success;
+        } finally {
+            totalMillis = (System.nanoTime() - start) / 1_000_000;
+            executor.shutdown();
+        }
+    }
+
+    private Status execute(Stage stage, long graphStart) {
+        long stageStart = System.nanoTime();
+        Status status;
+        try {
+            status = stage.task().run() ? Status.OK : Status.FAILED;
+        } catch (Exception e) {
+            System.out.println("Failed to run startup stage " + stage.name() + ": " + e.getMessage());
+            status = Status.FAILED;
+        }
+        record(stage.name(), graphStart, stageStart, System.nanoTime(), status);
+        return status;
+    }
+
+    private synchronized void record(String name, long graphStart, long stageStart, long stageEnd, Status status) {
+        timings.put(name, new Timing(name, (stageStart - graphStart) / 1_000_000, (stageEnd - stageStart) / 1_000_000, status));
+    }
+
+    /**
+     * Stage timings in the order the stages were added.
+     */
+    public synchronized List<Timing> timings() {
+        List<Timing> ordered = new ArrayList<>();
+        for (String name : stages.keySet()) {
+            Timing timing = timings.get(name);
+            if (timing != null) {
+                ordered.add(timing);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * One line per stage with its start offset and duration.
+     */
+    public String timingReport() {
+        StringBuilder sb = new StringBuilder("Startup finished in " + totalMillis + " ms");
+        for (Timing timing : timings()) {
+            sb.append(String.format("%n - %-14s +%6d ms %7d ms  %s",
+                    timing.stage(), timing.startMillis(), timing.durationMillis(), timing.status()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,459 @@
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the Assistants API thread endpoints and the Batch
+ * API, for load tests and offline tests that must not spend tokens or hit
+ * rate limits.
+ *
+ * Point an engine at {@link #getBaseUrl()}. A run reports {@code in_progress}
+ * until its simulated latency has passed and then {@code completed}, with an
+ * answer that echoes the question. No thread sleeps while a run is
+ * "thinking", so the stub itself scales to thousands of open runs. Batches
+ * complete the same way, answering every line of their input file. A
+ * fraction of run creations and batch requests can be made to fail with a
+ * 500 to exercise error handling.
+ *
+ * <pre>
+ * POST   /threads                       POST /threads/{id}/messages
+ * POST   /threads/{id}/runs             GET  /threads/{id}/runs/{run}
+ * POST   /threads/{id}/runs/{run}/cancel
+ * GET    /threads/{id}/messages?run_id= DELETE /threads/{id}
+ * POST   /files (multipart)             GET  /files/{id}/content
+ * DELETE /files/{id}
+ * POST   /batches                       GET  /batches/{id}
+ * POST   /batches/{id}/cancel          GET  /engines (the API key check)
+ * </pre>
+ */
+public class StubAssistantServer {
+
+    private static final class StubThread {
+        volatile String lastQuestion = "";
+        final Map<String, StubRun> runs = new ConcurrentHashMap<>();
+    }
+
+    private static final class StubRun {
+        final String question;
+        final long completesAtNanos;
+        volatile boolean cancelled;
+
+        StubRun(String question, long completesAtNanos) {
+            this.question = question;
+            this.completesAtNanos = completesAtNanos;
+        }
+
+        String status() {
+            if (cancelled) {
+                return "cancelled";
+            }
+            return System.nanoTime() >= completesAtNanos ? "completed" : "in_progress";
+        }
+    }
+
+    private record BatchEnding(String status, int answered) {
+    }
+
+    private static final class StubBatch {
+        final String inputFileId;
+        final long completesAtNanos;
+        volatile boolean cancelled;
+        volatile String status;
+        volatile String outputFileId;
+        volatile String errorFileId;
+
+        StubBatch(String inputFileId, long completesAtNanos) {
+            this.inputFileId = inputFileId;
+            this.completesAtNanos = completesAtNanos;
+        }
+    }
+
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double errorRate;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, StubThread> threads = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, StubBatch> batches = new ConcurrentHashMap<>();
+    private volatile BatchEnding batchEnding = new BatchEnding("completed", Integer.MAX_VALUE);
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * @param port      0 picks a free port
+     * @param errorRate fraction of run creations and batch requests answered
+     *                  with a 500
+     */
+    public StubAssistantServer(int port, long minLatencyMillis, long maxLatencyMillis, double errorRate) throws IOException {
+        if (minLatencyMillis < 0 || maxLatencyMillis < minLatencyMillis) {
+            throw new IllegalArgumentException("latency range must satisfy 0 <= min <= max");
+        }
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.errorRate = errorRate;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(requestExecutor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        requestExecutor.shutdown();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/v1";
+    }
+
+    /**
+     * Threads created and not yet deleted.
+     */
+    public int getOpenThreads() {
+        return threads.size();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Files uploaded or produced by batches and not yet deleted.
+     */
+    public int getStoredFiles() {
+        return files.size();
+    }
+
+    public int getBatchCount() {
+        return batches.size();
+    }
+
+    /**
+     * Makes batches that finish from now on end as {@code status}
+     * ("completed", "expired", "cancelled" or "failed"), with output for
+     * only their first {@code answered} requests. A failed batch has none.
+     */
+    public void endBatches(String status, int answered) {
+        batchEnding = new BatchEnding(status, answered);
+    }
+
+    /*
+     * Request Handling
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+            // Paths are /v1/{resource}/...
+            if (path.length < 2 || !path[0].equals("v1")) {
+                send(exchange, 404, error("Not found"));
+                return;
+            }
+            switch (path[1]) {
+                case "threads" -> handleThreads(exchange, method, path);
+                case "files" -> handleFiles(exchange, method, path);
+                case "batches" -> handleBatches(exchange, method, path);
+                case "engines" -> send(exchange, 200, new JSONObject().put("object", "list").put("data", new JSONArray()));
+                default -> send(exchange, 404, error("Not found"));
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Failed to handle stub request: " + e.getMessage());
+        }
+    }
+
+    private void handleThreads(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (path.length == 2 && method.equals("POST")) {
+            createThread(exchange);
+            return;
+        }
+        StubThread thread = path.length > 2 ? threads.get(path[2]) : null;
+        if (thread == null) {
+            send(exchange, 404, error("No thread found"));
+        } else if (path.length == 3 && method.equals("DELETE")) {
+            threads.remove(path[2]);
+            send(exchange, 200, new JSONObject().put("id", path[2]).put("deleted", true));
+        } else if (path.length == 4 && path[3].equals("messages") && method.equals("POST")) {
+            JSONObject body = readJson(exchange);
+            thread.lastQuestion = body == null ? "" : body.optString("content");
+            send(exchange, 200, new JSONObject().put("id", nextId("msg")).put("object", "thread.message"));
+        } else if (path.length == 4 && path[3].equals("messages") && method.equals("GET")) {
+            listMessages(exchange, thread);
+        } else if (path.length == 4 && path[3].equals("runs") && method.equals("POST")) {
+            createRun(exchange, thread);
+        } else if (path.length == 5 && path[3].equals("runs") && method.equals("GET")) {
+            StubRun run = thread.runs.get(path[4]);
+            if (run == null) {
+                send(exchange, 404, error("No run found"));
+            } else {
+                send(exchange, 200, new JSONObject().put("id", path[4]).put("object", "thread.run").put("status", run.status()));
+            }
+        } else if (path.length == 6 && path[3].equals("runs") && path[5].equals("cancel") && method.equals("POST")) {
+            StubRun run = thread.runs.get(path[4]);
+            if (run == null) {
+                send(exchange, 404, error("No run found"));
+            } else {
+                run.cancelled = true;
+                send(exchange, 200, new JSONObject().put("id", path[4]).put("status", "cancelling"));
+            }
+        } else {
+            send(exchange, 404, error("Not found"));
+        }
+    }
+
+    private void createThread(HttpExchange exchange) throws IOException {
+        JSONObject body = readJson(exchange);
+        StubThread thread = new StubThread();
+        JSONArray messages = body == null ? null : body.optJSONArray("messages");
+        if (messages != null && !messages.isEmpty()) {
+            thread.lastQuestion = messages.getJSONObject(messages.length() - 1).optString("content");
+        }
+        String threadId = nextId("thread");
+        threads.put(threadId, thread);
+        send(exchange, 200, new JSONObject().put("id", threadId).put("object", "thread"));
+    }
+
+    private void createRun(HttpExchange exchange, StubThread thread) throws IOException {
+        readJson(exchange);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            send(exchange, 500, error("Simulated server error"));
+            return;
+        }
+        long latencyMillis = minLatencyMillis == maxLatencyMillis
+                ? minLatencyMillis
+                : random.nextLong(minLatencyMillis, maxLatencyMillis + 1);
+        String runId = nextId("run");
+        thread.runs.put(runId, new StubRun(thread.lastQuestion, System.nanoTime() + latencyMillis * 1_000_000));
+        send(exchange, 200, new JSONObject().put("id", runId).put("object", "thread.run").put("status", "queued"));
+    }
+
+    private void listMessages(HttpExchange exchange, StubThread thread) throws IOException {
+        JSONArray data = new JSONArray();
+        String runId = queryParameter(exchange, "run_id");
+        StubRun run = runId == null ? null : thread.runs.get(runId);
+        if (run != null && run.status().equals("completed")) {
+            JSONObject text = new JSONObject().put("value", "Stub answer to: " + run.question).put("annotations", new JSONArray());
+            data.put(new JSONObject()
+                    .put("id", nextId("msg"))
+                    .put("role", "assistant")
+                    .put("run_id", runId)
+                    .put("content", new JSONArray().put(new JSONObject().put("type", "text").put("text", text))));
+        }
+        send(exchange, 200, new JSONObject().put("object", "list").put("data", data));
+    }
+
+    private void handleFiles(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (path.length == 2 && method.equals("POST")) {
+            byte[] content = multipartFile(exchange);
+            if (content == null) {
+                send(exchange, 400, error("Missing file"));
+                return;
+            }
+            String fileId = nextId("file");
+            files.put(fileId, content);
+            send(exchange, 200, new JSONObject().put("id", fileId).put("object", "file").put("bytes", content.length));
+        } else if (path.length == 3 && method.equals("DELETE")) {
+            boolean deleted = files.remove(path[2]) != null;
+            send(exchange, deleted ? 200 : 404, deleted
+                    ? new JSONObject().put("id", path[2]).put("deleted", true)
+                    : error("No such file"));
+        } else if (path.length == 4 && path[3].equals("content") && method.equals("GET")) {
+            byte[] content = files.get(path[2]);
+            if (content == null) {
+                send(exchange, 404, error("No such file"));
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        } else {
+            send(exchange, 404, error("Not found"));
+        }
+    }
+
+    private void handleBatches(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (path.length == 2 && method.equals("POST")) {
+            JSONObject body = readJson(exchange);
+            String inputFileId = body == null ? null : body.optString("input_file_id", null);
+            if (inputFileId == null || !files.containsKey(inputFileId)) {
+                send(exchange, 400, error("Unknown input file"));
+                return;
+            }
+            String batchId = nextId("batch");
+            batches.put(batchId, new StubBatch(inputFileId, System.nanoTime() + maxLatencyMillis * 1_000_000));
+            send(exchange, 200, batchJson(batchId, "validating", null));
+        } else if (path.length == 3 && method.equals("GET")) {
+            StubBatch batch = batches.get(path[2]);
+            if (batch == null) {
+                send(exchange, 404, error("No such batch"));
+            } else if (batch.cancelled) {
+                send(exchange, 200, batchJson(path[2], "cancelled", batch));
+            } else if (System.nanoTime() < batch.completesAtNanos) {
+                send(exchange, 200, batchJson(path[2], "in_progress", null));
+            } else {
+                finishBatch(batch);
+                JSONObject json = batchJson(path[2], batch.status, batch);
+                if (batch.status.equals("failed")) {
+                    json.put("errors", new JSONObject().put("data", new JSONArray()
+                            .put(new JSONObject().put("code", "invalid_request").put("message", "Simulated validation error"))));
+                }
+                send(exchange, 200, json);
+            }
+        } else if (path.length == 4 && path[3].equals("cancel") && method.equals("POST")) {
+            StubBatch batch = batches.get(path[2]);
+            if (batch == null) {
+                send(exchange, 404, error("No such batch"));
+            } else {
+                batch.cancelled = true;
+                send(exchange, 200, batchJson(path[2], "cancelling", null));
+            }
+        } else {
+            send(exchange, 404, error("Not found"));
+        }
+    }
+
+    // Answers the request lines once, the first time the batch is seen complete
+    private synchronized void finishBatch(StubBatch batch) {
+        if (batch.status != null) {
+            return;
+        }
+        BatchEnding ending = batchEnding;
+        batch.status = ending.status();
+        if (ending.status().equals("failed")) {
+            return;
+        }
+        int left = ending.answered();
+        StringBuilder output = new StringBuilder();
+        StringBuilder errors = new StringBuilder();
+        String input = new String(files.getOrDefault(batch.inputFileId, new byte[0]), StandardCharsets.UTF_8);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (String line : input.split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (left-- <= 0) {
+                break;
+            }
+            JSONObject request = new JSONObject(line);
+            String customId = request.getString("custom_id");
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                JSONObject response = new JSONObject().put("status_code", 500)
+                        .put("body", new JSONObject().put("error", new JSONObject().put("message", "Simulated server error")));
+                errors.append(new JSONObject().put("id", nextId("req")).put("custom_id", customId)
+                        .put("response", response).put("error", JSONObject.NULL)).append('\n');
+                continue;
+            }
+            JSONArray messages = request.getJSONObject("body").getJSONArray("messages");
+            String question = messages.getJSONObject(messages.length() - 1).optString("content");
+            JSONObject message = new JSONObject().put("role", "assistant").put("content", "Stub answer to: " + question);
+            JSONObject body = new JSONObject().put("object", "chat.completion")
+                    .put("choices", new JSONArray().put(new JSONObject().put("index", 0).put("message", message)));
+            output.append(new JSONObject().put("id", nextId("req")).put("custom_id", customId)
+                    .put("response", new JSONObject().put("status_code", 200).put("body", body))
+                    .put("error", JSONObject.NULL)).append('\n');
+        }
+        String outputFileId = nextId("file");
+        files.put(outputFileId, output.toString().getBytes(StandardCharsets.UTF_8));
+        if (errors.length() > 0) {
+            String errorFileId = nextId("file");
+            files.put(errorFileId, errors.toString().getBytes(StandardCharsets.UTF_8));
+            batch.errorFileId = errorFileId;
+        }
+        batch.outputFileId = outputFileId;
+    }
+
+    private static JSONObject batchJson(String batchId, String status, StubBatch batch) {
+        JSONObject json = new JSONObject().put("id", batchId).put("object", "batch").put("status", status);
+        if (batch != null) {
+            json.put("output_file_id", batch.outputFileId == null ? JSONObject.NULL : batch.outputFileId);
+            json.put("error_file_id", batch.errorFileId == null ? JSONObject.NULL : batch.errorFileId);
+        }
+        return json;
+    }
+
+    // The engine's uploads have a single file part after a "purpose" part
+    private static byte[] multipartFile(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        int boundaryAt = contentType == null ? -1 : contentType.indexOf("boundary=");
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        if (boundaryAt < 0) {
+            return null;
+        }
+        String boundary = "--" + contentType.substring(boundaryAt + "boundary=".length());
+        String text = new String(body, StandardCharsets.UTF_8);
+        int filePart = text.indexOf("name=\"file\"");
+        int start = filePart < 0 ? -1 : text.indexOf("\r\n\r\n", filePart);
+        int end = text.lastIndexOf("\r\n" + boundary + "--");
+        if (start < 0 || end < start) {
+            return null;
+        }
+        return text.substring(start + 4, end).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String nextId(String prefix) {
+        return prefix + "_stub" + ids.incrementAndGet();
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static JSONObject readJson(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return body.isBlank() ? new JSONObject() : new JSONObject(body);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("error", new JSONObject().put("message", message).put("type", "server_error"));
+    }
+
+    private static void send(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
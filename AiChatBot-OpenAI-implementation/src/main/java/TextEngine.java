@@ -4,8 +4,10 @@ import java.io.IOException;
 public class TextEngine {
 
     private static int delay = 30; // Default speed in milliseconds
+    private static final ConsoleRenderer renderer = ConsoleRenderer.forStdout(delay);
 
     public static void clearScreen() {
+        renderer.skip(); // anything still typing would land on the cleared screen
         try {
             if (System.getProperty("os.name").contains("Windows")) {
                 new ProcessBuilder("cmd", "/c", "cls").inheritIO().start().waitFor();
@@ -18,24 +20,35 @@ public class TextEngine {
         }
     }
 
+    // Returns at once; the renderer types the message out on its own thread
     public static void printWithDelay(String message, boolean newLine) {
-        for (char c : message.toCharArray()) {
-            System.out.print(c);
-            try {
-                Thread.sleep(20);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
-        if (newLine) {
-            System.out.println();
-        } else {
-            System.out.flush(); // ensures it prints immediately
-        }
+        renderer.write(newLine ? message + System.lineSeparator() : message);
+    }
+
+    // Prints the rest of the message being typed out right away
+    public static void skipAnimation() {
+        renderer.skip();
+    }
+
+    // Waits for queued text to finish typing, e.g. before printing directly to System.out
+    public static void awaitRendered() {
+        renderer.awaitIdle(60_000);
+    }
+
+    // Prints at once, after queued text finishes typing, for lines that should not be animated
+    public static void printNow(String message) {
+        awaitRendered();
+        System.out.println(message);
+    }
+
+    // A "Thinking..." line that waits for queued text to finish typing before it draws
+    public static ProgressSpinner startSpinner() {
+        return ProgressSpinner.start(renderer);
     }
 
     public static void setDelay(int newDelay) {
         delay = Math.max(0, newDelay);
+        renderer.setDelay(delay);
     }
 
     public static int getDelay() {
@@ -64,16 +77,11 @@ public class TextEngine {
         String resetColor = "\033[0m";
         String[] colors = {redColor, yellowColor, greenColor, cyanColor, blueColor, purpleColor};
 
+        StringBuilder rainbow = new StringBuilder();
         for (int i = 0; i < text.length(); i++) {
-            System.out.print(colors[i % colors.length] + text.charAt(i));
-            System.out.flush();
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
+            rainbow.append(colors[i % colors.length]).append(text.charAt(i));
         }
-        System.out.println(resetColor); // Reset to default color
+        rainbow.append(resetColor).append(System.lineSeparator()); // Reset to default color
+        renderer.write(rainbow.toString());
     }
 }
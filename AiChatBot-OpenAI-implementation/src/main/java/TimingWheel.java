@@ -0,0 +1,238 @@
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Inactivity timeouts for any number of sessions, ticked by the
+ * {@link SharedScheduler}.
+ *
+ * A hashed timing wheel: a ring of buckets, one per tick, each a doubly
+ * linked list of timeouts. A timeout further away than one revolution sits
+ * in its bucket until the wheel comes round to its deadline. Scheduling,
+ * resetting and cancelling are O(1) list operations, so resetting a
+ * session's timeout on every message is cheap, and expiry is accurate to
+ * one tick. Expired tasks run on a separate executor so a slow callback
+ * never delays the wheel.
+ */
+public class TimingWheel implements AutoCloseable {
+
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final class Shared {
+        static final TimingWheel INSTANCE = new TimingWheel(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE,
+                Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * One scheduled task. A handle stays usable after it expires or is
+     * cancelled: {@link #reset()} arms it again.
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final long delayMillis;
+        private long deadlineTick;
+        private int bucket = -1;
+        private Timeout previous;
+        private Timeout next;
+        private volatile boolean expired;
+
+        private Timeout(long delayMillis, Runnable task) {
+            this.delayMillis = delayMillis;
+            this.task = task;
+        }
+
+        /**
+         * Restarts the full delay from now.
+         */
+        public void reset() {
+            lock.lock();
+            try {
+                unlink(this);
+                expired = false;
+                link(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return true if the timeout was pending and will no longer run
+         */
+        public boolean cancel() {
+            lock.lock();
+            try {
+                boolean pending = bucket >= 0;
+                unlink(this);
+                expired = false;
+                return pending;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final Timeout[] heads;
+    private final Executor callbackExecutor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long startNanos = System.nanoTime();
+    private final ScheduledFuture<?> ticks;
+    private long tick; // the next bucket to expire, guarded by lock
+    private int pending;
+    private volatile boolean closed;
+
+    /**
+     * @param wheelSize rounded up to a power of two
+     */
+    public TimingWheel(long tickMillis, int wheelSize, Executor callbackExecutor) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.heads = new Timeout[size];
+        this.callbackExecutor = callbackExecutor;
+        this.ticks = SharedScheduler.every(tickMillis, this::advance);
+    }
+
+    /**
+     * The wheel shared by every session in this JVM.
+     */
+    public static TimingWheel shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Runs {@code task} once, {@code delayMillis} from now, unless the
+     * returned timeout is reset or cancelled first.
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        if (closed) {
+            throw new IllegalStateException("Timing wheel is closed");
+        }
+        Timeout timeout = new Timeout(Math.max(0, delayMillis), task);
+        lock.lock();
+        try {
+            link(timeout);
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * Number of timeouts waiting to expire.
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ticks.cancel(false);
+    }
+
+    private void link(Timeout timeout) {
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000 + timeout.delayMillis;
+        // The tick whose end is the first at or after the deadline
+        long deadlineTick = Math.max(tick, (elapsedMillis + tickMillis - 1) / tickMillis - 1);
+        int index = (int) (deadlineTick & mask);
+        timeout.deadlineTick = deadlineTick;
+        timeout.bucket = index;
+        timeout.previous = null;
+        timeout.next = heads[index];
+        if (heads[index] != null) {
+            heads[index].previous = timeout;
+        }
+        heads[index] = timeout;
+        pending++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.bucket < 0) {
+            return;
+        }
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            heads[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        pending--;
+    }
+
+    // Expires every tick that has ended, so a late run of the scheduler catches up
+    private void advance() {
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        while (!closed) {
+            lock.lock();
+            try {
+                if ((tick + 1) * tickMillis > elapsedMillis) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            expireCurrentTick();
+        }
+    }
+
+    private void expireCurrentTick() {
+        List<Timeout> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            Timeout timeout = heads[(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                // Entries a whole revolution or more away stay for a later pass
+                if (timeout.deadlineTick <= tick) {
+                    unlink(timeout);
+                    timeout.expired = true;
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+            tick++;
+        } finally {
+            lock.unlock();
+        }
+
+        for (Timeout timeout : expired) {
+            try {
+                callbackExecutor.execute(() -> {
+                    // A reset or cancel that raced the expiry wins
+                    if (timeout.expired) {
+                        timeout.task.run();
+                    }
+                });
+            } catch (RuntimeException e) {
+                System.out.println("Failed to run timeout: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Registry of local Java functions that an assistant can call through the
+ * Assistant API's function tools.
+ *
+ * Each function is registered with the JSON schema the model sees. When a run
+ * stops in {@code requires_action}, the pending tool calls are executed in
+ * parallel and turned into the {@code tool_outputs} payload for
+ * submit-tool-outputs.
+ */
+public class ToolRegistry {
+
+    /**
+     * A local function invoked with the arguments the model supplied.
+     */
+    @FunctionalInterface
+    public interface ToolFunction {
+        String apply(JSONObject arguments);
+    }
+
+    private record RegisteredTool(String description, JSONObject parameters, ToolFunction function) {
+    }
+
+    private final Map<String, RegisteredTool> tools = new LinkedHashMap<>();
+    private final ExecutorService executor;
+
+    public ToolRegistry() {
+        this(4);
+    }
+
+    public ToolRegistry(int parallelism) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "tool-call");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized ToolRegistry register(String name, String description, JSONObject parameters, ToolFunction function) {
+        tools.put(name, new RegisteredTool(description, parameters, function));
+        return this;
+    }
+
+    public synchronized boolean isEmpty() {
+        return tools.isEmpty();
+    }
+
+    /**
+     * Builds the function tool definitions to send with an assistant or run.
+     */
+    public synchronized List<JSONObject> toolDefinitions() {
+        List<JSONObject> definitions = new ArrayList<>();
+        for (Map.Entry<String, RegisteredTool> entry : tools.entrySet()) {
+            JSONObject function = new JSONObject();
+            function.put("name", entry.getKey());
+            function.put("description", entry.getValue().description());
+            function.put("parameters", entry.getValue().parameters());
+            definitions.add(new JSONObject().put("type", "function").put("function", function));
+        }
+        return definitions;
+    }
+
+    /**
+     * Executes every call in {@code required_action.submit_tool_outputs.tool_calls}
+     * concurrently. A call that fails or names an unknown function still gets
+     * an output, so the run can continue.
+     *
+     * @param toolCalls the pending tool calls from the run
+     * @return tool outputs in the same order as the calls
+     */
+    public List<JSONObject> execute(JSONArray toolCalls) {
+        List<CompletableFuture<JSONObject>> pending = new ArrayList<>();
+        for (int i = 0; i < toolCalls.length(); i++) {
+            JSONObject call = toolCalls.getJSONObject(i);
+            pending.add(CompletableFuture.supplyAsync(() -> executeCall(call), executor));
+        }
+        List<JSONObject> outputs = new ArrayList<>();
+        for (CompletableFuture<JSONObject> future : pending) {
+            outputs.add(future.join());
+        }
+        return outputs;
+    }
+
+    private JSONObject executeCall(JSONObject call) {
+        String callId = call.getString("id");
+        JSONObject function = call.getJSONObject("function");
+        String name = function.getString("name");
+        RegisteredTool tool;
+        synchronized (this) {
+            tool = tools.get(name);
+        }
+
+        String output;
+        if (tool == null) {
+            output = error("Unknown function: " + name);
+        } else {
+            try {
+                String rawArguments = function.optString("arguments", "{}");
+                JSONObject arguments = rawArguments.isBlank() ? new JSONObject() : new JSONObject(rawArguments);
+                output = tool.function().apply(arguments);
+            } catch (JSONException e) {
+                output = error("Invalid arguments for " + name + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.out.println("Tool " + name + " failed: " + e.getMessage());
+                output = error(name + " failed: " + e.getMessage());
+            }
+        }
+        return new JSONObject().put("tool_call_id", callId).put("output", output == null ? error(name + " returned no data") : output);
+    }
+
+    static String error(String message) {
+        return new JSONObject().put("error", message).toString();
+    }
+}
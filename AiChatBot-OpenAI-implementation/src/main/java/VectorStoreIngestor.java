@@ -0,0 +1,516 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Keeps a vector store in sync with the local knowledge files.
+ *
+ * The ACU database dump is split into one document per table (large tables
+ * into parts that repeat the table header), so every chunk file_search
+ * retrieves carries its column names and never spans two tables. Each
+ * document's hash is recorded in a manifest next to the file ID it was
+ * uploaded as; on the next sync only new or changed documents are uploaded,
+ * in one file batch, and the files they replace are removed from the store.
+ *
+ * Per-student files go into small stores of their own (see
+ * {@link #syncStudentStore}), which expire when unused instead of duplicating
+ * the shared catalog for every student.
+ */
+public class VectorStoreIngestor {
+
+    /**
+     * A unit of upload. {@code name} is also the uploaded file name, so it
+     * shows up in file_search citations.
+     */
+    public record Document(String name, String content, String hash) {
+
+        public Document(String name, String content) {
+            this(name, content, sha256(content));
+        }
+    }
+
+    /**
+     * What a sync has to do. {@code replaced} holds the manifest entries of
+     * changed documents, whose files are removed once the new version is
+     * uploaded; {@code removed} holds files of documents that no longer exist.
+     */
+    record Plan(List<Document> uploads, Map<String, JSONObject> replaced, List<String> removed,
+            Map<String, JSONObject> unchanged) {
+    }
+
+    public static final int MAX_ROWS_PER_DOCUMENT = 40;
+    private static final int MAX_FILES_PER_BATCH = 100;
+    private static final int BATCH_TIMEOUT_SECONDS = 300;
+    private static final int BATCH_POLL_INTERVAL_MS = 1000;
+    public static final int STUDENT_STORE_EXPIRY_DAYS = 7;
+    private static final int STUDENT_LOCK_STRIPES = 64;
+
+    // Documents are a table header plus at most MAX_ROWS_PER_DOCUMENT rows; the largest,
+    // 40 section rows, is about 650 tokens, so an 800 token chunk holds any whole document
+    public static final JSONObject CHUNKING_STRATEGY = new JSONObject()
+            .put("type", "static")
+            .put("static", new JSONObject()
+                    .put("max_chunk_size_tokens", 800)
+                    .put("chunk_overlap_tokens", 100));
+
+    private final OpenAiAssistantEngine engine;
+    private final File manifestFile;
+    private final File documentDir;
+    private final int concurrency;
+    // Syncs of the same student run one at a time; a student hashes to one stripe
+    private final ReentrantLock[] studentLocks = new ReentrantLock[STUDENT_LOCK_STRIPES];
+
+    public VectorStoreIngestor(OpenAiAssistantEngine engine, File manifestFile, File documentDir) {
+        this(engine, manifestFile, documentDir, 4);
+    }
+
+    public VectorStoreIngestor(OpenAiAssistantEngine engine, File manifestFile, File documentDir, int concurrency) {
+        this.engine = engine;
+        this.manifestFile = manifestFile;
+        this.documentDir = documentDir;
+        this.concurrency = concurrency;
+        for (int i = 0; i < studentLocks.length; i++) {
+            studentLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /*
+     * Document Splitting
+     */
+
+    /**
+     * Splits a database dump into per-table documents. Tables start with a
+     * {@code Table: name} line followed by a header row; tables with more
+     * than {@code maxRows} rows become {@code name-1}, {@code name-2}, ...
+     *
+     * @return the documents, or null if the file could not be read
+     */
+    public static List<Document> splitTables(File database, int maxRows) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(database.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("Failed to read database file: " + e.getMessage());
+            return null;
+        }
+
+        List<Document> documents = new ArrayList<>();
+        String table = null;
+        String header = null;
+        List<String> rows = new ArrayList<>();
+        for (String raw : lines) {
+            String line = raw.strip();
+            if (line.startsWith("Table:")) {
+                addTable(documents, table, header, rows, maxRows);
+                table = line.substring("Table:".length()).strip();
+                header = null;
+                rows = new ArrayList<>();
+            } else if (table != null && !line.isEmpty()) {
+                if (header == null) {
+                    header = line;
+                } else {
+                    rows.add(line);
+                }
+            }
+        }
+        addTable(documents, table, header, rows, maxRows);
+        return documents;
+    }
+
+    private static void addTable(List<Document> documents, String table, String header, List<String> rows, int maxRows) {
+        if (table == null || header == null) {
+            return;
+        }
+        int parts = Math.max(1, (rows.size() + maxRows - 1) / maxRows);
+        for (int part = 0; part < parts; part++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Table: ").append(table).append('\n');
+            sb.append(header).append('\n');
+            for (String row : rows.subList(part * maxRows, Math.min(rows.size(), (part + 1) * maxRows))) {
+                sb.append(row).append('\n');
+            }
+            String name = parts == 1 ? table : table + "-" + (part + 1);
+            documents.add(new Document(name, sb.toString()));
+        }
+    }
+
+    /**
+     * Wraps a whole file as one document.
+     *
+     * @return the document, or null if the file could not be read
+     */
+    public static Document wholeFile(File file, String name) {
+        try {
+            return new Document(name, Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("Failed to read " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * Change Detection
+     */
+
+    /**
+     * Compares the documents against a manifest. A different chunking
+     * strategy invalidates every document, since existing files were chunked
+     * with the old one.
+     */
+    static Plan plan(JSONObject manifest, List<Document> documents, JSONObject chunkingStrategy) {
+        JSONObject recorded = manifest.optJSONObject("documents");
+        if (recorded == null) {
+            recorded = new JSONObject();
+        }
+        List<String> removed = new ArrayList<>();
+        if (!chunkingStrategy.similar(manifest.optJSONObject("chunking_strategy"))) {
+            for (String name : recorded.keySet()) {
+                removed.add(recorded.getJSONObject(name).getString("file_id"));
+            }
+            recorded = new JSONObject();
+        }
+
+        List<Document> uploads = new ArrayList<>();
+        Map<String, JSONObject> replaced = new LinkedHashMap<>();
+        Map<String, JSONObject> unchanged = new LinkedHashMap<>();
+        Set<String> names = new HashSet<>();
+        for (Document document : documents) {
+            names.add(document.name());
+            JSONObject entry = recorded.optJSONObject(document.name());
+            if (entry != null && document.hash().equals(entry.optString("hash"))) {
+                unchanged.put(document.name(), entry);
+            } else {
+                uploads.add(document);
+                if (entry != null) {
+                    replaced.put(document.name(), entry);
+                }
+            }
+        }
+        for (String name : recorded.keySet()) {
+            if (!names.contains(name)) {
+                removed.add(recorded.getJSONObject(name).getString("file_id"));
+            }
+        }
+        return new Plan(uploads, replaced, removed, unchanged);
+    }
+
+    /*
+     * Sync
+     */
+
+    /**
+     * Brings the manifest's vector store up to date with the documents,
+     * creating the store if there is none yet.
+     *
+     * @return the vector store ID, or null if the store could not be created
+     *         or populated
+     */
+    public String sync(String storeName, List<Document> documents) {
+        JSONObject manifest = loadManifest();
+        String vectorStoreId = manifest.optString("vector_store_id", null);
+        if (vectorStoreId != null) {
+            String synced = syncInto(vectorStoreId, manifest, documents);
+            if (synced != null) {
+                return synced;
+            }
+            // The store may have expired or been deleted; start over with a new one
+            System.out.println("Recreating vector store " + storeName);
+        }
+
+        vectorStoreId = engine.createVectorStore(storeName, null, CHUNKING_STRATEGY, null, null);
+        if (vectorStoreId == null) {
+            return null;
+        }
+        return syncInto(vectorStoreId, new JSONObject(), documents);
+    }
+
+    /**
+     * @return the catalog store recorded in the manifest, or null
+     */
+    public String currentVectorStoreId() {
+        return loadManifest().optString("vector_store_id", null);
+    }
+
+    /**
+     * Every vector store and file ID the manifest refers to, catalog and
+     * student stores alike.
+     */
+    public Set<String> resourceIds() {
+        JSONObject manifest = loadManifest();
+        Set<String> ids = new HashSet<>();
+        ids.add(manifest.optString("vector_store_id"));
+        JSONObject documents = manifest.optJSONObject("documents");
+        if (documents != null) {
+            for (String name : documents.keySet()) {
+                ids.add(documents.getJSONObject(name).optString("file_id"));
+            }
+        }
+        JSONObject students = manifest.optJSONObject("student_stores");
+        if (students != null) {
+            for (String student : students.keySet()) {
+                ids.add(students.getJSONObject(student).optString("vector_store_id"));
+                ids.add(students.getJSONObject(student).optString("file_id"));
+            }
+        }
+        ids.remove("");
+        return ids;
+    }
+
+    /**
+     * Drops the catalog store from the manifest, so the next sync creates a
+     * new one. Used when the recorded store no longer exists.
+     */
+    public void forgetCatalogStore() {
+        updateManifest(current -> {
+            current.remove("vector_store_id");
+            current.remove("documents");
+            return current;
+        });
+    }
+
+    private String syncInto(String vectorStoreId, JSONObject manifest, List<Document> documents) {
+        Plan plan = plan(manifest, documents, CHUNKING_STRATEGY);
+        JSONObject recorded = new JSONObject();
+        plan.unchanged().forEach(recorded::put);
+
+        if (plan.uploads().isEmpty() && plan.removed().isEmpty()) {
+            System.out.println("Vector store is up to date (" + documents.size() + " documents)");
+            return vectorStoreId;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            Map<String, String> uploaded = uploadAll(plan.uploads(), executor);
+            if (!attach(vectorStoreId, new ArrayList<>(uploaded.values()), executor)) {
+                // Nothing was attached, so the new files are orphans
+                deleteAll(null, uploaded.values(), executor);
+                return null;
+            }
+
+            for (Document document : plan.uploads()) {
+                String fileId = uploaded.get(document.name());
+                if (fileId != null) {
+                    recorded.put(document.name(), new JSONObject().put("hash", document.hash()).put("file_id", fileId));
+                }
+            }
+
+            // A replaced file stays until its new version is in, so a failed upload is retried next sync
+            List<String> stale = new ArrayList<>(plan.removed());
+            plan.replaced().forEach((name, entry) -> {
+                if (recorded.has(name)) {
+                    stale.add(entry.getString("file_id"));
+                } else {
+                    recorded.put(name, entry);
+                }
+            });
+            deleteAll(vectorStoreId, stale, executor);
+
+            System.out.println("Vector store synced: " + uploaded.size() + " uploaded, " + stale.size()
+                    + " removed, " + plan.unchanged().size() + " unchanged");
+        } finally {
+            executor.shutdown();
+        }
+
+        String storeId = vectorStoreId;
+        updateManifest(current -> current
+                .put("vector_store_id", storeId)
+                .put("chunking_strategy", CHUNKING_STRATEGY)
+                .put("documents", recorded));
+        return vectorStoreId;
+    }
+
+    /**
+     * Returns a small vector store holding only this student's document,
+     * meant to be attached to the student's threads. The store expires after
+     * {@code expiryDays} without use. An unchanged document reuses the
+     * existing store and only renews its expiry; a changed one replaces it.
+     * Concurrent syncs of the same student wait for each other.
+     *
+     * @return the vector store ID, or null if the store could not be created
+     */
+    public String syncStudentStore(String studentKey, Document document, int expiryDays) {
+        ReentrantLock lock = studentLocks[Math.floorMod(studentKey.hashCode(), studentLocks.length)];
+        lock.lock();
+        try {
+            return syncStudentStoreLocked(studentKey, document, expiryDays);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String syncStudentStoreLocked(String studentKey, Document document, int expiryDays) {
+        JSONObject expiresAfter = new JSONObject().put("anchor", "last_active_at").put("days", expiryDays);
+        JSONObject stores = loadManifest().optJSONObject("student_stores");
+        JSONObject entry = stores == null ? null : stores.optJSONObject(studentKey);
+
+        if (entry != null) {
+            String existingId = entry.getString("vector_store_id");
+            // Renewing the expiry also tells us whether the store still exists
+            if (document.hash().equals(entry.optString("hash"))
+                    && engine.modifyVectorStore(existingId, expiresAfter, null, null) != null) {
+                return existingId;
+            }
+            engine.deleteResource("vector_stores", existingId);
+            engine.deleteResource("files", entry.getString("file_id"));
+        }
+
+        // One directory per student, so concurrent sessions never write over each other's document
+        File studentDir = new File(documentDir, "students/" + studentKey.replaceAll("[^A-Za-z0-9_-]", "_"));
+        if (!studentDir.exists() && !studentDir.mkdirs()) {
+            System.out.println("Failed to create document directory: " + studentDir);
+            return null;
+        }
+        String fileId = upload(document, studentDir);
+        if (fileId == null) {
+            return null;
+        }
+        String vectorStoreId = engine.createVectorStore("Student Files - " + studentKey, List.of(fileId),
+                null, expiresAfter, Map.of("student", studentKey));
+        if (vectorStoreId == null) {
+            engine.deleteResource("files", fileId);
+            return null;
+        }
+
+        JSONObject created = new JSONObject()
+                .put("vector_store_id", vectorStoreId)
+                .put("file_id", fileId)
+                .put("hash", document.hash());
+        updateManifest(current -> {
+            JSONObject students = current.optJSONObject("student_stores");
+            if (students == null) {
+                students = new JSONObject();
+                current.put("student_stores", students);
+            }
+            students.put(studentKey, created);
+            return current;
+        });
+        return vectorStoreId;
+    }
+
+    private Map<String, String> uploadAll(List<Document> documents, ExecutorService executor) {
+        if (!documentDir.exists() && !documentDir.mkdirs()) {
+            System.out.println("Failed to create document directory: " + documentDir);
+            return Map.of();
+        }
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        for (Document document : documents) {
+            futures.put(document.name(), CompletableFuture.supplyAsync(() -> upload(document, documentDir), executor));
+        }
+        Map<String, String> uploaded = new LinkedHashMap<>();
+        futures.forEach((name, future) -> {
+            String fileId = future.join();
+            if (fileId != null) {
+                uploaded.put(name, fileId);
+            }
+        });
+        return uploaded;
+    }
+
+    private String upload(Document document, File directory) {
+        File file = new File(directory, document.name() + ".txt");
+        try {
+            Files.writeString(file.toPath(), document.content(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("Failed to write document " + document.name() + ": " + e.getMessage());
+            return null;
+        }
+        return engine.uploadFile(file, "assistants");
+    }
+
+    /**
+     * Adds the files to the store in batches and waits for all of them to be
+     * processed, polling the batches concurrently.
+     */
+    private boolean attach(String vectorStoreId, List<String> fileIds, ExecutorService executor) {
+        if (fileIds.isEmpty()) {
+            return true;
+        }
+        List<CompletableFuture<Boolean>> batches = new ArrayList<>();
+        for (int i = 0; i < fileIds.size(); i += MAX_FILES_PER_BATCH) {
+            List<String> slice = fileIds.subList(i, Math.min(fileIds.size(), i + MAX_FILES_PER_BATCH));
+            String batchId = engine.createVectorStoreFileBatch(vectorStoreId, slice, CHUNKING_STRATEGY);
+            if (batchId == null) {
+                return false;
+            }
+            batches.add(CompletableFuture.supplyAsync(() -> engine.waitForFileBatchCompletion(
+                    vectorStoreId, batchId, BATCH_TIMEOUT_SECONDS, BATCH_POLL_INTERVAL_MS), executor));
+        }
+        boolean success = true;
+        for (CompletableFuture<Boolean> batch : batches) {
+            success &= batch.join();
+        }
+        return success;
+    }
+
+    private void deleteAll(String vectorStoreId, Iterable<String> fileIds, ExecutorService executor) {
+        List<CompletableFuture<Void>> deletes = new ArrayList<>();
+        for (String fileId : fileIds) {
+            deletes.add(CompletableFuture.runAsync(() -> {
+                if (vectorStoreId != null) {
+                    engine.deleteVectorStoreFile(vectorStoreId, fileId);
+                }
+                engine.deleteResource("files", fileId);
+            }, executor));
+        }
+        deletes.forEach(CompletableFuture::join);
+    }
+
+    /*
+     * Manifest
+     */
+    JSONObject loadManifest() {
+        if (!manifestFile.exists()) {
+            return new JSONObject();
+        }
+        try {
+            return new JSONObject(Files.readString(manifestFile.toPath(), StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            System.out.println("Failed to read vector store manifest: " + e.getMessage());
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Re-reads the manifest, applies the change and writes it back, so the
+     * catalog and student entries never overwrite each other.
+     */
+    private synchronized void updateManifest(UnaryOperator<JSONObject> change) {
+        saveManifest(change.apply(loadManifest()));
+    }
+
+    private void saveManifest(JSONObject manifest) {
+        try {
+            Files.writeString(manifestFile.toPath(), manifest.toString(2), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("Failed to save vector store manifest: " + e.getMessage());
+        }
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
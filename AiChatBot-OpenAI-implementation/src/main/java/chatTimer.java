@@ -1,34 +1,24 @@
-import java.util.Timer;
-import java.util.TimerTask;
 
+/**
+ * A session's inactivity timeout. All timers share one {@link TimingWheel},
+ * so resetting one is a constant-time list move rather than a new thread.
+ */
 public class chatTimer {
-    private Timer timer;
-    private final int seconds;
-    private final Runnable onTimeout;
+    private final TimingWheel.Timeout timeout;
 
     public chatTimer(int seconds, Runnable onTimeout) {
-        this.seconds = seconds;
-        this.onTimeout = onTimeout;
-        this.timer = new Timer(true);
-        reset();
+        this(TimingWheel.shared(), seconds, onTimeout);
     }
 
-    public synchronized void reset() {
-        if (timer != null) {
-            timer.cancel();
-        }
-        timer = new Timer(true);
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                onTimeout.run();
-            }
-        }, seconds * 1000L);
+    public chatTimer(TimingWheel wheel, int seconds, Runnable onTimeout) {
+        this.timeout = wheel.schedule(seconds * 1000L, onTimeout);
+    }
+
+    public void reset() {
+        timeout.reset();
     }
 
     public void cancel() {
-        if (timer != null) {
-            timer.cancel();
-        }
+        timeout.cancel();
     }
 }
@@ -0,0 +1,66 @@
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AnswerCacheTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testCountsExactAndNearHits() {
+        AnswerCache cache = new AnswerCache();
+        cache.put("What classes am I in?", "CS 120 and MATH 185.");
+
+        assertEquals("CS 120 and MATH 185.", cache.get("what classes am I in"));
+        assertEquals("CS 120 and MATH 185.", cache.get("What classes am I currently in?"));
+        assertNull(cache.get("What classes am I not in?"));
+        assertEquals(1, cache.getExactHits());
+        assertEquals(1, cache.getNearHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testAnswersAreSharedBetweenProcesses() throws Exception {
+        File file = new File(tempDir, "answers.bin");
+        AnswerCache here = new AnswerCache(10, NearDuplicateIndex.DEFAULT_THRESHOLD, AnswerCache.DEFAULT_TTL_MILLIS,
+                new SharedAnswerCache(file, 64, 512, AnswerCache.DEFAULT_TTL_MILLIS));
+        AnswerCache there = new AnswerCache(10, NearDuplicateIndex.DEFAULT_THRESHOLD, AnswerCache.DEFAULT_TTL_MILLIS,
+                new SharedAnswerCache(file, 64, 512, AnswerCache.DEFAULT_TTL_MILLIS));
+        here.put("alice", "When does registration open?", "In April.");
+
+        assertNull(there.get("bob", "When does registration open?"));
+        assertEquals("In April.", there.get("alice", "when does registration open"));
+        assertEquals("In April.", there.get("alice", "When does registration open?"));
+        assertEquals(1, there.getSharedHits());
+        assertEquals(1, there.getExactHits());
+    }
+
+    @Test
+    void testFollowUpQuestionsAreNotCached() {
+        AnswerCache cache = new AnswerCache();
+        cache.put("When is it offered?", "CS375 is offered in the spring.");
+        cache.put("Is that class full?", "Yes.");
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("When is it offered?"));
+        assertFalse(AnswerCache.standsAlone("Who teaches those sections?"));
+        assertTrue(AnswerCache.standsAlone("When is CS375 offered?"));
+    }
+
+    @Test
+    void testExpiredAnswerIsDropped() throws Exception {
+        AnswerCache cache = new AnswerCache(10, NearDuplicateIndex.DEFAULT_THRESHOLD, 20);
+        cache.put("When does registration open?", "In April.");
+        Thread.sleep(50);
+
+        assertNull(cache.get("When does registration open?"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,88 @@
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class AnswerPrefetcherTest {
+
+    @Test
+    void testPrefetchIsTakenAndCached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        AnswerCache cache = new AnswerCache();
+        AnswerPrefetcher prefetcher = new AnswerPrefetcher(question -> {
+            runs.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ChatSession.Reply("Answer to " + question, IntentRouter.Route.LLM, true);
+        }, cache, "alice", 5, 1);
+
+        assertTrue(prefetcher.prefetch("When do I graduate?"));
+        assertFalse(prefetcher.prefetch("when do I graduate"), "Already under way");
+        CompletableFuture<ChatSession.Reply> inFlight = prefetcher.take("When do I graduate?");
+        release.countDown();
+        assertEquals("Answer to When do I graduate?", inFlight.get(5, TimeUnit.SECONDS).text());
+
+        assertEquals("Answer to When do I graduate?", cache.get("alice", "When do I graduate?"));
+        assertFalse(prefetcher.prefetch("When do I graduate?"), "Already cached");
+        assertNull(prefetcher.take("Who is my advisor?"));
+        assertEquals(1, runs.get());
+        assertEquals(1, prefetcher.getUsed());
+    }
+
+    @Test
+    void testFailedPrefetchIsNotKept() throws Exception {
+        AnswerCache cache = new AnswerCache();
+        AnswerPrefetcher prefetcher = new AnswerPrefetcher(
+                question -> new ChatSession.Reply("The assistant encountered an issue.", IntentRouter.Route.LLM, false),
+                cache, "alice", 5, 3);
+
+        assertTrue(prefetcher.prefetch("When do I graduate?"));
+        for (int i = 0; i < 100 && !prefetcher.prefetch("When do I graduate?"); i++) {
+            Thread.sleep(10);
+        }
+        // Started again once the first attempt failed, rather than served from the failure
+        assertEquals(2, prefetcher.getIssued());
+        assertNull(cache.get("alice", "When do I graduate?"));
+    }
+
+    @Test
+    void testBudgetIsNeverExceeded() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        AnswerPrefetcher prefetcher = new AnswerPrefetcher(question -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return new ChatSession.Reply("Answer", IntentRouter.Route.LLM, true);
+        }, new AnswerCache(), "alice", 3, 2);
+
+        int started = 0;
+        for (int i = 0; i < 10; i++) {
+            if (prefetcher.prefetch("question " + i)) {
+                started++;
+            }
+        }
+        assertEquals(3, started);
+        assertEquals(0, prefetcher.getBudgetLeft());
+        for (int i = 0; i < 3; i++) {
+            prefetcher.take("question " + i).get(5, TimeUnit.SECONDS);
+        }
+        assertTrue(mostRunning.get() <= 2);
+        assertEquals(3, prefetcher.getIssued());
+    }
+}
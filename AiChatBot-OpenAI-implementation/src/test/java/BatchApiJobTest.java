@@ -0,0 +1,175 @@
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchApiJobTest {
+
+    @TempDir
+    File tempDir;
+
+    private StubAssistantServer stub;
+
+    private static final String QUESTIONS = String.join("\n",
+            "{\"id\": \"q1\", \"question\": \"When does registration open?\"}",
+            "{\"id\": \"q2\", \"question\": \"Do I need CS 130?\", \"profile\": \"Sophomore, CS major\"}",
+            "not json",
+            "{\"id\": \"q3\", \"question\": \"Where is the library?\"}",
+            "{\"id\": \"q4\", \"question\": \"How do I reach IT?\"}",
+            "{\"id\": \"q5\", \"question\": \"What is a prerequisite?\"}");
+
+    @AfterEach
+    void tearDown() {
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    private OpenAiAssistantEngine startStub(double errorRate) throws Exception {
+        stub = new StubAssistantServer(0, 0, 50, errorRate);
+        stub.start();
+        return new OpenAiAssistantEngine("stub-key", stub.getBaseUrl());
+    }
+
+    @Test
+    void testRunsPartsAndStreamsResultsByRequestId() throws Exception {
+        OpenAiAssistantEngine engine = startStub(0);
+        BatchApiJob job = new BatchApiJob(engine, tempDir, "gpt-test", 2, BatchApiJob.MAX_BYTES_PER_PART);
+        int prepared = job.prepare("questions.jsonl", BatchApiJob.requests(
+                new BufferedReader(new StringReader(QUESTIONS)), question -> "Profile: " + question.profile()));
+        assertEquals(5, prepared);
+        assertTrue(new File(tempDir, "requests-002.jsonl").exists());
+
+        assertTrue(job.run(10, 10));
+        assertEquals(3, stub.getBatchCount());
+        // Input and output files are deleted once downloaded
+        assertEquals(0, stub.getStoredFiles());
+        assertTrue(job.pendingFileIds().isEmpty());
+
+        Map<String, BatchApiJob.Result> results = new ConcurrentHashMap<>();
+        assertEquals(5, job.forEachResult(result -> results.put(result.customId(), result)));
+        assertEquals("Stub answer to: Do I need CS 130?", results.get("q2").answer());
+        assertTrue(results.values().stream().allMatch(BatchApiJob.Result::ok));
+    }
+
+    @Test
+    void testResumesWithoutResubmitting() throws Exception {
+        OpenAiAssistantEngine engine = startStub(0);
+        BatchApiJob first = new BatchApiJob(engine, tempDir, "gpt-test", 10, BatchApiJob.MAX_BYTES_PER_PART);
+        first.prepare("questions.jsonl", BatchApiJob.requests(new BufferedReader(new StringReader(QUESTIONS)), question -> null));
+        // Times out before the batch finishes: submitted, not collected
+        assertFalse(first.run(0, 10));
+        assertEquals(1, stub.getBatchCount());
+        assertEquals(1, first.pendingFileIds().size());
+
+        // A new process reopens the same directory
+        BatchApiJob resumed = new BatchApiJob(engine, tempDir, "gpt-test", 10, BatchApiJob.MAX_BYTES_PER_PART);
+        assertEquals(first.pendingFileIds(), resumed.pendingFileIds());
+        assertEquals(5, resumed.prepare("questions.jsonl", Collections.<BatchApiJob.Request>emptyIterator()));
+        assertTrue(resumed.run(10, 10));
+        assertEquals(1, stub.getBatchCount());
+        assertTrue(resumed.isComplete());
+
+        // An unfinished job blocks another source; a finished one is replaced
+        assertEquals(2, resumed.prepare("other.jsonl", List.of(
+                new BatchApiJob.Request("a", null, "A?"), new BatchApiJob.Request("b", null, "B?")).iterator()));
+        assertEquals(-1, resumed.prepare("third.jsonl", Collections.<BatchApiJob.Request>emptyIterator()));
+    }
+
+    @Test
+    void testRewrittenInputIsANewJob() throws Exception {
+        OpenAiAssistantEngine engine = startStub(0);
+        File input = new File(tempDir, "questions.jsonl");
+        Files.writeString(input.toPath(), QUESTIONS);
+        File jobDir = new File(tempDir, "job");
+        BatchApiJob job = new BatchApiJob(engine, jobDir, "gpt-test");
+        String yesterday = BatchApiJob.sourceKey(input);
+        assertEquals(5, job.prepare(yesterday, BatchApiJob.requests(new BufferedReader(new StringReader(QUESTIONS)), question -> null)));
+        assertTrue(job.run(10, 10));
+
+        // Regenerated at the same path the next night
+        String tonight = "{\"id\": \"n1\", \"question\": \"When do grades post?\"}";
+        Files.writeString(input.toPath(), tonight);
+        assertNotEquals(yesterday, BatchApiJob.sourceKey(input));
+        assertEquals(1, job.prepare(BatchApiJob.sourceKey(input), BatchApiJob.requests(new BufferedReader(new StringReader(tonight)), question -> null)));
+        assertTrue(job.run(10, 10));
+
+        Map<String, BatchApiJob.Result> results = new ConcurrentHashMap<>();
+        job.forEachResult(result -> results.put(result.customId(), result));
+        assertEquals(Set.of("n1"), results.keySet());
+    }
+
+    @Test
+    void testExpiredBatchQueuesItsUnansweredRequestsAgain() throws Exception {
+        OpenAiAssistantEngine engine = startStub(0);
+        BatchApiJob job = new BatchApiJob(engine, tempDir, "gpt-test");
+        job.prepare("questions.jsonl", BatchApiJob.requests(new BufferedReader(new StringReader(QUESTIONS)), question -> null));
+        // The 24-hour window closes after two answers
+        stub.endBatches("expired", 2);
+        assertFalse(job.run(10, 10));
+        assertFalse(job.isComplete());
+        assertTrue(new File(tempDir, "requests-001.jsonl").exists());
+
+        stub.endBatches("completed", Integer.MAX_VALUE);
+        assertTrue(job.run(10, 10));
+        assertEquals(2, stub.getBatchCount());
+        Map<String, BatchApiJob.Result> results = new ConcurrentHashMap<>();
+        assertEquals(5, job.forEachResult(result -> results.put(result.customId(), result)));
+        assertTrue(results.values().stream().allMatch(BatchApiJob.Result::ok));
+        assertEquals(0, stub.getStoredFiles());
+    }
+
+    @Test
+    void testFailedAndCancelledBatchesReportEveryUnansweredRequest() throws Exception {
+        OpenAiAssistantEngine engine = startStub(0);
+        BatchApiJob job = new BatchApiJob(engine, tempDir, "gpt-test", 3, BatchApiJob.MAX_BYTES_PER_PART);
+        job.prepare("questions.jsonl", BatchApiJob.requests(new BufferedReader(new StringReader(QUESTIONS)), question -> null));
+        stub.endBatches("failed", 0);
+        assertTrue(job.run(10, 10));
+        // Terminal: a second run does not send the same file again
+        assertTrue(job.run(10, 10));
+        assertEquals(2, stub.getBatchCount());
+        Map<String, BatchApiJob.Result> results = new ConcurrentHashMap<>();
+        assertEquals(5, job.forEachResult(result -> results.put(result.customId(), result)));
+        assertFalse(results.get("q1").ok());
+        assertTrue(results.get("q5").error().contains("Simulated validation error"), results.get("q5").error());
+
+        job.prepare("other.jsonl", BatchApiJob.requests(new BufferedReader(new StringReader(QUESTIONS)), question -> null));
+        stub.endBatches("cancelled", 1);
+        assertTrue(job.run(10, 10));
+        results.clear();
+        assertEquals(5, job.forEachResult(result -> results.put(result.customId(), result)));
+        assertTrue(results.get("q1").ok());
+        assertEquals("cancelled", results.get("q2").error());
+        assertEquals("cancelled", results.get("q5").error());
+    }
+
+    @Test
+    void testFailedRequestsComeFromTheErrorFile() throws Exception {
+        OpenAiAssistantEngine engine = startStub(1.0);
+        BatchApiJob job = new BatchApiJob(engine, tempDir, "gpt-test");
+        job.prepare("questions.jsonl", BatchApiJob.requests(new BufferedReader(new StringReader(QUESTIONS)), question -> null));
+        assertTrue(job.run(10, 10));
+
+        Map<String, BatchApiJob.Result> results = new ConcurrentHashMap<>();
+        job.forEachResult(result -> results.put(result.customId(), result));
+        assertEquals(5, results.size());
+        assertNull(results.get("q1").answer());
+        assertEquals("Simulated server error", results.get("q1").error());
+    }
+}
@@ -0,0 +1,114 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final String QUESTIONS = String.join("\n",
+            "{\"id\": \"q1\", \"question\": \"When does registration open?\"}",
+            "{\"id\": \"q2\", \"question\": \"Do I need CS 130?\", \"profile\": \"Sophomore, CS major\"}",
+            "not json",
+            "{\"question\": \"Where is the library?\"}",
+            "{\"id\": \"q4\", \"question\": \"fail me\"}");
+
+    @Test
+    void testAnswersConcurrentlyAndRecordsResults() throws Exception {
+        File output = tempDir.resolve("answers.jsonl").toFile();
+        Set<String> instructions = ConcurrentHashMap.newKeySet();
+        BatchRunner runner = new BatchRunner(() -> (question, extra) -> {
+            if (extra != null) {
+                instructions.add(extra);
+            }
+            return question.equals("fail me") ? null : "Answer to " + question;
+        }, 3, null);
+
+        BatchRunner.Summary summary = runner.run(new BufferedReader(new StringReader(QUESTIONS)), output);
+        assertEquals(3, summary.answered());
+        assertEquals(1, summary.failed());
+        assertEquals(0, summary.skipped());
+
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        assertEquals(4, lines.size());
+        JSONObject fourth = lines.stream().map(JSONObject::new)
+                .filter(result -> result.getString("id").equals("4")).findFirst().orElseThrow();
+        assertEquals("Answer to Where is the library?", fourth.getString("answer"));
+        assertTrue(fourth.has("latency_ms"));
+        assertTrue(instructions.stream().anyMatch(text -> text.contains("Sophomore, CS major")));
+    }
+
+    @Test
+    void testResumesFromCheckpoint() throws Exception {
+        File output = tempDir.resolve("answers.jsonl").toFile();
+        Files.writeString(output.toPath(), String.join("\n",
+                "{\"id\": \"q1\", \"ok\": true, \"answer\": \"earlier\"}",
+                "{\"id\": \"q2\", \"ok\": false}",
+                "{\"id\": \"4\", \"ok\": tr"));
+
+        AtomicInteger asked = new AtomicInteger();
+        BatchRunner runner = new BatchRunner(() -> (question, extra) -> {
+            asked.incrementAndGet();
+            return "again";
+        }, 2, null);
+
+        BatchRunner.Summary summary = runner.run(new BufferedReader(new StringReader(QUESTIONS)), output);
+        assertEquals(1, summary.skipped());
+        assertEquals(3, asked.get());
+        assertFalse(BatchRunner.completedIds(output).contains("q3"));
+        assertTrue(BatchRunner.completedIds(output).containsAll(Set.of("q1", "q2", "4", "q4")));
+        // The line cut short is gone rather than glued to the first new result
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        lines.forEach(JSONObject::new);
+    }
+
+    @Test
+    void testReadErrorStopsTheWorkers() {
+        BufferedReader failing = new BufferedReader(new StringReader(QUESTIONS)) {
+            private int lines;
+
+            @Override
+            public String readLine() throws IOException {
+                if (++lines > 2) {
+                    throw new IOException("Disk error");
+                }
+                return super.readLine();
+            }
+        };
+        BatchRunner runner = new BatchRunner(() -> (question, extra) -> "answer", 2, null);
+        IOException thrown = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(IOException.class, () -> runner.run(failing, tempDir.resolve("answers.jsonl").toFile())));
+        assertEquals("Disk error", thrown.getMessage());
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (workersAlive() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertFalse(workersAlive(), "Workers must not be left waiting for questions that never come");
+    }
+
+    private static boolean workersAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("batch-worker") && thread.isAlive());
+    }
+}
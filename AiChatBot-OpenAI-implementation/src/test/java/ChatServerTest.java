@@ -0,0 +1,161 @@
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Path;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChatServerTest {
+
+    private ChatServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // No API key is needed: only locally routed questions are asked
+        ChatSession.Context context = new ChatSession.Context(
+                new OpenAiAssistantEngine("test-key"), "asst_test", new IntentRouter(null, null), null, null);
+        server = new ChatServer(context, null, 0, 60_000);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> send(String method, String path, JSONObject body) throws Exception {
+        return send(method, path, body, null);
+    }
+
+    private HttpResponse<String> send(String method, String path, JSONObject body, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        request.method(method, body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body.toString()));
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testSessionLifecycle() throws Exception {
+        HttpResponse<String> created = send("POST", "/sessions", null);
+        assertEquals(201, created.statusCode());
+        String sessionId = new JSONObject(created.body()).getString("session_id");
+        assertEquals(1, server.getSessionCount());
+
+        HttpResponse<String> answer = send("POST", "/sessions/" + sessionId + "/messages",
+                new JSONObject().put("message", "How do I reset my password?"));
+        assertEquals(200, answer.statusCode());
+        JSONObject reply = new JSONObject(answer.body());
+        assertEquals("FAQ", reply.getString("route"));
+        assertTrue(reply.getString("answer").contains("acu.edu/password"));
+
+        assertEquals(400, send("POST", "/sessions/" + sessionId + "/messages", new JSONObject()).statusCode());
+        assertEquals(200, send("DELETE", "/sessions/" + sessionId, null).statusCode());
+        assertEquals(404, send("POST", "/sessions/" + sessionId + "/messages",
+                new JSONObject().put("message", "How do I reset my password?")).statusCode());
+        assertEquals(0, new JSONObject(send("GET", "/health", null).body()).getInt("sessions"));
+
+        assertEquals(400, send("POST", "/sessions", new JSONObject().put("user_info", "Major: Computer Science")).statusCode(),
+                "Sessions without a student would share one student store");
+    }
+
+    @Test
+    void testSessionsDoNotSeeTheImportedSchedule(@TempDir Path tempDir) throws Exception {
+        server.stop(0);
+        CourseDatabase db = CourseDatabase.open(tempDir.resolve("server.db").toFile(), 2);
+        assertTrue(db.importAll(new File("acu_database.txt"), new File("user_info.txt")));
+        // Nothing listens on port 1, so questions the router passes on fail at once
+        ChatSession.Context context = new ChatSession.Context(new OpenAiAssistantEngine("test-key", "http://localhost:1"),
+                "asst_test", new IntentRouter(new CourseTools(db, false), null), null, null);
+        server = new ChatServer(context, null, 0, 60_000);
+        server.start();
+        try {
+            String alice = new JSONObject(send("POST", "/sessions", new JSONObject().put("student", "alice")
+                    .put("user_info", "Enrolled Courses: Walking for Fitness")).body()).getString("session_id");
+            String bob = new JSONObject(send("POST", "/sessions", new JSONObject().put("student", "bob")
+                    .put("user_info", "Enrolled Courses: Calculus Computer Lab")).body()).getString("session_id");
+
+            for (String sessionId : new String[]{alice, bob}) {
+                JSONObject reply = new JSONObject(send("POST", "/sessions/" + sessionId + "/messages",
+                        new JSONObject().put("message", "What classes am I taking?")).body());
+                assertNotEquals("DATABASE", reply.getString("route"), "The imported profile is no session's schedule");
+                assertFalse(reply.getString("answer").contains("Walking for Fitness"));
+                assertFalse(reply.getString("answer").contains("Calculus Computer Lab"));
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void testTokenIsRequiredWhenSet() throws Exception {
+        server.stop(0);
+        ChatSession.Context context = new ChatSession.Context(
+                new OpenAiAssistantEngine("test-key"), "asst_test", new IntentRouter(null, null), null, null);
+        server = new ChatServer(context, null, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "s3cret", 60_000);
+        server.start();
+
+        assertEquals(401, send("POST", "/sessions", null).statusCode());
+        assertEquals(401, send("POST", "/sessions", null, "guess").statusCode());
+        assertEquals(200, send("GET", "/health", null).statusCode());
+        HttpResponse<String> created = send("POST", "/sessions", null, "s3cret");
+        assertEquals(201, created.statusCode());
+        String sessionId = new JSONObject(created.body()).getString("session_id");
+        assertEquals(401, send("DELETE", "/sessions/" + sessionId, null).statusCode());
+        assertEquals(1, server.getSessionCount());
+    }
+
+    @Test
+    void testFailedTurnStillGetsAResponse() throws Exception {
+        server.stop(0);
+        IntentRouter failing = new IntentRouter(null, null) {
+            @Override
+            public Decision route(String question) {
+                throw new IllegalStateException("router broke");
+            }
+        };
+        ChatSession.Context context = new ChatSession.Context(
+                new OpenAiAssistantEngine("test-key"), "asst_test", failing, null, null);
+        server = new ChatServer(context, null, 0, 60_000);
+        server.start();
+
+        String sessionId = new JSONObject(send("POST", "/sessions", null).body()).getString("session_id");
+        HttpResponse<String> answer = send("POST", "/sessions/" + sessionId + "/messages",
+                new JSONObject().put("message", "How do I reset my password?"));
+        assertEquals(502, answer.statusCode());
+        assertTrue(new JSONObject(answer.body()).getString("error").contains("router broke"), answer.body());
+    }
+
+    @Test
+    void testIdleSessionsAreClosed() throws Exception {
+        server.stop(0);
+        ChatSession.Context context = new ChatSession.Context(
+                new OpenAiAssistantEngine("test-key"), "asst_test", null, null, null);
+        server = new ChatServer(context, null, 0, 200);
+        server.start();
+
+        assertEquals(201, send("POST", "/sessions", null).statusCode());
+        assertEquals(201, send("POST", "/sessions", null).statusCode());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getSessionCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, server.getSessionCount());
+    }
+}
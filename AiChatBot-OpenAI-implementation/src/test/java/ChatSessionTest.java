@@ -0,0 +1,111 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class ChatSessionTest {
+
+    private final ChatSession session = new ChatSession("test",
+            new ChatSession.Context(new OpenAiAssistantEngine("test-key"), "asst_test", null, null, null), null);
+
+    private ChatSession.Reply reply(String text) {
+        return new ChatSession.Reply(text, IntentRouter.Route.FAQ, true);
+    }
+
+    @Test
+    void testTurnsRunInSubmissionOrder() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<ChatSession.Reply> first = session.enqueue(() -> {
+            sleep(100);
+            order.add("first");
+            return reply("first");
+        });
+        CompletableFuture<ChatSession.Reply> second = session.enqueue(() -> {
+            order.add("second");
+            return reply("second");
+        });
+        assertFalse(first.isDone());
+
+        assertEquals("second", second.get(5, TimeUnit.SECONDS).text());
+        assertEquals(List.of("first", "second"), order);
+        assertTrue(session.awaitIdle(1000));
+        assertEquals(0, session.getQueuedTurns());
+    }
+
+    @Test
+    void testCloseDropsQueuedTurns() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ChatSession.Reply> running = session.enqueue(() -> {
+            started.countDown();
+            await(release);
+            return reply("answered");
+        });
+        CompletableFuture<ChatSession.Reply> queued = session.enqueue(() -> reply("never asked"));
+        // A turn that has not started when the session closes is dropped too
+        await(started);
+
+        // No assistant run is in progress, so there is nothing to cancel
+        assertFalse(session.cancel());
+        session.close();
+        release.countDown();
+
+        assertEquals("answered", running.get(5, TimeUnit.SECONDS).text());
+        ChatSession.Reply dropped = queued.get(5, TimeUnit.SECONDS);
+        assertFalse(dropped.answered());
+        assertEquals("Session closed.", dropped.text());
+    }
+
+    @Test
+    void testCancelledQueuedTurnNeverRuns() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        CompletableFuture<ChatSession.Reply> running = session.enqueue(() -> {
+            started.countDown();
+            await(release);
+            return reply("first");
+        });
+        CompletableFuture<ChatSession.Reply> cancelled = session.enqueue(() -> {
+            cancelledRan.set(true);
+            return reply("second");
+        });
+        CompletableFuture<ChatSession.Reply> later = session.enqueue(() -> reply("third"));
+        await(started);
+
+        assertTrue(cancelled.cancel(false));
+        // The turn behind the cancelled one still waits for the turn in progress
+        assertFalse(later.isDone());
+        release.countDown();
+
+        assertEquals("first", running.get(5, TimeUnit.SECONDS).text());
+        assertEquals("third", later.get(5, TimeUnit.SECONDS).text());
+        assertTrue(session.awaitIdle(1000));
+        assertFalse(cancelledRan.get());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(0, session.getQueuedTurns());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
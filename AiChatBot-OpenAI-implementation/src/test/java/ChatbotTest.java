@@ -1,4 +1,5 @@
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
@@ -10,28 +11,64 @@ public class ChatbotTest {
     private static final File CHAT_HISTORY_FILE = new File("chat_history.txt");
     private static final File PERSONAL_FAQ_FILE = new File("personal_faq.txt");
 
+    @TempDir
+    Path logDir;
+
     @BeforeEach
     public void cleanFiles() throws IOException {
         Files.write(CHAT_HISTORY_FILE.toPath(), new byte[0]);
         Files.write(PERSONAL_FAQ_FILE.toPath(), new byte[0]);
-        Chatbot.questionCount.clear();
+        Chatbot.setUsersName(null);
+        assertNotNull(Chatbot.openConversationLog(logDir.resolve("log").toFile()));
+        Chatbot.loadQuestionHistory(); // starts the counts from the empty log
+    }
+
+    @AfterEach
+    public void closeLog() {
+        // Its background tasks would otherwise write into the deleted temp directory
+        Chatbot.closeConversationLog();
     }
 
     @Test
     public void testSaveQuestionAndFAQTrigger() throws IOException {
         String question = "What classes do I take next semester?";
 
-        // Save the same question 3 times to trigger FAQ logic
+        // Save the same question 3 times to trigger FAQ logic; case and punctuation do not matter
+        Chatbot.saveQuestion("what classes do I take  next semester");
+        Chatbot.saveQuestion(question);
+        Chatbot.saveQuestion(question);
+        Chatbot.saveQuestion(question);
+        // Lines are written in groups off the calling thread
+        assertTrue(Chatbot.flushHistory());
+
+        assertEquals(4, Chatbot.personalQuestionCount(question), "Question should be counted 4 times");
+
+        List<String> faqLines = Files.readAllLines(PERSONAL_FAQ_FILE.toPath());
+        assertEquals(List.of("- " + question), faqLines, "Question should be added to personal FAQ once, after 3 saves");
+    }
+
+    @Test
+    public void testCommandsAreNotCounted() throws IOException {
         for (int i = 0; i < 3; i++) {
-            Chatbot.saveQuestion(question);
+            Chatbot.saveQuestion("cancel");
+            Chatbot.saveQuestion("Settings");
         }
+        assertTrue(Chatbot.flushHistory());
 
-        List<String> historyLines = Files.readAllLines(CHAT_HISTORY_FILE.toPath());
-        long count = historyLines.stream().filter(line -> line.equals(question)).count();
-        assertEquals(3, count, "Question should be recorded 3 times in chat history");
+        assertEquals(0, Chatbot.personalQuestionCount("cancel"));
+        assertEquals(List.of(), Files.readAllLines(PERSONAL_FAQ_FILE.toPath()), "Commands never enter the personal FAQ");
+    }
 
-        List<String> faqLines = Files.readAllLines(PERSONAL_FAQ_FILE.toPath());
-        assertTrue(faqLines.contains("- " + question), "Question should be added to personal FAQ after 3 saves");
+    @Test
+    public void testRewordingsCountTogether() throws IOException {
+        Chatbot.saveQuestion("Which dorms are open over winter break?");
+        Chatbot.saveQuestion("which dorms are still open over winter break");
+        Chatbot.saveQuestion("which dorms are open over the winter break");
+        assertTrue(Chatbot.flushHistory());
+
+        assertEquals(3, Chatbot.personalQuestionCount("Which dorms are open over winter break?"));
+        assertEquals(List.of("- which dorms are open over the winter break"), Files.readAllLines(PERSONAL_FAQ_FILE.toPath()),
+                "The third rewording should add the question to the personal FAQ");
     }
 
     @Test
@@ -39,14 +76,74 @@ public class ChatbotTest {
         String question = "How do I check my GPA?";
         Files.write(CHAT_HISTORY_FILE.toPath(), List.of(question, question, question));
 
+        // An empty log takes in the old history file when it is opened
+        assertNotNull(Chatbot.openConversationLog(logDir.resolve("imported").toFile()));
         Chatbot.loadQuestionHistory();
-        int count = Chatbot.questionCount.getOrDefault(question, 0);
+        int count = Chatbot.personalQuestionCount(question);
 
         assertEquals(3, count, "Question count should be 3 after loading history");
     }
 
+    @Test
+    public void testRecordedTurnsAreLoaded() {
+        String question = "When does registration open?";
+        ChatSession.Reply reply = new ChatSession.Reply("Registration opens in April.", IntentRouter.Route.FAQ, true);
+        assertTrue(Chatbot.recordTurn(question, reply, null, 5));
+        assertTrue(Chatbot.recordTurn(question, reply, null, 7));
+        assertTrue(Chatbot.flushHistory());
+
+        Chatbot.loadQuestionHistory();
+
+        assertEquals(2, Chatbot.personalQuestionCount(question), "Both logged turns should be counted");
+    }
+
+    @Test
+    public void testEachStudentCountsOnlyTheirOwnQuestions() {
+        String question = "How do I change my major?";
+        ChatSession.Reply reply = new ChatSession.Reply("See the registrar.", IntentRouter.Route.FAQ, true);
+        Chatbot.setUsersName("alice");
+        assertTrue(Chatbot.recordTurn(question, reply, null, 5));
+        assertTrue(Chatbot.recordTurn(question, reply, null, 5));
+        Chatbot.setUsersName("bob");
+        assertTrue(Chatbot.recordTurn(question, reply, null, 5));
+        assertTrue(Chatbot.flushHistory());
+
+        Chatbot.loadQuestionHistory();
+        assertEquals(1, Chatbot.personalQuestionCount(question), "Bob asked once");
+        Chatbot.setUsersName("alice");
+        assertEquals(2, Chatbot.personalQuestionCount(question), "Alice asked twice");
+        Chatbot.saveQuestion(question);
+        assertTrue(Chatbot.flushHistory());
+        assertEquals(3, Chatbot.personalQuestionCount(question));
+        Chatbot.setUsersName("bob");
+        assertEquals(1, Chatbot.personalQuestionCount(question), "Alice's questions are not Bob's");
+    }
+
+    @Test
+    public void testOtherStudentsQuestionsDoNotPromoteAFirstAsk() throws IOException {
+        ChatSession.Reply reply = new ChatSession.Reply("See the catalog.", IntentRouter.Route.FAQ, true);
+        for (int i = 0; i < 300; i++) {
+            Chatbot.setUsersName("student" + (i % 30));
+            assertTrue(Chatbot.recordTurn("Is CS " + (100 + i) + " offered online?", reply, null, 5));
+            assertTrue(Chatbot.recordTurn("When is the add/drop deadline?", reply, null, 5));
+        }
+        assertTrue(Chatbot.flushHistory());
+        Chatbot.loadQuestionHistory();
+
+        Chatbot.setUsersName("alice");
+        Chatbot.saveQuestion("When is the add/drop deadline?");
+        Chatbot.saveQuestion("Can I audit a graduate seminar?");
+        assertTrue(Chatbot.flushHistory());
+
+        assertEquals(1, Chatbot.personalQuestionCount("When is the add/drop deadline?"));
+        assertEquals(1, Chatbot.personalQuestionCount("Can I audit a graduate seminar?"));
+        assertEquals(List.of(), Files.readAllLines(PERSONAL_FAQ_FILE.toPath()),
+                "A first ask is not promoted, however often others asked");
+    }
+
     @AfterAll
     public static void cleanup() {
+        Chatbot.setUsersName(null);
         CHAT_HISTORY_FILE.delete();
         PERSONAL_FAQ_FILE.delete();
     }
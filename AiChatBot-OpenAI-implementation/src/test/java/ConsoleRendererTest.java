@@ -0,0 +1,51 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class ConsoleRendererTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+
+    private String printed() {
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testPrintsImmediatelyWithoutAnimation() {
+        ConsoleRenderer renderer = new ConsoleRenderer(out, false, 64, 30);
+        renderer.write("Hello ");
+        renderer.write("world");
+        assertEquals("Hello world", printed());
+        assertEquals(0, renderer.pending());
+    }
+
+    @Test
+    void testWriteDoesNotWaitForAnimation() {
+        ConsoleRenderer renderer = new ConsoleRenderer(out, true, 16, 5);
+        String answer = "x".repeat(200);
+        long start = System.nanoTime();
+        renderer.write(answer);
+        // 200 characters at 5 ms would take a second if the writer were held
+        assertTrue(System.nanoTime() - start < 500_000_000L);
+
+        assertTrue(renderer.awaitIdle(5000));
+        assertEquals(answer, printed());
+    }
+
+    @Test
+    void testSkipPrintsTheRestAtOnce() {
+        ConsoleRenderer renderer = new ConsoleRenderer(out, true, 64, 1000);
+        renderer.write("The advisor's answer");
+        renderer.skip();
+        assertEquals("The advisor's answer", printed());
+
+        renderer.setDelay(0);
+        renderer.write("!");
+        assertEquals("The advisor's answer!", printed());
+    }
+}
@@ -0,0 +1,144 @@
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ConversationLogTest {
+
+    @TempDir
+    File tempDir;
+
+    // Small segments, and background work that never runs during a test
+    private ConversationLog open(File directory) throws Exception {
+        return ConversationLog.open(directory, 2048, ConversationLog.KEEP_FOREVER, 60_000, 60_000);
+    }
+
+    @Test
+    void testScansByTimeAndUserAcrossSegments() throws Exception {
+        ConversationLog log = open(tempDir);
+        for (int i = 0; i < 300; i++) {
+            String user = i % 3 == 0 ? "alice" : "bob";
+            assertNotNull(log.append(1000L + i, user, "question " + i, "answer " + i, "run_" + i, i, "LLM"));
+        }
+        assertTrue(log.getSegmentCount() > 3);
+
+        List<ConversationLog.Record> slice = new ArrayList<>();
+        assertEquals(11, log.scan(1100, 1110, slice::add));
+        assertEquals("question 100", slice.get(0).question());
+        assertEquals(111, slice.get(10).seq());
+
+        List<ConversationLog.Record> alice = new ArrayList<>();
+        assertEquals(100, log.scanUser("alice", Long.MIN_VALUE, Long.MAX_VALUE, alice::add));
+        assertTrue(alice.stream().allMatch(record -> record.user().equals("alice")));
+        assertEquals("answer 297", alice.get(99).answer());
+        assertEquals(0, log.scanUser("carol", Long.MIN_VALUE, Long.MAX_VALUE, record -> { }));
+
+        List<ConversationLog.Record> tail = new ArrayList<>();
+        assertEquals(50, log.scanAfter(250, tail::add));
+        assertEquals(251, tail.get(0).seq());
+        assertEquals(0, log.scanAfter(300, record -> { }));
+        log.close();
+    }
+
+    @Test
+    void testReopenKeepsOnlySummariesAndSeeksByBlock() throws Exception {
+        ConversationLog log = ConversationLog.open(tempDir, 1024 * 1024, ConversationLog.KEEP_FOREVER, 60_000, 60_000);
+        for (int i = 0; i < 1000; i++) {
+            String user = i % 100 == 7 ? "alice" : "student" + (i % 10);
+            log.append(1000L + i, user, "question " + i, "answer " + i, null, 1, "FAQ");
+        }
+        log.close();
+        File index = tempDir.listFiles((dir, name) -> name.endsWith(".idx"))[0];
+        String summary = Files.readAllLines(index.toPath()).get(0);
+        assertFalse(summary.contains("sparse"), "Open reads only the summary line: " + summary);
+
+        ConversationLog reopened = ConversationLog.open(tempDir, 1024 * 1024, ConversationLog.KEEP_FOREVER, 60_000, 60_000);
+        List<ConversationLog.Record> alice = new ArrayList<>();
+        assertEquals(10, reopened.scanUser("alice", Long.MIN_VALUE, Long.MAX_VALUE, alice::add));
+        assertEquals("question 907", alice.get(9).question());
+        assertEquals(3, reopened.scanUser("alice", 1100, 1400, record -> { }));
+        List<ConversationLog.Record> slice = new ArrayList<>();
+        assertEquals(11, reopened.scan(1500, 1510, slice::add));
+        assertEquals(501, slice.get(0).seq());
+        assertEquals(10, reopened.scanAfter(990, record -> { }));
+        reopened.close();
+    }
+
+    @Test
+    void testReopenDropsRecordCutShort() throws Exception {
+        ConversationLog log = open(tempDir);
+        log.append(1000, "alice", "first", "one", null, 1, "FAQ");
+        log.append(2000, "bob", "second", null, "run_2", 2, "LLM");
+        log.close();
+        // A crash in the middle of the next record: the segment runs past what its index covers
+        File segment = tempDir.listFiles((dir, name) -> name.endsWith(".log"))[0];
+        try (FileWriter writer = new FileWriter(segment, true)) {
+            writer.write("{\"seq\":3,\"ts\":30");
+        }
+
+        ConversationLog reopened = open(tempDir);
+        List<ConversationLog.Record> records = new ArrayList<>();
+        assertEquals(2, reopened.scan(Long.MIN_VALUE, Long.MAX_VALUE, records::add));
+        assertEquals(null, records.get(1).answer());
+        assertEquals("run_2", records.get(1).runId());
+        assertEquals(3, reopened.append(3000, "bob", "third", "three", null, 3, "TABLE").seq());
+        assertEquals(2, reopened.scanUser("bob", Long.MIN_VALUE, Long.MAX_VALUE, record -> { }));
+        reopened.close();
+    }
+
+    @Test
+    void testSecondLogOnDirectoryFailsToOpen() throws Exception {
+        ConversationLog alice = open(tempDir);
+        for (int i = 0; i < 5; i++) {
+            alice.append(1000L + i, "alice", "question " + i, "answer", null, 1, "FAQ");
+        }
+        assertThrows(IOException.class, () -> open(tempDir), "A second writer would reuse the same segment number");
+        alice.close();
+
+        ConversationLog bob = open(tempDir);
+        bob.append(2000, "bob", "question", "answer", null, 1, "FAQ");
+        bob.append(2001, "bob", "question", "answer", null, 1, "FAQ");
+        bob.close();
+
+        ConversationLog reopened = open(tempDir);
+        assertEquals(5, reopened.scanUser("alice", Long.MIN_VALUE, Long.MAX_VALUE, record -> { }));
+        assertEquals(2, reopened.scanUser("bob", Long.MIN_VALUE, Long.MAX_VALUE, record -> { }));
+        reopened.close();
+    }
+
+    @Test
+    void testCompactionMergesSmallSegments() throws Exception {
+        // One segment per launch, each far smaller than the segment size
+        for (int launch = 0; launch < 4; launch++) {
+            ConversationLog log = open(tempDir);
+            log.append(1000L * launch, "alice", "question " + launch, "answer", null, 1, "FAQ");
+            log.close();
+        }
+        ConversationLog log = open(tempDir);
+        assertEquals(4, log.getSegmentCount());
+
+        log.compact();
+        assertEquals(1, log.getSegmentCount());
+        List<ConversationLog.Record> records = new ArrayList<>();
+        assertEquals(2, log.scan(1000, 2000, records::add));
+        assertEquals("question 2", records.get(1).question());
+        log.close();
+
+        ConversationLog reopened = open(tempDir);
+        assertEquals(1, reopened.getSegmentCount());
+        assertEquals(4, reopened.scanUser("alice", Long.MIN_VALUE, Long.MAX_VALUE, record -> { }));
+        assertEquals(5, reopened.append(5000, "alice", "question 5", null, null, 1, "LLM").seq());
+        reopened.close();
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CourseDatabaseTest {
+
+    private static final File ACU_DATABASE_FILE = new File("acu_database.txt");
+    private static final File USER_INFO_FILE = new File("user_info.txt");
+
+    @TempDir
+    Path tempDir;
+
+    private CourseDatabase db;
+
+    @BeforeEach
+    void setUp() {
+        db = CourseDatabase.open(tempDir.resolve("test.db").toFile(), 2);
+        assertNotNull(db, "Database should open");
+        assertTrue(db.importAll(ACU_DATABASE_FILE, USER_INFO_FILE), "Import should commit");
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void testCourseLookup() {
+        List<JSONObject> rows = db.query("SELECT title, hrs FROM course WHERE id = ?", "CS375");
+        assertEquals(1, rows.size(), "CS375 should be imported once");
+        assertEquals("Software Engineering II", rows.get(0).getString("title"));
+        assertEquals(3, rows.get(0).getInt("hrs"));
+    }
+
+    @Test
+    void testCourseCodesAreNormalized() {
+        List<JSONObject> rows = db.query("SELECT prereq FROM or_prereq WHERE course = ? ORDER BY prereq", "PSYC370");
+        assertEquals(2, rows.size(), "Spaced course codes should be stored without the space");
+        assertEquals("PSYC120", rows.get(0).getString("prereq"));
+    }
+
+    @Test
+    void testFreeTextColumns() {
+        List<JSONObject> rows = db.query("SELECT lastname FROM teachers WHERE id = 6");
+        assertEquals("St. John", rows.get(0).getString("lastname"));
+
+        rows = db.query("SELECT max, room FROM section WHERE crn = ?", "12001");
+        assertEquals(30, rows.get(0).getInt("max"), "Swapped capacity/room columns should be repaired");
+        assertEquals("MBB102", rows.get(0).getString("room"));
+    }
+
+    @Test
+    void testProfileImportSkipsCredentials() {
+        List<JSONObject> rows = db.query("SELECT value FROM student_profile WHERE field = 'Major'");
+        assertEquals("Computer Science", rows.get(0).getString("value"));
+
+        rows = db.query("SELECT COUNT(*) AS n FROM student_required_course");
+        assertEquals(27, rows.get(0).getInt("n"));
+        rows = db.query("SELECT COUNT(*) AS n FROM student_required_course WHERE course = 'MICHAEL'");
+        assertEquals(0, rows.get(0).getInt("n"));
+    }
+
+    @Test
+    void testReadConnectionsAreReadOnly() {
+        int courses = db.query("SELECT id FROM course").size();
+        // RETURNING gives the DELETE a result set, so only the read-only connection can stop it
+        assertNull(db.query("DELETE FROM course RETURNING id"), "Writes through the read pool should fail");
+        assertEquals(courses, db.query("SELECT id FROM course").size());
+        assertEquals(1, db.query("SELECT id FROM course WHERE id = 'CS120'").size());
+    }
+
+    @Test
+    void testImportIfStaleSkipsUnchangedFiles() {
+        assertTrue(db.importIfStale(ACU_DATABASE_FILE, USER_INFO_FILE));
+        assertEquals(1, db.query("SELECT id FROM course WHERE id = 'CS375'").size());
+    }
+}
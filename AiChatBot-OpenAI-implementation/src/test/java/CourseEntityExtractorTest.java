@@ -0,0 +1,74 @@
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CourseEntityExtractorTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static CourseDatabase db;
+    private static CourseEntityExtractor extractor;
+
+    @BeforeAll
+    static void setUp() {
+        db = CourseDatabase.open(tempDir.resolve("entities.db").toFile(), 2);
+        assertNotNull(db, "Database should open");
+        assertTrue(db.importAll(new File("acu_database.txt"), new File("user_info.txt")));
+        extractor = CourseEntityExtractor.load(db);
+        assertNotNull(extractor);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void testCodesWithAndWithoutSpaces() {
+        List<CourseEntityExtractor.Entity> entities = extractor.extract("Can I take CS375 and MATH 186 together?");
+        assertEquals(List.of("CS375", "MATH186"), entities.stream().map(CourseEntityExtractor.Entity::courseId).toList());
+    }
+
+    @Test
+    void testLongestTitleWins() {
+        List<CourseEntityExtractor.Entity> entities = extractor.extract("When is Software Engineering II offered?");
+        assertEquals(1, entities.size());
+        assertEquals("CS375", entities.get(0).courseId());
+        assertTrue(entities.get(0).exact());
+    }
+
+    @Test
+    void testFuzzyTitle() {
+        List<CourseEntityExtractor.Entity> entities = extractor.extract("what do I need for sofware engineering 2");
+        assertEquals(1, entities.size());
+        assertEquals("CS375", entities.get(0).courseId());
+        assertFalse(entities.get(0).exact());
+    }
+
+    @Test
+    void testContextFor() {
+        String context = extractor.contextFor("prereqs for CS332?");
+        assertNotNull(context);
+        assertTrue(context.contains("CS332"));
+        assertTrue(context.contains("CS130"), "Prerequisite rows should be included");
+
+        assertNull(extractor.contextFor("How do I reset my password?"));
+    }
+
+    @Test
+    void testEditDistanceLimit() {
+        assertEquals(1, CourseEntityExtractor.editDistance("sofware", "software", 2));
+        assertEquals(3, CourseEntityExtractor.editDistance("abcdef", "uvwxyz", 2), "Distance is capped at limit + 1");
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CourseToolsTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static CourseDatabase db;
+    private static ToolRegistry registry;
+
+    @BeforeAll
+    static void setUp() {
+        db = CourseDatabase.open(tempDir.resolve("tools.db").toFile(), 4);
+        assertNotNull(db, "Database should open");
+        assertTrue(db.importAll(new File("acu_database.txt"), new File("user_info.txt")));
+        registry = CourseTools.createRegistry(db);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void testToolDefinitions() {
+        List<JSONObject> definitions = registry.toolDefinitions();
+        assertEquals(4, definitions.size());
+        JSONObject first = definitions.get(0);
+        assertEquals("function", first.getString("type"));
+        assertEquals("lookupCourse", first.getJSONObject("function").getString("name"));
+        assertEquals("object", first.getJSONObject("function").getJSONObject("parameters").getString("type"));
+    }
+
+    @Test
+    void testExecuteToolCallsInParallel() {
+        JSONArray calls = new JSONArray()
+                .put(call("call_1", "lookupCourse", new JSONObject().put("query", "cs 375")))
+                .put(call("call_2", "getPrereqs", new JSONObject().put("courseId", "CS332")))
+                .put(call("call_3", "noSuchTool", new JSONObject()));
+
+        List<JSONObject> outputs = registry.execute(calls);
+        assertEquals(3, outputs.size());
+        assertEquals("call_1", outputs.get(0).getString("tool_call_id"));
+
+        JSONObject course = new JSONObject(outputs.get(0).getString("output")).getJSONArray("courses").getJSONObject(0);
+        assertEquals("Software Engineering II", course.getString("title"));
+
+        JSONArray prereqs = new JSONObject(outputs.get(1).getString("output")).getJSONArray("requiresAll");
+        assertTrue(prereqs.toList().contains("CS130"));
+
+        assertTrue(new JSONObject(outputs.get(2).getString("output")).has("error"), "Unknown tools should report an error");
+    }
+
+    @Test
+    void testSectionsForTerm() {
+        JSONObject result = new JSONObject(new CourseTools(db).getSectionsForTerm("spring 2025", "CS120"));
+        JSONArray sections = result.getJSONArray("sections");
+        assertTrue(sections.length() >= 2, "CS120 has several spring sections");
+        assertEquals("CS120", sections.getJSONObject(0).getString("courseID"));
+    }
+
+    @Test
+    void testStudentScheduleFromProfile() {
+        JSONObject result = new JSONObject(new CourseTools(db).getStudentSchedule(null));
+        assertEquals("Spring 2025", result.getString("semester"));
+        boolean found = false;
+        for (Object entry : result.getJSONArray("courses")) {
+            JSONObject course = (JSONObject) entry;
+            if (course.getString("title").equals("Software Engineering II")) {
+                found = "CS375".equals(course.optString("id"));
+            }
+        }
+        assertTrue(found, "Enrolled titles should resolve to course codes");
+    }
+
+    @Test
+    void testStudentLookupsCanBeTurnedOff() {
+        assertEquals(3, CourseTools.createRegistry(db, false).toolDefinitions().size());
+        CourseTools tools = new CourseTools(db, false);
+        assertTrue(new JSONObject(tools.getStudentSchedule(null)).has("error"));
+        assertTrue(new JSONObject(tools.getStudentSchedule("1")).has("error"));
+    }
+
+    private static JSONObject call(String id, String name, JSONObject arguments) {
+        return new JSONObject()
+                .put("id", id)
+                .put("type", "function")
+                .put("function", new JSONObject().put("name", name).put("arguments", arguments.toString()));
+    }
+}
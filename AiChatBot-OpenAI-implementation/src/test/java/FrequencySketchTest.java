@@ -0,0 +1,100 @@
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class FrequencySketchTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    void testFindsHeavyHittersAmongManyQuestions() {
+        // Space-Saving keeps every question asked more than 1/64 of the time
+        FrequencySketch sketch = new FrequencySketch(1024, 4, 64, 30 * DAY);
+        for (int round = 0; round < 200; round++) {
+            for (int hot = 0; hot < 5; hot++) {
+                sketch.add("alice", "Popular question " + hot + "?", round);
+            }
+            for (int i = 0; i < 50; i++) {
+                sketch.add("bob", "one-off question " + round + "-" + i, round);
+            }
+        }
+
+        List<String> top = new ArrayList<>();
+        sketch.top(5).forEach(entry -> top.add(entry.question()));
+        for (int hot = 0; hot < 5; hot++) {
+            assertTrue(top.contains("Popular question " + hot + "?"), top.toString());
+        }
+        // Case, punctuation and spacing are ignored; estimates never undercount
+        int estimate = sketch.estimate("popular   QUESTION 3");
+        assertTrue(estimate >= 200 && estimate < 200 + 11_000 / 50, "estimate " + estimate);
+        assertEquals(200, sketch.count("alice", "Popular question 3?"));
+        assertEquals(0, sketch.count("bob", "Popular question 3?"));
+    }
+
+    @Test
+    void testUserCountsStayExactAmongManyQuestions() {
+        // Far more questions than the table is wide, from many users
+        FrequencySketch sketch = new FrequencySketch();
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add("user" + (i % 500), "question " + i, i);
+        }
+        sketch.add("alice", "How do I add a class?", 100_000);
+        sketch.add("alice", "How do I add a class?", 100_001);
+
+        assertEquals(2, sketch.count("alice", "How do I add a class?"));
+        for (int i = 0; i < 1000; i++) {
+            String neverAsked = "never asked " + i;
+            assertEquals(0, sketch.count("alice", neverAsked));
+            assertEquals(0, sketch.count(null, neverAsked));
+            assertEquals(1, sketch.add("alice", neverAsked, 100_002), "A first ask counts once");
+        }
+        assertTrue(sketch.count("alice", "How do I add a class?") <= 2, "Counts may drop, never grow");
+    }
+
+    @Test
+    void testCountsHalveEachHalfLifeAndSurviveRoundTrip() {
+        FrequencySketch sketch = new FrequencySketch(256, 4, 8, DAY);
+        for (int i = 0; i < 64; i++) {
+            sketch.add(null, "When is finals week?", 0);
+        }
+        assertEquals(64, sketch.estimate("when is finals week"));
+
+        sketch.add(null, "When is finals week?", DAY);
+        assertEquals(33, sketch.estimate("when is finals week"));
+        // Two half-lives at once
+        sketch.add(null, "When is finals week?", 3 * DAY);
+        assertEquals(9, sketch.estimate("when is finals week"));
+        assertEquals(9, sketch.top(1).get(0).count());
+        assertEquals(9, sketch.count(null, "When is finals week?"));
+
+        FrequencySketch copy = FrequencySketch.fromJson(sketch.toJson());
+        assertEquals(9, copy.estimate("when is finals week"));
+        assertEquals(9, copy.count(null, "when is finals week"));
+        assertEquals("When is finals week?", copy.top(1).get(0).question());
+        copy.add(null, "When is finals week?", 4 * DAY);
+        assertEquals(5, copy.estimate("when is finals week"));
+        assertEquals(9, sketch.estimate("when is finals week"));
+    }
+
+    @Test
+    void testConcurrentAddsAreAllCounted() throws Exception {
+        FrequencySketch sketch = new FrequencySketch();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    sketch.add("alice", "How do I add a class?", i);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8000, sketch.estimate("How do I add a class?"));
+        assertEquals(8000, sketch.top(1).get(0).count());
+    }
+}
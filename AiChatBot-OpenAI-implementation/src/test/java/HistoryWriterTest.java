@@ -0,0 +1,67 @@
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryWriterTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testGroupsConcurrentAppendsUnderBackpressure() throws Exception {
+        File history = new File(tempDir, "history.txt");
+        File faq = new File(tempDir, "faq.txt");
+        // A queue far smaller than the lines written makes writers wait for the flusher
+        HistoryWriter writer = new HistoryWriter(20, 8, false);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 250; i++) {
+                    assertTrue(writer.append(history, thread + ":" + i));
+                }
+                writer.append(faq, "- question " + thread);
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(writer.flush(5000));
+
+        List<String> lines = Files.readAllLines(history.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1000, lines.size());
+        // Each writer's lines keep their order
+        List<String> first = lines.stream().filter(line -> line.startsWith("0:")).toList();
+        assertEquals("0:0", first.get(0));
+        assertEquals("0:249", first.get(249));
+        assertEquals(4, Files.readAllLines(faq.toPath()).size());
+        assertEquals(1004, writer.getLinesWritten());
+        assertTrue(writer.getCommitCount() < 1004);
+        writer.close();
+    }
+
+    @Test
+    void testCloseCommitsQueuedLines() throws Exception {
+        File history = new File(tempDir, "history.txt");
+        // The interval never ends on its own during the test
+        HistoryWriter writer = new HistoryWriter(60_000, 16, true);
+        writer.append(history, "one");
+        writer.append(history, "two");
+
+        writer.close();
+        assertEquals(List.of("one", "two"), Files.readAllLines(history.toPath()));
+        assertFalse(writer.append(history, "three"));
+        assertFalse(writer.flush(100));
+        writer.close();
+    }
+}
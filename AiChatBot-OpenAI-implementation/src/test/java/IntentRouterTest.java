@@ -0,0 +1,101 @@
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IntentRouterTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static CourseDatabase db;
+    private static IntentRouter router;
+
+    @BeforeAll
+    static void setUp() {
+        db = CourseDatabase.open(tempDir.resolve("router.db").toFile(), 2);
+        assertNotNull(db, "Database should open");
+        assertTrue(db.importAll(new File("acu_database.txt"), new File("user_info.txt")));
+        router = new IntentRouter(new CourseTools(db));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void testKeywordMatcherFindsWholeWords() {
+        KeywordMatcher<String> matcher = new KeywordMatcher<String>()
+                .add("print", "print")
+                .add("reset password", "password")
+                .add("wi-fi", "wifi");
+        String text = KeywordMatcher.normalize("Blueprint? How do I reset password and print over Wi-Fi");
+        List<KeywordMatcher.Match<String>> matches = matcher.findAll(text);
+        assertEquals(List.of("password", "print", "wifi"), matches.stream().map(KeywordMatcher.Match::value).toList());
+    }
+
+    @Test
+    void testFaqRoute() {
+        IntentRouter.Decision decision = router.route("How do I reset my password?");
+        assertEquals(IntentRouter.Route.FAQ, decision.route());
+        assertTrue(decision.answer().contains("acu.edu/password"));
+    }
+
+    @Test
+    void testDatabaseRoutes() {
+        IntentRouter.Decision prereqs = router.route("What are the prerequisites for CS 332?");
+        assertEquals(IntentRouter.Route.DATABASE, prereqs.route());
+        assertTrue(prereqs.answer().contains("CS130"));
+
+        IntentRouter.Decision schedule = router.route("What classes am I currently in?");
+        assertEquals(IntentRouter.Route.DATABASE, schedule.route());
+        assertTrue(schedule.answer().contains("Software Engineering II (CS375)"));
+
+        IntentRouter.Decision sections = router.route("Which sections of CS120 are offered in Fall 2025?");
+        assertEquals(IntentRouter.Route.DATABASE, sections.route());
+        assertTrue(sections.answer().contains("CRN 11020"));
+    }
+
+    @Test
+    void testDatabaseRouteByCourseTitle() {
+        IntentRouter titled = new IntentRouter(new CourseTools(db), CourseEntityExtractor.load(db));
+        IntentRouter.Decision decision = titled.route("What are the prereqs for Software Engineering II?");
+        assertEquals(IntentRouter.Route.DATABASE, decision.route());
+        assertTrue(decision.answer().startsWith("Prerequisites for CS375"));
+
+        // The title alone does not make this a course description question
+        IntentRouter.Decision offered = titled.route("When is software engineering 2 offered?");
+        assertEquals(IntentRouter.Route.LLM, offered.route());
+        assertEquals(IntentRouter.Route.DATABASE, titled.route("How many credits is Software Engineering II?").route());
+    }
+
+    @Test
+    void testOpenQuestionsGoToLlm() {
+        IntentRouter.Decision decision = router.route("Can I print my essay from the library at midnight?");
+        assertEquals(IntentRouter.Route.LLM, decision.route());
+        assertNull(decision.answer());
+
+        assertEquals(IntentRouter.Route.LLM, router.route("Should I study abroad next year?").route());
+        assertEquals(IntentRouter.Route.LLM, router.route("prerequisites for XYZ999").route(),
+                "Unknown courses should not be answered from the database");
+    }
+
+    @Test
+    void testMetrics() {
+        IntentRouter counted = new IntentRouter(null);
+        counted.route("How do I print?");
+        counted.route("Tell me a joke");
+        assertEquals(1, counted.getRouteCount(IntentRouter.Route.FAQ));
+        assertEquals(1, counted.getRouteCount(IntentRouter.Route.LLM));
+        assertTrue(counted.metricsSummary().startsWith("2 questions routed"));
+    }
+}
@@ -0,0 +1,71 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class LoadGeneratorTest {
+
+    private StubAssistantServer stub;
+
+    @AfterEach
+    void tearDown() {
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    private OpenAiAssistantEngine startStub(double errorRate) throws Exception {
+        stub = new StubAssistantServer(0, 10, 30, errorRate);
+        stub.start();
+        return new OpenAiAssistantEngine("stub-key", stub.getBaseUrl());
+    }
+
+    @Test
+    void testClientLoadAgainstStub() throws Exception {
+        OpenAiAssistantEngine engine = startStub(0);
+        LoadGenerator.Config config = new LoadGenerator.Config(LoadGenerator.Mode.CLIENT,
+                20, 0, 1500, 2, 0, 10, 0.5, 0, 1);
+
+        LoadGenerator.Report report = new LoadGenerator(engine, "asst_stub", null, config).run();
+        assertTrue(report.students() > 5, report.toString());
+        assertEquals(report.students() * 2, report.questions());
+        assertEquals(0, report.failed());
+        assertEquals(0, report.activeStudents());
+        assertTrue(report.p50Millis() >= 10 && report.p99Millis() <= report.maxMillis(), report.toString());
+        assertTrue(report.heapUsedBytes() > 0 && report.threads() > 0);
+        assertEquals(0, stub.getOpenThreads());
+    }
+
+    @Test
+    void testChatModeAnswersFaqsLocallyAndCountsErrors() throws Exception {
+        OpenAiAssistantEngine engine = startStub(1.0);
+        LoadGenerator.Config config = new LoadGenerator.Config(LoadGenerator.Mode.CHAT,
+                20, 0, 1000, 4, 0, 10, 0.5, 0, 7);
+
+        LoadGenerator.Report report = new LoadGenerator(engine, "asst_stub", new IntentRouter(null), config).run();
+        assertTrue(report.answeredLocally() > 0, report.toString());
+        // Every question that reached the stand-in failed
+        assertEquals(report.questions() - report.answeredLocally(), report.failed());
+        assertEquals(0, stub.getOpenThreads());
+    }
+
+    @Test
+    void testApiKeyIsCheckedAgainstTheStub() throws Exception {
+        startStub(0);
+        assertTrue(OpenAiAssistantEngine.testAPIKey("stub-key", stub.getBaseUrl()));
+        assertEquals(1, stub.getRequestCount());
+    }
+
+    @Test
+    void testHistogramPercentiles() {
+        LoadGenerator.LatencyHistogram histogram = new LoadGenerator.LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis);
+        }
+        assertEquals(1000, histogram.max());
+        assertTrue(Math.abs(histogram.percentile(50) - 500) <= 10);
+        assertTrue(Math.abs(histogram.percentile(99) - 990) <= 20);
+        assertEquals(1000, histogram.percentile(100));
+    }
+}
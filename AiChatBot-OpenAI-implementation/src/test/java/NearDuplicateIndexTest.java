@@ -0,0 +1,71 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class NearDuplicateIndexTest {
+
+    @Test
+    void testRewordingIsFound() {
+        NearDuplicateIndex<String> index = new NearDuplicateIndex<>(100);
+        index.put("What classes am I in?", "classes");
+        index.put("When does registration open?", "registration");
+
+        NearDuplicateIndex.Match<String> exact = index.find("what CLASSES am i in");
+        assertEquals(1.0, exact.similarity());
+        NearDuplicateIndex.Match<String> near = index.find("What classes am I currently in");
+        assertNotNull(near);
+        assertEquals("classes", near.value());
+        assertEquals("What classes am I in?", near.question());
+        assertTrue(near.similarity() >= NearDuplicateIndex.DEFAULT_THRESHOLD && near.similarity() < 1.0);
+        assertNull(index.find("Who is my advisor?"));
+    }
+
+    @Test
+    void testDifferentMeaningIsRejected() {
+        NearDuplicateIndex<String> index = new NearDuplicateIndex<>(100);
+        index.put("Can I add a class after the deadline?", "add");
+        index.put("Am I enrolled in CS 374?", "enrolled");
+        index.put("What is the schedule for fall 2024?", "fall");
+
+        assertNull(index.find("Can I drop a class after the deadline?"));
+        assertNull(index.find("Am I not enrolled in CS 374?"));
+        assertNull(index.find("Am I enrolled in CS 375?"));
+        assertNull(index.find("What is the schedule for fall 2025?"));
+        assertEquals("fall", index.find("what's the schedule for fall 2024").value());
+    }
+
+    @Test
+    void testAddedQualifierIsRejected() {
+        NearDuplicateIndex<String> index = new NearDuplicateIndex<>(100);
+        index.put("When is the library open?", "library");
+        index.put("How do I register for classes?", "register");
+        index.put("How do I drop a class?", "drop");
+        index.put("Who is my advisor?", "advisor");
+
+        assertNull(index.find("When is the library open on Sunday?"));
+        assertNull(index.find("How do I register for summer classes?"));
+        assertNull(index.find("How do I drop a class after the deadline?"));
+        assertNull(index.find("Who is my advisor for my minor?"));
+        assertEquals("library", index.find("When is the library still open?").value(), "Fillers do not change the question");
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        NearDuplicateIndex<Integer> index = new NearDuplicateIndex<>(2);
+        index.put("How do I check my GPA?", 1);
+        index.put("When does registration open?", 2);
+        assertNotNull(index.find("how do I check my GPA"));
+        index.put("Who is my advisor?", 3);
+
+        assertEquals(2, index.size());
+        assertNull(index.find("When does registration open?"));
+        assertEquals(1, index.find("How do I check my GPA?").value());
+        assertTrue(index.remove("who is my advisor"));
+        assertFalse(index.remove("who is my advisor"));
+        assertEquals(1, index.size());
+    }
+}
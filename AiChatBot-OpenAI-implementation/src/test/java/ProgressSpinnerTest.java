@@ -0,0 +1,53 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class ProgressSpinnerTest {
+
+    @Test
+    void testStatusDrivesLabelAndFinalStatusStops() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+
+        ProgressSpinner spinner = ProgressSpinner.start(out);
+        spinner.onStatus("requires_action");
+        Thread.sleep(ProgressSpinner.FRAME_MILLIS * 2);
+        spinner.onStatus("completed");
+
+        String printed = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.startsWith("\rThinking"));
+        assertTrue(printed.contains("\rLooking up course data"));
+        assertTrue(printed.endsWith("\r"));
+
+        // Nothing is drawn once stopped
+        int length = printed.length();
+        Thread.sleep(ProgressSpinner.FRAME_MILLIS * 2);
+        spinner.stop();
+        assertEquals(length, bytes.toString(StandardCharsets.UTF_8).length());
+    }
+
+    @Test
+    void testWaitsForTheRendererToFinishTyping() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        // One character a second, so the reply is still being typed while the spinner runs
+        ConsoleRenderer renderer = new ConsoleRenderer(out, true, 1024, 1000);
+        renderer.write("Earlier reply");
+
+        ProgressSpinner spinner = ProgressSpinner.start(renderer);
+        Thread.sleep(ProgressSpinner.FRAME_MILLIS * 2);
+        assertFalse(bytes.toString(StandardCharsets.UTF_8).contains("Thinking"), "No frame inside the reply");
+
+        renderer.skip();
+        Thread.sleep(ProgressSpinner.FRAME_MILLIS * 2);
+        spinner.stop();
+        String printed = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.startsWith("Earlier reply\rThinking"), printed);
+        assertTrue(printed.endsWith("\r"));
+    }
+}
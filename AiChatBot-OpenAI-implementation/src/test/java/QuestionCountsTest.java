@@ -0,0 +1,72 @@
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class QuestionCountsTest {
+
+    @TempDir
+    File tempDir;
+
+    private ConversationLog open() throws Exception {
+        return ConversationLog.open(tempDir, 4096, ConversationLog.KEEP_FOREVER, 60_000, 60_000);
+    }
+
+    private static void logTurns(ConversationLog log, int from, int to) {
+        for (int i = from; i < to; i++) {
+            log.append(i, i % 2 == 0 ? "alice" : "bob", "question " + (i % 5), "answer", null, 1, "FAQ");
+        }
+    }
+
+    @Test
+    void testLoadReplaysOnlyTheTailAfterTheSnapshot() throws Exception {
+        ConversationLog log = open();
+        logTurns(log, 0, 100);
+        QuestionCounts counts = new QuestionCounts(log, tempDir, 1000);
+        assertEquals(100, counts.load());
+        // Counted as they are logged from here on
+        logTurns(log, 100, 200);
+        assertEquals(200, counts.getCountedSeq());
+        assertTrue(counts.snapshot());
+        logTurns(log, 200, 210);
+        log.close();
+
+        ConversationLog reopened = open();
+        QuestionCounts loaded = new QuestionCounts(reopened, tempDir, 1000);
+        assertEquals(10, loaded.load());
+        assertEquals(210, loaded.getCountedSeq());
+        assertEquals(42, loaded.sketch().estimate("question 0"));
+        // alice asks the even-numbered turns, so question 0 once every ten turns
+        assertEquals(21, loaded.sketch().count("alice", "question 0"));
+        assertEquals(0, loaded.sketch().count("carol", "question 0"));
+        reopened.close();
+    }
+
+    @Test
+    void testDamagedSnapshotFallsBackToTheOneBefore() throws Exception {
+        ConversationLog log = open();
+        QuestionCounts counts = new QuestionCounts(log, tempDir, 1000);
+        counts.load();
+        logTurns(log, 0, 50);
+        assertTrue(counts.snapshot());
+        logTurns(log, 50, 80);
+        assertTrue(counts.snapshot());
+        logTurns(log, 80, 90);
+
+        File newest = new File(tempDir, String.format("counts-%020d.snapshot", 80));
+        List<String> lines = Files.readAllLines(newest.toPath(), StandardCharsets.UTF_8);
+        Files.write(newest.toPath(), List.of(lines.get(0), lines.get(1).replace("\"count\":", "\"count\": ")),
+                StandardCharsets.UTF_8);
+
+        QuestionCounts loaded = new QuestionCounts(log, tempDir, 1000);
+        assertEquals(40, loaded.load());
+        assertEquals(18, loaded.sketch().estimate("question 0"));
+        log.close();
+    }
+}
@@ -0,0 +1,56 @@
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class QuestionPredictorTest {
+
+    private static final long MINUTE = 60 * 1000L;
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testLearnsWhatFollowsFromTheLog() throws Exception {
+        ConversationLog log = ConversationLog.open(tempDir, ConversationLog.DEFAULT_SEGMENT_BYTES,
+                ConversationLog.KEEP_FOREVER, 60_000, 60_000);
+        long time = 0;
+        for (String user : new String[] {"alice", "bob", "carol"}) {
+            log.append(time += MINUTE, user, "What classes am I in?", null, null, 1, "LLM");
+            log.append(time += MINUTE, user, user.equals("carol") ? "When do I graduate?" : "What are the prerequisites for CS 374?",
+                    null, null, 1, "LLM");
+        }
+        // The next day's question is a new session, not a follow-up
+        log.append(time += 24 * 60 * MINUTE, "carol", "Who is my advisor?", null, null, 1, "LLM");
+
+        QuestionPredictor predictor = new QuestionPredictor();
+        assertEquals(7, predictor.learn(log, Long.MIN_VALUE, Long.MAX_VALUE));
+        log.close();
+
+        List<QuestionPredictor.Prediction> next = predictor.predict("what classes am I in", 3);
+        assertEquals(2, next.size());
+        assertEquals("What are the prerequisites for CS 374?", next.get(0).question());
+        assertEquals(2, next.get(0).count());
+        assertEquals(2.0 / 3, next.get(0).probability(), 1e-9);
+        assertEquals("When do I graduate?", next.get(1).question());
+        assertTrue(predictor.predict("When do I graduate?", 3).isEmpty());
+        assertEquals(3, predictor.getTransitionCount());
+    }
+
+    @Test
+    void testOnlyRecentQuestionsAreKept() {
+        QuestionPredictor predictor = new QuestionPredictor(2, question -> question);
+        long time = 0;
+        for (String question : new String[] {"first", "second", "third", "fourth"}) {
+            predictor.observe("alice", question, time += MINUTE);
+        }
+
+        assertEquals(2, predictor.getStateCount());
+        assertTrue(predictor.predict("first", 1).isEmpty());
+        assertEquals("fourth", predictor.predict("third", 1).get(0).question());
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResourceManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConfigHashIgnoresKeyOrder() {
+        JSONObject first = new JSONObject().put("type", "function")
+                .put("function", new JSONObject().put("name", "getPrereqs").put("description", "Prerequisites"));
+        JSONObject second = new JSONObject().put("function",
+                new JSONObject().put("description", "Prerequisites").put("name", "getPrereqs")).put("type", "function");
+        List<String> files = List.of("acu_database.txt", "user_info.txt");
+
+        String hash = ResourceManifest.configHash("gpt-3.5-turbo", "Advisor", "Be helpful.", List.of(first), files);
+        assertEquals(hash, ResourceManifest.configHash("gpt-3.5-turbo", "Advisor", "Be helpful.", List.of(second), files));
+        assertNotEquals(hash, ResourceManifest.configHash("gpt-3.5-turbo", "Advisor", "Be brief.", List.of(first), files));
+        assertNotEquals(hash, ResourceManifest.configHash("gpt-4o", "Advisor", "Be helpful.", List.of(first), files));
+    }
+
+    @Test
+    void testEntriesSurviveReload() {
+        File file = tempDir.resolve("resource_manifest.json").toFile();
+        ResourceManifest manifest = ResourceManifest.load(file);
+        assertNull(manifest.get("abc"));
+
+        assertTrue(manifest.put("abc", new ResourceManifest.Entry("asst_1", "vs_1")));
+        ResourceManifest reloaded = ResourceManifest.load(file);
+        assertEquals(new ResourceManifest.Entry("asst_1", "vs_1"), reloaded.get("abc"));
+    }
+
+    @Test
+    void testValidateWithoutIdsMakesNoRequests() {
+        ResourceManifest.Validation validation = ResourceManifest.validate(null, null, null);
+        assertFalse(validation.assistantValid());
+        assertFalse(validation.vectorStoreValid());
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResourceReaperTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<String> ids(List<ResourceReaper.Resource> resources) {
+        return resources.stream().map(ResourceReaper.Resource::id).sorted().toList();
+    }
+
+    @Test
+    void testJournalSurvivesRestart() {
+        File journal = tempDir.resolve("journal.jsonl").toFile();
+        ResourceReaper reaper = new ResourceReaper(null, journal, Set::of);
+        reaper.recordCreated("assistants", "asst_1");
+        reaper.recordCreated("files", "file_1");
+        reaper.recordCreated("threads", "thread_1");
+        reaper.recordCreated("vector_stores/vs_1/files", "file_1"); // not a tracked type
+        reaper.recordDeleted("files", "file_1");
+        reaper.close();
+
+        ResourceReaper restarted = new ResourceReaper(null, journal, Set::of);
+        assertEquals(List.of("asst_1", "thread_1"), ids(restarted.journaled()));
+        restarted.close();
+    }
+
+    @Test
+    void testAbandonedResources() {
+        ResourceReaper reaper = new ResourceReaper(null, tempDir.resolve("journal.jsonl").toFile(), Set::of,
+                2, 1000, 5000);
+        reaper.recordCreated("assistants", "asst_old");
+        reaper.recordCreated("assistants", "asst_kept");
+        reaper.recordCreated("threads", "thread_live");
+        reaper.recordCreated("files", "file_old");
+        long now = System.currentTimeMillis();
+        Set<String> retained = Set.of("asst_kept");
+
+        assertEquals(List.of(), ids(reaper.abandoned(now, retained, false)), "Nothing is past the grace period yet");
+        assertEquals(List.of("asst_old", "file_old"), ids(reaper.abandoned(now + 2000, retained, false)));
+        assertEquals(List.of("asst_old", "file_old", "thread_live"), ids(reaper.abandoned(now + 6000, retained, false)));
+        assertEquals(List.of(), ids(reaper.abandoned(now + 6000, retained, true)), "Only released resources in a quick sweep");
+
+        reaper.release("threads", "thread_live");
+        reaper.release("assistants", "asst_kept");
+        assertEquals(List.of("thread_live"), ids(reaper.abandoned(now, retained, true)),
+                "A retained resource is kept even once released");
+        reaper.close();
+    }
+
+    @Test
+    void testFullSweepLeavesUnjournaledAssistants() throws Exception {
+        ConcurrentLinkedQueue<String> deleted = new ConcurrentLinkedQueue<>();
+        OpenAiAssistantEngine engine = new OpenAiAssistantEngine("test-key") {
+            @Override
+            public String listAssistants(String after, String before, int limit, String order) {
+                // Another machine's assistant, with this app's name and long past the grace period
+                return "{\"data\":[{\"id\":\"asst_theirs\",\"name\":\"AI Academic Advisor\",\"created_at\":1}"
+                        + ",{\"id\":\"asst_mine\",\"name\":\"AI Academic Advisor\",\"created_at\":1}],\"has_more\":false}";
+            }
+
+            @Override
+            public String listFiles(String purpose, String after, int limit) {
+                return "{\"data\":[],\"has_more\":false}";
+            }
+
+            @Override
+            public boolean deleteResource(String resourceType, String resourceId) {
+                deleted.add(resourceId);
+                return true;
+            }
+        };
+        ResourceReaper reaper = new ResourceReaper(engine, tempDir.resolve("journal.jsonl").toFile(), Set::of, 2, 0, 60_000);
+        reaper.close();
+        reaper.recordCreated("assistants", "asst_mine");
+        reaper.recordCreated("assistants", "asst_gone");
+        Thread.sleep(5); // past the grace period
+
+        assertEquals(1, reaper.sweepNow(true));
+        assertEquals(List.of("asst_mine"), List.copyOf(deleted));
+        assertEquals(List.of(), ids(reaper.journaled()), "The assistant deleted elsewhere is dropped from the journal");
+    }
+
+    @Test
+    void testCompactionKeepsOtherProcessesEntries() {
+        OpenAiAssistantEngine engine = new OpenAiAssistantEngine("test-key") {
+            @Override
+            public String listAssistants(String after, String before, int limit, String order) {
+                return "{\"data\":[{\"id\":\"asst_mine\",\"created_at\":1}],\"has_more\":false}";
+            }
+
+            @Override
+            public String listFiles(String purpose, String after, int limit) {
+                return "{\"data\":[],\"has_more\":false}";
+            }
+        };
+        File journal = tempDir.resolve("journal.jsonl").toFile();
+        // Two processes of one install, started before either wrote anything
+        ResourceReaper mine = new ResourceReaper(engine, journal, Set::of, 2, 60_000, 60_000);
+        ResourceReaper theirs = new ResourceReaper(null, journal, Set::of);
+        mine.close();
+        theirs.close();
+        mine.recordCreated("assistants", "asst_mine");
+        mine.recordCreated("assistants", "asst_gone");
+        theirs.recordCreated("threads", "thread_theirs");
+        theirs.release("threads", "thread_theirs");
+
+        assertEquals(0, mine.sweepNow(true));
+        ResourceReaper restarted = new ResourceReaper(null, journal, Set::of);
+        assertEquals(List.of("asst_mine", "thread_theirs"), ids(restarted.journaled()),
+                "The other process's thread survives; the assistant deleted elsewhere does not come back");
+        assertTrue(restarted.journaled().stream().anyMatch(ResourceReaper.Resource::released));
+        restarted.close();
+    }
+
+    @Test
+    void testSweepDeletesReleasedInBatches() {
+        ConcurrentLinkedQueue<String> deleted = new ConcurrentLinkedQueue<>();
+        OpenAiAssistantEngine engine = new OpenAiAssistantEngine("test-key") {
+            @Override
+            public boolean deleteResource(String resourceType, String resourceId) {
+                deleted.add(resourceType + "/" + resourceId);
+                return !resourceId.equals("thread_stuck");
+            }
+        };
+        File journal = tempDir.resolve("journal.jsonl").toFile();
+        ResourceReaper reaper = new ResourceReaper(engine, journal, Set::of, 4, 60_000, 60_000);
+        reaper.close(); // no background sweeps; drive them directly
+        for (int i = 0; i < 45; i++) {
+            reaper.recordCreated("threads", "thread_" + i);
+            reaper.release("threads", "thread_" + i);
+        }
+        reaper.recordCreated("threads", "thread_stuck");
+        reaper.release("threads", "thread_stuck");
+        reaper.recordCreated("assistants", "asst_current");
+
+        assertEquals(45, reaper.sweepNow(false));
+        assertEquals(46, deleted.size());
+        assertTrue(deleted.contains("threads/thread_44"));
+        assertEquals(List.of("asst_current", "thread_stuck"), ids(reaper.journaled()),
+                "Failed deletes stay journaled for the next sweep");
+
+        ResourceReaper restarted = new ResourceReaper(engine, journal, Set::of);
+        assertEquals(List.of("asst_current", "thread_stuck"), ids(restarted.journaled()));
+        restarted.close();
+    }
+}
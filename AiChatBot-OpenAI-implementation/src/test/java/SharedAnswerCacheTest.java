@@ -0,0 +1,111 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SharedAnswerCacheTest {
+
+    private static final long TTL = 60_000;
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testAnswersAreSharedBetweenMappings() throws Exception {
+        File file = new File(tempDir, "answers.bin");
+        // Two mappings of one file, as two processes would have
+        SharedAnswerCache first = new SharedAnswerCache(file, 64, 512, TTL);
+        SharedAnswerCache second = new SharedAnswerCache(file, 64, 512, TTL);
+
+        assertTrue(first.put("alice", "What classes am I in?", "CS 120 and MATH 185."));
+        assertEquals("CS 120 and MATH 185.", second.get("alice", "what classes am I in"));
+        assertNull(second.get("bob", "What classes am I in?"), "Answers are kept per student");
+        assertTrue(second.put("alice", "What classes am I in?", "CS 120."));
+        assertEquals("CS 120.", first.get("alice", "What classes am I in?"));
+        assertFalse(first.put("alice", "Tell me everything", "x".repeat(512)), "Too long for a slot");
+        first.close();
+        second.close();
+
+        SharedAnswerCache reopened = new SharedAnswerCache(file, 64, 512, TTL);
+        assertEquals("CS 120.", reopened.get("alice", "What classes am I in?"));
+        reopened.close();
+        long length = file.length();
+        assertThrows(IOException.class, () -> new SharedAnswerCache(file, 128, 512, TTL));
+        assertEquals(length, file.length(), "A rejected layout leaves the file as it was");
+        try (SharedAnswerCache unchanged = new SharedAnswerCache(file, 64, 512, TTL)) {
+            assertEquals("CS 120.", unchanged.get("alice", "What classes am I in?"));
+        }
+    }
+
+    @Test
+    void testClockSparesRecentlyUsedAnswers() throws Exception {
+        // As many slots as probes, so every question competes for the same slots
+        SharedAnswerCache cache = new SharedAnswerCache(new File(tempDir, "answers.bin"),
+                SharedAnswerCache.PROBES, 256, TTL);
+        for (int i = 0; i < SharedAnswerCache.PROBES; i++) {
+            assertTrue(cache.put(null, "question " + i, "answer " + i));
+        }
+        // Every slot is referenced, so the sweep clears them all and then evicts one
+        assertTrue(cache.put(null, "question 8", "answer 8"));
+        // Only question 8 has been used since the sweep, so an older answer goes
+        assertTrue(cache.put(null, "question 9", "answer 9"));
+
+        assertEquals("answer 8", cache.get(null, "question 8"));
+        assertEquals("answer 9", cache.get(null, "question 9"));
+        int kept = 0;
+        for (int i = 0; i < SharedAnswerCache.PROBES; i++) {
+            if (cache.get(null, "question " + i) != null) {
+                kept++;
+            }
+        }
+        assertEquals(SharedAnswerCache.PROBES - 2, kept);
+        cache.close();
+    }
+
+    @Test
+    void testConcurrentWritersNeverServeTornAnswers() throws Exception {
+        File file = new File(tempDir, "answers.bin");
+        SharedAnswerCache first = new SharedAnswerCache(file, 16, 256, TTL);
+        SharedAnswerCache second = new SharedAnswerCache(file, 16, 256, TTL);
+        AtomicInteger wrong = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            SharedAnswerCache cache = t % 2 == 0 ? first : second;
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    int question = (i * 7 + thread) % 40;
+                    if (i % 3 == 0) {
+                        cache.put(null, "question " + question, ("answer " + question + " ").repeat(1 + i % 5));
+                    } else {
+                        String answer = cache.get(null, "question " + question);
+                        if (answer != null && !answer.startsWith("answer " + question + " ")) {
+                            wrong.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertEquals(0, wrong.get());
+        first.close();
+        second.close();
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class StartupGraphTest {
+
+    @Test
+    void testIndependentStagesOverlap() {
+        // Each stage waits for the other, so the graph only finishes if they run concurrently
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        StartupGraph graph = new StartupGraph()
+                .stage("login", () -> {
+                    bothStarted.countDown();
+                    return bothStarted.await(5, TimeUnit.SECONDS);
+                })
+                .stage("upload", () -> {
+                    bothStarted.countDown();
+                    return bothStarted.await(5, TimeUnit.SECONDS);
+                });
+        assertTrue(graph.run());
+    }
+
+    @Test
+    void testDependenciesRunFirst() {
+        AtomicBoolean uploaded = new AtomicBoolean();
+        StartupGraph graph = new StartupGraph()
+                .stage("upload", () -> {
+                    Thread.sleep(50);
+                    uploaded.set(true);
+                    return true;
+                })
+                .stage("attach", uploaded::get, "upload");
+        assertTrue(graph.run());
+
+        List<StartupGraph.Timing> timings = graph.timings();
+        assertEquals(List.of("upload", "attach"), timings.stream().map(StartupGraph.Timing::stage).toList());
+        assertTrue(timings.get(1).startMillis() >= timings.get(0).startMillis() + timings.get(0).durationMillis());
+        assertTrue(graph.timingReport().startsWith("Startup finished in"));
+    }
+
+    @Test
+    void testFailedStageSkipsDependents() {
+        AtomicBoolean ran = new AtomicBoolean();
+        StartupGraph graph = new StartupGraph()
+                .stage("apiKey", () -> false)
+                .stage("history", () -> true)
+                .stage("validate", () -> {
+                    ran.set(true);
+                    return true;
+                }, "apiKey")
+                .stage("assistant", () -> {
+                    throw new IllegalStateException("boom");
+                }, "history");
+        assertFalse(graph.run());
+        assertFalse(ran.get());
+
+        List<StartupGraph.Status> statuses = graph.timings().stream().map(StartupGraph.Timing::status).toList();
+        assertEquals(List.of(StartupGraph.Status.FAILED, StartupGraph.Status.OK,
+                StartupGraph.Status.SKIPPED, StartupGraph.Status.FAILED), statuses);
+    }
+
+    @Test
+    void testUnknownDependencyIsRejected() {
+        StartupGraph graph = new StartupGraph().stage("login", () -> true);
+        assertThrows(IllegalArgumentException.class, () -> graph.stage("attach", () -> true, "assistant"));
+        assertThrows(IllegalArgumentException.class, () -> graph.stage("login", () -> true));
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    private final TimingWheel wheel = new TimingWheel(5, 8, Runnable::run);
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    @Test
+    void testTimeoutsExpireAfterTheirDelay() throws Exception {
+        CountDownLatch fired = new CountDownLatch(2);
+        long start = System.nanoTime();
+        wheel.schedule(20, fired::countDown);
+        // Longer than one revolution of 8 ticks
+        wheel.schedule(100, fired::countDown);
+        assertEquals(2, wheel.pending());
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void testResetPostponesAndCancelStops() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timeout reset = wheel.schedule(300, runs::incrementAndGet);
+        TimingWheel.Timeout cancelled = wheel.schedule(20, runs::incrementAndGet);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(30);
+            reset.reset();
+        }
+        assertEquals(0, runs.get());
+        assertFalse(reset.isExpired());
+
+        Thread.sleep(800);
+        assertEquals(1, runs.get());
+        assertTrue(reset.isExpired());
+    }
+}
@@ -0,0 +1,68 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class VectorStoreIngestorTest {
+
+    @Test
+    void testSplitTables() {
+        List<VectorStoreIngestor.Document> documents = VectorStoreIngestor.splitTables(new File("acu_database.txt"), 40);
+        assertNotNull(documents);
+
+        VectorStoreIngestor.Document prereq = documents.get(0);
+        assertEquals("prereq", prereq.name());
+        assertTrue(prereq.content().startsWith("Table: prereq\ncourse prereq\nDET255 DET220\n"));
+
+        List<VectorStoreIngestor.Document> courseParts = documents.stream()
+                .filter(d -> d.name().startsWith("course-")).toList();
+        assertTrue(courseParts.size() > 1, "Large tables should be split into parts");
+        for (VectorStoreIngestor.Document part : courseParts) {
+            assertTrue(part.content().startsWith("Table: course\n"), "Every part repeats the table header");
+            assertTrue(part.content().split("\n").length <= 42);
+        }
+    }
+
+    @Test
+    void testPlanOnlyUploadsChangedDocuments() {
+        List<VectorStoreIngestor.Document> documents = new ArrayList<>(List.of(
+                new VectorStoreIngestor.Document("college", "Table: college\nid name\nCON College of Nursing\n"),
+                new VectorStoreIngestor.Document("coreq", "Table: coreq\ncourse prereq\nCS120 CS115\n"),
+                new VectorStoreIngestor.Document("major", "Table: major\nid name\nCS Computer Science\n")));
+        JSONObject recorded = new JSONObject();
+        for (int i = 0; i < documents.size(); i++) {
+            recorded.put(documents.get(i).name(), new JSONObject()
+                    .put("hash", documents.get(i).hash()).put("file_id", "file-" + i));
+        }
+        recorded.put("teachers", new JSONObject().put("hash", "old").put("file_id", "file-9"));
+        JSONObject manifest = new JSONObject()
+                .put("chunking_strategy", VectorStoreIngestor.CHUNKING_STRATEGY)
+                .put("documents", recorded);
+
+        documents.set(1, new VectorStoreIngestor.Document("coreq", "Table: coreq\ncourse prereq\nCS120 CS116\n"));
+        VectorStoreIngestor.Plan plan = VectorStoreIngestor.plan(manifest, documents, VectorStoreIngestor.CHUNKING_STRATEGY);
+
+        assertEquals(List.of("coreq"), plan.uploads().stream().map(VectorStoreIngestor.Document::name).toList());
+        assertEquals("file-1", plan.replaced().get("coreq").getString("file_id"));
+        assertEquals(List.of("file-9"), plan.removed());
+        assertEquals(List.of("college", "major"), new ArrayList<>(plan.unchanged().keySet()));
+    }
+
+    @Test
+    void testNewChunkingStrategyReuploadsEverything() {
+        VectorStoreIngestor.Document document = new VectorStoreIngestor.Document("college", "Table: college\n");
+        JSONObject manifest = new JSONObject()
+                .put("chunking_strategy", new JSONObject().put("type", "auto"))
+                .put("documents", new JSONObject().put("college",
+                        new JSONObject().put("hash", document.hash()).put("file_id", "file-1")));
+
+        VectorStoreIngestor.Plan plan = VectorStoreIngestor.plan(manifest, List.of(document), VectorStoreIngestor.CHUNKING_STRATEGY);
+        assertEquals(1, plan.uploads().size());
+        assertEquals(List.of("file-1"), plan.removed());
+    }
+}